@@ -1,5 +1,7 @@
 package model;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -7,34 +9,29 @@ import util.JFLAPConstants;
 
 import model.algorithms.testinput.parse.lr.SLR1Production;
 import model.automata.Automaton;
+import model.automata.LambdaClosures;
 import model.automata.State;
-import model.automata.SingleInputTransition;
-import model.automata.TransitionSet;
 import model.grammar.Grammar;
 import model.grammar.Production;
 import model.symbols.Symbol;
 
 public class ClosureHelper implements JFLAPConstants{
 
+	/**
+	 * Returns the states reachable from s using only lambda transitions,
+	 * including s. The closures are cached by the automaton, see
+	 * {@link Automaton#getLambdaClosures()}.
+	 */
 	public static TreeSet<State> takeClosure(State s, Automaton m){
-		TreeSet<State> closure = new TreeSet<State>();
-
-		TransitionSet<? extends SingleInputTransition> set = m.getTransitions();
+		return m.getLambdaClosures().getClosure(s);
+	}
 
-		closure.add(s);
-		boolean changed = true;
-		
-		while (changed){
-			changed = false;
-			for (State state: new TreeSet<State>(closure)){
-				for (SingleInputTransition t: set.getTransitionsFromState(state)){
-					if (t.isLambdaTransition()){
-						changed = closure.add(t.getToState()) || changed;
-					}
-				}
-			}
-		}
-		return closure;
+	/**
+	 * Returns the closure of all of the states as a bitset of the IDs
+	 * given by {@link Automaton#getLambdaClosures()}.
+	 */
+	public static BitSet takeClosure(Collection<State> states, Automaton m){
+		return m.getLambdaClosures().takeClosure(states);
 	}
 	
 	/**
@@ -2,8 +2,12 @@ package model.algorithms.conversion.fatoregex;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import universe.preferences.JFLAPPreferences;
@@ -24,11 +28,10 @@ import model.automata.determinism.FSADeterminismChecker;
 import model.formaldef.components.SetComponent;
 import model.formaldef.components.alphabets.Alphabet;
 import model.regex.EmptySub;
+import model.regex.ExpressionNode;
+import model.regex.ExpressionNodeFactory;
 import model.regex.GeneralizedTransitionGraph;
-import model.regex.OperatorAlphabet;
 import model.regex.RegularExpression;
-import model.regex.operators.KleeneStar;
-import model.regex.operators.Operator;
 import model.symbols.Symbol;
 import model.symbols.SymbolString;
 
@@ -43,6 +46,15 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 	public List<State> myStatesToCollapse;
 	private State newFinal;
 
+	/**
+	 * The expressions between the states of the GTG as trees, read from it
+	 * when the first state is collapsed, with null rows and columns for the
+	 * states collapsed since.
+	 */
+	private ExpressionNodeFactory myFactory;
+	private ExpressionNode[][] myExpressions;
+	private Map<State, Integer> myStateIndices;
+
 
 	public DFAtoRegularExpressionConverter (FiniteStateAcceptor fsa){
 		super(fsa);
@@ -75,6 +87,8 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 		newLambdaTransitions = new ArrayList<FSATransition>();
 		myCollapseList = getTransitionCollapseList();
 		myStatesToCollapse = getStatesToCollapse();
+		myFactory = new ExpressionNodeFactory(myRegEx.getOperators());
+		myExpressions = null;
 		return true;
 	}
 
@@ -102,28 +116,17 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 		
 		State end = finalSet.first();
 		
-		TransitionSet<FSATransition> transitions = getGTG().getTransitions();
+		ExpressionNode t1 = getExpressionBetweenStates(start, start),
+				t2 = getExpressionBetweenStates(start, end),
+				t3 = getExpressionBetweenStates(end, end),
+				t4 = getExpressionBetweenStates(end, start);
 		
-		FSATransition t1 = transitions.getTransitionsFromStateToState(start, start).iterator().next();
-		FSATransition t2 = transitions.getTransitionsFromStateToState(start, end).iterator().next();
-		FSATransition t3 = transitions.getTransitionsFromStateToState(end, end).iterator().next();
-		FSATransition t4 = transitions.getTransitionsFromStateToState(end, start).iterator().next();
-		
-		SymbolString exp = new SymbolString(t2.getInput());
-		if (!isEmptySetTransition(t1)){
-			exp = concat(star(t1.getInput()), exp);
-		}
-		
-		if (!isEmptySetTransition(t3)){
-			exp = concat(exp, star(t3.getInput()));
-		}
-		
-		if (!isEmptySetTransition(t4)){
-			SymbolString expCopy = exp.copy();
-			expCopy = concat(expCopy, new SymbolString(t4.getInput()));
-			exp = concat(star(expCopy.toArray(new Symbol[0])), exp);
-		}
-		myRegEx.setTo(exp);
+		// (t1 + t2 t3* t4)* t2 t3*
+		ExpressionNode endLoop = myFactory.star(t3);
+		ExpressionNode startLoop = myFactory.star(myFactory.union(t1,
+				myFactory.concatenate(t2, endLoop, t4)));
+		ExpressionNode exp = myFactory.concatenate(startLoop, t2, endLoop);
+		myRegEx.setTo(myFactory.toSymbolString(exp));
 		return myRegEx;
 
 	}
@@ -220,13 +223,39 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 		return myGTG;
 	}
 
+	/**
+	 * Collapses every state left to collapse, each time choosing one with
+	 * the fewest pairs of transitions into and out of it, so the fewest new
+	 * expressions are made. The GTG is only changed once all are collapsed.
+	 */
 	public boolean collapseAllStates() {
-		for (State s: new ArrayList<State>(myStatesToCollapse)){
-			boolean collapsed = collapseState(s);
-			if (!collapsed)
-				return false;
+		readExpressions();
+		Set<State> collapsed = new HashSet<State>(myStatesToCollapse);
+		while (!myStatesToCollapse.isEmpty()){
+			State best = null;
+			long fewest = Long.MAX_VALUE;
+			for (State s: myStatesToCollapse){
+				long pairs = countPairsThrough(myStateIndices.get(s));
+				if (pairs < fewest){
+					best = s;
+					fewest = pairs;
+				}
+			}
+			myStatesToCollapse.remove(best);
+			collapseExpressions(myStateIndices.get(best));
 		}
-		return true;
+
+		getGTG().getStates().removeAll(collapsed);
+		TransitionSet<FSATransition> transSet = getGTG().getTransitions();
+		List<FSATransition> toAdd = new ArrayList<FSATransition>();
+		for (State p : getGTG().getStates()) {
+			for (State q : getGTG().getStates()) {
+				toAdd.add(new FSATransition(p, q, myFactory
+						.toSymbolString(getExpressionBetweenStates(p, q))));
+			}
+		}
+		transSet.clear();
+		return transSet.addAll(toAdd);
 	}
 
 	public boolean collapseState(State s) {
@@ -234,10 +263,71 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 			return false;
 		myStatesToCollapse.remove(s);
 		Collection<FSATransition> toAdd = getTransitionsForCollapseState(s);
+		collapseExpressions(myStateIndices.get(s));
 
 		return getGTG().getStates().remove(s) && doTransitionAdditions(toAdd);
 		
 	}
+
+	/**
+	 * Reads the expression on each transition of the GTG into a tree, if
+	 * not done already.
+	 */
+	private void readExpressions() {
+		if (myExpressions != null)
+			return;
+		List<State> states = new ArrayList<State>(getGTG().getStates());
+		myStateIndices = new HashMap<State, Integer>();
+		for (State s : states)
+			myStateIndices.put(s, myStateIndices.size());
+		myExpressions = new ExpressionNode[states.size()][states.size()];
+		for (ExpressionNode[] row : myExpressions)
+			Arrays.fill(row, myFactory.getEmptySet());
+		for (FSATransition t : getGTG().getTransitions()) {
+			int from = myStateIndices.get(t.getFromState()),
+					to = myStateIndices.get(t.getToState());
+			ExpressionNode exp = myFactory.parse(new SymbolString(t.getInput()));
+			myExpressions[from][to] = myFactory.union(myExpressions[from][to], exp);
+		}
+	}
+
+	/**
+	 * Returns how many expressions collapsing the state would make: the
+	 * number of states with a transition into it times the number with one
+	 * out of it, not counting its own.
+	 */
+	private long countPairsThrough(int k) {
+		long in = 0, out = 0;
+		for (int p = 0; p < myExpressions.length; p++) {
+			if (p == k || myExpressions[p] == null)
+				continue;
+			if (myExpressions[p][k].getKind() != ExpressionNode.Kind.EMPTY_SET)
+				in++;
+			if (myExpressions[k][p].getKind() != ExpressionNode.Kind.EMPTY_SET)
+				out++;
+		}
+		return in * out;
+	}
+
+	/**
+	 * Replaces the expression between each pair of other states by the one
+	 * {@link #getExpression(int, int, int)} gives, and drops the state.
+	 */
+	private void collapseExpressions(int k) {
+		for (int p = 0; p < myExpressions.length; p++) {
+			if (!validTransitionForCollapse(p, k))
+				continue;
+			for (int q = 0; q < myExpressions.length; q++) {
+				if (validTransitionForCollapse(k, q))
+					myExpressions[p][q] = getExpression(p, q, k);
+			}
+		}
+		for (int p = 0; p < myExpressions.length; p++) {
+			if (myExpressions[p] != null)
+				myExpressions[p][k] = null;
+		}
+		myExpressions[k] = null;
+	}
 	
 	public boolean needsStatesCollaped() {
 		return !myStatesToCollapse.isEmpty();
@@ -258,40 +348,31 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 	}
 
 	public Collection<FSATransition> getTransitionsForCollapseState(State k) {
+		readExpressions();
 		ArrayList<FSATransition> list = new ArrayList<FSATransition>();
 		StateSet states = getGTG().getStates();
+		int kIndex = myStateIndices.get(k);
 		for (State p : states) {
-			
-			if(!validTransitionForCollapse(p,k))
+			int pIndex = myStateIndices.get(p);
+			if(!validTransitionForCollapse(pIndex, kIndex))
 				continue;
 			
 			for (State q: states) {
-				
-				if (!validTransitionForCollapse(k,q))
+				int qIndex = myStateIndices.get(q);
+				if (!validTransitionForCollapse(kIndex, qIndex))
 					continue;
 				
-				SymbolString exp = getExpression(p, q, k);
-				list.add(new FSATransition(p, q, exp));
+				ExpressionNode exp = getExpression(pIndex, qIndex, kIndex);
+				list.add(new FSATransition(p, q, myFactory.toSymbolString(exp)));
 			}
 		}
 		return list;
 	}
 
-	private boolean validTransitionForCollapse(State from, State to) {
-		if (from.equals(to))
-			return false;
-		
-		TransitionSet<FSATransition> transitions = getGTG().getTransitions();
-		Set<FSATransition> pk = 
-				transitions.getTransitionsFromStateToState(from, to);
-		
-		FSATransition test = (FSATransition) pk.toArray()[0];
-
-		if (isEmptySetTransition(test))
-			return false;
-		
-		return true;
-		
+	private boolean validTransitionForCollapse(int from, int to) {
+		return from != to && myExpressions[from] != null
+				&& myExpressions[from][to] != null
+				&& myExpressions[from][to].getKind() != ExpressionNode.Kind.EMPTY_SET;
 	}
 
 	private boolean isEmptySetTransition(FSATransition test) {
@@ -319,76 +400,10 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 	 *         r(pq) = r(pq) + r(pk)r(kk)*r(kq), where p, q, and k represent the
 	 *         IDs of states in <CODE>automaton</CODE>.
 	 */
-	private SymbolString getExpression(State p, State q, State k) {
-
-		SymbolString pq = getExpressionBetweenStates(p, q),
-				pk = getExpressionBetweenStates(p, k),
-				kk = getExpressionBetweenStates(k, k),
-				kq = getExpressionBetweenStates(k, q);
-
-		SymbolString exp = pk;
-		if (!isEmptySetTransition(kk)){
-			kk = star(kk.toArray(new Symbol[0]));
-			exp = concat(exp, kk);
-		}
-		concat(exp,kq);
-		if (!isEmptySetTransition(pq)){
-			exp = union(exp, pq);
-		}
-		return pk;
-	}
-
-	private SymbolString union(SymbolString left, SymbolString right) {
-		left.add(myRegEx.getOperators().getUnionOperator());
-		left.addAll(right);
-		return left;
-	}
-
-	private SymbolString concat(SymbolString left, SymbolString right) {
-		OperatorAlphabet ops = myRegEx.getOperators();
-		left = modifyForConcat(left);
-		left.addAll(modifyForConcat(right));
-		
-		return left;
-	}
-
-	private SymbolString star(Symbol[] s) {
-		SymbolString symbols = new SymbolString(s);
-		OperatorAlphabet ops = myRegEx.getOperators();
-		KleeneStar star = ops.getKleeneStar();
-		SymbolString first = RegularExpression.getFirstOperand(symbols, ops);
-		if (first.size() != symbols.size() ||
-				symbols.endsWith(star)){
-			symbols.addFirst(ops.getOpenGroup());
-			symbols.addLast(ops.getCloseGroup());
-		}
-		
-		symbols.add(star);
-		
-		return symbols;
-	}
-
-	private SymbolString modifyForConcat(SymbolString input) {
-		OperatorAlphabet ops = myRegEx.getOperators();
-		if (input.size() == 1 && input.startsWith(ops.getEmptySub()))
-			return new SymbolString();
-		boolean needsGrouping = false;
-		for (int i = 0;;){
-			SymbolString sub = input.subList(i);
-			SymbolString first = RegularExpression.getFirstOperand(sub, ops);
-			i = i + first.size();
-			if (i >=  input.size()) break;
-			if (input.get(i).equals(ops.getUnionOperator())){
-				needsGrouping = true;
-				break;
-			}
-		}
-		
-		if (needsGrouping){
-			input.addFirst(ops.getOpenGroup());
-			input.addLast(ops.getCloseGroup());
-		}
-		return input;
+	private ExpressionNode getExpression(int p, int q, int k) {
+		ExpressionNode[][] r = myExpressions;
+		return myFactory.union(r[p][q], myFactory.concatenate(r[p][k],
+				myFactory.star(r[k][k]), r[k][q]));
 	}
 
 	/**
@@ -404,11 +419,10 @@ public class DFAtoRegularExpressionConverter extends FormalDefinitionAlgorithm<F
 	 * @return the expression on the transition between <CODE>fromState</CODE>
 	 *         and <CODE>toState</CODE> in <CODE>automaton</CODE>.
 	 */
-	private SymbolString getExpressionBetweenStates(State fromState, State toState) {
-		Set<FSATransition> transitions = getGTG().getTransitions()
-				.getTransitionsFromStateToState(fromState, toState);
-		FSATransition trans = transitions.toArray(new FSATransition[0])[0];
-		return new SymbolString(trans.getInput());
+	private ExpressionNode getExpressionBetweenStates(State fromState, State toState) {
+		readExpressions();
+		return myExpressions[myStateIndices.get(fromState)][myStateIndices
+				.get(toState)];
 	}
 
 	private List<State> getStatesToCollapse() {
@@ -0,0 +1,270 @@
+package model.algorithms.conversion.regextofa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.transform.fsa.minimizer.HopcroftMinimizer;
+import model.automata.StartState;
+import model.automata.State;
+import model.automata.StateSet;
+import model.automata.TransitionSet;
+import model.automata.acceptors.FinalStateSet;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.regex.ExpressionNode;
+import model.regex.ExpressionNodeFactory;
+import model.regex.RegularExpression;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Converts a regular expression to a finite state automaton in one go, for
+ * when only the automaton is wanted and not the steps of
+ * {@link RegularExpressionToNFAConversion}, whose lambda transitions make
+ * the NFA slow to convert to a DFA.
+ * <p>
+ * The expression is read into an {@link ExpressionNode} tree, and each
+ * symbol in the tree is a position. The position (Glushkov) automaton has a
+ * start state and a state for each position, with a transition from p to q
+ * on the symbol of q whenever q may follow p in a match, so it has no
+ * lambda transitions and one state more than the expression has symbols.
+ * The DFA is made from the follow sets of the positions by the subset
+ * construction, without building the NFA, and may then be minimized with
+ * {@link HopcroftMinimizer}.
+ */
+public class RegularExpressionToDFAConverter {
+
+	/** The symbol of each position, position 0 being the start */
+	private List<Symbol> myPositions;
+	/** The positions that may follow each position */
+	private List<BitSet> myFollow;
+	/** The positions a match may end at, with 0 if lambda matches */
+	private BitSet myLast;
+
+	private RegularExpressionToDFAConverter(RegularExpression re) {
+		ExpressionNodeFactory factory = new ExpressionNodeFactory(
+				re.getOperators());
+		ExpressionNode root = factory.parse(re.getExpression());
+		myPositions = new ArrayList<Symbol>();
+		myFollow = new ArrayList<BitSet>();
+		addPosition(null);
+		BitSet[] firstLast = visit(root);
+		myFollow.set(0, firstLast[0]);
+		myLast = firstLast[1];
+		if (root.isNullable())
+			myLast.set(0);
+	}
+
+	/**
+	 * Returns the position automaton of the expression, an NFA with no
+	 * lambda transitions whose state q0 is the start and qi the i-th symbol
+	 * of the expression.
+	 *
+	 * @throws model.regex.RegularExpressionException
+	 *             if the expression is poorly formatted
+	 */
+	public static FiniteStateAcceptor createPositionAutomaton(
+			RegularExpression re) {
+		RegularExpressionToDFAConverter converter = new RegularExpressionToDFAConverter(
+				re);
+		int n = converter.myPositions.size();
+		State[] states = new State[n];
+		for (int p = 0; p < n; p++)
+			states[p] = createState(p);
+		List<FSATransition> transitions = new ArrayList<FSATransition>();
+		for (int p = 0; p < n; p++) {
+			BitSet follow = converter.myFollow.get(p);
+			for (int q = follow.nextSetBit(0); q >= 0; q = follow
+					.nextSetBit(q + 1))
+				transitions.add(new FSATransition(states[p], states[q],
+						new SymbolString(converter.myPositions.get(q))));
+		}
+		return converter.createAutomaton(re, states, converter.myLast,
+				transitions);
+	}
+
+	public static FiniteStateAcceptor convertToDFA(RegularExpression re) {
+		return convertToDFA(re, false);
+	}
+
+	/**
+	 * Returns a DFA for the expression, its states being the sets of
+	 * positions that the prefixes of matches may end at, found in the order
+	 * they are reached from the start. Missing transitions are left out, as
+	 * {@link model.algorithms.transform.fsa.NFAtoDFAConverter} does, unless
+	 * the DFA is minimized, when they go to a trap state.
+	 *
+	 * @param minimize
+	 *            whether to return the minimal DFA
+	 * @throws model.regex.RegularExpressionException
+	 *             if the expression is poorly formatted
+	 */
+	public static FiniteStateAcceptor convertToDFA(RegularExpression re,
+			boolean minimize) {
+		RegularExpressionToDFAConverter converter = new RegularExpressionToDFAConverter(
+				re);
+		FiniteStateAcceptor dfa = converter.buildDFA(re);
+		// A DFA with no transitions is its single start state, already
+		// minimal, and may have an empty alphabet, which the minimizer
+		// does not allow.
+		if (minimize && !dfa.getTransitions().isEmpty())
+			return HopcroftMinimizer.minimize(dfa);
+		return dfa;
+	}
+
+	private FiniteStateAcceptor buildDFA(RegularExpression re) {
+		Map<Symbol, Integer> symbolIndex = new LinkedHashMap<Symbol, Integer>();
+		int n = myPositions.size();
+		int[] symbolOf = new int[n];
+		for (int p = 1; p < n; p++) {
+			Integer j = symbolIndex.get(myPositions.get(p));
+			if (j == null)
+				symbolIndex.put(myPositions.get(p), j = symbolIndex.size());
+			symbolOf[p] = j;
+		}
+		Symbol[] symbols = symbolIndex.keySet().toArray(new Symbol[0]);
+
+		List<BitSet> subsets = new ArrayList<BitSet>();
+		Map<BitSet, Integer> ids = new HashMap<BitSet, Integer>();
+		BitSet start = new BitSet(n);
+		start.set(0);
+		subsets.add(start);
+		ids.put(start, 0);
+		List<int[]> moveList = new ArrayList<int[]>();
+		for (int from = 0; from < subsets.size(); from++) {
+			BitSet subset = subsets.get(from);
+			BitSet[] targets = new BitSet[symbols.length];
+			for (int p = subset.nextSetBit(0); p >= 0; p = subset
+					.nextSetBit(p + 1)) {
+				BitSet follow = myFollow.get(p);
+				for (int q = follow.nextSetBit(0); q >= 0; q = follow
+						.nextSetBit(q + 1)) {
+					if (targets[symbolOf[q]] == null)
+						targets[symbolOf[q]] = new BitSet(n);
+					targets[symbolOf[q]].set(q);
+				}
+			}
+			for (int j = 0; j < symbols.length; j++) {
+				if (targets[j] == null)
+					continue;
+				Integer to = ids.get(targets[j]);
+				if (to == null) {
+					to = subsets.size();
+					subsets.add(targets[j]);
+					ids.put(targets[j], to);
+				}
+				moveList.add(new int[] { from, j, to });
+			}
+		}
+
+		State[] states = new State[subsets.size()];
+		BitSet finals = new BitSet(states.length);
+		for (int i = 0; i < states.length; i++) {
+			states[i] = createState(i);
+			if (subsets.get(i).intersects(myLast))
+				finals.set(i);
+		}
+		List<FSATransition> transitions = new ArrayList<FSATransition>();
+		for (int[] move : moveList)
+			transitions.add(new FSATransition(states[move[0]],
+					states[move[2]], new SymbolString(symbols[move[1]])));
+		return createAutomaton(re, states, finals, transitions);
+	}
+
+	private static State createState(int id) {
+		return new State(JFLAPPreferences.getDefaultStateNameBase() + id, id);
+	}
+
+	private FiniteStateAcceptor createAutomaton(RegularExpression re,
+			State[] states, BitSet finals, List<FSATransition> transitions) {
+		FiniteStateAcceptor fsa = new FiniteStateAcceptor(new StateSet(),
+				re.getInputAlphabet().copy(),
+				new TransitionSet<FSATransition>(), new StartState(),
+				new FinalStateSet());
+		List<State> finalStates = new ArrayList<State>();
+		for (int i = finals.nextSetBit(0); i >= 0; i = finals.nextSetBit(i + 1))
+			finalStates.add(states[i]);
+		fsa.getStates().addAll(Arrays.asList(states));
+		fsa.setStartState(states[0]);
+		fsa.getFinalStateSet().addAll(finalStates);
+		fsa.getTransitions().addAll(transitions);
+		return fsa;
+	}
+
+	private int addPosition(Symbol symbol) {
+		myPositions.add(symbol);
+		myFollow.add(new BitSet());
+		return myPositions.size() - 1;
+	}
+
+	/**
+	 * Numbers the symbols of the node as positions, in the order they are
+	 * written, and adds the positions that may follow each other within it.
+	 * A node the factory shares between two parts of the expression is
+	 * visited, and its symbols numbered, once for each.
+	 *
+	 * @return the positions a match of the node may start and end at
+	 */
+	private BitSet[] visit(ExpressionNode node) {
+		BitSet first = new BitSet(), last = new BitSet();
+		switch (node.getKind()) {
+		case SYMBOL:
+			int p = addPosition(node.getSymbol());
+			first.set(p);
+			last.set(p);
+			break;
+		case UNION:
+			for (int i = 0; i < node.getNumChildren(); i++) {
+				BitSet[] child = visit(node.getChild(i));
+				first.or(child[0]);
+				last.or(child[1]);
+			}
+			break;
+		case CONCATENATION:
+			int m = node.getNumChildren();
+			BitSet[][] children = new BitSet[m][];
+			for (int i = 0; i < m; i++)
+				children[i] = visit(node.getChild(i));
+			for (int i = 0; i < m; i++) {
+				first.or(children[i][0]);
+				if (!node.getChild(i).isNullable())
+					break;
+			}
+			BitSet rest = new BitSet();
+			for (int i = m - 1; i >= 0; i--) {
+				addFollow(children[i][1], rest);
+				if (!node.getChild(i).isNullable())
+					rest = new BitSet();
+				rest.or(children[i][0]);
+			}
+			for (int i = m - 1; i >= 0; i--) {
+				last.or(children[i][1]);
+				if (!node.getChild(i).isNullable())
+					break;
+			}
+			break;
+		case STAR:
+			BitSet[] child = visit(node.getChild(0));
+			addFollow(child[1], child[0]);
+			first = child[0];
+			last = child[1];
+			break;
+		default:
+			break;
+		}
+		return new BitSet[] { first, last };
+	}
+
+	private void addFollow(BitSet from, BitSet to) {
+		for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1))
+			myFollow.get(p).or(to);
+	}
+
+}
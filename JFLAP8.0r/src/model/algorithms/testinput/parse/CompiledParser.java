@@ -0,0 +1,172 @@
+package model.algorithms.testinput.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * A table driven parser whose table has been turned into arrays of ints, for
+ * parsing many inputs quickly without stepping through them. Each terminal
+ * of the grammar has an ID, the end of string marker having the last, and
+ * an input is an array of those IDs, which {@link #encode(SymbolString)}
+ * makes from a {@link SymbolString}.
+ * <p>
+ * A parse only finds whether the input is accepted, unless the productions
+ * are being recorded, in which case {@link #getDerivation()} gives the
+ * derivation of the last input accepted. The stacks and the record are
+ * reused from one parse to the next, so a compiled parser must only be used
+ * by one thread at a time.
+ */
+public abstract class CompiledParser {
+
+	private Terminal[] myTerminals;
+	private Map<Symbol, Integer> myTerminalIDs;
+	private Production[] myProductions;
+
+	private boolean amRecording;
+	private int[] myRecord;
+	private int myRecordSize;
+	private boolean amDerived;
+
+	/**
+	 * @param terminals
+	 *            the terminals of the grammar, which are given IDs in this
+	 *            order
+	 */
+	protected CompiledParser(Terminal[] terminals) {
+		myTerminals = Arrays.copyOf(terminals, terminals.length + 1);
+		myTerminals[terminals.length] = JFLAPPreferences.getEndOfStringMarker();
+		myTerminalIDs = new HashMap<Symbol, Integer>();
+		for (int i = 0; i < myTerminals.length; i++)
+			myTerminalIDs.put(myTerminals[i], i);
+		myProductions = new Production[0];
+		myRecord = new int[16];
+	}
+
+	/**
+	 * Sets the productions that {@link #record(int)} refers to by index.
+	 */
+	protected void setProductions(Production[] productions) {
+		myProductions = productions;
+	}
+
+	/**
+	 * Returns the ID of the terminal, or -1 if it is not one of the grammar.
+	 */
+	public int getTerminalID(Symbol s) {
+		Integer id = myTerminalIDs.get(s);
+		return id == null || !Grammar.isTerminal(s) ? -1 : id;
+	}
+
+	public Terminal getTerminal(int id) {
+		return myTerminals[id];
+	}
+
+	/**
+	 * Returns the ID of the end of string marker, which is one more than
+	 * that of any terminal of the grammar.
+	 */
+	public int getEndID() {
+		return myTerminals.length - 1;
+	}
+
+	/**
+	 * Returns the IDs of the terminals of the input, or null if it has a
+	 * symbol that is not a terminal of the grammar.
+	 */
+	public int[] encode(SymbolString input) {
+		int[] ids = new int[input.size()];
+		int i = 0;
+		for (Symbol s : input) {
+			int id = getTerminalID(s);
+			if (id < 0 || id == getEndID())
+				return null;
+			ids[i++] = id;
+		}
+		return ids;
+	}
+
+	/**
+	 * Parses the input, returning whether the grammar generates it.
+	 */
+	public boolean parse(SymbolString input) {
+		int[] ids = encode(input);
+		if (ids == null) {
+			myRecordSize = 0;
+			amDerived = false;
+			return false;
+		}
+		return parse(ids, ids.length);
+	}
+
+	/**
+	 * Parses the first length IDs of the input, returning whether the
+	 * grammar generates that string of terminals.
+	 */
+	public boolean parse(int[] input, int length) {
+		myRecordSize = 0;
+		boolean accept = run(input, length);
+		amDerived = accept && amRecording;
+		return accept;
+	}
+
+	/**
+	 * Parses the input, calling {@link #record(int)} for each production used
+	 * if {@link #isRecording()}.
+	 */
+	protected abstract boolean run(int[] input, int length);
+
+	/**
+	 * Sets whether each parse keeps the productions it uses, so the
+	 * derivation can be found afterwards. Parsing is faster without.
+	 */
+	public void setRecording(boolean record) {
+		amRecording = record;
+	}
+
+	public boolean isRecording() {
+		return amRecording;
+	}
+
+	protected void record(int production) {
+		if (myRecordSize == myRecord.length)
+			myRecord = Arrays.copyOf(myRecord, myRecordSize * 2);
+		myRecord[myRecordSize++] = production;
+	}
+
+	/**
+	 * Returns the productions of the last parse, in the order they were
+	 * used, or an empty list if productions were not being recorded.
+	 */
+	public List<Production> getProductions() {
+		List<Production> productions = new ArrayList<Production>(myRecordSize);
+		for (int i = 0; i < myRecordSize; i++)
+			productions.add(myProductions[myRecord[i]]);
+		return productions;
+	}
+
+	/**
+	 * Returns whether the last parse accepted with productions being
+	 * recorded, so that they make up a derivation.
+	 */
+	protected boolean hasDerivation() {
+		return amDerived;
+	}
+
+	/**
+	 * Returns the derivation found by the last parse, if it accepted and
+	 * productions were being recorded, or null otherwise.
+	 */
+	public abstract Derivation getDerivation();
+
+}
@@ -4,7 +4,6 @@ import java.lang.Character.Subset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import util.Copyable;
@@ -16,13 +15,48 @@ import model.grammar.Grammar;
 import model.grammar.Production;
 import model.grammar.Variable;
 import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
+/**
+ * A sequence of productions applied to an initial string, each at a given
+ * substitution index.
+ * <p>
+ * The steps are kept as an immutable chain in which each step points back
+ * to the one before it, so {@link #copy()} shares the whole chain and
+ * adding a step to the copy only makes one new link. Each step also keeps
+ * the sentential form it leads to once that has been asked for, worked out
+ * from the form of the step before it rather than by replaying the whole
+ * derivation, so a search that extends a derivation and then looks at the
+ * result does one replacement per step.
+ */
 public class Derivation implements Copyable {
 
-	private LinkedList<Production> myProductions;
-	private LinkedList<Integer> mySubstitutions;
+	/**
+	 * One step of a derivation. Steps never change once made, so a step
+	 * and everything before it can be shared by many derivations.
+	 */
+	private static class Step {
+		private final Step myPrevious;
+		private final Production myProduction;
+		private final int mySubstitution;
+		private final int myLength;
+		/** The sentential form after this step, once it has been worked out */
+		private volatile SymbolSequence myResult;
+
+		private Step(Step previous, Production p, int subIndex) {
+			myPrevious = previous;
+			myProduction = p;
+			mySubstitution = subIndex;
+			myLength = previous == null ? 1 : previous.myLength + 1;
+		}
+	}
+
+	private Step myLast;
 	private SymbolString myInitial;
+	private SymbolSequence myInitialSequence;
+	/** The steps in order, made when one is asked for by index */
+	private Step[] mySteps;
 
 	public Derivation(Production start) {
 		this(new SymbolString(start.getLHS()));
@@ -32,7 +66,7 @@ public class Derivation implements Copyable {
 
 	/**
 	 * Creates a derivation which starts with the {@link SymbolString} startLHS
-	 * 
+	 *
 	 * @param startLHS
 	 */
 	public Derivation(Variable startVar) {
@@ -41,8 +75,7 @@ public class Derivation implements Copyable {
 
 	private Derivation(SymbolString initial) {
 		myInitial = initial;
-		myProductions = new LinkedList<Production>();
-		mySubstitutions = new LinkedList<Integer>();
+		myInitialSequence = new SymbolSequence(initial);
 	}
 
 	public void addAll(Production[] productions, Integer[] subs) {
@@ -55,7 +88,7 @@ public class Derivation implements Copyable {
 	}
 
 	public boolean addLeftmostStep(Production p) {
-		SymbolString current = createResult();
+		SymbolSequence current = createResultSequence();
 		for (int i = 0; i < current.size(); i++) {
 			if (Grammar.isVariable(current.get(i))) {
 				return this.addStep(p, i);
@@ -66,7 +99,7 @@ public class Derivation implements Copyable {
 	}
 
 	public boolean addRightmostStep(Production p) {
-		SymbolString current = createResult();
+		SymbolSequence current = createResultSequence();
 		for (int i = current.size() - 1; i >= 0; i--) {
 			if (Grammar.isVariable(current.get(i))) {
 				return this.addStep(p, i);
@@ -77,7 +110,9 @@ public class Derivation implements Copyable {
 	}
 
 	public boolean addStep(Production p, int subIndex) {
-		return myProductions.add(p) && mySubstitutions.add(subIndex);
+		myLast = new Step(myLast, p, subIndex);
+		mySteps = null;
+		return true;
 	}
 
 	public SymbolString createResult() {
@@ -86,68 +121,146 @@ public class Derivation implements Copyable {
 
 	/**
 	 * Returns the number of productions in this derivation.
-	 * 
+	 *
 	 * @return
 	 */
 	public int length() {
-		return myProductions.size();
+		return myLast == null ? 0 : myLast.myLength;
 	}
 
 	public SymbolString createResult(int n) {
-		SymbolString result = new SymbolString();
+		if (n == 0)
+			return myInitial;
+		return createResultSequence(n).toSymbolString();
+	}
+
+	/**
+	 * Returns the sentential form of this derivation as a
+	 * {@link SymbolSequence}, for use by parsers that only need to read it.
+	 *
+	 * @return
+	 */
+	public SymbolSequence createResultSequence() {
+		return resultOf(myLast);
+	}
+
+	public SymbolSequence createResultSequence(int n) {
 		if (length() < n) {
 			throw new ParserException("This derivation does not have " + n
 					+ " steps.");
 		}
+		return resultOf(n == 0 ? null : getStep(n - 1));
+	}
 
-		if (n == 0)
-			return myInitial;
+	/**
+	 * Returns the sentential form after the step, working it out from the
+	 * closest earlier step that has one. Only the form of the step asked for
+	 * is kept, so replaying a long derivation does not keep every form
+	 * along the way.
+	 */
+	private SymbolSequence resultOf(Step step) {
+		if (step == null)
+			return myInitialSequence;
+		SymbolSequence result = step.myResult;
+		if (result != null)
+			return result;
 
-		result.addAll(myInitial);
-		for (int i = 0; i < n; i++) {
-			Symbol[] sub = myProductions.get(i).getRHS();
-			int start = mySubstitutions.get(i);
-			int end = start + myProductions.get(i).getLHS().length;
-			result = result.replace(start, end, sub);
+		List<Step> replay = new ArrayList<Step>();
+		Step known = step;
+		while (known != null && known.myResult == null) {
+			replay.add(known);
+			known = known.myPrevious;
 		}
+		result = known == null ? myInitialSequence : known.myResult;
+		for (int i = replay.size() - 1; i >= 0; i--) {
+			Step s = replay.get(i);
+			int start = s.mySubstitution;
+			int end = start + s.myProduction.getLHS().length;
+			result = result.replace(start, end, s.myProduction.getRHS());
+		}
+		step.myResult = result;
 		return result;
 	}
 
+	/**
+	 * Returns the step with the given index, counting from 0.
+	 */
+	private Step getStep(int i) {
+		if (mySteps == null) {
+			Step[] steps = new Step[length()];
+			for (Step s = myLast; s != null; s = s.myPrevious)
+				steps[s.myLength - 1] = s;
+			mySteps = steps;
+		}
+		return mySteps[i];
+	}
+
+	/**
+	 * Returns the sentential form after each step. Each is worked out from
+	 * the one before, so this takes one replacement per step.
+	 */
 	public SymbolString[] getResultArray() {
 		SymbolString[] steps = new SymbolString[this.length()];
-		for (int i = 1; i < steps.length + 1; i++) {
-			steps[i - 1] = createResult(i);
+		SymbolSequence result = myInitialSequence;
+		for (int i = 0; i < steps.length; i++) {
+			Step s = getStep(i);
+			if (s.myResult != null)
+				result = s.myResult;
+			else {
+				int start = s.mySubstitution;
+				int end = start + s.myProduction.getLHS().length;
+				result = result.replace(start, end, s.myProduction.getRHS());
+			}
+			steps[i] = result.toSymbolString();
 		}
 		return steps;
 	}
 
 	@Override
 	public String toString() {
-		return myProductions.toString()+"\n"+mySubstitutions.toString();
+		return Arrays.asList(getProductionArray()).toString() + "\n"
+				+ Arrays.asList(getSubstitutionArray()).toString();
 	}
 
 	public Production getProduction(int i) {
-		return myProductions.get(i);
+		checkIndex(i);
+		return getStep(i).myProduction;
 	}
-	
+
 	public Production[] getProductionArray() {
-		return myProductions.toArray(new Production[0]);
+		Production[] productions = new Production[length()];
+		for (Step s = myLast; s != null; s = s.myPrevious)
+			productions[s.myLength - 1] = s.myProduction;
+		return productions;
 	}
 
 	public int getSubstitution(int i) {
-		return mySubstitutions.get(i);
+		checkIndex(i);
+		return getStep(i).mySubstitution;
 	}
-	
+
 	public Integer[] getSubstitutionArray() {
-		return mySubstitutions.toArray(new Integer[0]);
+		Integer[] subs = new Integer[length()];
+		for (Step s = myLast; s != null; s = s.myPrevious)
+			subs[s.myLength - 1] = s.mySubstitution;
+		return subs;
 	}
-	
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= length())
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: "
+					+ length());
+	}
+
+	/**
+	 * Returns a derivation with the same steps. The steps are shared, not
+	 * copied, so this takes constant time whatever the length.
+	 */
 	@Override
 	public Derivation copy() {
-		Derivation copy = new Derivation(myProductions.get(0));
-		for (int i = 1; i < this.length(); i++) {
-			copy.addStep(myProductions.get(i), mySubstitutions.get(i));
-		}
+		Derivation copy = new Derivation(myInitial);
+		copy.myInitialSequence = myInitialSequence;
+		copy.myLast = myLast;
 		return copy;
 	}
 
@@ -161,8 +274,11 @@ public class Derivation implements Copyable {
 
 	public Derivation getSubDerivation(int n) {
 		Derivation d = new Derivation(myInitial);
-		for (int i = 0; i < n; i++)
-			d.addStep(getProduction(i), mySubstitutions.get(i));
+		d.myInitialSequence = myInitialSequence;
+		if (n > 0) {
+			checkIndex(n - 1);
+			d.myLast = getStep(n - 1);
+		}
 		return d;
 	}
 
@@ -173,11 +289,14 @@ public class Derivation implements Copyable {
 		Derivation other = (Derivation) arg0;
 		if (myInitial.equals(other.myInitial)) {
 			if (length() == other.length()) {
-				for (int i = 0; i < length(); i++) {
-					if (!(myProductions.get(i).equals(
-							other.myProductions.get(i)) && mySubstitutions.get(
-							i).equals(other.mySubstitutions.get(i))))
+				Step s = myLast, o = other.myLast;
+				// Derivations copied from one another share their first steps.
+				while (s != o) {
+					if (!(s.myProduction.equals(o.myProduction)
+							&& s.mySubstitution == o.mySubstitution))
 						return false;
+					s = s.myPrevious;
+					o = o.myPrevious;
 				}
 				return true;
 			}
@@ -187,7 +306,7 @@ public class Derivation implements Copyable {
 
 	/**
 	 * Helper method to create a Rightmost Derivation from the trace.
-	 * 
+	 *
 	 * @return the corresponding derivation or null if there is no derivation.
 	 */
 	public static Derivation createRightmostDerivation(List<Production> trace,
@@ -0,0 +1,403 @@
+package model.algorithms.testinput.parse;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * The nullable variables and the FIRST and FOLLOW sets of every variable of
+ * a context free grammar, worked out all at once.
+ * <p>
+ * Variables and terminals are given dense IDs and each set is a
+ * {@link BitSet} of terminal IDs. The nullable variables are found by
+ * counting, for each production, the symbols on its right side not yet known
+ * to be nullable, so each production is looked at once per symbol. FIRST
+ * and FOLLOW are then each a single pass over the productions, which gives
+ * the terminals each set starts with and which sets must include which, and
+ * a worklist that passes terminals along those inclusions until nothing
+ * changes. Neither recurses, so long chains of nullable variables cost no
+ * more than short ones.
+ * <p>
+ * The sets are a snapshot and do not follow changes to the grammar.
+ */
+public class FirstFollowSets {
+
+	private Grammar myGrammar;
+	private Map<Symbol, Integer> myVariableIDs;
+	private List<Variable> myVariables;
+	private Map<Symbol, Integer> myTerminalIDs;
+	private List<Terminal> myTerminals;
+	private int myEndID;
+
+	/** Each production as the ID of its left side and the IDs of its right */
+	private int[] myLHS;
+	private int[][] myRHS;
+	/** Whether each right side symbol is a terminal */
+	private boolean[][] myRHSTerminal;
+
+	private BitSet myNullable;
+	/** FIRST of each variable, leaving out the empty string */
+	private BitSet[] myFirst;
+	private BitSet[] myFollow;
+
+	/**
+	 * Works out the sets for the grammar, which is assumed to be context
+	 * free.
+	 */
+	public FirstFollowSets(Grammar g) {
+		myGrammar = g;
+		myVariableIDs = new HashMap<Symbol, Integer>();
+		myVariables = new ArrayList<Variable>();
+		myTerminalIDs = new HashMap<Symbol, Integer>();
+		myTerminals = new ArrayList<Terminal>();
+		for (Symbol v : g.getVariables())
+			variableID((Variable) v);
+		for (Symbol t : g.getTerminals())
+			terminalID((Terminal) t);
+		myEndID = terminalID(JFLAPPreferences.getEndOfStringMarker());
+
+		Production[] prods = g.getProductionSet().toArray();
+		myLHS = new int[prods.length];
+		myRHS = new int[prods.length][];
+		myRHSTerminal = new boolean[prods.length][];
+		for (int p = 0; p < prods.length; p++) {
+			myLHS[p] = variableID((Variable) prods[p].getLHS()[0]);
+			Symbol[] rhs = prods[p].getRHS();
+			myRHS[p] = new int[rhs.length];
+			myRHSTerminal[p] = new boolean[rhs.length];
+			for (int i = 0; i < rhs.length; i++) {
+				myRHSTerminal[p][i] = Grammar.isTerminal(rhs[i]);
+				myRHS[p][i] = myRHSTerminal[p][i] ? terminalID((Terminal) rhs[i])
+						: variableID((Variable) rhs[i]);
+			}
+		}
+
+		findNullable();
+		findFirst();
+		findFollow();
+	}
+
+	private int variableID(Variable v) {
+		Integer id = myVariableIDs.get(v);
+		if (id == null) {
+			myVariableIDs.put(v, id = myVariables.size());
+			myVariables.add(v);
+		}
+		return id;
+	}
+
+	private int terminalID(Terminal t) {
+		Integer id = myTerminalIDs.get(t);
+		if (id == null) {
+			myTerminalIDs.put(t, id = myTerminals.size());
+			myTerminals.add(t);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the productions with each variable on the right side, once for
+	 * each time it appears there.
+	 */
+	private int[][] findOccurrences() {
+		int n = myVariables.size();
+		int[] count = new int[n];
+		for (int p = 0; p < myRHS.length; p++) {
+			for (int i = 0; i < myRHS[p].length; i++) {
+				if (!myRHSTerminal[p][i])
+					count[myRHS[p][i]]++;
+			}
+		}
+		int[][] occurrences = new int[n][];
+		for (int v = 0; v < n; v++)
+			occurrences[v] = new int[count[v]];
+		int[] fill = new int[n];
+		for (int p = 0; p < myRHS.length; p++) {
+			for (int i = 0; i < myRHS[p].length; i++) {
+				if (!myRHSTerminal[p][i]) {
+					int v = myRHS[p][i];
+					occurrences[v][fill[v]++] = p;
+				}
+			}
+		}
+		return occurrences;
+	}
+
+	private void findNullable() {
+		int n = myVariables.size();
+		myNullable = new BitSet(n);
+		int[][] occurrences = findOccurrences();
+		// The symbols on each right side not yet known to be nullable; a
+		// right side with a terminal never will be.
+		int[] remaining = new int[myRHS.length];
+		int[] work = new int[n];
+		int numWork = 0;
+		for (int p = 0; p < myRHS.length; p++) {
+			remaining[p] = myRHS[p].length;
+			for (boolean terminal : myRHSTerminal[p]) {
+				if (terminal)
+					remaining[p] = Integer.MAX_VALUE;
+			}
+			if (remaining[p] == 0 && !myNullable.get(myLHS[p])) {
+				myNullable.set(myLHS[p]);
+				work[numWork++] = myLHS[p];
+			}
+		}
+		while (numWork > 0) {
+			int v = work[--numWork];
+			for (int p : occurrences[v]) {
+				if (--remaining[p] == 0 && !myNullable.get(myLHS[p])) {
+					myNullable.set(myLHS[p]);
+					work[numWork++] = myLHS[p];
+				}
+			}
+		}
+	}
+
+	private void findFirst() {
+		int n = myVariables.size();
+		myFirst = newSets(n);
+		// FIRST of the variable includes FIRST of each of its dependents.
+		List<List<Integer>> dependents = newLists(n);
+		for (int p = 0; p < myRHS.length; p++) {
+			int lhs = myLHS[p];
+			for (int i = 0; i < myRHS[p].length; i++) {
+				if (myRHSTerminal[p][i]) {
+					myFirst[lhs].set(myRHS[p][i]);
+					break;
+				}
+				dependents.get(myRHS[p][i]).add(lhs);
+				if (!myNullable.get(myRHS[p][i]))
+					break;
+			}
+		}
+		propagate(myFirst, dependents);
+	}
+
+	private void findFollow() {
+		int n = myVariables.size();
+		myFollow = newSets(n);
+		Variable start = myGrammar.getStartVariable();
+		if (start != null)
+			myFollow[variableID(start)].set(myEndID);
+		// FOLLOW of the left side is in FOLLOW of each right side variable
+		// that only nullable symbols come after.
+		List<List<Integer>> dependents = newLists(n);
+		for (int p = 0; p < myRHS.length; p++) {
+			BitSet after = new BitSet();
+			boolean nullableAfter = true;
+			for (int i = myRHS[p].length - 1; i >= 0; i--) {
+				int s = myRHS[p][i];
+				if (myRHSTerminal[p][i]) {
+					after.clear();
+					after.set(s);
+					nullableAfter = false;
+					continue;
+				}
+				myFollow[s].or(after);
+				if (nullableAfter)
+					dependents.get(myLHS[p]).add(s);
+				if (!myNullable.get(s)) {
+					after.clear();
+					nullableAfter = false;
+				}
+				after.or(myFirst[s]);
+			}
+		}
+		propagate(myFollow, dependents);
+	}
+
+	/**
+	 * Adds each set to the sets of its dependents until none changes.
+	 */
+	private static void propagate(BitSet[] sets, List<List<Integer>> dependents) {
+		int n = sets.length;
+		int[] work = new int[n];
+		boolean[] inWork = new boolean[n];
+		for (int v = 0; v < n; v++) {
+			work[v] = v;
+			inWork[v] = true;
+		}
+		int numWork = n;
+		while (numWork > 0) {
+			int v = work[--numWork];
+			inWork[v] = false;
+			for (int d : dependents.get(v)) {
+				int before = sets[d].cardinality();
+				sets[d].or(sets[v]);
+				if (sets[d].cardinality() != before && !inWork[d]) {
+					work[numWork++] = d;
+					inWork[d] = true;
+				}
+			}
+		}
+	}
+
+	private static BitSet[] newSets(int n) {
+		BitSet[] sets = new BitSet[n];
+		for (int i = 0; i < n; i++)
+			sets[i] = new BitSet();
+		return sets;
+	}
+
+	private static List<List<Integer>> newLists(int n) {
+		List<List<Integer>> lists = new ArrayList<List<Integer>>();
+		for (int i = 0; i < n; i++)
+			lists.add(new ArrayList<Integer>());
+		return lists;
+	}
+
+	public Grammar getGrammar() {
+		return myGrammar;
+	}
+
+	public boolean isNullable(Variable v) {
+		Integer id = myVariableIDs.get(v);
+		return id != null && myNullable.get(id);
+	}
+
+	/**
+	 * Returns the FIRST set of the variable, with the substitute for the
+	 * empty string if the variable is nullable.
+	 */
+	public Set<Terminal> getFirst(Variable v) {
+		Set<Terminal> first = new TreeSet<Terminal>();
+		Integer id = myVariableIDs.get(v);
+		if (id == null)
+			return first;
+		addTerminals(myFirst[id], first);
+		if (myNullable.get(id))
+			first.add(JFLAPPreferences.getSubForEmptyString());
+		return first;
+	}
+
+	/**
+	 * Returns the FIRST set of the string of symbols, with the substitute for
+	 * the empty string if every symbol is nullable.
+	 */
+	public Set<Terminal> getFirst(Symbol[] symbols) {
+		Set<Terminal> first = new TreeSet<Terminal>();
+		for (Symbol s : symbols) {
+			if (Grammar.isTerminal(s)) {
+				first.add((Terminal) s);
+				return first;
+			}
+			Integer id = myVariableIDs.get(s);
+			if (id == null)
+				return first;
+			addTerminals(myFirst[id], first);
+			if (!myNullable.get(id))
+				return first;
+		}
+		first.add(JFLAPPreferences.getSubForEmptyString());
+		return first;
+	}
+
+	public Set<Terminal> getFollow(Variable v) {
+		Set<Terminal> follow = new TreeSet<Terminal>();
+		Integer id = myVariableIDs.get(v);
+		if (id != null)
+			addTerminals(myFollow[id], follow);
+		return follow;
+	}
+
+	private void addTerminals(BitSet ids, Set<Terminal> to) {
+		for (int t = ids.nextSetBit(0); t >= 0; t = ids.nextSetBit(t + 1))
+			to.add(myTerminals.get(t));
+	}
+
+	/**
+	 * Returns the FIRST_k set of every variable, that is the strings of up to
+	 * k terminals that its derivations can start with, where a string
+	 * shorter than k is a whole terminal string it derives. The empty
+	 * {@link SymbolString} stands for the empty string.
+	 * <p>
+	 * Each production is worked out again only when the set of a variable on
+	 * its right side grows, until none does.
+	 */
+	public Map<Variable, Set<SymbolString>> getFirstK(int k) {
+		if (k < 1)
+			throw new ParserException("k must be at least 1.");
+		int n = myVariables.size();
+		List<Set<SymbolString>> sets = new ArrayList<Set<SymbolString>>();
+		for (int v = 0; v < n; v++)
+			sets.add(new HashSet<SymbolString>());
+		int[][] occurrences = findOccurrences();
+
+		LinkedList<Integer> work = new LinkedList<Integer>();
+		boolean[] inWork = new boolean[myRHS.length];
+		for (int p = 0; p < myRHS.length; p++) {
+			work.add(p);
+			inWork[p] = true;
+		}
+		while (!work.isEmpty()) {
+			int p = work.removeFirst();
+			inWork[p] = false;
+			Set<SymbolString> lhs = sets.get(myLHS[p]);
+			if (lhs.addAll(firstK(p, sets, k))) {
+				for (int q : occurrences[myLHS[p]]) {
+					if (!inWork[q]) {
+						work.add(q);
+						inWork[q] = true;
+					}
+				}
+			}
+		}
+
+		Map<Variable, Set<SymbolString>> firstK = new HashMap<Variable, Set<SymbolString>>();
+		for (int v = 0; v < n; v++)
+			firstK.put(myVariables.get(v), sets.get(v));
+		return firstK;
+	}
+
+	/**
+	 * Returns the strings of up to k terminals that the right side of the
+	 * production starts with, going by the sets found so far.
+	 */
+	private Set<SymbolString> firstK(int p, List<Set<SymbolString>> sets, int k) {
+		Set<SymbolString> prefixes = new HashSet<SymbolString>();
+		prefixes.add(new SymbolString());
+		for (int i = 0; i < myRHS[p].length && !prefixes.isEmpty(); i++) {
+			Set<SymbolString> next = new HashSet<SymbolString>();
+			for (SymbolString prefix : prefixes) {
+				if (prefix.size() == k) {
+					next.add(prefix);
+					continue;
+				}
+				if (myRHSTerminal[p][i]) {
+					SymbolString longer = new SymbolString(prefix);
+					longer.add(myTerminals.get(myRHS[p][i]));
+					next.add(longer);
+					continue;
+				}
+				for (SymbolString rest : sets.get(myRHS[p][i])) {
+					SymbolString longer = new SymbolString(prefix);
+					for (Symbol s : rest) {
+						if (longer.size() == k)
+							break;
+						longer.add(s);
+					}
+					next.add(longer);
+				}
+			}
+			prefixes = next;
+		}
+		return prefixes;
+	}
+
+}
@@ -1,6 +1,5 @@
 package model.algorithms.testinput.parse;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
 import java.util.TreeSet;
@@ -14,7 +13,6 @@ import errors.BooleanWrapper;
 
 import model.algorithms.AlgorithmException;
 import model.grammar.Grammar;
-import model.grammar.GrammarUtil;
 import model.grammar.Production;
 import model.grammar.Terminal;
 import model.grammar.Variable;
@@ -33,6 +31,11 @@ import model.symbols.SymbolString;
  * to retrieve the first set of a given variable in a
  * given grammar. One can also choose to instantiate with
  * or without auto-completion of the table.
+ * <p>
+ * The complete sets are worked out once, by {@link FirstFollowSets}, when
+ * the table is made, and filling in or checking a variable compares it with
+ * those. Like the variables of the table, they are a snapshot of the grammar
+ * and do not follow changes to it, so make a new table after changing it.
  * 
  * @author Julian Genkins
  *
@@ -41,6 +44,7 @@ public class FirstFollowTable {
 
 	private FirstFollowMapping[] myTable;
 	private Grammar myGrammar;
+	private FirstFollowSets mySets;
 
 	/**
 	 * Creates a new {@link FirstFollowTable} and completes
@@ -69,6 +73,7 @@ public class FirstFollowTable {
 			throw new ParserException("This grammar is not context free, " +
 					" therefore, you may not build a FIRST/FOLLOW table with it.");
 		myGrammar = g;
+		mySets = new FirstFollowSets(g);
 		Variable[] alph = g.getVariables().toArray(new Variable[0]);
 		myTable = new FirstFollowMapping[alph.length];
 		for (int i = 0; i<alph.length; i++){
@@ -174,7 +179,7 @@ public class FirstFollowTable {
 	 */
 	public Set<Terminal> populateFirstForIndex(int i) {
 		Variable v = myTable[i].var;
-		Set<Terminal> newFirst = findFirstSet(v, myGrammar);
+		Set<Terminal> newFirst = mySets.getFirst(v);
 		Set<Terminal> oldFirst = myTable[i].first;
 		boolean changed = !oldFirst.equals(newFirst);
 		if (changed){
@@ -214,7 +219,7 @@ public class FirstFollowTable {
 	 */
 	public Set<Terminal> addFirstSymbols(int i, Terminal ... terms) {
 		Variable v = myTable[i].var;
-		Set<Terminal> idealFirst = findFirstSet(v, myGrammar);
+		Set<Terminal> idealFirst = mySets.getFirst(v);
 		Set<Terminal> curFirst = myTable[i].first;
 
 		for (Terminal t: terms){
@@ -239,7 +244,7 @@ public class FirstFollowTable {
 	 */
 	public Set<Terminal> populateFollowForIndex(int i) {
 		Variable v = myTable[i].var;
-		Set<Terminal> newFollow = findFollowSet(v, myGrammar);
+		Set<Terminal> newFollow = mySets.getFollow(v);
 		Set<Terminal> oldFollow = myTable[i].follow;
 		boolean changed = !oldFollow.equals(newFollow);
 		if (changed){
@@ -279,7 +284,7 @@ public class FirstFollowTable {
 	 */
 	public Set<Terminal> addFollowSymbols(int i, Terminal ... terms) {
 		Variable v = myTable[i].var;
-		Set<Terminal> idealFollow = findFollowSet(v, myGrammar);
+		Set<Terminal> idealFollow = mySets.getFollow(v);
 		Set<Terminal> curFollow = myTable[i].follow;
 
 		for (Terminal t: terms){
@@ -327,7 +332,7 @@ public class FirstFollowTable {
 	
 	public boolean isFirstComplete(int i){
 		Variable v = myTable[i].var;
-		Set<Terminal> idealFirst = findFirstSet(v, myGrammar);
+		Set<Terminal> idealFirst = mySets.getFirst(v);
 		Set<Terminal> curFirst = myTable[i].first;
 		return idealFirst.equals(curFirst);
 	}
@@ -339,7 +344,7 @@ public class FirstFollowTable {
 	
 	public boolean isFollowComplete(int i){
 		Variable v = myTable[i].var;
-		Set<Terminal> idealFollow = findFollowSet(v, myGrammar);
+		Set<Terminal> idealFollow = mySets.getFollow(v);
 		Set<Terminal> curFollow = myTable[i].follow;
 		return idealFollow.equals(curFollow);
 	}
@@ -392,117 +397,11 @@ public class FirstFollowTable {
 		if (!g.getVariables().contains(v))
 			throw new AlgorithmException("The variable " + v + "is not in the " +
 					g.getDescriptionName());
-		return recursiveFirst(v, g, new TreeSet<Variable>());
-	}
-	
-	private static Set<Terminal> recursiveFirst(Symbol[] symbols, Grammar g, Set<Variable> history){
-		//Otherwise, check variables on RHS
-		Set<Terminal> first = new TreeSet<Terminal>();
-		Terminal empty = JFLAPPreferences.getSubForEmptyString();
-		
-//		by default, add the empty string. if ss is not empty, then it will
-//		be removed below anyway
-		first.add(empty);
-		
-		for (int i = 0; i < symbols.length; i++){
-			first.remove(empty);
-			Symbol sym = symbols[i];
-			first.addAll(recursiveFirst(sym, g, history));
-//			if the symbol does not derives lambda, then break out of the loop.
-			if (!GrammarUtil.derivesLambda(sym, g))
-				break;
-			
-//			else update history and recurse...you know sym must be a var
-			history = new TreeSet<Variable>(history);
-			history.add((Variable) sym); //i+1
-			first.addAll(
-					recursiveFirst(Arrays.copyOfRange(symbols, i+1, symbols.length),
-					g, 
-					history));
-		}
-		return first;
-	}
-
-	private static Set<Terminal> recursiveFirst(Symbol s, Grammar g, Set<Variable> history){
-		//if s is a terminal, then FIRST(s) = s
-		if (Grammar.isTerminal(s)){
-			TreeSet<Terminal> first = new TreeSet<Terminal>();
-			first.add((Terminal) s);
-			return first;
-		}
-		Variable v = (Variable) s;
-		
-		//if we ave already recursed through this variable, it is already include
-		if (history.contains(v))
-			return new TreeSet<Terminal>();
-
-		//update history
-		history = new TreeSet<Variable>(history);
-		history.add(v);
-		Set<Production> prods = g.getProductionSet().getProductionsWithSymbolOnLHS(v);
-
-		Set<Terminal> first = new TreeSet<Terminal>();
-		Terminal empty = JFLAPPreferences.getSubForEmptyString();
-		for (Production p: prods){
-			//FIRST(lambda) = lambda (in this case the EmptySub symbol
-			first.addAll(recursiveFirst(p.getRHS(), g, history));
-		}
-
-		return first;
+		return new FirstFollowSets(g).getFirst(v);
 	}
 
 	public static Set<Terminal> findFollowSet(Variable v, Grammar g){
-		return recursiveFollow(v, g, new TreeSet<Variable>());
-	}
-
-	private static Set<Terminal> recursiveFollow(Variable v, Grammar g, Set<Variable> history){
-		
-		//if we ave already recursed through this variable, it is already include
-		if (history.contains(v))
-			return new TreeSet<Terminal>();
-
-		//update history
-		history = new TreeSet<Variable>(history);
-		history.add(v);
-
-		Set<Terminal> follow = new TreeSet<Terminal>();
-		Terminal eosMarker = JFLAPPreferences.getEndOfStringMarker();
-		
-		//if v is te start variable, add the EOS marker
-		if (g.getStartVariable().equals(v))
-			follow.add(eosMarker);
-		
-		Set<Production> prods = g.getProductionSet().getProductionsWithSymbolOnRHS(v);
-		Terminal empty = JFLAPPreferences.getSubForEmptyString();
-		
-		for (Production p: prods){
-			Set<Terminal> toAdd = new TreeSet<Terminal>();
-			Symbol[] rhs = p.getRHS();
-			
-			//find all instances of V on the RHS of p
-			for (int i = 0; i < rhs.length; i++){
-				Symbol s = rhs[i];
-				if (!s.equals(v)) continue;
-				
-				//Assume of the form A -> vBw
-				
-				Symbol[] w = Arrays.copyOfRange(rhs, i+1, rhs.length);
-				
-				Set<Terminal> firstW = recursiveFirst(w, g, new TreeSet<Variable>());
-				toAdd.addAll(firstW);
-				
-				//if FIRST(w) contains lambda, then FOLLOW(A) is in FOLLOW(B)
-				if (firstW.contains(empty)){
-					toAdd.remove(empty);
-					Variable A = (Variable) p.getLHS()[0];
-					toAdd.addAll(recursiveFollow(A,g,history));
-					//also at this point we have exhausted the production
-					break;
-				}
-			}
-			follow.addAll(toAdd);
-		}
-		return follow;
+		return new FirstFollowSets(g).getFollow(v);
 	}
 
 	public Set<Terminal> getFirst(Variable v) {
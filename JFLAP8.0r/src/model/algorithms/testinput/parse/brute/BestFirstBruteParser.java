@@ -0,0 +1,465 @@
+package model.algorithms.testinput.parse.brute;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import model.algorithms.testinput.parse.Derivation;
+import model.algorithms.testinput.parse.Parser;
+import model.algorithms.testinput.parse.ParserException;
+import model.change.events.AdvancedChangeEvent;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.ProductionSet;
+import model.grammar.ProductionSet.LHSMatch;
+import model.grammar.typetest.GrammarType;
+import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
+
+/**
+ * Brute force parser that expands the most promising sentential form next,
+ * rather than a whole level at a time as {@link UnrestrictedBruteParser}
+ * does. Forms are ruled out by the same checks as the breadth first parser
+ * for the grammar, and the rest are kept in a priority queue ordered by an
+ * estimate of how far each is from the input: the input symbols not yet
+ * matched by terminals at either end, the variables still to be rewritten,
+ * the terminals that do not fit in order between the ends, and the
+ * variables at either end that cannot become the terminal the input has
+ * there. A variable becomes a terminal in place if some production turns
+ * it into that terminal without changing the length of the form, as
+ * <I>aB -> ab</I> turns <I>B</I> into <I>b</I>. Each step expands one form,
+ * ties going to the deepest.
+ * <p>
+ * The estimate only ranks the forms and is not a lower bound on the steps
+ * left, as one step may match many input symbols, so this is a greedy
+ * search and not A*. Which symbols can derive something shorter is left to
+ * the checks of the breadth first parser, which rule out the forms whose
+ * shortest derivable string is longer than the input.
+ * <p>
+ * The search may also be run from both ends (see
+ * {@link #setBidirectional(boolean)}). The input is then reduced as well,
+ * replacing the right side of a production with its left, shortest forms
+ * first, and the parse is found as soon as the two searches reach the same
+ * form. Only productions that do not shorten a form are undone, so the
+ * reduced forms are never longer than the input and the backward search is
+ * finite; the forward search alone decides whether the input is accepted.
+ * <p>
+ * The forms already seen going forward are kept as a {@link FingerprintSet},
+ * and only the forms queued to be expanded, and those no longer than the
+ * input when the search runs from both ends, are kept whole. Each form is
+ * worked out from the one it was expanded from rather than by its
+ * derivation, so the derivations do not keep every form along the way.
+ * <p>
+ * The derivation found need not be the shortest one.
+ */
+public class BestFirstBruteParser extends Parser {
+
+	public static final int MAX_REACHED = UnrestrictedBruteParser.MAX_REACHED;
+	public static final int DEFAULT_CAPACITY = 1000000;
+
+	/** Breaks ties between forms with the same cost, most steps first */
+	private static final Comparator<Node> ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node n1, Node n2) {
+			if (n1.myCost != n2.myCost)
+				return n1.myCost < n2.myCost ? -1 : 1;
+			if (n1.myDepth != n2.myDepth)
+				return n1.myDepth > n2.myDepth ? -1 : 1;
+			return n1.myOrder < n2.myOrder ? -1 : n1.myOrder > n2.myOrder ? 1
+					: 0;
+		}
+	};
+
+	/** The parser whose checks decide which forms can derive the input */
+	private UnrestrictedBruteParser myFilter;
+	/** The productions that do not shorten a form, by first right symbol */
+	private Map<Symbol, List<Production>> myReversible;
+	/** The terminals each variable becomes in place, as described above */
+	private Map<Symbol, Set<Symbol>> myBecomes;
+	private boolean amBidirectional;
+	private int myCapacity;
+
+	private SymbolSequence myInputSequence;
+	private PriorityQueue<Node> myForwardQueue, myBackwardQueue;
+	private FingerprintSet myDerived;
+	/** The forms that could meet a reduced form, with their derivations */
+	private Map<SymbolSequence, Derivation> myMeetable;
+	private Map<SymbolSequence, Reduction> myReduced;
+	private Derivation myFoundDerivation;
+	private int myNodesGenerated;
+	private long myOrder;
+	private boolean amStarted;
+
+	public BestFirstBruteParser(Grammar g) {
+		super(g);
+		myFilter = UnrestrictedBruteParser.createNewBruteParser(g);
+		myReversible = new HashMap<Symbol, List<Production>>();
+		for (Production p : g.getProductionSet()) {
+			Symbol[] rhs = p.getRHS();
+			if (rhs.length == 0 || rhs.length < p.getLHS().length)
+				continue;
+			List<Production> prods = myReversible.get(rhs[0]);
+			if (prods == null)
+				myReversible.put(rhs[0], prods = new ArrayList<Production>());
+			prods.add(p);
+		}
+		myBecomes = new HashMap<Symbol, Set<Symbol>>();
+		for (Production p : g.getProductionSet()) {
+			Symbol[] lhs = p.getLHS(), rhs = p.getRHS();
+			if (lhs.length != rhs.length)
+				continue;
+			for (int i = 0; i < lhs.length; i++) {
+				if (!Grammar.isVariable(lhs[i]) || !Grammar.isTerminal(rhs[i]))
+					continue;
+				Set<Symbol> terminals = myBecomes.get(lhs[i]);
+				if (terminals == null)
+					myBecomes.put(lhs[i], terminals = new HashSet<Symbol>());
+				terminals.add(rhs[i]);
+			}
+		}
+		myCapacity = DEFAULT_CAPACITY;
+		resetInternalStateOnly();
+	}
+
+	@Override
+	public String getDescriptionName() {
+		return "Best First Brute Force Parser";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Brute force parsing that expands the sentential form "
+				+ "closest to the input first";
+	}
+
+	@Override
+	public GrammarType getRequiredGrammarType() throws ParserException {
+		return GrammarType.UNRESTRICTED;
+	}
+
+	@Override
+	public boolean resetInternalStateOnly() {
+		// Called by the superclass constructor before the fields are set.
+		if (myFilter == null)
+			return true;
+		myFilter.setInput(getInput());
+		myInputSequence = getInput() == null ? null : new SymbolSequence(
+				getInput());
+		myForwardQueue = new PriorityQueue<Node>(11, ORDER);
+		myBackwardQueue = new PriorityQueue<Node>(11, ORDER);
+		myDerived = new FingerprintSet();
+		myMeetable = new HashMap<SymbolSequence, Derivation>();
+		myReduced = new HashMap<SymbolSequence, Reduction>();
+		myFoundDerivation = null;
+		myNodesGenerated = 0;
+		myOrder = 0;
+		amStarted = false;
+		return true;
+	}
+
+	/**
+	 * Sets whether the input is also reduced towards the start variable.
+	 * This takes effect when the parser is next reset.
+	 */
+	public void setBidirectional(boolean bidirectional) {
+		amBidirectional = bidirectional;
+	}
+
+	public boolean isBidirectional() {
+		return amBidirectional;
+	}
+
+	/**
+	 * Sets the number of nodes the parser may generate before it gives up.
+	 */
+	public void setCapacity(int nodes) {
+		myCapacity = nodes;
+	}
+
+	public int getCapacity() {
+		return myCapacity;
+	}
+
+	/**
+	 * Total number of nodes created, in both directions.
+	 */
+	public int getNumberOfNodes() {
+		return myNodesGenerated;
+	}
+
+	@Override
+	public boolean isAccept() {
+		return myFoundDerivation != null;
+	}
+
+	@Override
+	public boolean isDone() {
+		return amStarted
+				&& (isAccept() || myForwardQueue.isEmpty() || capacityReached());
+	}
+
+	private boolean capacityReached() {
+		return myNodesGenerated >= myCapacity;
+	}
+
+	@Override
+	public Derivation getDerivation() {
+		return myFoundDerivation;
+	}
+
+	@Override
+	public boolean stepParser() {
+		if (!amStarted) {
+			amStarted = true;
+			offerReduction(new Reduction(myInputSequence, null, null, 0));
+			for (Production p : getGrammar().getStartProductions()) {
+				Derivation d = new Derivation(p);
+				offerDerivation(d, new SymbolSequence(p.getRHS()));
+			}
+		} else {
+			expandForward();
+			if (amBidirectional && !isAccept())
+				expandBackward();
+		}
+		if (capacityReached()) {
+			distributeChange(new AdvancedChangeEvent(this, MAX_REACHED,
+					myCapacity));
+		}
+		return true;
+	}
+
+	/**
+	 * Applies every production that can be applied to the best form.
+	 */
+	private void expandForward() {
+		Node node = myForwardQueue.poll();
+		if (node == null)
+			return;
+		ProductionSet productions = getGrammar().getProductionSet();
+		Derivation d = node.myDerivation;
+		for (LHSMatch match : productions.getLHSMatches(node.myForm)) {
+			for (Production p : match.getProductions()) {
+				Derivation next = d.copy();
+				next.addStep(p, match.getStart());
+				offerDerivation(next, node.myForm.replace(match.getStart(),
+						match.getEnd(), p.getRHS()));
+				if (isAccept())
+					return;
+			}
+		}
+	}
+
+	/**
+	 * Undoes every production that can be undone in the shortest reduced
+	 * form.
+	 */
+	private void expandBackward() {
+		Node node = myBackwardQueue.poll();
+		if (node == null)
+			return;
+		SymbolSequence form = node.myReduction.myForm;
+		for (int i = 0; i < form.size(); i++) {
+			List<Production> prods = myReversible.get(form.get(i));
+			if (prods == null)
+				continue;
+			for (Production p : prods) {
+				Symbol[] rhs = p.getRHS();
+				if (!form.regionMatches(i, rhs))
+					continue;
+				SymbolSequence reduced = form.replace(i, i + rhs.length,
+						p.getLHS());
+				offerReduction(new Reduction(reduced, node.myReduction, p, i));
+				if (isAccept())
+					return;
+			}
+		}
+	}
+
+	private void offerDerivation(Derivation d, SymbolSequence form) {
+		myNodesGenerated++;
+		if (!myFilter.canDeriveInput(form)
+				|| !myDerived.add(FingerprintSet.fingerprint(form)))
+			return;
+		if (amBidirectional && form.size() <= myInputSequence.size())
+			myMeetable.put(form, d);
+		Reduction r = myReduced.get(form);
+		if (r != null) {
+			join(d, r);
+			return;
+		}
+		myForwardQueue.add(new Node(d, form, getCost(form), d.length(),
+				myOrder++));
+	}
+
+	private void offerReduction(Reduction r) {
+		myNodesGenerated++;
+		if (myReduced.containsKey(r.myForm))
+			return;
+		myReduced.put(r.myForm, r);
+		Derivation d = myMeetable.get(r.myForm);
+		if (d != null) {
+			join(d, r);
+			return;
+		}
+		if (amBidirectional)
+			myBackwardQueue.add(new Node(r, getReducedCost(r.myForm),
+					r.myDepth, myOrder++));
+	}
+
+	/**
+	 * Finishes the derivation by redoing the reductions from its form back
+	 * up to the input.
+	 */
+	private void join(Derivation d, Reduction r) {
+		Derivation found = d.copy();
+		for (; r.myParent != null; r = r.myParent)
+			found.addStep(r.myProduction, r.mySubstitution);
+		myFoundDerivation = found;
+	}
+
+	/**
+	 * Returns the estimate of how far the form is from the input: the input
+	 * symbols not matched by the terminals at either end of the form, plus
+	 * the variables in it, plus the terminals in between that cannot be
+	 * matched, in order, to what is left of the input, plus the variables
+	 * out of place at either end. Each symbol of the form is counted once,
+	 * and once more only if it is a variable out of place.
+	 */
+	private int getCost(SymbolSequence form) {
+		SymbolSequence input = myInputSequence;
+		int n = input.size(), size = form.size();
+		int prefix = 0;
+		while (prefix < size && prefix < n
+				&& Grammar.isTerminal(form.get(prefix))
+				&& form.get(prefix).equals(input.get(prefix)))
+			prefix++;
+		int suffix = 0;
+		while (suffix < size - prefix && suffix < n - prefix
+				&& Grammar.isTerminal(form.get(size - 1 - suffix))
+				&& form.get(size - 1 - suffix).equals(input.get(n - 1 - suffix)))
+			suffix++;
+
+		int variables = 0, misses = 0, next = prefix;
+		for (int i = prefix; i < size - suffix; i++) {
+			Symbol s = form.get(i);
+			if (Grammar.isVariable(s)) {
+				variables++;
+				continue;
+			}
+			int at = next;
+			while (at < n - suffix && !input.get(at).equals(s))
+				at++;
+			if (at < n - suffix)
+				next = at + 1;
+			else
+				misses++;
+		}
+		return n - prefix - suffix + variables + misses + getOutOfPlace(form);
+	}
+
+	/**
+	 * Compares the form with the input symbol by symbol from the left, and
+	 * then from the right, up to the first symbol that is neither a terminal
+	 * nor a variable that becomes one in place, and returns the number of
+	 * variables that do not fit. The terminals that do not fit are already
+	 * counted by {@link #getCost}, as input not matched at the ends.
+	 */
+	private int getOutOfPlace(SymbolSequence form) {
+		SymbolSequence input = myInputSequence;
+		int n = input.size(), size = form.size();
+		int count = 0, left = 0, right = 0;
+		for (; left < size && left < n; left++) {
+			Symbol s = form.get(left);
+			if (!isFixedLength(s))
+				break;
+			if (!Grammar.isTerminal(s) && !fits(s, input.get(left)))
+				count++;
+		}
+		for (; right < size - left && right < n - left; right++) {
+			Symbol s = form.get(size - 1 - right);
+			if (!isFixedLength(s))
+				break;
+			if (!Grammar.isTerminal(s) && !fits(s, input.get(n - 1 - right)))
+				count++;
+		}
+		return count;
+	}
+
+	private boolean isFixedLength(Symbol s) {
+		return Grammar.isTerminal(s) || myBecomes.containsKey(s);
+	}
+
+	private boolean fits(Symbol s, Symbol terminal) {
+		if (s.equals(terminal))
+			return true;
+		Set<Symbol> terminals = myBecomes.get(s);
+		return terminals != null && terminals.contains(terminal);
+	}
+
+	/**
+	 * Returns how far a reduced form is from the start variable, taken to
+	 * be its length plus the terminals still in it.
+	 */
+	private int getReducedCost(SymbolSequence form) {
+		int cost = form.size();
+		for (Symbol s : form) {
+			if (Grammar.isTerminal(s))
+				cost++;
+		}
+		return cost;
+	}
+
+	/**
+	 * A form reached by reducing the input, which gives back its parent when
+	 * the production is applied at the substitution index.
+	 */
+	private static class Reduction {
+		private SymbolSequence myForm;
+		private Reduction myParent;
+		private Production myProduction;
+		private int mySubstitution;
+		private int myDepth;
+
+		private Reduction(SymbolSequence form, Reduction parent,
+				Production p, int subIndex) {
+			myForm = form;
+			myParent = parent;
+			myProduction = p;
+			mySubstitution = subIndex;
+			myDepth = parent == null ? 0 : parent.myDepth + 1;
+		}
+	}
+
+	/**
+	 * An entry in one of the queues, holding a derivation in the forward
+	 * queue and a reduction in the backward one.
+	 */
+	private static class Node {
+		private Derivation myDerivation;
+		private Reduction myReduction;
+		private SymbolSequence myForm;
+		private int myCost;
+		private int myDepth;
+		private long myOrder;
+
+		private Node(Derivation d, SymbolSequence form, int cost, int depth,
+				long order) {
+			myDerivation = d;
+			myForm = form;
+			myCost = cost;
+			myDepth = depth;
+			myOrder = order;
+		}
+
+		private Node(Reduction r, int cost, int depth, long order) {
+			this(null, r.myForm, cost, depth, order);
+			myReduction = r;
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+package model.algorithms.testinput.parse.brute;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import model.algorithms.testinput.parse.Derivation;
+import model.algorithms.testinput.parse.ParserException;
+import model.grammar.Production;
+
+/**
+ * One level of a brute force search, that is the derivations still to be
+ * expanded. The first derivations added are kept in memory, up to a limit,
+ * and the rest are written to a temporary file as the numbers of their
+ * productions and their substitution indices, to be read back one at a time
+ * when the level is expanded. Derivations read back from the file work out
+ * their sentential form again when it is asked for.
+ * <p>
+ * Derivations may be added from several threads at once, but the frontier
+ * must be iterated by one thread, after the last one is added.
+ */
+class BruteFrontier implements Iterable<Derivation> {
+
+	private Production[] myProductions;
+	private Map<Production, Integer> myIDs;
+	private int myMemoryLimit;
+
+	private List<Derivation> myInMemory;
+	private int mySize;
+	private File mySpillFile;
+	private DataOutputStream mySpillOut;
+	private DataInputStream mySpillIn;
+
+	/**
+	 * @param productions
+	 *            the productions of the grammar, which every derivation
+	 *            added must only use
+	 * @param memoryLimit
+	 *            the number of derivations to keep in memory
+	 */
+	public BruteFrontier(Production[] productions, int memoryLimit) {
+		myProductions = productions;
+		myMemoryLimit = memoryLimit;
+		myInMemory = new ArrayList<Derivation>();
+	}
+
+	public synchronized void addAll(List<Derivation> derivations) {
+		for (Derivation d : derivations) {
+			if (myInMemory.size() < myMemoryLimit)
+				myInMemory.add(d);
+			else
+				spill(d);
+			mySize++;
+		}
+	}
+
+	private void spill(Derivation d) {
+		try {
+			if (mySpillOut == null) {
+				myIDs = new HashMap<Production, Integer>();
+				for (int i = 0; i < myProductions.length; i++)
+					myIDs.put(myProductions[i], i);
+				mySpillFile = File.createTempFile("brute", ".level");
+				mySpillFile.deleteOnExit();
+				mySpillOut = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(mySpillFile)));
+			}
+			Production[] prods = d.getProductionArray();
+			Integer[] subs = d.getSubstitutionArray();
+			mySpillOut.writeInt(prods.length);
+			for (int i = 0; i < prods.length; i++) {
+				mySpillOut.writeInt(myIDs.get(prods[i]));
+				mySpillOut.writeInt(subs[i]);
+			}
+		} catch (IOException e) {
+			throw new ParserException("Could not write the search level "
+					+ "to disk.", e);
+		}
+	}
+
+	/**
+	 * Returns the number of derivations, in memory and on disk.
+	 */
+	public synchronized int size() {
+		return mySize;
+	}
+
+	public synchronized boolean isEmpty() {
+		return mySize == 0;
+	}
+
+	/**
+	 * Returns the derivations kept in memory, which are the first ones added.
+	 */
+	public synchronized List<Derivation> getInMemory() {
+		return Collections.unmodifiableList(myInMemory);
+	}
+
+	/**
+	 * Returns the number of derivations written to disk.
+	 */
+	public synchronized int getSpilledSize() {
+		return mySize - myInMemory.size();
+	}
+
+	/**
+	 * Returns the derivations kept in memory and then those on disk. Nothing
+	 * more may be added once this has been called.
+	 */
+	@Override
+	public synchronized Iterator<Derivation> iterator() {
+		closeSpill();
+		final Iterator<Derivation> inMemory = myInMemory.iterator();
+		final int spilled = getSpilledSize();
+		final DataInputStream in;
+		try {
+			in = spilled == 0 ? null : new DataInputStream(
+					new BufferedInputStream(new FileInputStream(mySpillFile)));
+			mySpillIn = in;
+		} catch (IOException e) {
+			throw new ParserException("Could not read the search level "
+					+ "from disk.", e);
+		}
+
+		return new Iterator<Derivation>() {
+			private int myRead;
+
+			@Override
+			public boolean hasNext() {
+				return inMemory.hasNext() || myRead < spilled;
+			}
+
+			@Override
+			public Derivation next() {
+				if (inMemory.hasNext())
+					return inMemory.next();
+				if (myRead >= spilled)
+					throw new NoSuchElementException();
+				try {
+					Derivation d = readDerivation(in);
+					if (++myRead == spilled)
+						in.close();
+					return d;
+				} catch (IOException e) {
+					throw new ParserException("Could not read the search "
+							+ "level from disk.", e);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private Derivation readDerivation(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		Derivation d = new Derivation(myProductions[in.readInt()]);
+		in.readInt();
+		for (int i = 1; i < length; i++) {
+			Production p = myProductions[in.readInt()];
+			d.addStep(p, in.readInt());
+		}
+		return d;
+	}
+
+	private void closeSpill() {
+		if (mySpillOut == null)
+			return;
+		try {
+			mySpillOut.close();
+		} catch (IOException e) {
+			throw new ParserException("Could not write the search level "
+					+ "to disk.", e);
+		}
+		mySpillOut = null;
+	}
+
+	/**
+	 * Deletes the file holding the derivations written to disk, if there is
+	 * one. The frontier must not be used afterwards.
+	 */
+	public synchronized void dispose() {
+		try {
+			closeSpill();
+			if (mySpillIn != null)
+				mySpillIn.close();
+		} catch (IOException e) {
+			// The file is deleted anyway.
+		} finally {
+			mySpillIn = null;
+			if (mySpillFile != null)
+				mySpillFile.delete();
+			mySpillFile = null;
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package model.algorithms.testinput.parse.brute;
+
+import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
+
+/**
+ * A set of 64 bit fingerprints of sentential forms that several threads can
+ * add to at once. Each fingerprint takes one long in an open addressed
+ * table, rather than the form itself and a hash map entry, and the table is
+ * split into stripes with a lock each so threads seldom wait for one
+ * another.
+ * <p>
+ * Two different forms have the same fingerprint with a chance of about one
+ * in 2^64, so a search that has seen n forms wrongly skips one with a chance
+ * of about n^2 / 2^65.
+ */
+class FingerprintSet {
+
+	private static final int STRIPE_BITS = 6;
+
+	private Stripe[] myStripes;
+
+	public FingerprintSet() {
+		myStripes = new Stripe[1 << STRIPE_BITS];
+		for (int i = 0; i < myStripes.length; i++)
+			myStripes[i] = new Stripe();
+	}
+
+	/**
+	 * Adds the fingerprint, returning false if it was already here.
+	 */
+	public boolean add(long fingerprint) {
+		Stripe stripe = myStripes[(int) (fingerprint >>> (64 - STRIPE_BITS))];
+		synchronized (stripe) {
+			return stripe.add(fingerprint);
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : myStripes) {
+			synchronized (stripe) {
+				size += stripe.mySize;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the fingerprint of the form, made from the characters of its
+	 * symbols so that equal forms have equal fingerprints.
+	 */
+	public static long fingerprint(SymbolSequence form) {
+		long h = 0xcbf29ce484222325L;
+		for (Symbol s : form) {
+			String str = s.getString();
+			for (int i = 0; i < str.length(); i++)
+				h = (h ^ str.charAt(i)) * 0x100000001b3L;
+			// Not a char, so "ab" "c" differs from "a" "bc".
+			h = (h ^ 0x10000) * 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * An open addressed table of fingerprints, with 0 marking an empty slot
+	 * and kept in a flag of its own.
+	 */
+	private static class Stripe {
+		private long[] myTable = new long[16];
+		private int mySize;
+		private boolean amHoldingZero;
+
+		private boolean add(long fingerprint) {
+			if (fingerprint == 0) {
+				if (amHoldingZero)
+					return false;
+				amHoldingZero = true;
+				mySize++;
+				return true;
+			}
+			if (!insert(myTable, fingerprint))
+				return false;
+			mySize++;
+			if (mySize * 2 > myTable.length) {
+				long[] table = new long[myTable.length * 2];
+				for (long f : myTable) {
+					if (f != 0)
+						insert(table, f);
+				}
+				myTable = table;
+			}
+			return true;
+		}
+
+		private static boolean insert(long[] table, long fingerprint) {
+			int mask = table.length - 1;
+			for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+				if (table[i] == fingerprint)
+					return false;
+				if (table[i] == 0) {
+					table[i] = fingerprint;
+					return true;
+				}
+			}
+		}
+	}
+
+}
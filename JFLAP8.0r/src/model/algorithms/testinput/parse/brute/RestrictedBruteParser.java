@@ -5,8 +5,7 @@ import java.util.ArrayList;
 import model.algorithms.testinput.parse.ParserException;
 import model.grammar.Grammar;
 import model.grammar.typetest.GrammarType;
-import model.symbols.Symbol;
-import model.symbols.SymbolString;
+import model.symbols.SymbolSequence;
 
 /**
  * Brute parser for Context Free grammars, more restricted in that we can check
@@ -31,12 +30,12 @@ public class RestrictedBruteParser extends UnrestrictedBruteParser {
 	 * derivations that would still be allowed in Unrestricted grammars.
 	 */
 	@Override
-	public boolean isPossibleSententialForm(SymbolString derivation) {
-		if (!super.isPossibleSententialForm(derivation))
+	protected boolean canDeriveInput(SymbolSequence derivation) {
+		if (!super.canDeriveInput(derivation))
 			return false;
 
 		boolean startBookend = false, endBookend = false;
-		ArrayList<SymbolString> discrete = new ArrayList<SymbolString>();
+		ArrayList<SymbolSequence> discrete = new ArrayList<SymbolSequence>();
 
 		/*
 		 * Set the start and end "bookeneds", that is, the derivation is padded
@@ -49,36 +48,41 @@ public class RestrictedBruteParser extends UnrestrictedBruteParser {
 			endBookend = !Grammar.isVariable(derivation.getLast());
 		}
 
-		/* Break up groups of terminals into the "discrete" array. */
-		if (startBookend)
-			discrete.add(new SymbolString());
-
-		for (Symbol s : derivation) {
-			if (Grammar.isVariable(s))
-				discrete.add(new SymbolString());
-			if (Grammar.isTerminal(s))
-				discrete.get(discrete.size() - 1).add(s);
+		/*
+		 * Break up groups of terminals into the "discrete" array, as views
+		 * of the runs of terminals in the derivation.
+		 */
+		int runStart = 0;
+		boolean leading = true;
+		for (int i = 0; i <= derivation.size(); i++) {
+			if (i < derivation.size() && !Grammar.isVariable(derivation.get(i)))
+				continue;
+			if (!leading || startBookend)
+				discrete.add(derivation.subSequence(runStart, i));
+			leading = false;
+			runStart = i + 1;
 		}
 		if (!endBookend && !discrete.isEmpty())
 			discrete.remove(discrete.size() - 1);
 
+		SymbolSequence input = getInputSequence();
 		int cp = 0;
 		for (int i = 0; i < discrete.size(); i++) {
-			SymbolString e = discrete.get(i);
+			SymbolSequence e = discrete.get(i);
 			if (startBookend && i == 0) {
-				if (!getInput().startsWith(e)) {
+				if (!input.startsWith(e)) {
 					return false;
 				}
 				cp = e.size();
 			} else if (endBookend && i == discrete.size() - 1) {
-				if (!getInput().endsWith(e)) {
+				if (!input.endsWith(e)) {
 					return false;
 				}
 			} else {
 				if (cp >= discrete.size()) {
 					continue;
 				}
-				cp = getInput().indexOf(e, cp);
+				cp = input.indexOf(e, cp);
 				if (cp == -1) {
 					return false;
 				}
@@ -3,9 +3,15 @@ package model.algorithms.testinput.parse.brute;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.event.ChangeEvent;
 
@@ -17,13 +23,24 @@ import model.change.events.AdvancedChangeEvent;
 import model.grammar.Grammar;
 import model.grammar.Production;
 import model.grammar.ProductionSet;
+import model.grammar.ProductionSet.LHSMatch;
 import model.grammar.typetest.GrammarType;
 import model.grammar.typetest.matchers.ContextFreeChecker;
 import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
 /**
  * Brute force parser used for unrestricted grammars.
+ * <p>
+ * With more than one thread (see {@link #setThreadCount(int)}) each level is
+ * expanded by a pool of workers instead. They share a
+ * {@link FingerprintSet} of the sentential forms seen so far, and the next
+ * level is kept in a {@link BruteFrontier}, which writes the derivations
+ * past a limit to disk so a wide level does not run out of memory. A whole
+ * level is done at each step unless the input is found, and which of
+ * several derivations of the same sentential form is kept depends on the
+ * order the workers reach them.
  * 
  * Note: Brute force parser was re-implemented in Summer 2012 to conform with
  * the new parser hierarchy and new classes.
@@ -37,13 +54,33 @@ import model.symbols.SymbolString;
 public class UnrestrictedBruteParser extends Parser {
 	public static final int MAX_REACHED = 2, LEVEL_CHANGED = 4;
 	private static final int MAX_INCREMENT = 100000;
+	public static final int DEFAULT_FRONTIER_LIMIT = 250000;
+	/** The number of derivations a worker takes from the level at a time */
+	private static final int BATCH_SIZE = 64;
 	private int myCapacity;
+	private int myThreadCount;
+	private int myFrontierLimit;
 
 	private LinkedList<Derivation> myDerivationsQueue;
-	private int myNodesGenerated, maxLHSsize;
-	private Set<SymbolString> mySententialsSeen;
+	private int myNodesGenerated;
+	private Set<SymbolSequence> mySententialsSeen;
+	private SymbolSequence myInputSequence;
 	private Set<Symbol> mySmallerSet;
 
+	private boolean amParallel;
+	private BruteFrontier myFrontier;
+	private FingerprintSet myFingerprints;
+	private int myLevel;
+	private volatile Derivation myFoundDerivation;
+	private long myNodesPerSecond;
+
+	/** The state shared by the workers while a level is expanded */
+	private Iterator<Derivation> myLevelIterator;
+	private BruteFrontier myNextFrontier;
+	private AtomicInteger myNodeCounter;
+	private RuntimeException myWorkerFailure;
+	private final Object myWorkerLock = new Object();
+
 	/**
 	 * Static constructor used to create the best matching brute force parser
 	 * based on grammar type.
@@ -58,8 +95,9 @@ public class UnrestrictedBruteParser extends Parser {
 	public UnrestrictedBruteParser(Grammar g) {
 		super(g);
 		myCapacity = 100000;
+		myThreadCount = 1;
+		myFrontierLimit = DEFAULT_FRONTIER_LIMIT;
 		mySmallerSet = Collections.unmodifiableSet(smallerSymbols(g));
-		maxLHSsize = g.getProductionSet().getMaxLHSLength();
 	}
 
 	@Override
@@ -75,11 +113,52 @@ public class UnrestrictedBruteParser extends Parser {
 	@Override
 	public boolean resetInternalStateOnly() {
 		myNodesGenerated = 0;
-		mySententialsSeen = new HashSet<SymbolString>();
+		mySententialsSeen = new HashSet<SymbolSequence>();
+		myInputSequence = getInput() == null ? null : new SymbolSequence(
+				getInput());
 		myDerivationsQueue = new LinkedList<Derivation>();
+		myNodesPerSecond = 0;
+		amParallel = myThreadCount > 1;
+		if (myFrontier != null)
+			myFrontier.dispose();
+		myFrontier = amParallel ? newFrontier() : null;
+		myFingerprints = amParallel ? new FingerprintSet() : null;
+		myLevel = 0;
+		myFoundDerivation = null;
 		return true;
 	}
 
+	/**
+	 * Sets the number of threads used to expand each level. With more than
+	 * one the levels are expanded in parallel and kept partly on disk, as
+	 * described above. This takes effect when the parser is next reset.
+	 */
+	public void setThreadCount(int threads) {
+		myThreadCount = Math.max(1, threads);
+	}
+
+	public int getThreadCount() {
+		return myThreadCount;
+	}
+
+	/**
+	 * Sets the number of derivations of a level kept in memory when the
+	 * levels are expanded in parallel; the rest are written to disk. This
+	 * takes effect from the next level.
+	 */
+	public void setFrontierLimit(int derivations) {
+		myFrontierLimit = Math.max(1, derivations);
+	}
+
+	public int getFrontierLimit() {
+		return myFrontierLimit;
+	}
+
+	private BruteFrontier newFrontier() {
+		return new BruteFrontier(getGrammar().getProductionSet().toArray(),
+				myFrontierLimit);
+	}
+
 	@Override
 	public boolean isAccept() {
 		return getDerivation() != null;
@@ -88,7 +167,21 @@ public class UnrestrictedBruteParser extends Parser {
 	@Override
 	public boolean isDone() {
 		return myNodesGenerated > 0
-				&& (capacityReached() || myDerivationsQueue.isEmpty() || isAccept());
+				&& (capacityReached() || getFrontierSize() == 0 || isAccept());
+	}
+
+	/**
+	 * Returns the number of derivations in the current level.
+	 */
+	public int getFrontierSize() {
+		return amParallel ? myFrontier.size() : myDerivationsQueue.size();
+	}
+
+	/**
+	 * Returns how many nodes a second the last step generated.
+	 */
+	public long getNodesPerSecond() {
+		return myNodesPerSecond;
 	}
 
 	@Override
@@ -98,9 +191,11 @@ public class UnrestrictedBruteParser extends Parser {
 
 	@Override
 	public Derivation getDerivation() {
+		if (amParallel)
+			return myFoundDerivation;
 		if (!myDerivationsQueue.isEmpty()) {
 			for (Derivation d : myDerivationsQueue)
-				if (d.createResult().equals(getInput())) {
+				if (d.createResultSequence().equals(myInputSequence)) {
 					return d;
 				}
 		}
@@ -113,10 +208,16 @@ public class UnrestrictedBruteParser extends Parser {
 
 	@Override
 	public boolean stepParser() {
+		long start = System.nanoTime();
+		int nodes = myNodesGenerated;
 		if (myNodesGenerated == 0)
 			initializeQueue();
+		else if (amParallel)
+			expandLevel();
 		else
 			makeNextReplacement();
+		long elapsed = Math.max(1, System.nanoTime() - start);
+		myNodesPerSecond = (myNodesGenerated - nodes) * 1000000000L / elapsed;
 
 		notifyNextLevel();
 		if (capacityReached()) {
@@ -129,15 +230,19 @@ public class UnrestrictedBruteParser extends Parser {
 	/**
 	 * Updates listeners (most importantly BruteParseTablePanel's model) that
 	 * the current step has been completed, passes on the level, number of
-	 * nodes, and current sentential-form derivations.
+	 * nodes, and current sentential-form derivations, followed by the number
+	 * of derivations in the level and the nodes generated a second. When the
+	 * level is partly on disk only the sentential forms in memory are passed.
 	 */
 	private void notifyNextLevel() {
 		List<SymbolString> currentDerivs = new ArrayList<SymbolString>();
-		for (Derivation d : myDerivationsQueue) {
+		for (Derivation d : amParallel ? myFrontier.getInMemory()
+				: myDerivationsQueue) {
 			currentDerivs.add(d.createResult());
 		}
 		distributeChange(new AdvancedChangeEvent(this, LEVEL_CHANGED,
-				getLevel(), getNumberOfNodes(), currentDerivs));
+				getLevel(), getNumberOfNodes(), currentDerivs,
+				getFrontierSize(), getNodesPerSecond()));
 	}
 
 	/**
@@ -153,6 +258,17 @@ public class UnrestrictedBruteParser extends Parser {
 			myNodesGenerated++;
 
 		}
+		if (amParallel) {
+			myFrontier.addAll(myDerivationsQueue);
+			for (Derivation d : myDerivationsQueue) {
+				if (d.createResultSequence().equals(myInputSequence)) {
+					myFoundDerivation = d;
+					break;
+				}
+			}
+			myDerivationsQueue.clear();
+			myLevel = 1;
+		}
 		// Allow for at least 8 steps of the parser
 		raiseCapacity(8);
 	}
@@ -169,40 +285,33 @@ public class UnrestrictedBruteParser extends Parser {
 
 		loop: while (!myDerivationsQueue.isEmpty()) {
 			Derivation d = myDerivationsQueue.poll();
-			SymbolString result = d.createResult();
-
-			for (int i = 0; i < result.size(); i++) {
-				for (int j = i; j < Math.min(maxLHSsize + i, result.size()); j++) {
-					SymbolString LHS = result.subList(i, j + 1);
-
-					Production[] productionsWithLHS = productions
-							.getProductionsWithLHS(LHS);
-
-					for (Production p : productionsWithLHS) {
-						Derivation tempDerivation = d.copy();
-						int replacementIndex = result.indexOf(LHS, i);
-
-						tempDerivation.addStep(p, replacementIndex);
-
-						// increment nodes generated.
-						// Even if node=derivation is invalid, it is still
-						// generated.
-						myNodesGenerated++;
-
-						SymbolString sentential = tempDerivation.createResult();
-						if (isPossibleSententialForm(sentential)) {
-							mySententialsSeen.add(sentential);
-							nextLevel.add(tempDerivation);
-
-							if (sentential.equals(getInput())) {
-								// Not sure if this is good, but ensures that
-								// only nodes on
-								// the current level up to the first matching
-								// derivation
-								// are returned (for display purposes)
-								myDerivationsQueue.clear();
-								break loop;
-							}
+			SymbolSequence result = d.createResultSequence();
+
+			for (LHSMatch match : productions.getLHSMatches(result)) {
+				int i = match.getStart();
+				for (Production p : match.getProductions()) {
+					Derivation tempDerivation = d.copy();
+					tempDerivation.addStep(p, i);
+
+					// increment nodes generated.
+					// Even if node=derivation is invalid, it is still
+					// generated.
+					myNodesGenerated++;
+
+					SymbolSequence sentential = tempDerivation
+							.createResultSequence();
+					if (isPossibleSententialForm(sentential)) {
+						mySententialsSeen.add(sentential);
+						nextLevel.add(tempDerivation);
+
+						if (sentential.equals(myInputSequence)) {
+							// Not sure if this is good, but ensures that
+							// only nodes on
+							// the current level up to the first matching
+							// derivation
+							// are returned (for display purposes)
+							myDerivationsQueue.clear();
+							break loop;
 						}
 					}
 				}
@@ -212,13 +321,140 @@ public class UnrestrictedBruteParser extends Parser {
 		return true;
 	}
 
+	/**
+	 * Expands the whole level on {@link #getThreadCount()} threads, unless a
+	 * worker finds the input, in which case the workers stop taking new
+	 * derivations and the level is left unfinished.
+	 */
+	private void expandLevel() {
+		// Build the index of the productions now, so the workers only read it.
+		getGrammar().getProductionSet().getLHSMatches(SymbolSequence.EMPTY);
+
+		myLevelIterator = myFrontier.iterator();
+		myNextFrontier = newFrontier();
+		myNodeCounter = new AtomicInteger(myNodesGenerated);
+		myWorkerFailure = null;
+
+		ExecutorService executor = Executors.newFixedThreadPool(myThreadCount,
+				new WorkerFactory());
+		for (int i = 0; i < myThreadCount; i++)
+			executor.execute(new Worker());
+		executor.shutdown();
+		boolean interrupted = false;
+		while (!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		myFrontier.dispose();
+		myFrontier = myNextFrontier;
+		myNodesGenerated = myNodeCounter.get();
+		myLevel++;
+		myLevelIterator = null;
+		myNextFrontier = null;
+		if (myWorkerFailure != null)
+			throw myWorkerFailure;
+	}
+
+	/**
+	 * Fills the batch with derivations from the level being expanded,
+	 * returning how many there are.
+	 */
+	private int takeDerivations(Derivation[] batch) {
+		synchronized (myWorkerLock) {
+			int n = 0;
+			while (n < batch.length && myWorkerFailure == null
+					&& myLevelIterator.hasNext())
+				batch[n++] = myLevelIterator.next();
+			return n;
+		}
+	}
+
+	private void found(Derivation d) {
+		synchronized (myWorkerLock) {
+			if (myFoundDerivation == null)
+				myFoundDerivation = d;
+		}
+	}
+
+	private void failed(RuntimeException e) {
+		synchronized (myWorkerLock) {
+			if (myWorkerFailure == null)
+				myWorkerFailure = e;
+		}
+	}
+
+	/**
+	 * Expands derivations of the level, a batch at a time, until there are
+	 * no more or the input has been found.
+	 */
+	private class Worker implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				ProductionSet productions = getGrammar().getProductionSet();
+				Derivation[] batch = new Derivation[BATCH_SIZE];
+				List<Derivation> kept = new ArrayList<Derivation>();
+				int n;
+				while (myFoundDerivation == null
+						&& (n = takeDerivations(batch)) > 0) {
+					int generated = 0;
+					for (int b = 0; b < n && myFoundDerivation == null; b++) {
+						Derivation d = batch[b];
+						SymbolSequence result = d.createResultSequence();
+						for (LHSMatch match : productions.getLHSMatches(result)) {
+							int i = match.getStart();
+							for (Production p : match.getProductions()) {
+								Derivation tempDerivation = d.copy();
+								tempDerivation.addStep(p, i);
+								generated++;
+
+								SymbolSequence sentential = tempDerivation
+										.createResultSequence();
+								if (canDeriveInput(sentential)
+										&& myFingerprints.add(FingerprintSet
+												.fingerprint(sentential))) {
+									kept.add(tempDerivation);
+									if (sentential.equals(myInputSequence))
+										found(tempDerivation);
+								}
+							}
+						}
+					}
+					myNodeCounter.addAndGet(generated);
+					myNextFrontier.addAll(kept);
+					kept.clear();
+				}
+			} catch (RuntimeException e) {
+				failed(e);
+			}
+		}
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private int myCount;
+
+		@Override
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "BruteParser-" + myCount++);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
 	/**
 	 * Increases the capacity of nodes the parser can generate, specified by
 	 * numberOfSteps, the minimum number of steps it will be able to be run
 	 * after the capacity is set.
 	 */
 	public boolean raiseCapacity(int numberOfSteps) {
-		int levelSize = myDerivationsQueue.size();
+		int levelSize = getFrontierSize();
 		int numProductions = getGrammar().getProductionSet().size();
 		int increment = (int) Math.pow(numProductions, numberOfSteps);
 		increment = Math.min(increment, MAX_INCREMENT);
@@ -241,9 +477,23 @@ public class UnrestrictedBruteParser extends Parser {
 	 * derivation can only derive strings larger than the input's size.
 	 */
 	public boolean isPossibleSententialForm(SymbolString sent) {
-		if (mySententialsSeen.contains(sent))
-			return false;
-		int min = getMinimumLength(sent.toArray(new Symbol[0]));
+		return isPossibleSententialForm(new SymbolSequence(sent));
+	}
+
+	public boolean isPossibleSententialForm(SymbolSequence sent) {
+		return !mySententialsSeen.contains(sent) && canDeriveInput(sent);
+	}
+
+	/**
+	 * Returns false if the derivation can only derive strings larger than the
+	 * input's size. Subclasses may rule out more, but must be safe to call
+	 * from several threads at once.
+	 */
+	protected boolean canDeriveInput(SymbolSequence sent) {
+		int min = 0;
+		for (Symbol s : sent)
+			if (!mySmallerSet.contains(s))
+				min++;
 		return min <= getInput().size();
 	}
 
@@ -251,6 +501,14 @@ public class UnrestrictedBruteParser extends Parser {
 		return minimumLength(sentential, mySmallerSet);
 	}
 
+	/**
+	 * Returns the input as a {@link SymbolSequence}, for subclasses that
+	 * need to search it while checking sentential forms.
+	 */
+	protected SymbolSequence getInputSequence() {
+		return myInputSequence;
+	}
+
 	/**
 	 * Given a string and a smaller set, this returns the minimum length that
 	 * the string can derive as indicated by the smaller set.
@@ -331,6 +589,8 @@ public class UnrestrictedBruteParser extends Parser {
 	 * Returns the "level" of the parser, how many steps have been taken so far.
 	 */
 	public int getLevel() {
+		if (amParallel)
+			return myFrontier.isEmpty() ? 0 : myLevel;
 		if (myDerivationsQueue.isEmpty())
 			return 0;
 		return myDerivationsQueue.getLast().length();
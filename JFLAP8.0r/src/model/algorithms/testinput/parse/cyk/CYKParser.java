@@ -23,30 +23,85 @@ import model.symbols.*;
 public class CYKParser extends Parser {
 
 	private List<Production> myAnswerTrace;
-	private Set<CYKParseNode> myNodeTable[][];
+	/**
+	 * The IDs, from {@link #mySymbols}, of the variables that derive each
+	 * substring of the input. Unused cells are left as null.
+	 */
+	private BitSet myChart[][];
 	private Set<Symbol> mySetTable[][];
 	private int myIncrement;
 	public static final int CELL_CHANGED = 4;
 
+	private SymbolTable mySymbols;
+	/** The variables with a production to each terminal */
+	private Map<Symbol, BitSet> myTerminalRules;
+	/** The productions A -> BC, with the IDs of A, B and C */
+	private Production[] myPairRules;
+	private int[] myPairLHS, myPairFirst, myPairSecond;
+	/**
+	 * For the variable with each ID and each i, the k for which the variable
+	 * derives the substring from i to k (inclusive)
+	 */
+	private BitSet[][] myEnds;
+	/**
+	 * For the variable with each ID and each j, the k for which the variable
+	 * derives the substring from k + 1 to j (inclusive)
+	 */
+	private BitSet[][] mySplits;
+
 	public CYKParser(Grammar g) {
 		super(g);
 	}
 
 	/**
-	 * Resets the parser's tables to the length of the target input. Unused
-	 * cells are left as null in myNodeTable.
+	 * Resets the parser's tables to the length of the target input.
 	 */
 	@SuppressWarnings("unchecked")
 	private void initializeTable(int length) {
-		myNodeTable = new Set[length][length];
+		myChart = new BitSet[length][length];
 		mySetTable = new Set[length][length];
+		myEnds = new BitSet[mySymbols.size()][];
+		mySplits = new BitSet[mySymbols.size()][];
+	}
 
-		for (int i = 0; i < length; i++) {
-			for (int j = i; j < length; j++) {
-				myNodeTable[i][j] = new HashSet<CYKParseNode>();
-				mySetTable[i][j] = null;
+	/**
+	 * Indexes the productions of the grammar by the IDs of their symbols.
+	 */
+	private void indexProductions() {
+		mySymbols = getGrammar().getSymbolTable();
+		myTerminalRules = new HashMap<Symbol, BitSet>();
+		List<Production> pairs = new ArrayList<Production>();
+		List<int[]> ids = new ArrayList<int[]>();
+
+		for (Production p : getGrammar().getProductionSet()) {
+			Symbol[] rhs = p.getRHS();
+			int lhs = mySymbols.getID(p.getLHS()[0]);
+			if (lhs == -1)
+				continue;
+			if (rhs.length == 1) {
+				BitSet vars = myTerminalRules.get(rhs[0]);
+				if (vars == null)
+					myTerminalRules.put(rhs[0], vars = new BitSet());
+				vars.set(lhs);
+			} else if (rhs.length == 2) {
+				int b = mySymbols.getID(rhs[0]);
+				int c = mySymbols.getID(rhs[1]);
+				if (b == -1 || c == -1)
+					continue;
+				pairs.add(p);
+				ids.add(new int[] { lhs, b, c });
 			}
 		}
+
+		myPairRules = pairs.toArray(new Production[0]);
+		myPairLHS = new int[ids.size()];
+		myPairFirst = new int[ids.size()];
+		myPairSecond = new int[ids.size()];
+		for (int r = 0; r < myPairRules.length; r++) {
+			myPairLHS[r] = ids.get(r)[0];
+			myPairFirst[r] = ids.get(r)[1];
+			myPairSecond[r] = ids.get(r)[2];
+		}
 	}
 
 	/**
@@ -56,20 +111,12 @@ public class CYKParser extends Parser {
 	 * case).
 	 */
 	private boolean addTerminalProductions() {
-		ProductionSet productions = getGrammar().getProductionSet();
-
 		for (int i = 0; i < getInput().size(); i++) {
-			SymbolString current = getInput().subList(i, i + 1);
-
-			for (Production p : productions) {
-				if (p.equalsRHS(current)) {
-					CYKParseNode node = new CYKParseNode(p, i);
-					myNodeTable[i][i].add(node);
-				}
-			}
-			if (myNodeTable[i][i].isEmpty())
+			BitSet vars = myTerminalRules.get(getInput().get(i));
+			if (vars == null)
 				throw new ParserException(
 						"There aren't valid terminal productions!");
+			setCell(i, i, (BitSet) vars.clone());
 		}
 		return true;
 	}
@@ -86,35 +133,82 @@ public class CYKParser extends Parser {
 		for (int i = 0; i < size; i++) {
 			int j =  i + myIncrement;
 				// haven't filled out this cell
-				if (j < size && myNodeTable[i][j].isEmpty())
-					findAllProductions(i, j);
+				if (j < size && myChart[i][j] == null)
+					setCell(i, j, findAllProductions(i, j));
 			
 		}
 		return true;
 	}
 
+	private void setCell(int i, int j, BitSet vars) {
+		myChart[i][j] = vars;
+		for (int v = vars.nextSetBit(0); v >= 0; v = vars.nextSetBit(v + 1)) {
+			if (myEnds[v] == null) {
+				myEnds[v] = new BitSet[getInput().size()];
+				mySplits[v] = new BitSet[getInput().size()];
+			}
+			if (myEnds[v][i] == null)
+				myEnds[v][i] = new BitSet(getInput().size());
+			myEnds[v][i].set(j);
+			if (i > 0) {
+				if (mySplits[v][j] == null)
+					mySplits[v][j] = new BitSet(getInput().size());
+				mySplits[v][j].set(i - 1);
+			}
+		}
+	}
+
 	/**
-	 * Adds all production that can derive the substring from i to j (inclusive)
-	 * of the original input, by calculating all possible k: i <= k < j.
+	 * Returns the variables that can derive the substring from i to j
+	 * (inclusive) of the original input. A -> BC applies if there is some k
+	 * at which B derives i to k and C derives k + 1 to j, so rather than
+	 * trying each k in turn, the ends of B from i and the splits of C up to j
+	 * are intersected a word of k's at a time. Only shorter substrings are in
+	 * the chart yet, so the intersection only holds k: i <= k < j.
 	 */
-	private void findAllProductions(int i, int j) {
-		Grammar g = getGrammar();
-		ProductionSet prods = g.getProductionSet();
-		
-		for (int k = i; k < j; k++) {
-			for (Symbol A : getLHSVariablesForNode(i, k)) {
-				
-				for (Symbol B : getLHSVariablesForNode(k + 1, j)) {
-					SymbolString concat = new SymbolString(A, B);
-					for (Production p : prods) {
-						if (p.equalsRHS(concat)) {
-							CYKParseNode node = new CYKParseNode(p, k);
-							myNodeTable[i][j].add(node);
-						}
-					}
-				}
-			}
+	private BitSet findAllProductions(int i, int j) {
+		BitSet cell = new BitSet(mySymbols.size());
+		for (int r = 0; r < myPairRules.length; r++) {
+			if (!cell.get(myPairLHS[r])
+					&& findSplit(r, i, j) != -1)
+				cell.set(myPairLHS[r]);
+		}
+		return cell;
+	}
+
+	/**
+	 * Returns the first k at which the production with the given index
+	 * splits the substring from i to j (inclusive), or -1 if there is none.
+	 */
+	private int findSplit(int rule, int i, int j) {
+		BitSet ends = myEnds[myPairFirst[rule]] == null ? null
+				: myEnds[myPairFirst[rule]][i];
+		BitSet splits = mySplits[myPairSecond[rule]] == null ? null
+				: mySplits[myPairSecond[rule]][j];
+		if (ends == null || splits == null || !ends.intersects(splits))
+			return -1;
+		for (int k = ends.nextSetBit(i); k >= 0 && k < j; k = ends.nextSetBit(k + 1)) {
+			if (splits.get(k))
+				return k;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a node for a production of the variable with the given ID that
+	 * derives the substring from i to j (inclusive), or null if there is
+	 * none. Nodes are only made when a derivation is asked for, as the chart
+	 * itself just records which variables derive each substring.
+	 */
+	private CYKParseNode findNode(int lhs, int i, int j) {
+		for (int r = 0; r < myPairRules.length; r++) {
+			if (myPairLHS[r] != lhs)
+				continue;
+			int k = findSplit(r, i, j);
+			if (k != -1)
+				return new CYKParseNode(myPairRules[r], k);
 		}
+		return null;
 	}
 
 	/**
@@ -145,37 +239,22 @@ public class CYKParser extends Parser {
 	 *            the index of final symbol in the string.
 	 */
 	private boolean getTrace(Variable LHS, int start, int end) {
-		ProductionSet productions = getGrammar().getProductionSet();
-		
+		int lhs = mySymbols.getID(LHS);
+		if (lhs == -1 || myChart[start][end] == null
+				|| !myChart[start][end].get(lhs))
+			return false;
+
 		if (start == end) {
 			Terminal character = (Terminal) getInput().get(start);
-			Production terminalProduction = new Production(LHS, character);
-
-			for (Production p : productions) {
-				if (p.equals(terminalProduction)) {
-					myAnswerTrace.add(terminalProduction);
-					return true;
-				}
-			}
-			return false;
-		}
-		for (CYKParseNode node : myNodeTable[start][end]) {
-			Production nodeProduction = new Production(LHS, node.getRHS());
-
-			for (Production p : productions) {
-				if (p.equals(nodeProduction)) {
-					myAnswerTrace.add(nodeProduction);
-					if (getTrace(node.getFirstRHSVariable(), start, node.getK())
-							&& getTrace(node.getSecondRHSVariable(),
-									node.getK() + 1, end)) {
-						return true;
-					}
-					myAnswerTrace.remove(nodeProduction);
-					return false;
-				}
-			}
+			myAnswerTrace.add(new Production(LHS, character));
+			return true;
 		}
-		return false;
+		// Every variable in the chart derives its substring, so the first
+		// node found always leads to a complete trace.
+		CYKParseNode node = findNode(lhs, start, end);
+		myAnswerTrace.add(new Production(LHS, node.getRHS()));
+		return getTrace(node.getFirstRHSVariable(), start, node.getK())
+				&& getTrace(node.getSecondRHSVariable(), node.getK() + 1, end);
 	}
 
 	@Override
@@ -199,8 +278,8 @@ public class CYKParser extends Parser {
 
 	@Override
 	public boolean isAccept() {
-		return mySetTable[0][getInput().size() - 1].contains(getGrammar()
-				.getStartVariable());
+		Set<Symbol> top = getValueAt(0, getInput().size() - 1);
+		return top != null && top.contains(getGrammar().getStartVariable());
 	}
 
 	@Override
@@ -230,6 +309,7 @@ public class CYKParser extends Parser {
 		myIncrement = 0;
 
 		if (getInput() != null) {
+			indexProductions();
 			initializeTable(getInput().size());
 			return calculateNextRow();
 		}
@@ -247,24 +327,27 @@ public class CYKParser extends Parser {
 	}
 
 	/**
-	 * Returns the set of Variables on the LHS of each cykParseNode at
-	 * myNodeTable[row][col]
+	 * Returns the set of Variables that can derive the substring from row to
+	 * col (inclusive), that is the variables at myChart[row][col]
 	 */
 	private Set<Symbol> getLHSVariablesForNode(int row, int col) {
 		Set<Symbol> set = new TreeSet<Symbol>();
-
-		for (CYKParseNode node : myNodeTable[row][col]) {
-			set.add(node.getLHS());
-		}
+		BitSet vars = myChart[row][col];
+		if (vars == null)
+			return set;
+		for (int v = vars.nextSetBit(0); v >= 0; v = vars.nextSetBit(v + 1))
+			set.add(mySymbols.getSymbol(v));
 		return set;
 	}
 
+	/**
+	 * Completes the whole current row/diagonal at once and moves on to the
+	 * next, rather than inserting each cell and checking the row every time.
+	 */
 	@Override
 	public boolean stepParser() {
-		int previousIncrement = myIncrement - 1;
-		for (int i = 0; i + previousIncrement < getInput().size(); i++) {
-			autofillCell(i, i + previousIncrement);
-		}
+		calculateNextRow();
+		distributeChange(new AdvancedChangeEvent(this, CELL_CHANGED));
 		return true;
 	}
 
@@ -319,9 +402,13 @@ public class CYKParser extends Parser {
 	}
 
 	/**
-	 * Returns the set of Symbols stored at mySetTable[row][col]
+	 * Returns the set of Symbols at [row][col]. Rows below the current one are
+	 * complete, so their sets are read from the chart; mySetTable only holds
+	 * what has been inserted into the current row.
 	 */
 	public Set<Symbol> getValueAt(int row, int col) {
+		if (col - row < myIncrement - 1)
+			return getLHSVariablesForNode(row, col);
 		return mySetTable[row][col];
 	}
 
@@ -0,0 +1,439 @@
+package model.algorithms.testinput.parse.earley;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.algorithms.testinput.parse.Derivation;
+import model.algorithms.testinput.parse.Parser;
+import model.algorithms.testinput.parse.ParserException;
+import model.change.events.AdvancedChangeEvent;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Variable;
+import model.grammar.typetest.GrammarType;
+import model.symbols.Symbol;
+import model.symbols.SymbolTable;
+
+/**
+ * Earley parser for any context free grammar, working on the grammar as the
+ * user wrote it, lambda and unit productions included, so it does not need
+ * the grammar in CNF as the CYK parser does nor a search as the brute
+ * parsers do. It takes O(n^3) time in the worst case, O(n^2) for unambiguous
+ * grammars and close to linear time for most grammars that are LR(k).
+ * <p>
+ * An item is a production with a dot in its right side and the position in
+ * the input where the production started. Each step finishes one Earley set,
+ * the items whose dot is at a given position in the input: predicting the
+ * productions of the variable after each dot, completing the items waiting
+ * on a variable that has been fully derived, and scanning the next input
+ * symbol into the following set. Lambda productions are handled as Aycock
+ * and Horspool do, by moving the dot past a nullable variable as soon as it
+ * is predicted.
+ * <p>
+ * Each item keeps the item it was advanced from and what was used to
+ * advance it (a terminal, a completed item or a nullable variable). This is
+ * not a shared packed parse forest: an item keeps only the first way it was
+ * made, and later ways are dropped, so for ambiguous input one derivation
+ * is kept and the others are lost. The links are enough to recognize the
+ * input and to read out that one derivation. Only earlier items are ever
+ * linked to, so the leftmost derivation can be read out without any search.
+ */
+public class EarleyParser extends Parser {
+
+	public static final int SET_COMPLETED = 4;
+
+	/** What an item advanced over, when it was not a completed item */
+	private static final int TERMINAL = -1, NULLED = -2;
+
+	private SymbolTable mySymbols;
+	private Production[] myRules;
+	private int[] myRuleLHS;
+	private int[][] myRuleRHS;
+	/** The first dotted rule of each production, with the dot at the left */
+	private int[] myRuleOffset;
+	/** The production and dot position of each dotted rule */
+	private int[] myDottedRule, myDottedDot;
+	/** The productions of each variable, by symbol ID */
+	private int[][] myRulesByLHS;
+	private boolean[] myVariable;
+	private boolean[] myNullable;
+	/** A production by which each nullable variable derives lambda */
+	private int[] myNullableRule;
+	private int myStart;
+
+	private int[] myInput;
+	/** The first item of each set; a set ends where the next one starts */
+	private int[] mySetStart;
+	private int myNumSets;
+	private int myNumProcessed;
+
+	private int myNumItems;
+	private int[] myItemDotted, myItemOrigin;
+	private int[] myItemPrevious, myItemChild;
+	/** The next item of the same set waiting on the same symbol */
+	private int[] myItemNextWaiting;
+	/** The first item of each set waiting on each symbol, made as needed */
+	private int[][] myWaiting;
+	private Map<Long, Integer> mySetItems;
+	private int myAcceptItem;
+
+	public EarleyParser(Grammar g) {
+		super(g);
+	}
+
+	@Override
+	public String getDescriptionName() {
+		return "Earley Parser";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Parses input with any context free grammar, "
+				+ "one Earley set per input position.";
+	}
+
+	@Override
+	public GrammarType getRequiredGrammarType() throws ParserException {
+		return GrammarType.CONTEXT_FREE;
+	}
+
+	/**
+	 * Numbers the symbols and productions of the grammar and the dotted
+	 * rules, and finds the nullable variables.
+	 */
+	private void indexProductions() {
+		mySymbols = getGrammar().getSymbolTable();
+		List<Production> rules = new ArrayList<Production>();
+		List<int[]> rhss = new ArrayList<int[]>();
+		List<Integer> lhss = new ArrayList<Integer>();
+		for (Production p : getGrammar().getProductionSet()) {
+			if (p.getLHS().length != 1)
+				continue;
+			Symbol[] rhs = p.getRHS();
+			int[] ids = new int[rhs.length];
+			for (int i = 0; i < rhs.length; i++)
+				ids[i] = mySymbols.internID(rhs[i]);
+			rules.add(p);
+			lhss.add(mySymbols.internID(p.getLHS()[0]));
+			rhss.add(ids);
+		}
+		Variable start = getGrammar().getStartVariable();
+		myStart = start == null ? -1 : mySymbols.internID(start);
+
+		int n = rules.size(), numSymbols = mySymbols.size();
+		myRules = rules.toArray(new Production[0]);
+		myRuleLHS = new int[n];
+		myRuleRHS = rhss.toArray(new int[0][]);
+		myRuleOffset = new int[n];
+		int numDotted = 0;
+		int[] count = new int[numSymbols];
+		for (int r = 0; r < n; r++) {
+			myRuleLHS[r] = lhss.get(r);
+			myRuleOffset[r] = numDotted;
+			numDotted += myRuleRHS[r].length + 1;
+			count[myRuleLHS[r]]++;
+		}
+		myDottedRule = new int[numDotted];
+		myDottedDot = new int[numDotted];
+		for (int r = 0; r < n; r++) {
+			for (int dot = 0; dot <= myRuleRHS[r].length; dot++) {
+				myDottedRule[myRuleOffset[r] + dot] = r;
+				myDottedDot[myRuleOffset[r] + dot] = dot;
+			}
+		}
+
+		myRulesByLHS = new int[numSymbols][];
+		for (int s = 0; s < numSymbols; s++)
+			myRulesByLHS[s] = new int[count[s]];
+		Arrays.fill(count, 0);
+		for (int r = 0; r < n; r++)
+			myRulesByLHS[myRuleLHS[r]][count[myRuleLHS[r]]++] = r;
+		myVariable = new boolean[numSymbols];
+		for (int s = 0; s < numSymbols; s++)
+			myVariable[s] = Grammar.isVariable(mySymbols.getSymbol(s));
+
+		findNullables();
+	}
+
+	/**
+	 * Finds the nullable variables by repeatedly marking the left side of
+	 * every production whose right side is all nullable. The production that
+	 * first marks a variable only uses variables marked before it, so
+	 * following them always ends.
+	 */
+	private void findNullables() {
+		myNullable = new boolean[mySymbols.size()];
+		myNullableRule = new int[mySymbols.size()];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < myRules.length; r++) {
+				if (myNullable[myRuleLHS[r]])
+					continue;
+				boolean nullable = true;
+				for (int s : myRuleRHS[r])
+					nullable &= myNullable[s];
+				if (nullable) {
+					myNullable[myRuleLHS[r]] = true;
+					myNullableRule[myRuleLHS[r]] = r;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean resetInternalStateOnly() {
+		myNumSets = myNumProcessed = myNumItems = 0;
+		myAcceptItem = -1;
+		if (getInput() == null)
+			return true;
+
+		indexProductions();
+		int n = getInput().size();
+		myInput = new int[n];
+		int i = 0;
+		for (Symbol s : getInput())
+			myInput[i++] = mySymbols.getID(s);
+		mySetStart = new int[n + 2];
+		myWaiting = new int[n + 1][];
+		int capacity = Math.max(16, 4 * (n + 1));
+		myItemDotted = new int[capacity];
+		myItemOrigin = new int[capacity];
+		myItemPrevious = new int[capacity];
+		myItemChild = new int[capacity];
+		myItemNextWaiting = new int[capacity];
+		mySetItems = new HashMap<Long, Integer>();
+
+		startSet();
+		if (myStart != -1)
+			predict(myStart);
+		return true;
+	}
+
+	private void startSet() {
+		mySetStart[myNumSets++] = myNumItems;
+		mySetStart[myNumSets] = myNumItems;
+		mySetItems.clear();
+	}
+
+	/**
+	 * Adds the item to the set being built, unless it is there already.
+	 */
+	private void addItem(int dotted, int origin, int previous, int child) {
+		Long key = (long) origin * myDottedRule.length + dotted;
+		if (mySetItems.containsKey(key))
+			return;
+		if (myNumItems == myItemDotted.length) {
+			int capacity = 2 * myNumItems;
+			myItemDotted = Arrays.copyOf(myItemDotted, capacity);
+			myItemOrigin = Arrays.copyOf(myItemOrigin, capacity);
+			myItemPrevious = Arrays.copyOf(myItemPrevious, capacity);
+			myItemChild = Arrays.copyOf(myItemChild, capacity);
+			myItemNextWaiting = Arrays.copyOf(myItemNextWaiting, capacity);
+		}
+		int item = myNumItems++;
+		mySetItems.put(key, item);
+		myItemDotted[item] = dotted;
+		myItemOrigin[item] = origin;
+		myItemPrevious[item] = previous;
+		myItemChild[item] = child;
+		myItemNextWaiting[item] = -1;
+		mySetStart[myNumSets] = myNumItems;
+
+		int next = getNextSymbol(item);
+		if (next != -1 && myVariable[next]) {
+			int set = myNumSets - 1;
+			if (myWaiting[set] == null) {
+				myWaiting[set] = new int[mySymbols.size()];
+				Arrays.fill(myWaiting[set], -1);
+			}
+			myItemNextWaiting[item] = myWaiting[set][next];
+			myWaiting[set][next] = item;
+		}
+	}
+
+	private void predict(int variable) {
+		int set = myNumSets - 1;
+		for (int r : myRulesByLHS[variable])
+			addItem(myRuleOffset[r], set, -1, TERMINAL);
+	}
+
+	/**
+	 * Returns the ID of the symbol after the dot of the item, or -1 if the
+	 * dot is at the end.
+	 */
+	private int getNextSymbol(int item) {
+		int dotted = myItemDotted[item];
+		int[] rhs = myRuleRHS[myDottedRule[dotted]];
+		int dot = myDottedDot[dotted];
+		return dot < rhs.length ? rhs[dot] : -1;
+	}
+
+	/**
+	 * Finishes the next Earley set, then scans the next input symbol to
+	 * start the set after it.
+	 */
+	@Override
+	public boolean stepParser() {
+		if (isDone())
+			return false;
+		int set = myNumProcessed;
+		boolean[] predicted = new boolean[mySymbols.size()];
+		List<Integer> scanned = new ArrayList<Integer>();
+		int symbol = set < myInput.length ? myInput[set] : -1;
+
+		// The set grows as its items are processed, and the items added are
+		// processed in turn.
+		for (int item = mySetStart[set]; item < myNumItems; item++) {
+			int next = getNextSymbol(item);
+			if (next == -1)
+				complete(item, set);
+			else if (myVariable[next]) {
+				if (!predicted[next]) {
+					predicted[next] = true;
+					predict(next);
+				}
+				if (myNullable[next])
+					addItem(myItemDotted[item] + 1, myItemOrigin[item], item,
+							NULLED);
+			} else if (next == symbol)
+				scanned.add(item);
+		}
+
+		myNumProcessed++;
+		if (set < myInput.length) {
+			startSet();
+			for (int item : scanned)
+				addItem(myItemDotted[item] + 1, myItemOrigin[item], item,
+						TERMINAL);
+		}
+		distributeChange(new AdvancedChangeEvent(this, SET_COMPLETED, set));
+		return true;
+	}
+
+	/**
+	 * Advances every item waiting on the left side of the completed item in
+	 * the set where the completed item started.
+	 */
+	private void complete(int item, int set) {
+		int rule = myDottedRule[myItemDotted[item]];
+		int lhs = myRuleLHS[rule];
+		int origin = myItemOrigin[item];
+		if (set == myInput.length && origin == 0 && lhs == myStart
+				&& myAcceptItem == -1)
+			myAcceptItem = item;
+		if (myWaiting[origin] == null)
+			return;
+		for (int w = myWaiting[origin][lhs]; w != -1; w = myItemNextWaiting[w])
+			addItem(myItemDotted[w] + 1, myItemOrigin[w], w, item);
+	}
+
+	@Override
+	public boolean isAccept() {
+		return myAcceptItem != -1;
+	}
+
+	/**
+	 * The parser is done once the last set is finished, or as soon as a set
+	 * is empty, as then no later set can have any items.
+	 */
+	@Override
+	public boolean isDone() {
+		if (getInput() == null)
+			return false;
+		return myNumProcessed > myInput.length
+				|| mySetStart[myNumProcessed] == mySetStart[myNumProcessed + 1];
+	}
+
+	/**
+	 * Returns the number of Earley sets that are finished.
+	 */
+	public int getNumberOfSetsCompleted() {
+		return myNumProcessed;
+	}
+
+	/**
+	 * Returns the number of items in the set, which is the set at the given
+	 * position in the input.
+	 */
+	public int getSetSize(int set) {
+		if (set >= myNumSets)
+			return 0;
+		return mySetStart[set + 1] - mySetStart[set];
+	}
+
+	/**
+	 * Returns the completed items of the set, each as its production with
+	 * the position where it started in brackets.
+	 */
+	public List<String> getCompletedItems(int set) {
+		List<String> items = new ArrayList<String>();
+		if (set >= myNumSets)
+			return items;
+		for (int item = mySetStart[set]; item < mySetStart[set + 1]; item++) {
+			if (getNextSymbol(item) == -1)
+				items.add(myRules[myDottedRule[myItemDotted[item]]] + " ["
+						+ myItemOrigin[item] + "]");
+		}
+		return items;
+	}
+
+	/**
+	 * Returns a leftmost derivation of the input, or null if the input was
+	 * not accepted. The productions are read out of the parse forest in
+	 * preorder without recursion, so long inputs do not overflow the stack.
+	 * In a leftmost derivation every symbol left of the variable being
+	 * replaced is a terminal of the input, so the place of each step is the
+	 * number of terminals passed so far, and the derivation is built without
+	 * searching each sentential form for its first variable.
+	 */
+	@Override
+	public Derivation getDerivation() {
+		if (!isAccept())
+			return null;
+		Derivation derivation = null;
+		int position = 0;
+		// Items to expand, terminals, and for nullable variables -2 minus
+		// the symbol ID
+		int[] stack = new int[16];
+		int sp = 0;
+		stack[sp++] = myAcceptItem;
+		while (sp > 0) {
+			int top = stack[--sp];
+			if (top == TERMINAL) {
+				position++;
+				continue;
+			}
+
+			int rule = top < 0 ? myNullableRule[NULLED - top]
+					: myDottedRule[myItemDotted[top]];
+			if (derivation == null)
+				derivation = new Derivation(myRules[rule]);
+			else
+				derivation.addStep(myRules[rule], position);
+			int[] rhs = myRuleRHS[rule];
+			if (sp + rhs.length > stack.length)
+				stack = Arrays.copyOf(stack, 2 * (sp + rhs.length));
+			if (top < 0) {
+				for (int i = rhs.length - 1; i >= 0; i--)
+					stack[sp++] = NULLED - rhs[i];
+				continue;
+			}
+
+			// Walking back from the completed item finds the children last
+			// to first, so the first child ends up on top of the stack.
+			for (int item = top; myDottedDot[myItemDotted[item]] > 0;
+					item = myItemPrevious[item]) {
+				int child = myItemChild[item];
+				int dot = myDottedDot[myItemDotted[item]];
+				stack[sp++] = child == NULLED ? NULLED - rhs[dot - 1] : child;
+			}
+		}
+		return derivation;
+	}
+
+}
@@ -0,0 +1,200 @@
+package model.algorithms.testinput.parse.ll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.testinput.parse.CompiledParser;
+import model.algorithms.testinput.parse.Derivation;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+
+/**
+ * An LL(1) parser that runs on an {@link LL1ParseTable} turned into an array
+ * of production numbers by variable and terminal ID, with its stack an
+ * array of ints: the ID of a terminal, or the complement of the row of a
+ * variable. Where a cell of the table has more than one right side it uses
+ * the same one as {@link LL1Parser}.
+ * <p>
+ * A cell whose right side would have the parser expand variables forever
+ * without reading any input, as left recursion does, is left empty, so the
+ * parser rejects rather than running out of memory.
+ */
+public class CompiledLL1Parser extends CompiledParser {
+
+	private static final int UNKNOWN = 0, VISITING = 1, STOPS = 2,
+			VANISHES = 3, LOOPS = 4;
+
+	/** The start entry when the start variable has no row */
+	private static final int NO_START = Integer.MAX_VALUE;
+
+	/** The production for each variable and terminal, or -1 if none */
+	private int[][] myTable;
+	/** The right side of each production as stack entries */
+	private int[][] myRHS;
+	private int myStart;
+	private int[] myStack;
+
+	public CompiledLL1Parser(Grammar g) {
+		this(new LL1ParseTable(g));
+	}
+
+	public CompiledLL1Parser(LL1ParseTable table) {
+		super(Arrays.copyOf(table.getColumns(), table.getColumns().length - 1));
+		Variable[] rows = table.getRows();
+		Terminal[] columns = table.getColumns();
+		Map<Symbol, Integer> rowIDs = new HashMap<Symbol, Integer>();
+		for (int r = 0; r < rows.length; r++)
+			rowIDs.put(rows[r], r);
+
+		List<Production> productions = new ArrayList<Production>();
+		List<int[]> rhsList = new ArrayList<int[]>();
+		Map<Production, Integer> ids = new HashMap<Production, Integer>();
+		myTable = new int[rows.length][columns.length];
+		for (int r = 0; r < rows.length; r++) {
+			for (int c = 0; c < columns.length; c++) {
+				Symbol[] rhs = table.get(r, c);
+				if (rhs == null) {
+					myTable[r][c] = -1;
+					continue;
+				}
+				rhs = withoutEmptySub(rhs);
+				Production p = new Production(rows[r], rhs);
+				Integer id = ids.get(p);
+				if (id == null) {
+					ids.put(p, id = productions.size());
+					productions.add(p);
+					rhsList.add(encodeRHS(rhs, rowIDs));
+				}
+				myTable[r][c] = id;
+			}
+		}
+		setProductions(productions.toArray(new Production[0]));
+		myRHS = rhsList.toArray(new int[0][]);
+
+		Integer start = rowIDs.get(table.getGrammar().getStartVariable());
+		myStart = start == null ? NO_START : ~start;
+		myStack = new int[16];
+		removeLoops();
+	}
+
+	private static Symbol[] withoutEmptySub(Symbol[] rhs) {
+		Terminal empty = JFLAPPreferences.getSubForEmptyString();
+		List<Symbol> kept = new ArrayList<Symbol>();
+		for (Symbol s : rhs) {
+			if (!s.equals(empty))
+				kept.add(s);
+		}
+		return kept.toArray(new Symbol[0]);
+	}
+
+	private int[] encodeRHS(Symbol[] rhs, Map<Symbol, Integer> rowIDs) {
+		int[] entries = new int[rhs.length];
+		for (int i = 0; i < rhs.length; i++) {
+			if (Grammar.isTerminal(rhs[i])) {
+				int id = getTerminalID(rhs[i]);
+				// A terminal not in the table can never be matched.
+				entries[i] = id < 0 ? getEndID() + 1 : id;
+			} else
+				entries[i] = ~rowIDs.get(rhs[i]);
+		}
+		return entries;
+	}
+
+	/**
+	 * Empties each cell that would have the parser loop. With the lookahead
+	 * fixed, expanding a variable either stops at a terminal to match or an
+	 * empty cell, or finds every symbol of the right side vanishes, or comes
+	 * back to the same variable, in which case it would do so forever.
+	 */
+	private void removeLoops() {
+		int[][] outcome = new int[myTable.length][getEndID() + 1];
+		for (int c = 0; c <= getEndID(); c++) {
+			for (int r = 0; r < myTable.length; r++)
+				findOutcome(r, c, outcome);
+		}
+		for (int r = 0; r < myTable.length; r++) {
+			for (int c = 0; c <= getEndID(); c++) {
+				if (outcome[r][c] == LOOPS)
+					myTable[r][c] = -1;
+			}
+		}
+	}
+
+	private int findOutcome(int r, int c, int[][] outcome) {
+		if (outcome[r][c] == VISITING)
+			return LOOPS;
+		if (outcome[r][c] != UNKNOWN)
+			return outcome[r][c];
+		int p = myTable[r][c];
+		if (p < 0)
+			return outcome[r][c] = STOPS;
+		outcome[r][c] = VISITING;
+		int result = VANISHES;
+		for (int entry : myRHS[p]) {
+			if (entry >= 0) {
+				result = STOPS;
+				break;
+			}
+			int next = findOutcome(~entry, c, outcome);
+			if (next != VANISHES) {
+				result = next;
+				break;
+			}
+		}
+		return outcome[r][c] = result;
+	}
+
+	@Override
+	protected boolean run(int[] input, int length) {
+		if (myStart == NO_START)
+			return false;
+		int[] stack = myStack;
+		int size = 0;
+		stack[size++] = myStart;
+		int end = getEndID();
+		int i = 0;
+		int next = length > 0 ? input[0] : end;
+		boolean recording = isRecording();
+		while (size > 0) {
+			int top = stack[--size];
+			if (top >= 0) {
+				if (top != next)
+					return false;
+				next = ++i < length ? input[i] : end;
+				continue;
+			}
+			int p = myTable[~top][next];
+			if (p < 0)
+				return false;
+			if (recording)
+				record(p);
+			int[] rhs = myRHS[p];
+			if (size + rhs.length > stack.length)
+				stack = myStack = Arrays.copyOf(stack,
+						Math.max(stack.length * 2, size + rhs.length));
+			for (int k = rhs.length - 1; k >= 0; k--)
+				stack[size++] = rhs[k];
+		}
+		return i >= length;
+	}
+
+	/**
+	 * Returns the leftmost derivation found by the last parse, if it
+	 * accepted and productions were being recorded, or null otherwise.
+	 */
+	@Override
+	public Derivation getDerivation() {
+		if (!hasDerivation())
+			return null;
+		return Derivation.createLeftmostDerivation(getProductions());
+	}
+
+}
@@ -2,6 +2,9 @@ package model.algorithms.testinput.parse.ll;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -20,11 +23,21 @@ import model.symbols.SymbolString;
 
 public class LL1ParseTable {
 
+	/** Orders right sides as strings, as arrays cannot be compared */
+	private static final Comparator<Symbol[]> RHS_ORDER = new Comparator<Symbol[]>() {
+		@Override
+		public int compare(Symbol[] o1, Symbol[] o2) {
+			return new SymbolString(o1).compareTo(new SymbolString(o2));
+		}
+	};
+
 	private Set<Symbol[]> myTable[][];
 	private FirstFollowTable myFirstFollow;
 	private Grammar myGrammar;
 	private Variable[] myRows;
 	private Terminal[] myColumns;
+	private Map<Symbol, Integer> myRowIndices;
+	private Map<Symbol, Integer> myColumnIndices;
 
 	public LL1ParseTable(FirstFollowTable table, boolean complete) {
 		myFirstFollow = table;
@@ -34,10 +47,16 @@ public class LL1ParseTable {
 		myColumns = myGrammar.getTerminals().toArray(new Terminal[0]);
 		myColumns = UtilFunctions.combine(myColumns,
 				JFLAPPreferences.getEndOfStringMarker());
+		myRowIndices = new HashMap<Symbol, Integer>();
+		for (int i = 0; i < myRows.length; i++)
+			myRowIndices.put(myRows[i], i);
+		myColumnIndices = new HashMap<Symbol, Integer>();
+		for (int i = 0; i < myColumns.length; i++)
+			myColumnIndices.put(myColumns[i], i);
 		myTable = new Set[myRows.length][myColumns.length];
 		for (int i = 0; i< myRows.length;i++){
 			for (int j = 0; j < myColumns.length; j++){
-				myTable[i][j] = new TreeSet<Symbol[]>();
+				myTable[i][j] = new TreeSet<Symbol[]>(RHS_ORDER);
 			}
 		}
 		if (complete)
@@ -98,34 +117,55 @@ public class LL1ParseTable {
 
 
 	private int getColForTerm(Terminal t) {
-		for(int i = 0; i < myColumns.length; i++){
-			if (myColumns[i].equals(t))
-				return i;
-		}
-		return -1;
+		Integer c = myColumnIndices.get(t);
+		return c == null ? -1 : c;
 	}
 
 
 
 	private int getRowForVar(Variable v) {
-		for(int i = 0; i < myRows.length; i++){
-			if (myRows[i].equals(v))
-				return i;
-		}
-		return -1;
+		Integer r = myRowIndices.get(v);
+		return r == null ? -1 : r;
 	}
 
 
 
+	/**
+	 * Returns the right side to expand the variable by when the next input
+	 * is the terminal, or null if there is none.
+	 */
 	public SymbolString get(Variable v, Terminal t) {
-		return new SymbolString(get(getRowForVar(v), getColForTerm(t)));
+		int r = getRowForVar(v), c = getColForTerm(t);
+		if (r < 0 || c < 0)
+			return null;
+		Symbol[] rhs = get(r, c);
+		return rhs == null ? null : new SymbolString(rhs);
+	}
+
+
+
+	Symbol[] get(int r, int c) {
+		Set<Symbol[]> entry = myTable[r][c];
+		return entry.isEmpty() ? null : entry.iterator().next();
 	}
 
+	/**
+	 * Returns the variables of the rows, in order.
+	 */
+	Variable[] getRows() {
+		return myRows;
+	}
 
+	/**
+	 * Returns the terminals of the columns, in order, the last being the end
+	 * of string marker.
+	 */
+	Terminal[] getColumns() {
+		return myColumns;
+	}
 
-	private Symbol[] get(int r, int c) {
-		Symbol[][] entry = myTable[r][c].toArray(new Symbol[0][]);
-		return entry.length >= 1 ? entry[0]: null;
+	public Grammar getGrammar() {
+		return myGrammar;
 	}
 
 }
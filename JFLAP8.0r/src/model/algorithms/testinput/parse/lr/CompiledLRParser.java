@@ -0,0 +1,163 @@
+package model.algorithms.testinput.parse.lr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.testinput.parse.CompiledParser;
+import model.algorithms.testinput.parse.Derivation;
+import model.algorithms.testinput.parse.lr.rules.AcceptRule;
+import model.algorithms.testinput.parse.lr.rules.ReduceRule;
+import model.algorithms.testinput.parse.lr.rules.SLR1rule;
+import model.algorithms.testinput.parse.lr.rules.ShiftRule;
+import model.algorithms.testinput.parse.lr.rules.StateUsingRule;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.symbols.Symbol;
+
+/**
+ * An LR parser that runs on an {@link SLR1ParseTable}, of any
+ * {@link LRTableType}, turned into an array of actions by state and terminal
+ * ID and an array of gotos by state and variable, with its stack an array of
+ * state IDs. Where a cell of the table has more than one rule it uses the
+ * same one as {@link SLR1Parser}, and like that parser it may not finish
+ * when the table has conflicts and the grammar has cycles of unit or empty
+ * productions.
+ */
+public class CompiledLRParser extends CompiledParser {
+
+	/** The action that accepts; shifts are positive and reduces negative */
+	private static final int ACCEPT = Integer.MIN_VALUE;
+
+	/** The state shifted to plus one, or the production reduced by minus one */
+	private int[][] myActions;
+	/** The state to go to after each variable, or -1 if none */
+	private int[][] myGotos;
+	private int[] myLHS;
+	private int[] myLength;
+	private int myStart;
+	private int[] myStack;
+
+	public CompiledLRParser(Grammar g) {
+		this(new SLR1ParseTable(g));
+	}
+
+	public CompiledLRParser(Grammar g, LRTableType type) {
+		this(new SLR1ParseTable(g, type));
+	}
+
+	public CompiledLRParser(SLR1ParseTable table) {
+		super(getTerminals(table.getColumns()));
+		Symbol[] columns = table.getColumns();
+		int numStates = table.getRowCount();
+		// Terminals are numbered in column order, as are variables.
+		int[] terminalIDs = new int[columns.length];
+		int[] variableIDs = new int[columns.length];
+		int numVariables = 0;
+		for (int c = 0; c < columns.length; c++) {
+			terminalIDs[c] = getTerminalID(columns[c]);
+			variableIDs[c] = terminalIDs[c] < 0 ? numVariables++ : -1;
+		}
+
+		Production[] productions = new Production[table.getNumberOfProductions()];
+		myLHS = new int[productions.length];
+		myLength = new int[productions.length];
+		for (int p = 0; p < productions.length; p++) {
+			productions[p] = table.getProductionForIndex(p);
+			Symbol lhs = productions[p].getLHS()[0];
+			myLHS[p] = -1;
+			for (int c = 0; c < columns.length; c++) {
+				if (variableIDs[c] >= 0 && columns[c].equals(lhs))
+					myLHS[p] = variableIDs[c];
+			}
+			myLength[p] = productions[p].getRHS().length;
+		}
+		setProductions(productions);
+
+		myActions = new int[numStates][getEndID() + 1];
+		myGotos = new int[numStates][numVariables];
+		for (int s = 0; s < numStates; s++) {
+			Arrays.fill(myGotos[s], -1);
+			for (int c = 0; c < columns.length; c++) {
+				SLR1rule rule = table.getValueAt(s, c);
+				if (rule == null)
+					continue;
+				if (variableIDs[c] >= 0) {
+					if (rule instanceof StateUsingRule)
+						myGotos[s][variableIDs[c]] = ((StateUsingRule) rule)
+								.getToState().getID();
+				} else if (rule instanceof ShiftRule)
+					myActions[s][terminalIDs[c]] = ((ShiftRule) rule)
+							.getToState().getID() + 1;
+				else if (rule instanceof ReduceRule)
+					myActions[s][terminalIDs[c]] = -((ReduceRule) rule)
+							.getProductionIndex() - 1;
+				else if (rule instanceof AcceptRule)
+					myActions[s][terminalIDs[c]] = ACCEPT;
+			}
+		}
+		myStart = table.getDFA().getStartState().getID();
+		myStack = new int[16];
+	}
+
+	private static Terminal[] getTerminals(Symbol[] columns) {
+		Symbol end = JFLAPPreferences.getEndOfStringMarker();
+		List<Terminal> terminals = new ArrayList<Terminal>();
+		for (Symbol s : columns) {
+			if (Grammar.isTerminal(s) && !s.equals(end))
+				terminals.add((Terminal) s);
+		}
+		return terminals.toArray(new Terminal[0]);
+	}
+
+	@Override
+	protected boolean run(int[] input, int length) {
+		int[] stack = myStack;
+		int size = 0;
+		stack[size++] = myStart;
+		int end = getEndID();
+		int i = 0;
+		int next = length > 0 ? input[0] : end;
+		boolean recording = isRecording();
+		while (true) {
+			int action = myActions[stack[size - 1]][next];
+			if (action > 0) {
+				if (size == stack.length)
+					stack = myStack = Arrays.copyOf(stack, size * 2);
+				stack[size++] = action - 1;
+				next = ++i < length ? input[i] : end;
+			} else if (action == ACCEPT) {
+				return true;
+			} else if (action < 0) {
+				int p = -action - 1;
+				if (recording)
+					record(p);
+				size -= myLength[p];
+				if (size < 1 || myLHS[p] < 0)
+					return false;
+				int to = myGotos[stack[size - 1]][myLHS[p]];
+				if (to < 0)
+					return false;
+				if (size == stack.length)
+					stack = myStack = Arrays.copyOf(stack, size * 2);
+				stack[size++] = to;
+			} else
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the rightmost derivation found by the last parse, if it
+	 * accepted and productions were being recorded, or null otherwise.
+	 */
+	@Override
+	public Derivation getDerivation() {
+		if (!hasDerivation())
+			return null;
+		return Derivation.createRightmostDerivation(getProductions(), true);
+	}
+
+}
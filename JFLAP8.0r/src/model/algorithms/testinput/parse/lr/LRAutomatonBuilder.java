@@ -0,0 +1,661 @@
+package model.algorithms.testinput.parse.lr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.testinput.parse.FirstFollowSets;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+
+/**
+ * Builds the states and transitions of an LR automaton for an augmented
+ * grammar, along with the lookaheads of its reductions.
+ * <p>
+ * Each item, a production with a position in its right side, is a number,
+ * and a state is known by its kernel, the sorted numbers of the items it
+ * was reached with (and their lookaheads for canonical LR(1)), which is
+ * looked up in a hash map. States are expanded once each, from a worklist
+ * in the order they were made, and the items each variable brings into a
+ * closure are worked out once for the whole grammar.
+ * <p>
+ * For LALR(1) the lookaheads are found from the LR(0) automaton by the
+ * method of DeRemer and Pennello, which passes terminals along the reads
+ * and includes relations between the transitions on variables rather than
+ * merging the states of the LR(1) automaton.
+ */
+class LRAutomatonBuilder {
+
+	private Grammar myGrammar;
+	private LRTableType myType;
+
+	/** The symbols of the grammar, sorted, and the end of string marker */
+	private Symbol[] mySymbols;
+	private Map<Symbol, Integer> mySymbolIDs;
+	private int myEndID;
+	private boolean[] amVariable;
+	private boolean[] amNullable;
+	/** FIRST of each variable, as symbol IDs */
+	private BitSet[] myFirst;
+
+	private Production[] myProductions;
+	private int[][] myRHS;
+	/** The productions with each variable on the left */
+	private int[][] myProductionsOf;
+
+	/** Item i + myItemBase[p] has the position i in production p */
+	private int[] myItemBase;
+	private int[] myItemProduction;
+	private int[] myItemNext;
+	/** FIRST of what comes after the next symbol of each item */
+	private BitSet[] myFirstAfter;
+	/** Whether everything after the position of each item is nullable */
+	private boolean[] amNullableFrom;
+	/** The items with the position at the start that each variable brings */
+	private int[][] myStartItems;
+	private SLR1Production[] myItemObjects;
+
+	private Map<Kernel, Integer> myStates;
+	private List<Kernel> myKernels;
+	private List<int[]> myClosures;
+	private List<BitSet[]> myClosureLookaheads;
+	private List<int[]> myGotos;
+	/** The lookaheads of the reduce items of each state */
+	private List<Map<Integer, BitSet>> myReduceLookaheads;
+
+	private int[] myMarks;
+	private int myStamp;
+
+	/**
+	 * @param g
+	 *            the grammar, augmented with a new start variable whose one
+	 *            production has the old start variable on its right side
+	 */
+	public LRAutomatonBuilder(Grammar g, LRTableType type) {
+		myGrammar = g;
+		myType = type;
+		initSymbols();
+		initItems();
+		build();
+		if (myType == LRTableType.LALR1)
+			findLALRLookaheads();
+	}
+
+	private void initSymbols() {
+		Set<Symbol> sorted = new TreeSet<Symbol>();
+		sorted.addAll(myGrammar.getVariables());
+		sorted.addAll(myGrammar.getTerminals());
+		mySymbols = sorted.toArray(new Symbol[sorted.size() + 1]);
+		myEndID = sorted.size();
+		mySymbols[myEndID] = JFLAPPreferences.getEndOfStringMarker();
+		mySymbolIDs = new HashMap<Symbol, Integer>();
+		for (int i = 0; i < myEndID; i++)
+			mySymbolIDs.put(mySymbols[i], i);
+
+		FirstFollowSets sets = new FirstFollowSets(myGrammar);
+		amVariable = new boolean[myEndID];
+		amNullable = new boolean[myEndID];
+		myFirst = new BitSet[myEndID];
+		for (int i = 0; i < myEndID; i++) {
+			myFirst[i] = new BitSet();
+			if (Grammar.isVariable(mySymbols[i])) {
+				Variable v = (Variable) mySymbols[i];
+				amVariable[i] = true;
+				amNullable[i] = sets.isNullable(v);
+				for (Terminal t : sets.getFirst(v)) {
+					Integer id = mySymbolIDs.get(t);
+					if (id != null)
+						myFirst[i].set(id);
+				}
+			} else
+				myFirst[i].set(i);
+		}
+	}
+
+	private void initItems() {
+		myProductions = myGrammar.getProductionSet().toArray();
+		// The start production first, so the start state is its closure.
+		Production start = myGrammar.getStartProductions()[0];
+		for (int p = 0; p < myProductions.length; p++) {
+			if (myProductions[p].equals(start)) {
+				myProductions[p] = myProductions[0];
+				myProductions[0] = start;
+			}
+		}
+
+		int numProds = myProductions.length;
+		myRHS = new int[numProds][];
+		myItemBase = new int[numProds];
+		int[] count = new int[myEndID];
+		int numItems = 0;
+		for (int p = 0; p < numProds; p++) {
+			Symbol[] rhs = myProductions[p].getRHS();
+			myRHS[p] = new int[rhs.length];
+			for (int i = 0; i < rhs.length; i++)
+				myRHS[p][i] = mySymbolIDs.get(rhs[i]);
+			count[lhsOf(p)]++;
+			myItemBase[p] = numItems;
+			numItems += rhs.length + 1;
+		}
+		myProductionsOf = new int[myEndID][];
+		for (int v = 0; v < myEndID; v++)
+			myProductionsOf[v] = new int[count[v]];
+		for (int p = numProds - 1; p >= 0; p--)
+			myProductionsOf[lhsOf(p)][--count[lhsOf(p)]] = p;
+
+		myItemProduction = new int[numItems];
+		myItemNext = new int[numItems];
+		myFirstAfter = new BitSet[numItems];
+		amNullableFrom = new boolean[numItems];
+		myItemObjects = new SLR1Production[numItems];
+		for (int p = 0; p < numProds; p++) {
+			int[] rhs = myRHS[p];
+			BitSet first = new BitSet();
+			boolean nullable = true;
+			for (int i = rhs.length; i >= 0; i--) {
+				int item = myItemBase[p] + i;
+				myItemProduction[item] = p;
+				myItemNext[item] = i < rhs.length ? rhs[i] : -1;
+				myFirstAfter[item] = (BitSet) first.clone();
+				if (i < rhs.length) {
+					int s = rhs[i];
+					if (!amNullable[s]) {
+						first.clear();
+						nullable = false;
+					}
+					first.or(myFirst[s]);
+				}
+				amNullableFrom[item] = nullable;
+			}
+		}
+
+		myMarks = new int[Math.max(numItems, myEndID)];
+		myStartItems = new int[myEndID][];
+		for (int v = 0; v < myEndID; v++) {
+			if (amVariable[v])
+				myStartItems[v] = findStartItems(v);
+		}
+	}
+
+	private int lhsOf(int p) {
+		return mySymbolIDs.get(myProductions[p].getLHS()[0]);
+	}
+
+	/**
+	 * Returns the items with the position at the start of every production
+	 * of the variable and of every variable that can begin one of those.
+	 */
+	private int[] findStartItems(int v) {
+		int stamp = ++myStamp;
+		int[] work = new int[myEndID];
+		int numWork = 0;
+		List<Integer> items = new ArrayList<Integer>();
+		myMarks[v] = stamp;
+		work[numWork++] = v;
+		while (numWork > 0) {
+			int w = work[--numWork];
+			for (int p : myProductionsOf[w]) {
+				items.add(myItemBase[p]);
+				if (myRHS[p].length > 0) {
+					int s = myRHS[p][0];
+					if (amVariable[s] && myMarks[s] != stamp) {
+						myMarks[s] = stamp;
+						work[numWork++] = s;
+					}
+				}
+			}
+		}
+		int[] result = new int[items.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = items.get(i);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private void build() {
+		myStates = new HashMap<Kernel, Integer>();
+		myKernels = new ArrayList<Kernel>();
+		myClosures = new ArrayList<int[]>();
+		myClosureLookaheads = new ArrayList<BitSet[]>();
+		myGotos = new ArrayList<int[]>();
+		myReduceLookaheads = new ArrayList<Map<Integer, BitSet>>();
+
+		BitSet[] startLookaheads = null;
+		if (myType == LRTableType.LR1) {
+			startLookaheads = new BitSet[] { new BitSet() };
+			startLookaheads[0].set(myEndID);
+		}
+		getState(new Kernel(new int[] { myItemBase[0] }, startLookaheads));
+		for (int s = 0; s < myKernels.size(); s++)
+			expand(s);
+	}
+
+	/**
+	 * Returns the number of the state with the kernel, making it if there
+	 * is none.
+	 */
+	private int getState(Kernel kernel) {
+		Integer state = myStates.get(kernel);
+		if (state != null)
+			return state;
+		state = myKernels.size();
+		myStates.put(kernel, state);
+		myKernels.add(kernel);
+		return state;
+	}
+
+	private void expand(int state) {
+		Kernel kernel = myKernels.get(state);
+		int[] closure;
+		BitSet[] lookaheads = null;
+		if (myType == LRTableType.LR1) {
+			lookaheads = new BitSet[myItemProduction.length];
+			closure = takeClosure(kernel, lookaheads);
+		} else
+			closure = takeClosure(kernel.myItems);
+		myClosures.add(closure);
+
+		// The items of the closure by next symbol, in the order of the symbols
+		int[] count = new int[myEndID + 1];
+		for (int item : closure) {
+			if (myItemNext[item] >= 0)
+				count[myItemNext[item] + 1]++;
+		}
+		for (int s = 0; s < myEndID; s++)
+			count[s + 1] += count[s];
+		int[] bySymbol = new int[count[myEndID]];
+		int[] fill = count.clone();
+		for (int item : closure) {
+			if (myItemNext[item] >= 0)
+				bySymbol[fill[myItemNext[item]]++] = item;
+		}
+
+		int[] gotos = new int[myEndID];
+		Arrays.fill(gotos, -1);
+		myGotos.add(gotos);
+		for (int s = 0; s < myEndID; s++) {
+			int from = count[s], to = count[s + 1];
+			if (from == to)
+				continue;
+			// The closure is sorted, so the kernel is as well.
+			int[] items = new int[to - from];
+			for (int i = from; i < to; i++)
+				items[i - from] = bySymbol[i] + 1;
+			BitSet[] next = null;
+			if (lookaheads != null) {
+				next = new BitSet[items.length];
+				for (int i = from; i < to; i++)
+					next[i - from] = lookaheads[bySymbol[i]];
+			}
+			gotos[s] = getState(new Kernel(items, next));
+		}
+
+		Map<Integer, BitSet> reduce = new TreeMap<Integer, BitSet>();
+		for (int item : closure) {
+			if (myItemNext[item] < 0)
+				reduce.put(item, lookaheads == null ? null : lookaheads[item]);
+		}
+		myReduceLookaheads.add(reduce);
+		if (lookaheads != null) {
+			BitSet[] kept = new BitSet[closure.length];
+			for (int i = 0; i < closure.length; i++)
+				kept[i] = lookaheads[closure[i]];
+			myClosureLookaheads.add(kept);
+		} else
+			myClosureLookaheads.add(null);
+	}
+
+	/**
+	 * Returns the LR(0) closure of the kernel, sorted.
+	 */
+	private int[] takeClosure(int[] kernel) {
+		int stamp = ++myStamp;
+		List<Integer> closure = new ArrayList<Integer>();
+		for (int item : kernel) {
+			myMarks[item] = stamp;
+			closure.add(item);
+		}
+		for (int item : kernel) {
+			int next = myItemNext[item];
+			if (next < 0 || !amVariable[next])
+				continue;
+			for (int added : myStartItems[next]) {
+				if (myMarks[added] != stamp) {
+					myMarks[added] = stamp;
+					closure.add(added);
+				}
+			}
+		}
+		return toSortedArray(closure);
+	}
+
+	/**
+	 * Returns the LR(1) closure of the kernel, sorted, putting the
+	 * lookaheads of each item into the array by item number. An item gets
+	 * FIRST of what follows the variable it was brought in for, and the
+	 * lookaheads of that item too when what follows is nullable, so
+	 * lookaheads are passed along until none of them grows.
+	 */
+	private int[] takeClosure(Kernel kernel, BitSet[] lookaheads) {
+		List<Integer> closure = new ArrayList<Integer>();
+		int[] work = new int[myItemProduction.length];
+		boolean[] inWork = new boolean[myItemProduction.length];
+		int numWork = 0;
+		for (int i = 0; i < kernel.myItems.length; i++) {
+			int item = kernel.myItems[i];
+			lookaheads[item] = (BitSet) kernel.myLookaheads[i].clone();
+			closure.add(item);
+			work[numWork++] = item;
+			inWork[item] = true;
+		}
+		while (numWork > 0) {
+			int item = work[--numWork];
+			inWork[item] = false;
+			int next = myItemNext[item];
+			if (next < 0 || !amVariable[next])
+				continue;
+			BitSet passed = (BitSet) myFirstAfter[item].clone();
+			if (amNullableFrom[item + 1])
+				passed.or(lookaheads[item]);
+			for (int p : myProductionsOf[next]) {
+				int added = myItemBase[p];
+				BitSet current = lookaheads[added];
+				boolean grew;
+				if (current == null) {
+					lookaheads[added] = (BitSet) passed.clone();
+					closure.add(added);
+					grew = true;
+				} else {
+					int before = current.cardinality();
+					current.or(passed);
+					grew = current.cardinality() != before;
+				}
+				if (grew && !inWork[added]) {
+					work[numWork++] = added;
+					inWork[added] = true;
+				}
+			}
+		}
+		return toSortedArray(closure);
+	}
+
+	private static int[] toSortedArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		Arrays.sort(array);
+		return array;
+	}
+
+	/**
+	 * Finds the lookaheads of every reduction in the LR(0) automaton. The
+	 * lookaheads of a reduction by A -> w in state q are FOLLOW of each
+	 * transition on A from a state p that w leads from to q, where FOLLOW of
+	 * a transition is what the automaton can read right after it (Read) and
+	 * what follows each transition that it completes a right side for
+	 * (includes).
+	 */
+	private void findLALRLookaheads() {
+		int numStates = myKernels.size();
+		int[][] transitions = new int[numStates][];
+		List<Integer> froms = new ArrayList<Integer>();
+		List<Integer> symbols = new ArrayList<Integer>();
+		for (int s = 0; s < numStates; s++) {
+			int[] gotos = myGotos.get(s);
+			transitions[s] = new int[myEndID];
+			Arrays.fill(transitions[s], -1);
+			for (int v = 0; v < myEndID; v++) {
+				if (amVariable[v] && gotos[v] >= 0) {
+					transitions[s][v] = froms.size();
+					froms.add(s);
+					symbols.add(v);
+				}
+			}
+		}
+		int n = froms.size();
+
+		BitSet[] read = new BitSet[n];
+		int[][] reads = new int[n][];
+		for (int x = 0; x < n; x++) {
+			int to = myGotos.get(froms.get(x))[symbols.get(x)];
+			int[] gotos = myGotos.get(to);
+			read[x] = new BitSet();
+			List<Integer> edges = new ArrayList<Integer>();
+			for (int s = 0; s < myEndID; s++) {
+				if (gotos[s] < 0)
+					continue;
+				if (!amVariable[s])
+					read[x].set(s);
+				else if (amNullable[s])
+					edges.add(transitions[to][s]);
+			}
+			reads[x] = toSortedArray(edges);
+		}
+		// The start production is followed by the end of the input.
+		int startSymbol = myRHS[0].length > 0 ? myRHS[0][0] : -1;
+		if (startSymbol >= 0 && transitions[0][startSymbol] >= 0)
+			read[transitions[0][startSymbol]].set(myEndID);
+		digraph(reads, read);
+
+		List<List<Integer>> includes = new ArrayList<List<Integer>>();
+		for (int x = 0; x < n; x++)
+			includes.add(new ArrayList<Integer>());
+		List<Map<Integer, List<Integer>>> lookback = new ArrayList<Map<Integer, List<Integer>>>();
+		for (int s = 0; s < numStates; s++)
+			lookback.add(new HashMap<Integer, List<Integer>>());
+		for (int x = 0; x < n; x++) {
+			for (int p : myProductionsOf[symbols.get(x)]) {
+				int state = froms.get(x);
+				int[] rhs = myRHS[p];
+				for (int i = 0; i < rhs.length; i++) {
+					if (amVariable[rhs[i]]
+							&& amNullableFrom[myItemBase[p] + i + 1])
+						includes.get(transitions[state][rhs[i]]).add(x);
+					state = myGotos.get(state)[rhs[i]];
+				}
+				int reduce = myItemBase[p] + rhs.length;
+				List<Integer> back = lookback.get(state).get(reduce);
+				if (back == null)
+					lookback.get(state).put(reduce, back = new ArrayList<Integer>());
+				back.add(x);
+			}
+		}
+		int[][] includesArray = new int[n][];
+		BitSet[] follow = new BitSet[n];
+		for (int x = 0; x < n; x++) {
+			includesArray[x] = toSortedArray(includes.get(x));
+			follow[x] = (BitSet) read[x].clone();
+		}
+		digraph(includesArray, follow);
+
+		for (int s = 0; s < numStates; s++) {
+			Map<Integer, BitSet> reduce = myReduceLookaheads.get(s);
+			for (Integer item : reduce.keySet()) {
+				BitSet lookaheads = new BitSet();
+				List<Integer> back = lookback.get(s).get(item);
+				if (back != null) {
+					for (int x : back)
+						lookaheads.or(follow[x]);
+				}
+				reduce.put(item, lookaheads);
+			}
+		}
+	}
+
+	/**
+	 * Makes the set of each node the union of its own set and the sets of
+	 * every node it reaches by the relation, finding the strongly connected
+	 * components as it goes so each set is only passed along once, as in
+	 * DeRemer and Pennello's digraph. An explicit stack stands in for
+	 * recursion, so long chains of nodes do not overflow the call stack.
+	 */
+	private static void digraph(int[][] relation, BitSet[] sets) {
+		int n = sets.length;
+		int[] depth = new int[n];
+		int[] entry = new int[n];
+		int[] stack = new int[n];
+		int top = 0;
+		int[] calls = new int[n];
+		int[] edges = new int[n];
+		int numCalls = 0;
+		for (int start = 0; start < n; start++) {
+			if (depth[start] != 0)
+				continue;
+			stack[top++] = start;
+			depth[start] = entry[start] = top;
+			calls[numCalls] = start;
+			edges[numCalls++] = 0;
+			while (numCalls > 0) {
+				int x = calls[numCalls - 1];
+				if (edges[numCalls - 1] < relation[x].length) {
+					int y = relation[x][edges[numCalls - 1]++];
+					if (depth[y] == 0) {
+						stack[top++] = y;
+						depth[y] = entry[y] = top;
+						calls[numCalls] = y;
+						edges[numCalls++] = 0;
+					} else {
+						depth[x] = Math.min(depth[x], depth[y]);
+						sets[x].or(sets[y]);
+					}
+					continue;
+				}
+				numCalls--;
+				if (depth[x] == entry[x]) {
+					// x is the root of its component, which shares its set.
+					int w;
+					do {
+						w = stack[--top];
+						depth[w] = Integer.MAX_VALUE;
+						sets[w] = sets[x];
+					} while (w != x);
+				}
+				if (numCalls > 0) {
+					int parent = calls[numCalls - 1];
+					depth[parent] = Math.min(depth[parent], depth[x]);
+					sets[parent].or(sets[x]);
+				}
+			}
+		}
+	}
+
+	public int getNumberOfStates() {
+		return myKernels.size();
+	}
+
+	/**
+	 * Returns the items of the closure of the state.
+	 */
+	public Set<SLR1Production> getItems(int state) {
+		Set<SLR1Production> items = new TreeSet<SLR1Production>();
+		for (int item : myClosures.get(state))
+			items.add(getItemObject(item));
+		return items;
+	}
+
+	/**
+	 * Returns the lookaheads of the items of the state, of every item for
+	 * canonical LR(1) and of the reduce items for LALR(1), or null for
+	 * SLR(1), which reduces on FOLLOW sets.
+	 */
+	public Map<SLR1Production, Set<Terminal>> getLookaheads(int state) {
+		if (myType == LRTableType.SLR1)
+			return null;
+		Map<SLR1Production, Set<Terminal>> lookaheads = new TreeMap<SLR1Production, Set<Terminal>>();
+		if (myType == LRTableType.LR1) {
+			int[] closure = myClosures.get(state);
+			BitSet[] sets = myClosureLookaheads.get(state);
+			for (int i = 0; i < closure.length; i++)
+				lookaheads.put(getItemObject(closure[i]), toTerminals(sets[i]));
+		} else {
+			for (Map.Entry<Integer, BitSet> e : myReduceLookaheads.get(state)
+					.entrySet())
+				lookaheads.put(getItemObject(e.getKey()),
+						toTerminals(e.getValue()));
+		}
+		return lookaheads;
+	}
+
+	/**
+	 * Returns the state reached from the state on the symbol, or -1 if
+	 * there is none.
+	 */
+	public int getGoto(int state, Symbol symbol) {
+		Integer id = mySymbolIDs.get(symbol);
+		return id == null ? -1 : myGotos.get(state)[id];
+	}
+
+	/**
+	 * Returns the symbols with transitions from the state, in order.
+	 */
+	public List<Symbol> getTransitionSymbols(int state) {
+		List<Symbol> symbols = new ArrayList<Symbol>();
+		int[] gotos = myGotos.get(state);
+		for (int s = 0; s < myEndID; s++) {
+			if (gotos[s] >= 0)
+				symbols.add(mySymbols[s]);
+		}
+		return symbols;
+	}
+
+	private SLR1Production getItemObject(int item) {
+		if (myItemObjects[item] == null) {
+			Production p = myProductions[myItemProduction[item]];
+			int dot = item - myItemBase[myItemProduction[item]];
+			myItemObjects[item] = p.isLambdaProduction() ? new SLR1Production(
+					p) : new SLR1Production(p, dot);
+		}
+		return myItemObjects[item];
+	}
+
+	private Set<Terminal> toTerminals(BitSet ids) {
+		Set<Terminal> terminals = new TreeSet<Terminal>();
+		for (int t = ids.nextSetBit(0); t >= 0; t = ids.nextSetBit(t + 1))
+			terminals.add((Terminal) mySymbols[t]);
+		return terminals;
+	}
+
+	/**
+	 * The kernel of a state, that is its items other than those added by
+	 * the closure, with their lookaheads for canonical LR(1).
+	 */
+	private static class Kernel {
+		private final int[] myItems;
+		private final BitSet[] myLookaheads;
+		private final int myHash;
+
+		private Kernel(int[] items, BitSet[] lookaheads) {
+			myItems = items;
+			myLookaheads = lookaheads;
+			myHash = Arrays.hashCode(items) * 31
+					+ (lookaheads == null ? 0 : Arrays.hashCode(lookaheads));
+		}
+
+		@Override
+		public int hashCode() {
+			return myHash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Kernel))
+				return false;
+			Kernel other = (Kernel) obj;
+			return myHash == other.myHash
+					&& Arrays.equals(myItems, other.myItems)
+					&& Arrays.equals(myLookaheads, other.myLookaheads);
+		}
+	}
+
+}
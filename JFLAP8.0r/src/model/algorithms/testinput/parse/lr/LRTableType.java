@@ -0,0 +1,26 @@
+package model.algorithms.testinput.parse.lr;
+
+/**
+ * The kinds of LR parse table an {@link SLR1DFA} can be built for. They
+ * differ in how the lookahead terminals of each reduction are found, and
+ * for canonical LR(1) in the states themselves.
+ */
+public enum LRTableType {
+	/** LR(0) states, reducing on the FOLLOW set of the left side */
+	SLR1("SLR(1)"),
+	/** LR(0) states, with lookaheads found by DeRemer and Pennello's method */
+	LALR1("LALR(1)"),
+	/** States told apart by the lookaheads of their items as well */
+	LR1("LR(1)");
+
+	private String myName;
+
+	private LRTableType(String name) {
+		myName = name;
+	}
+
+	@Override
+	public String toString() {
+		return myName;
+	}
+}
@@ -1,8 +1,13 @@
 package model.algorithms.testinput.parse.lr;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import universe.preferences.JFLAPPreferences;
+
 import debug.JFLAPDebug;
 
 import model.ClosureHelper;
@@ -19,21 +24,39 @@ import model.symbols.Symbol;
 public class SLR1DFA extends FiniteStateAcceptor {
 
 	private Grammar myGrammar;
+	private LRTableType myType;
 
 	public SLR1DFA(Grammar g) {
 		this(g, true);
 	}
 
+	/**
+	 * Creates the SLR(1) automaton of the grammar, or if it should not be
+	 * complete, just its start state so the rest can be added a step at a
+	 * time.
+	 */
 	public SLR1DFA(Grammar g, boolean complete) {
+		init(g, LRTableType.SLR1);
+		if (complete)
+			buildAutomaton();
+		else
+			createAndSetStartState();
+	}
+
+	/**
+	 * Creates the complete automaton of the grammar for the kind of table,
+	 * whose states know the lookaheads of their items unless it is SLR(1).
+	 */
+	public SLR1DFA(Grammar g, LRTableType type) {
+		init(g, type);
+		buildAutomaton();
+	}
+
+	private void init(Grammar g, LRTableType type) {
 		myGrammar = createModifiedGrammar(g);
+		myType = type;
 		this.getInputAlphabet().addAll(g.getTerminals());
 		this.getInputAlphabet().addAll(g.getVariables());
-
-		createAndSetStartState();
-		if (complete){
-			completeDFA();
-		}
-			
 	}
 
 	private Grammar createModifiedGrammar(Grammar g) {
@@ -68,6 +91,36 @@ public class SLR1DFA extends FiniteStateAcceptor {
 		return sNew;
 	}
 
+	/**
+	 * Adds every state and transition at once, numbering the states in the
+	 * order {@link #completeDFA()} would. Each set is added to in one go,
+	 * as each addition makes the automaton look over all its transitions.
+	 */
+	private void buildAutomaton() {
+		LRAutomatonBuilder builder = new LRAutomatonBuilder(myGrammar, myType);
+		SLR1DFAState[] states = new SLR1DFAState[builder.getNumberOfStates()];
+		List<SLR1DFAState> finals = new ArrayList<SLR1DFAState>();
+		for (int i = 0; i < states.length; i++) {
+			states[i] = new SLR1DFAState(
+					JFLAPPreferences.getDefaultStateNameBase() + i, i,
+					builder.getItems(i), builder.getLookaheads(i));
+			if (shouldBeFinal(states[i]))
+				finals.add(states[i]);
+		}
+		this.getStates().addAll(Arrays.asList(states));
+		this.getFinalStateSet().addAll(finals);
+		this.setStartState(states[0]);
+
+		List<FSATransition> transitions = new ArrayList<FSATransition>();
+		for (int i = 0; i < states.length; i++) {
+			for (Symbol s : builder.getTransitionSymbols(i)) {
+				SLR1DFAState to = states[builder.getGoto(i, s)];
+				transitions.add(new FSATransition(states[i], to, s));
+			}
+		}
+		this.getTransitions().addAll(transitions);
+	}
+
 	private boolean shouldBeFinal(SLR1DFAState sNew) {
 		return !sNew.getReduceProductions().isEmpty();
 	}
@@ -146,5 +199,9 @@ public class SLR1DFA extends FiniteStateAcceptor {
 		return myGrammar;
 	}
 
+	public LRTableType getTableType() {
+		return myType;
+	}
+
 	
 }
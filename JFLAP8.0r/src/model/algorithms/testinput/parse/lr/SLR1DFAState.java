@@ -1,7 +1,9 @@
 package model.algorithms.testinput.parse.lr;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import util.UtilFunctions;
@@ -13,12 +15,24 @@ import model.symbols.Symbol;
 public class SLR1DFAState extends State{
 
 	private Set<SLR1Production> myProductions;
+	private Map<SLR1Production, Set<Terminal>> myLookaheads;
 
 	public SLR1DFAState(String name, int id, Set<SLR1Production> closure) {
 		super(name, id);
 		myProductions = new TreeSet<SLR1Production>(closure);
 	}
 
+	/**
+	 * Creates a state whose items have the given lookaheads, as in an LALR(1)
+	 * or LR(1) automaton, rather than reducing on FOLLOW sets.
+	 */
+	public SLR1DFAState(String name, int id, Set<SLR1Production> closure,
+			Map<SLR1Production, Set<Terminal>> lookaheads) {
+		this(name, id, closure);
+		if (lookaheads != null)
+			myLookaheads = new TreeMap<SLR1Production, Set<Terminal>>(lookaheads);
+	}
+
 	public SLR1DFAState(State s, Set<SLR1Production> closure) {
 		this(s.getName(), s.getID(), closure);
 	}
@@ -31,8 +45,27 @@ public class SLR1DFAState extends State{
 		return myProductions.toArray(new SLR1Production[0]);
 	}
 	
+	/**
+	 * Returns the terminals the item is followed by in this state, or null
+	 * if this state has no lookaheads for it.
+	 */
+	public Set<Terminal> getLookaheads(SLR1Production p) {
+		return myLookaheads == null ? null : myLookaheads.get(p);
+	}
+
 	public String createLabel() {
-		return UtilFunctions.createDelimitedString(myProductions, "\n");
+		if (myLookaheads == null)
+			return UtilFunctions.createDelimitedString(myProductions, "\n");
+		String label = "";
+		for (SLR1Production p : myProductions) {
+			if (label.length() > 0)
+				label += "\n";
+			label += p;
+			Set<Terminal> lookaheads = myLookaheads.get(p);
+			if (lookaheads != null)
+				label += ", " + UtilFunctions.createDelimitedString(lookaheads, "/");
+		}
+		return label;
 	}
 	
 	@Override
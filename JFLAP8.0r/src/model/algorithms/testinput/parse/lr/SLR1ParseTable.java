@@ -2,6 +2,9 @@ package model.algorithms.testinput.parse.lr;
 
 import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -36,20 +39,34 @@ public class SLR1ParseTable extends ParseTable{
 	private Set<SLR1DFAState> myIncompleted;
 	private Grammar myModifiedGrammar;
 	private Symbol[] myColumns;
+	private Map<Symbol, Integer> myColumnIndices;
 	private int myNumRows;
 	private Set<SLR1rule> myTable[][];
 	private ArrayList<Production> myOrderedProductions;
+	private Map<Production, Integer> myProductionIndices;
 	private Grammar myOriginalGrammar;
 
 	public SLR1ParseTable(Grammar g){
 		this(new FirstFollowTable(g), new SLR1DFA(g), true);
 	}
 
+	/**
+	 * Creates the complete table of the given kind, which for LALR(1) and
+	 * LR(1) reduces on the lookaheads of the states of its automaton rather
+	 * than on FOLLOW sets.
+	 */
+	public SLR1ParseTable(Grammar g, LRTableType type){
+		this(new FirstFollowTable(g), new SLR1DFA(g, type), true);
+	}
+
 	public SLR1ParseTable(FirstFollowTable table, 
 			SLR1DFA dfa, boolean complete) {
 		Set<Symbol> col = new TreeSet<Symbol>(dfa.getInputAlphabet());
 		col.add(JFLAPPreferences.getEndOfStringMarker());
 		myColumns = col.toArray(new Symbol[0]);
+		myColumnIndices = new HashMap<Symbol, Integer>();
+		for (int i = 0; i < myColumns.length; i++)
+			myColumnIndices.put(myColumns[i], i);
 		myNumRows = dfa.getStates().size();
 		initTable();
 		myFirstFollow = table;
@@ -57,6 +74,9 @@ public class SLR1ParseTable extends ParseTable{
 		myModifiedGrammar = mySLR1DFA.getGrammar();
 		myOriginalGrammar = myFirstFollow.getAssociatedGrammar();
 		myOrderedProductions = new ArrayList<Production>(myModifiedGrammar.getProductionSet());
+		myProductionIndices = new HashMap<Production, Integer>();
+		for (int i = 0; i < myOrderedProductions.size(); i++)
+			myProductionIndices.put(myOrderedProductions.get(i), i);
 		myIncompleted = new TreeSet<SLR1DFAState>();
 		for (State s: dfa.getStates()){
 			myIncompleted.add((SLR1DFAState) s);
@@ -65,13 +85,14 @@ public class SLR1ParseTable extends ParseTable{
 			completeTable();
 	}
 
+	/**
+	 * Makes the table with no cells filled in. Each cell gets its set of
+	 * rules when the first is added, as most cells of a large table are
+	 * empty. The rules are kept in the order they were added, since they
+	 * cannot be compared, so in a conflict the shift comes first.
+	 */
 	private void initTable() {
 		myTable = new Set[myNumRows][myColumns.length];
-		for (Set<SLR1rule>[] set: myTable){
-			for (int i = 0; i<set.length;i++){
-				set[i] = new TreeSet<SLR1rule>();
-			}
-		}
 	}
 
 	private void completeTable() {
@@ -122,9 +143,11 @@ public class SLR1ParseTable extends ParseTable{
 			return;
 		}
 		
-		Set<Terminal> followA = myFirstFollow.getFollow(A);
-		for (Terminal t: followA){
-			int pIndex = myOrderedProductions.indexOf(p.createNormalProduction());
+		Set<Terminal> lookaheads = from.getLookaheads(p);
+		if (lookaheads == null)
+			lookaheads = myFirstFollow.getFollow(A);
+		int pIndex = myProductionIndices.get(p.createNormalProduction());
+		for (Terminal t: lookaheads){
 			addRule(new ReduceRule(pIndex), from, t);
 		}
 		
@@ -134,23 +157,33 @@ public class SLR1ParseTable extends ParseTable{
 		return myOrderedProductions.get(i);
 	}
 
+	int getNumberOfProductions() {
+		return myOrderedProductions.size();
+	}
+
+	/**
+	 * Returns the symbols of the columns, in order.
+	 */
+	Symbol[] getColumns() {
+		return myColumns;
+	}
+
 	public void addRule(SLR1rule rule, SLR1DFAState s, Symbol sym) {
 		int r = s.getID();
 		int c = getColumnForSymbol(sym);
+		if (myTable[r][c] == null)
+			myTable[r][c] = new LinkedHashSet<SLR1rule>();
 		myTable[r][c].add(rule);
 	}
 
 	private int getColumnForSymbol(Symbol sym) {
-		for (int i =0; i< myColumns.length; i++){
-			if (myColumns[i].equals(sym))
-				return i;
-		}
-		return -1;
+		Integer c = myColumnIndices.get(sym);
+		return c == null ? -1 : c;
 	}
 
 	private SLR1DFAState getFirstIncompleteState() {
 		if (!isIncomplete()) return null;
-		return myIncompleted.toArray(new SLR1DFAState[0])[0];
+		return myIncompleted.iterator().next();
 	}
 
 	private boolean isIncomplete() {
@@ -165,6 +198,22 @@ public class SLR1ParseTable extends ParseTable{
 		return mySLR1DFA;
 	}
 
+	/**
+	 * Returns the number of cells with more than one rule, between which
+	 * the parser cannot choose, so the grammar is of the kind of this table
+	 * when there are none.
+	 */
+	public int getNumberOfConflicts() {
+		int conflicts = 0;
+		for (Set<SLR1rule>[] row : myTable) {
+			for (Set<SLR1rule> rules : row) {
+				if (rules != null && rules.size() > 1)
+					conflicts++;
+			}
+		}
+		return conflicts;
+	}
+
 	public SLR1rule getRule(State state, Symbol s) {
 		int r = state.getID();
 		int c = getColumnForSymbol(s);
@@ -175,7 +224,12 @@ public class SLR1ParseTable extends ParseTable{
 	public String toString() {
 		String str = "\t" + UtilFunctions.toDelimitedString(myColumns, "\t") + "\n";
 		for (int r = 0; r < myNumRows; r++){
-		str += r + "\t" + UtilFunctions.toDelimitedString(myTable[r],"\t") +"\n";
+			Set<SLR1rule>[] row = myTable[r].clone();
+			for (int c = 0; c < row.length; c++){
+				if (row[c] == null)
+					row[c] = new LinkedHashSet<SLR1rule>();
+			}
+			str += r + "\t" + UtilFunctions.toDelimitedString(row,"\t") +"\n";
 		}
 		return str;
 	}
@@ -193,8 +247,8 @@ public class SLR1ParseTable extends ParseTable{
 	@Override
 	public SLR1rule getValueAt(int r, int c) {
 		Set<SLR1rule> rules = myTable[r][c];
-		if (rules.isEmpty())
+		if (rules == null || rules.isEmpty())
 			return null;
-		return (SLR1rule) rules.toArray()[0];
+		return rules.iterator().next();
 	}
 }
@@ -136,6 +136,20 @@ public class AutoSimulator extends AutomatonSimulator {
 		return mySimulator.getSpecialAcceptCase();
 	}
 
+	/**
+	 * @see SingleInputSimulator#getNumPruned()
+	 */
+	public int getNumPruned() {
+		return mySimulator.getNumPruned();
+	}
+
+	/**
+	 * @see SingleInputSimulator#getNumLooping()
+	 */
+	public int getNumLooping() {
+		return mySimulator.getNumLooping();
+	}
+
 	public void beginSimulation(SymbolString input) {
 		mySimulator.beginSimulation(input);
 	}
@@ -0,0 +1,425 @@
+package model.algorithms.testinput.simulate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import model.algorithms.testinput.simulate.configurations.FSAConfiguration;
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+import model.symbols.SymbolTable;
+
+/**
+ * A non-interactive simulator for {@link FiniteStateAcceptor}s meant for bulk
+ * accept/reject checks. On construction the automaton is compiled once:
+ * states are numbered densely, input symbols take their IDs from the
+ * automaton's {@link SymbolTable}, transitions on multiple symbols are
+ * expanded into chains of internal nodes, and lambda closures are
+ * precomputed as bitsets. Inputs are then run against the
+ * resulting table without creating any {@link Configuration}s.
+ * <p>
+ * If the compiled automaton is deterministic a plain transition table is
+ * used, otherwise the set of current states is tracked as a bitset. The
+ * verdicts match those of {@link AutoSimulator#getNextAccept()}, although
+ * this simulator also terminates on automata with lambda cycles.
+ * <p>
+ * The compiled table is a snapshot: changes made to the automaton after
+ * construction are not seen, so a new simulator should be created instead.
+ */
+public class CompiledFSASimulator extends AutomatonSimulator {
+
+	private static final int NONE = -1;
+
+	private int myNumNodes;
+	private int myWords;
+	private int myStart;
+	private boolean[] myFinal;
+	private long[] myFinalBits;
+	private boolean amDeterministic;
+
+	/** node id -> state, or null for internal nodes of multi-symbol transitions */
+	private State[] myStates;
+	private SymbolTable mySymbolTable;
+	private int myNumSymbols;
+
+	/** [node][symbol] -> next node, only used if deterministic */
+	private int[][] myTable;
+	/** [node][symbol] -> successor nodes, and the transitions they came from */
+	private int[][][] mySuccessors;
+	private FSATransition[][][] mySuccessorTransitions;
+	/** [node] -> lambda successor nodes, and the transitions they came from */
+	private int[][] myLambda;
+	private FSATransition[][] myLambdaTransitions;
+	/** [node] -> lambda closure of that node as a bitset */
+	private long[][] myClosures;
+
+	private SymbolString myInput;
+
+	public CompiledFSASimulator(FiniteStateAcceptor fsa) {
+		super(fsa);
+		compile(fsa);
+	}
+
+	@Override
+	public FiniteStateAcceptor getAutomaton() {
+		return (FiniteStateAcceptor) super.getAutomaton();
+	}
+
+	/**
+	 * Returns true if the compiled automaton has no lambda transitions and
+	 * at most one move per state on every symbol, in which case inputs are
+	 * run against a plain transition table.
+	 *
+	 * @return
+	 */
+	public boolean isDeterministic() {
+		return amDeterministic;
+	}
+
+	public int getNumberOfNodes() {
+		return myNumNodes;
+	}
+
+	/**
+	 * Returns true if the input is accepted by the compiled automaton.
+	 *
+	 * @param input
+	 * @return
+	 */
+	public boolean accepts(SymbolString input) {
+		if (myStart == NONE)
+			return false;
+		int[] ids = toSymbolIDs(input);
+		if (ids == null)
+			return false;
+		if (amDeterministic)
+			return acceptsDeterministic(ids);
+		return acceptsNondeterministic(ids);
+	}
+
+	/**
+	 * Finds an accepting path for the input with the fewest transitions and
+	 * replays it as a {@link ConfigurationChain}, so that it may be shown in
+	 * a trace exactly like those found by {@link SingleInputSimulator}.
+	 *
+	 * @param input
+	 * @return the accepting chain, or null if the input is rejected.
+	 */
+	public ConfigurationChain getAcceptingChain(SymbolString input) {
+		List<FSATransition> path = getAcceptingPath(input);
+		if (path == null)
+			return null;
+		FiniteStateAcceptor fsa = getAutomaton();
+		Configuration current = new FSAConfiguration(fsa,
+				fsa.getStartState(), 0, input);
+		ConfigurationChain chain = new ConfigurationChain(current, null, "0");
+
+		for (FSATransition trans : path) {
+			LinkedList<Configuration> next = current.getNextConfigurations();
+			for (Configuration c : next) {
+				if (trans.equals(c.getTransitionTo())) {
+					current = c;
+					break;
+				}
+			}
+			chain.add(current);
+		}
+		if (!current.isAccept())
+			chain.add((Configuration) current.getNextConfigurations()
+					.getFirst());
+		return chain;
+	}
+
+	/**
+	 * Returns the transitions along a shortest accepting path for the input,
+	 * or null if the input is rejected.
+	 *
+	 * @param input
+	 * @return
+	 */
+	public List<FSATransition> getAcceptingPath(SymbolString input) {
+		if (!accepts(input))
+			return null;
+		int[] ids = toSymbolIDs(input);
+		int len = ids.length;
+
+		// breadth first search over (node, position) pairs
+		Map<Long, Long> parents = new HashMap<Long, Long>();
+		Map<Long, FSATransition> via = new HashMap<Long, FSATransition>();
+		LinkedList<Long> queue = new LinkedList<Long>();
+		long start = key(myStart, 0);
+		parents.put(start, null);
+		queue.add(start);
+
+		Long found = null;
+		while (!queue.isEmpty()) {
+			long k = queue.removeFirst();
+			int node = (int) (k % myNumNodes), pos = (int) (k / myNumNodes);
+			if (pos == len && myFinal[node]) {
+				found = k;
+				break;
+			}
+			for (int i = 0; i < myLambda[node].length; i++)
+				visit(k, key(myLambda[node][i], pos),
+						myLambdaTransitions[node][i], parents, via, queue);
+			if (pos == len)
+				continue;
+			int[] succ = mySuccessors[node][ids[pos]];
+			for (int i = 0; i < succ.length; i++)
+				visit(k, key(succ[i], pos + 1),
+						mySuccessorTransitions[node][ids[pos]][i], parents,
+						via, queue);
+		}
+
+		LinkedList<FSATransition> path = new LinkedList<FSATransition>();
+		for (Long k = found; parents.get(k) != null; k = parents.get(k)) {
+			// only arrivals at real states are steps in the automaton
+			if (myStates[(int) (k % myNumNodes)] != null)
+				path.addFirst(via.get(k));
+		}
+		return path;
+	}
+
+	private void visit(long from, long to, FSATransition trans,
+			Map<Long, Long> parents, Map<Long, FSATransition> via,
+			LinkedList<Long> queue) {
+		if (parents.containsKey(to))
+			return;
+		parents.put(to, from);
+		via.put(to, trans);
+		queue.add(to);
+	}
+
+	private long key(int node, int pos) {
+		return (long) pos * myNumNodes + node;
+	}
+
+	private boolean acceptsDeterministic(int[] ids) {
+		int current = myStart;
+		for (int id : ids) {
+			current = myTable[current][id];
+			if (current == NONE)
+				return false;
+		}
+		return myFinal[current];
+	}
+
+	private boolean acceptsNondeterministic(int[] ids) {
+		long[] current = myClosures[myStart].clone();
+		long[] next = new long[myWords];
+
+		for (int id : ids) {
+			Arrays.fill(next, 0);
+			boolean any = false;
+			for (int w = 0; w < myWords; w++) {
+				long word = current[w];
+				while (word != 0) {
+					int node = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					for (int to : mySuccessors[node][id]) {
+						or(next, myClosures[to]);
+						any = true;
+					}
+				}
+			}
+			if (!any)
+				return false;
+			long[] temp = current;
+			current = next;
+			next = temp;
+		}
+		for (int w = 0; w < myWords; w++) {
+			if ((current[w] & myFinalBits[w]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	private int[] toSymbolIDs(SymbolString input) {
+		int[] ids = new int[input.size()];
+		int i = 0;
+		for (Symbol s : input) {
+			int id = mySymbolTable.getID(s);
+			if (id < 0 || id >= myNumSymbols)
+				return null;
+			ids[i++] = id;
+		}
+		return ids;
+	}
+
+	private static void or(long[] into, long[] from) {
+		for (int w = 0; w < into.length; w++)
+			into[w] |= from[w];
+	}
+
+	private void compile(FiniteStateAcceptor fsa) {
+		TreeMap<State, Integer> stateIDs = new TreeMap<State, Integer>();
+		List<State> nodes = new ArrayList<State>();
+		for (State s : fsa.getStates()) {
+			stateIDs.put(s, nodes.size());
+			nodes.add(s);
+		}
+
+		mySymbolTable = fsa.getSymbolTable();
+
+		// edges are (from, symbol or NONE for lambda, to, transition)
+		List<int[]> edges = new ArrayList<int[]>();
+		List<FSATransition> edgeTransitions = new ArrayList<FSATransition>();
+		for (FSATransition trans : fsa.getTransitions()) {
+			Integer from = stateIDs.get(trans.getFromState()),
+					to = stateIDs.get(trans.getToState());
+			if (from == null || to == null)
+				continue;
+			Symbol[] input = trans.getInput();
+			if (input.length == 0) {
+				edges.add(new int[] { from, NONE, to });
+				edgeTransitions.add(trans);
+				continue;
+			}
+			int current = from;
+			for (int i = 0; i < input.length; i++) {
+				int next = to;
+				if (i < input.length - 1) {
+					next = nodes.size();
+					nodes.add(null);
+				}
+				edges.add(new int[] { current, mySymbolTable.internID(input[i]), next });
+				edgeTransitions.add(trans);
+				current = next;
+			}
+		}
+
+		myNumNodes = nodes.size();
+		myWords = (myNumNodes + 63) >> 6;
+		myStates = nodes.toArray(new State[0]);
+		int numSymbols = myNumSymbols = mySymbolTable.size();
+
+		State start = fsa.getStartState();
+		myStart = start == null || !stateIDs.containsKey(start) ? NONE
+				: stateIDs.get(start);
+		myFinal = new boolean[myNumNodes];
+		myFinalBits = new long[myWords];
+		for (State s : fsa.getFinalStateSet()) {
+			Integer id = stateIDs.get(s);
+			if (id == null)
+				continue;
+			myFinal[id] = true;
+			myFinalBits[id >> 6] |= 1L << id;
+		}
+
+		int[][] outCount = new int[myNumNodes][numSymbols];
+		int[] lambdaCount = new int[myNumNodes];
+		for (int[] e : edges) {
+			if (e[1] == NONE)
+				lambdaCount[e[0]]++;
+			else
+				outCount[e[0]][e[1]]++;
+		}
+
+		amDeterministic = true;
+		mySuccessors = new int[myNumNodes][numSymbols][];
+		mySuccessorTransitions = new FSATransition[myNumNodes][numSymbols][];
+		myLambda = new int[myNumNodes][];
+		myLambdaTransitions = new FSATransition[myNumNodes][];
+		for (int n = 0; n < myNumNodes; n++) {
+			myLambda[n] = new int[lambdaCount[n]];
+			myLambdaTransitions[n] = new FSATransition[lambdaCount[n]];
+			amDeterministic &= lambdaCount[n] == 0;
+			for (int a = 0; a < numSymbols; a++) {
+				mySuccessors[n][a] = new int[outCount[n][a]];
+				mySuccessorTransitions[n][a] = new FSATransition[outCount[n][a]];
+				amDeterministic &= outCount[n][a] <= 1;
+			}
+		}
+
+		for (int i = 0; i < edges.size(); i++) {
+			int[] e = edges.get(i);
+			FSATransition trans = edgeTransitions.get(i);
+			if (e[1] == NONE) {
+				int k = --lambdaCount[e[0]];
+				myLambda[e[0]][k] = e[2];
+				myLambdaTransitions[e[0]][k] = trans;
+			} else {
+				int k = --outCount[e[0]][e[1]];
+				mySuccessors[e[0]][e[1]][k] = e[2];
+				mySuccessorTransitions[e[0]][e[1]][k] = trans;
+			}
+		}
+
+		if (amDeterministic) {
+			myTable = new int[myNumNodes][numSymbols];
+			for (int n = 0; n < myNumNodes; n++) {
+				for (int a = 0; a < numSymbols; a++) {
+					int[] succ = mySuccessors[n][a];
+					myTable[n][a] = succ.length == 0 ? NONE : succ[0];
+				}
+			}
+		}
+		computeClosures();
+	}
+
+	private void computeClosures() {
+		myClosures = new long[myNumNodes][];
+		int[] stack = new int[myNumNodes];
+		for (int n = 0; n < myNumNodes; n++) {
+			long[] closure = new long[myWords];
+			closure[n >> 6] |= 1L << n;
+			int top = 0;
+			stack[top++] = n;
+			while (top > 0) {
+				int current = stack[--top];
+				for (int to : myLambda[current]) {
+					if ((closure[to >> 6] & (1L << to)) != 0)
+						continue;
+					closure[to >> 6] |= 1L << to;
+					stack[top++] = to;
+				}
+			}
+			myClosures[n] = closure;
+		}
+	}
+
+	@Override
+	public void beginSimulation(SymbolString... input) {
+		myInput = input[0];
+	}
+
+	/**
+	 * Returns true if the input given to {@link #beginSimulation(SymbolString...)}
+	 * is accepted.
+	 *
+	 * @return
+	 */
+	public boolean isAccept() {
+		return myInput != null && accepts(myInput);
+	}
+
+	@Override
+	public int getSpecialAcceptCase() {
+		return SingleInputSimulator.DEFAULT;
+	}
+
+	@Override
+	public String getDescriptionName() {
+		return "Compiled Simulate on "
+				+ this.getAutomaton().getDescriptionName();
+	}
+
+	@Override
+	public String getDescription() {
+		return "Runs input against a compiled transition table of the automaton.";
+	}
+
+	@Override
+	public CompiledFSASimulator copy() {
+		return new CompiledFSASimulator(getAutomaton());
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import debug.JFLAPDebug;
 import util.Copyable;
@@ -14,6 +15,8 @@ import model.automata.SingleInputTransition;
 import model.automata.Transition;
 import model.automata.TransitionSet;
 import model.automata.acceptors.Acceptor;
+import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
 
@@ -24,12 +27,14 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 	private int myPrimaryPosition;
 	private int[] myPositions;
 	private SymbolString myPrimary;
+	private SymbolSequence myPrimarySequence;
 	private SymbolString[] myStrings;
 	boolean amAccept;
 	private LinkedList<T> myValidTransitons;
 	private int myNumSecondary;
 	private boolean amReject;
 	private S myAutomaton;
+	private int myEquivalenceHash;
 
 	//TODO: THIS CLASS NEEDS SIGNIFICANT COMMENTS TO EXPLAIN HOW TO USE IT
 
@@ -51,7 +56,7 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 		TransitionSet<T>  transitions = this.getAutomaton().getTransitions();
 		if (!this.shouldFindValidTransitions()) 
 			return valid;
-		for (T trans: transitions.getTransitionsFromState(this.getState())){
+		for (T trans: this.getCandidateTransitions(transitions)){
 			if (this.canMoveAlongTransition(trans)){
 				valid.add(trans);
 			}
@@ -59,6 +64,16 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 		return valid;
 	}
 
+	/**
+	 * Returns the transitions from this configuration's state that are
+	 * worth testing with {@link #canMoveAlongTransition}. Subclasses that
+	 * know the next symbol should narrow this down with
+	 * {@link TransitionSet#getTransitionsFromState(State, Symbol)}.
+	 */
+	protected Set<T> getCandidateTransitions(TransitionSet<T> transitions) {
+		return transitions.getTransitionsFromStateView(this.getState());
+	}
+
 //	private void setToConfig(Configuration setTo) {
 //		myPrimaryPosition = setTo.getPrimaryPosition();
 //		myPositions = setTo.myPositions;
@@ -77,7 +92,18 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 	}
 
 	protected boolean hasNextState(){
-		return !myValidTransitons.isEmpty();
+		return !getValidTransitions().isEmpty();
+	}
+
+	/**
+	 * The valid transitions are found the first time they are needed, so
+	 * that a newly created configuration can be handed state from its
+	 * parent (like the primary {@link SymbolSequence}) before they are.
+	 */
+	private LinkedList<T> getValidTransitions() {
+		if (myValidTransitons == null)
+			myValidTransitons = this.findValidTransitions();
+		return myValidTransitons;
 	}
 
 	public LinkedList<Configuration<S,T>> getNextConfigurations() {
@@ -92,7 +118,7 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 
 		}
 		else {
-			for (T trans : myValidTransitons){
+			for (T trans : getValidTransitions()){
 				Configuration c = createNextConfiguration(trans);
 				configs.add(c);
 				c.setTransitionTo(trans);
@@ -115,17 +141,21 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 		return Acceptor.isFinalState((Acceptor) auto, this.getState());
 	}
 
-	private Configuration<S,T> createNextConfiguration(T trans) {
+	protected Configuration<S,T> createNextConfiguration(T trans) {
 		State s = trans.getToState();
 		int ppos = this.getNextPrimaryPosition(trans);
 		int[] position = this.getNextSecondaryPositions(trans);
+		// Configurations never modify symbols, so the clones share them.
 		SymbolString[] clones = new SymbolString[myStrings.length];
 		for (int i = 0; i < clones.length; i++)
-			clones[i] = myStrings[i].copy();
+			clones[i] = new SymbolString(myStrings[i]);
 		clones = this.assembleUpdatedStrings(clones, trans);
 		
 		try {
-			return createConfig( this.getAutomaton(), s, ppos, myPrimary, position, clones);
+			Configuration<S,T> next = createConfig( this.getAutomaton(), s, ppos, myPrimary, position, clones);
+			if (next.myPrimary == myPrimary)
+				next.myPrimarySequence = myPrimarySequence;
+			return next;
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException("Error creating next Config of class " + this.getClass());
@@ -135,17 +165,17 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 
 	@Override
 	public Configuration<S,T> copy(){
-		LinkedList<SymbolString> clones = new LinkedList<SymbolString>();
-		for (SymbolString string : myStrings){
-			clones.add(string.copy());
+		SymbolString[] clones = new SymbolString[myNumSecondary];
+		for (int i = 0; i < clones.length; i++){
+			clones[i] = new SymbolString(getStringForIndex(i));
 		}
 		try {
 			Configuration<S,T> config = this.createConfig(this.getAutomaton(),
 					myState, 
 					myPrimaryPosition, 
-					usingPrimary() ? myPrimary.copy(): null, 
+					usingPrimary() ? new SymbolString(myPrimary): null, 
 					myPositions, 
-					clones.toArray(new SymbolString[0]));
+					clones);
 			config.setTransitionTo(this.getTransitionTo());
 			return config;
 		} catch (Exception e) {
@@ -189,6 +219,19 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 		return myPrimary;
 	}
 
+	/**
+	 * Returns the primary string as an array backed {@link SymbolSequence},
+	 * which is shared by every configuration stepped from this one. Use this
+	 * instead of {@link #getPrimaryString()} when only reading the string.
+	 * 
+	 * @return
+	 */
+	public SymbolSequence getPrimarySequence(){
+		if (myPrimarySequence == null && myPrimary != null)
+			myPrimarySequence = new SymbolSequence(myPrimary);
+		return myPrimarySequence;
+	}
+
 	public boolean usingPrimary(){
 		return myPrimary != null;
 	}
@@ -230,6 +273,54 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 		amReject = !this.hasNextState() && !this.isAccept();
 	}
 
+	/**
+	 * Returns true if the other configuration is in the same state with the
+	 * same strings and positions, in which case everything reachable from
+	 * one is reachable from the other. Whether either has halted is not
+	 * considered.
+	 * 
+	 * @param other
+	 * @return
+	 */
+	public boolean isEquivalentTo(Configuration<?, ?> other) {
+		if (other == this)
+			return true;
+		if (other.getClass() != this.getClass()
+				|| !myState.equals(other.myState)
+				|| myPrimaryPosition != other.myPrimaryPosition
+				|| myNumSecondary != other.myNumSecondary)
+			return false;
+		if (myPrimary != other.myPrimary
+				&& (myPrimary == null || !myPrimary.equals(other.myPrimary)))
+			return false;
+		for (int i = 0; i < myNumSecondary; i++) {
+			if (getPositionForIndex(i) != other.getPositionForIndex(i)
+					|| !getStringForIndex(i).equals(other.getStringForIndex(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a hash code consistent with {@link #isEquivalentTo(Configuration)}.
+	 * It is computed once, as configurations are not changed after they
+	 * are created.
+	 * 
+	 * @return
+	 */
+	public int getEquivalenceHash() {
+		if (myEquivalenceHash == 0) {
+			int hash = 31 * myState.getID() + myPrimaryPosition;
+			for (int i = 0; i < myNumSecondary; i++) {
+				hash = 31 * hash + getPositionForIndex(i);
+				for (Symbol s : getStringForIndex(i))
+					hash = 31 * hash + s.hashCode();
+			}
+			myEquivalenceHash = hash == 0 ? 1 : hash;
+		}
+		return myEquivalenceHash;
+	}
+
 	@Override
 	public String toString() {
 
@@ -239,8 +330,8 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 				s+= "\t" + this.getPrimaryPresentationName() + ": " + getPrimaryString().toString() + "\n" +
 				"\t" + "Primary Position: " + this.getPrimaryPosition() + "\n";
 		}
-		for (int i = 0; i < myStrings.length; i++){
-			s += "\t" + this.getStringPresentationName(i) + ": " + myStrings[i] + "\n";
+		for (int i = 0; i < myNumSecondary; i++){
+			s += "\t" + this.getStringPresentationName(i) + ": " + getStringForIndex(i) + "\n";
 			s += "\t" + "Position: " + this.getPositionForIndex(i) + "\n";
 		
 		}
@@ -250,7 +341,7 @@ public abstract class Configuration<S extends Automaton<T>, T extends Transition
 
 	public void setState(State s){
 		myState = s;
-		myValidTransitons = this.findValidTransitions();
+		myValidTransitons = null;
 	}
 
 	protected abstract String getPrimaryPresentationName();
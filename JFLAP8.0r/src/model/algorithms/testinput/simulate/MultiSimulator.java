@@ -2,32 +2,139 @@ package model.algorithms.testinput.simulate;
 
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import model.automata.Automaton;
-import model.symbols.Symbol;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.automata.turing.MultiTapeTuringMachine;
 import model.symbols.SymbolString;
+import model.symbols.symbolizer.Symbolizers;
+import universe.preferences.JFLAPPreferences;
 
 /**
- * A simple class designed to save the results for multiple input
- * simulations. Runs simulations in multiple threads.
- * 
- * NOTE: This may never be used, since a direct mvc relationship
- * is no longer necessary. 
- *  
+ * Simulates a batch of inputs on an automaton without interaction, spreading
+ * them over a fixed pool of worker threads.
+ * <p>
+ * Each worker takes the next input, runs it on its own
+ * {@link SingleInputSimulator} (or on a shared {@link CompiledFSASimulator}
+ * for finite state acceptors, if that preference is set) and hands back a
+ * {@link Result}. Results are passed to the {@link ResultListener} in input
+ * order as soon as every earlier input is done, so a long input only holds
+ * back the results after it, not the workers. Each input can be given a
+ * budget of generated configurations and of time, and the whole batch can
+ * be cancelled.
+ * <p>
+ * The automaton must not be changed while a batch is running.
+ *
  * @author Julian
  *
  */
 public class MultiSimulator extends AutomatonSimulator {
 
+	public enum Status {
+		ACCEPT, REJECT, LIMIT, CANCELLED
+	}
+
+	/**
+	 * The outcome of simulating one input of a batch.
+	 */
+	public static class Result {
+		private int myIndex;
+		private SymbolString[] myInput;
+		private Status myStatus;
+		private ConfigurationChain myChain;
+
+		public Result(int index, SymbolString[] input, Status status,
+				ConfigurationChain chain) {
+			myIndex = index;
+			myInput = input;
+			myStatus = status;
+			myChain = chain;
+		}
+
+		/**
+		 * Returns the position of the input in the batch.
+		 */
+		public int getIndex() {
+			return myIndex;
+		}
+
+		public SymbolString[] getInput() {
+			return myInput;
+		}
+
+		public Status getStatus() {
+			return myStatus;
+		}
+
+		public boolean isAccept() {
+			return myStatus == Status.ACCEPT;
+		}
+
+		/**
+		 * Returns the accepting chain for an accepted input, a rejecting
+		 * chain (if there was one) for a rejected input, and null otherwise.
+		 */
+		public ConfigurationChain getChain() {
+			return myChain;
+		}
+
+		@Override
+		public String toString() {
+			return myIndex + ": " + Arrays.toString(myInput) + " " + myStatus;
+		}
+	}
+
+	/**
+	 * Receives the results of a batch. Both methods are called from worker
+	 * threads, one call at a time, and the results come in input order. By
+	 * the time {@link #simulationsDone(boolean)} is called the simulator is
+	 * no longer running, so it may start the next batch.
+	 */
+	public interface ResultListener {
+
+		public void resultReady(Result result);
+
+		/**
+		 * Called once after the last result, or after the results that were
+		 * finished if the batch was cancelled or an input failed.
+		 */
+		public void simulationsDone(boolean cancelled);
+	}
+
 	private int mySpecialCase;
-	private LinkedList<SimulatorThread> myThreads;
-	private boolean[] myResultArray;
+	private int myThreadCount;
+	private int myConfigurationLimit;
+	private long myTimeLimit;
+
+	private ExecutorService myExecutor;
+	private Iterator<SymbolString[]> myInputs;
+	private int myNumTaken;
+	private int myNumRunning;
+	private int myNextResult;
+	private TreeMap<Integer, Result> myPending;
+	private ResultListener myListener;
+	private volatile boolean amCancelled;
+	private RuntimeException myFailure;
+
+	private List<SymbolString[]> myBatch;
 
 	public MultiSimulator(Automaton a, int specialCase) {
 		super(a);
 		mySpecialCase = specialCase;
+		myThreadCount = Runtime.getRuntime().availableProcessors();
+		myPending = new TreeMap<Integer, Result>();
+		myBatch = new ArrayList<SymbolString[]>();
 	}
 
 	@Override
@@ -37,70 +144,333 @@ public class MultiSimulator extends AutomatonSimulator {
 
 	@Override
 	public String getDescription() {
-		return null;
+		return "Simulates a batch of inputs on several threads, "
+				+ "reporting the results in input order.";
 	}
 
 	@Override
 	public Object copy() {
-		return new MultiSimulator(getAutomaton(), getSpecialAcceptCase());
+		MultiSimulator copy = new MultiSimulator(getAutomaton(),
+				getSpecialAcceptCase());
+		copy.setThreadCount(myThreadCount);
+		copy.setConfigurationLimit(myConfigurationLimit);
+		copy.setTimeLimit(myTimeLimit);
+		return copy;
+	}
+
+	@Override
+	public int getSpecialAcceptCase() {
+		return mySpecialCase;
+	}
+
+	/**
+	 * Sets the largest number of worker threads a batch will use.
+	 */
+	public void setThreadCount(int threads) {
+		myThreadCount = Math.max(1, threads);
+	}
+
+	public int getThreadCount() {
+		return myThreadCount;
+	}
+
+	/**
+	 * Sets the number of configurations an input may generate before it is
+	 * given up on with {@link Status#LIMIT}, or 0 for no limit.
+	 */
+	public void setConfigurationLimit(int limit) {
+		myConfigurationLimit = Math.max(0, limit);
 	}
 
+	public int getConfigurationLimit() {
+		return myConfigurationLimit;
+	}
+
+	/**
+	 * Sets the number of milliseconds an input may run before it is given
+	 * up on with {@link Status#LIMIT}, or 0 for no limit.
+	 */
+	public void setTimeLimit(long millis) {
+		myTimeLimit = Math.max(0, millis);
+	}
+
+	public long getTimeLimit() {
+		return myTimeLimit;
+	}
+
+	/**
+	 * Queues each string as a separate single tape input for
+	 * {@link #doAllSimulations()}.
+	 */
 	@Override
 	public void beginSimulation(SymbolString... input) {
-		myResultArray = new boolean[input.length];
-		int i = 0;
-//		for (SymbolString[] inputArray: input){
-//			myThreads.add(new SimulatorThread(i++, inputArray));
-//		}
+		myBatch.clear();
+		for (SymbolString s : input)
+			myBatch.add(new SymbolString[] { s });
 	}
 
-	public boolean[] doAllSimulations(){
-		for (SimulatorThread thread: myThreads){
-			thread.run();
+	/**
+	 * Runs the inputs given to {@link #beginSimulation(SymbolString...)} and
+	 * waits for them to finish.
+	 *
+	 * @return whether each input was accepted
+	 * @throws RuntimeException
+	 *             the exception an input failed with, if one did
+	 */
+	public boolean[] doAllSimulations() {
+		final boolean[] accepted = new boolean[myBatch.size()];
+		simulate(myBatch, new ResultListener() {
+
+			@Override
+			public void resultReady(Result result) {
+				accepted[result.getIndex()] = result.isAccept();
+			}
+
+			@Override
+			public void simulationsDone(boolean cancelled) {
+			}
+		});
+		awaitCompletion();
+		return accepted;
+	}
+
+	public void simulate(List<SymbolString[]> inputs, ResultListener listener) {
+		simulate(new ArrayList<SymbolString[]>(inputs).iterator(), listener);
+	}
+
+	/**
+	 * Starts simulating the inputs and returns at once. Inputs are only
+	 * taken from the iterator as workers become free, so it may read them
+	 * lazily from a file.
+	 *
+	 * @throws IllegalStateException
+	 *             if a batch is already running
+	 */
+	public synchronized void simulate(Iterator<SymbolString[]> inputs,
+			ResultListener listener) {
+		if (isRunning())
+			throw new IllegalStateException(
+					"This simulator is already running a batch.");
+		myInputs = inputs;
+		myListener = listener;
+		myNumTaken = 0;
+		myNextResult = 0;
+		myPending.clear();
+		amCancelled = false;
+		myFailure = null;
+
+		CompiledFSASimulator compiled = null;
+		if (getAutomaton() instanceof FiniteStateAcceptor
+				&& JFLAPPreferences.useCompiledFSASimulation())
+			compiled = new CompiledFSASimulator(
+					(FiniteStateAcceptor) getAutomaton());
+
+		myNumRunning = myThreadCount;
+		myExecutor = Executors.newFixedThreadPool(myThreadCount,
+				new WorkerFactory());
+		for (int i = 0; i < myThreadCount; i++)
+			myExecutor.execute(new Worker(compiled));
+		myExecutor.shutdown();
+	}
+
+	/**
+	 * Stops the batch. Inputs being simulated are reported as
+	 * {@link Status#CANCELLED}, and inputs not yet started are not reported.
+	 */
+	public void cancel() {
+		amCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return amCancelled;
+	}
+
+	/**
+	 * Returns true from the start of a batch until its last worker is done,
+	 * just before {@link ResultListener#simulationsDone(boolean)} is called.
+	 */
+	public synchronized boolean isRunning() {
+		return myNumRunning > 0;
+	}
+
+	/**
+	 * Returns the exception the last batch was stopped by, or null if no
+	 * input failed.
+	 */
+	public synchronized RuntimeException getFailure() {
+		return myFailure;
+	}
+
+	/**
+	 * Waits for the current batch, if any, to finish.
+	 *
+	 * @throws RuntimeException
+	 *             the exception an input failed with, if one did
+	 */
+	public void awaitCompletion() {
+		ExecutorService executor;
+		synchronized (this) {
+			executor = myExecutor;
+		}
+		if (executor == null)
+			return;
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		return myResultArray;
+		RuntimeException failure = getFailure();
+		if (failure != null)
+			throw failure;
 	}
-	
-	@Override
-	public int getSpecialAcceptCase() {
-		return mySpecialCase;
+
+	/**
+	 * Takes the next input, returning its index in the batch or -1 if there
+	 * are no more inputs. The input is stored in <CODE>input[0]</CODE>.
+	 */
+	private synchronized int takeInput(SymbolString[][] input) {
+		if (amCancelled || !myInputs.hasNext())
+			return -1;
+		input[0] = myInputs.next();
+		return myNumTaken++;
 	}
-	
-	
-	public synchronized void signalDone(int id) {
-		myResultArray[id] = myThreads.get(id).isAccept();
-	}
-	
-	
-	private class SimulatorThread extends Thread{
-		private AutoSimulator mySimulator;
-		private boolean amAccept;
-		private boolean amDone;
-		private int myID;
-
-		public SimulatorThread(int id, SymbolString ... input){
-			mySimulator = new AutoSimulator(getAutomaton(), 
-					mySpecialCase);
-			mySimulator.beginSimulation(input);
-			myID = id;
+
+	private synchronized void report(Result result) {
+		myPending.put(result.getIndex(), result);
+		Result next;
+		while ((next = myPending.remove(myNextResult)) != null) {
+			myListener.resultReady(next);
+			myNextResult++;
 		}
-		
-		@Override
-		public void run() {
-			amAccept = mySimulator.getNextAccept() != null;
-			signalDone(myID);
+	}
+
+	/**
+	 * Keeps the first exception an input fails with, and cancels the rest
+	 * of the batch.
+	 */
+	private synchronized void fail(RuntimeException e) {
+		if (myFailure == null)
+			myFailure = e;
+		cancel();
+	}
+
+	private synchronized void workerDone() {
+		if (--myNumRunning == 0)
+			myListener.simulationsDone(amCancelled);
+	}
+
+	private Result simulate(int index, SymbolString[] input,
+			CompiledFSASimulator compiled) {
+		if (compiled != null) {
+			ConfigurationChain chain = compiled.getAcceptingChain(input[0]);
+			return new Result(index, input, chain == null ? Status.REJECT
+					: Status.ACCEPT, chain);
 		}
-		
-		public synchronized boolean isAccept(){
-			return amAccept;
+
+		SingleInputSimulator sim = new SingleInputSimulator(getAutomaton(),
+				mySpecialCase, false);
+		sim.beginSimulation(input);
+		long deadline = myTimeLimit == 0 ? Long.MAX_VALUE : System
+				.currentTimeMillis() + myTimeLimit;
+		int numberGenerated = 0;
+		ConfigurationChain reject = null;
+
+		Set<ConfigurationChain> chains;
+		while (!(chains = sim.getChains()).isEmpty()) {
+			if (amCancelled)
+				return new Result(index, input, Status.CANCELLED, null);
+			numberGenerated += chains.size();
+			for (ConfigurationChain chain : chains) {
+				if (chain.isAccept())
+					return new Result(index, input, Status.ACCEPT, chain);
+				if (chain.isReject() && reject == null)
+					reject = chain;
+			}
+			if ((myConfigurationLimit > 0 && numberGenerated >= myConfigurationLimit)
+					|| System.currentTimeMillis() > deadline)
+				return new Result(index, input, Status.LIMIT, null);
+			sim.step();
 		}
+		return new Result(index, input, Status.REJECT, reject);
 	}
 
+	/**
+	 * Returns the inputs in the scanner, one per whitespace separated token
+	 * (or one token per tape for a multi-tape Turing machine), symbolized
+	 * for the automaton as they are read.
+	 */
+	public static Iterator<SymbolString[]> readInputs(final Scanner sc,
+			final Automaton a) {
+		final int tapes = a instanceof MultiTapeTuringMachine ? ((MultiTapeTuringMachine) a)
+				.getNumTapes() : 1;
+		return new Iterator<SymbolString[]>() {
+
+			@Override
+			public boolean hasNext() {
+				return sc.hasNext();
+			}
 
+			@Override
+			public SymbolString[] next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				SymbolString[] input = new SymbolString[tapes];
+				for (int i = 0; i < tapes; i++) {
+					String in = sc.hasNext() ? sc.next() : "";
+					if (in.equals(JFLAPPreferences.getEmptyString()))
+						in = "";
+					input[i] = Symbolizers.symbolize(in, a);
+				}
+				return input;
+			}
 
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
 
+	private class Worker implements Runnable {
+		private CompiledFSASimulator myCompiled;
 
+		public Worker(CompiledFSASimulator compiled) {
+			myCompiled = compiled;
+		}
 
+		@Override
+		public void run() {
+			try {
+				SymbolString[][] input = new SymbolString[1][];
+				int index;
+				while ((index = takeInput(input)) != -1) {
+					Result result;
+					try {
+						result = simulate(index, input[0], myCompiled);
+					} catch (RuntimeException e) {
+						// Keep the later results flowing; the failure is
+						// thrown from awaitCompletion.
+						fail(e);
+						result = new Result(index, input[0],
+								Status.CANCELLED, null);
+					}
+					report(result);
+				}
+			} finally {
+				workerDone();
+			}
+		}
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private int myCount;
+
+		@Override
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "MultiSimulator-" + myCount++);
+			t.setDaemon(true);
+			return t;
+		}
+	}
 
-	
 }
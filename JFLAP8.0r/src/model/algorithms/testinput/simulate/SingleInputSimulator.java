@@ -14,6 +14,7 @@ import model.automata.Automaton;
 import model.automata.State;
 import model.automata.Transition;
 import model.automata.TransitionSet;
+import model.automata.turing.TuringMachine;
 import model.symbols.SymbolString;
 
 public class SingleInputSimulator extends AutomatonSimulator {
@@ -23,6 +24,15 @@ public class SingleInputSimulator extends AutomatonSimulator {
 	private Configuration myInitialConfiguration;
 	private boolean closure;
 
+	/**
+	 * Every configuration reached so far, or null if duplicates are not
+	 * pruned. Turing machines are not pruned, as comparing whole tapes on
+	 * every step would cost more than it saves.
+	 */
+	private Set<VisitedConfiguration> myVisited;
+	private int myNumPruned;
+	private int myNumLooping;
+
 	public static final int DEFAULT = 0, ACCEPT_BY_EMPTY_STACK = 1;
 
 	public SingleInputSimulator(Automaton a, int specialCase, boolean closure) {
@@ -30,6 +40,8 @@ public class SingleInputSimulator extends AutomatonSimulator {
 		myChains = new LinkedHashSet<ConfigurationChain>();
 		mySpecialCase = specialCase;
 		this.closure = closure;
+		if (!(a instanceof TuringMachine))
+			myVisited = new HashSet<VisitedConfiguration>();
 	}
 
 	public SingleInputSimulator(Automaton a, boolean closure) {
@@ -56,7 +68,7 @@ public class SingleInputSimulator extends AutomatonSimulator {
 				 myChains.remove(chain);
 				// As myChains is clear, don't do anything, just ignore it
 			} else {
-				myChains.addAll(stepAndFork(chain));
+				myChains.addAll(pruneVisited(stepAndFork(chain)));
 			}
 		}
 
@@ -71,7 +83,8 @@ public class SingleInputSimulator extends AutomatonSimulator {
 		ArrayList<ConfigurationChain> chains = new ArrayList<ConfigurationChain>();
 		LinkedList<Configuration> nextConfigs = chain.getCurrentConfiguration()
 				.getNextConfigurations();
-		ConfigurationChain clone = chain.clone();
+		// Only forks need the chain as it was, and cloning it is O(length).
+		ConfigurationChain clone = nextConfigs.size() > 1 ? chain.clone() : null;
 
 		if (closure) {
 			Configuration next = nextConfigs.pollFirst();
@@ -121,6 +134,56 @@ public class SingleInputSimulator extends AutomatonSimulator {
 		return chains;
 	}
 
+	/**
+	 * Drops the chains whose current configuration has been reached before,
+	 * since anything reachable from it is already being explored. Halted
+	 * configurations are always kept so they are still reported.
+	 */
+	private List<ConfigurationChain> pruneVisited(
+			Collection<? extends ConfigurationChain> stepped) {
+		List<ConfigurationChain> kept = new ArrayList<ConfigurationChain>();
+		for (ConfigurationChain chain : stepped) {
+			if (visit(chain))
+				kept.add(chain);
+			else
+				myNumPruned++;
+		}
+		if (kept.isEmpty() && !stepped.isEmpty())
+			myNumLooping++;
+		return kept;
+	}
+
+	private boolean visit(ConfigurationChain chain) {
+		return myVisited == null || chain.isFinished()
+				|| myVisited.add(new VisitedConfiguration(
+						chain.getCurrentConfiguration()));
+	}
+
+	/**
+	 * Returns true if branches that reach an already seen configuration
+	 * are dropped.
+	 */
+	public boolean isPruningDuplicates() {
+		return myVisited != null;
+	}
+
+	/**
+	 * Returns the number of branches dropped since the simulation began
+	 * because they reached a configuration that had already been seen.
+	 */
+	public int getNumPruned() {
+		return myNumPruned;
+	}
+
+	/**
+	 * Returns the number of chains that stopped since the simulation began
+	 * because every configuration they could move to had already been seen,
+	 * meaning they could only go around a cycle.
+	 */
+	public int getNumLooping() {
+		return myNumLooping;
+	}
+
 	private List<ConfigurationChain> getAllAcceptChains() {
 		List<ConfigurationChain> toReturn = new ArrayList<ConfigurationChain>();
 		for (ConfigurationChain chain : myChains) {
@@ -138,12 +201,23 @@ public class SingleInputSimulator extends AutomatonSimulator {
 		// }
 	}
 
+	/**
+	 * Steps every chain that is not frozen back one configuration, and
+	 * forgets the configurations it steps back from, so that stepping
+	 * forward again reaches them again. Chains that were dropped by
+	 * {@link #pruneVisited} are gone for good: stepping back after pruning
+	 * does not bring them back, and they are not counted out of
+	 * {@link #getNumPruned()} or {@link #getNumLooping()}.
+	 */
 	public ConfigurationChain[] reverse() {
 		Set<ConfigurationChain> toRemove = new HashSet<ConfigurationChain>();
 		Set<ConfigurationChain> toAdd = new HashSet<ConfigurationChain>();
 		for (ConfigurationChain chain : myChains) {
 			if (chain.isFrozen())
 				continue;
+			if (myVisited != null && !chain.isFinished())
+				myVisited.remove(new VisitedConfiguration(
+						chain.getCurrentConfiguration()));
 			chain.reverse();
 			if (chain.isEmpty()) {
 				// Fix reverse
@@ -166,6 +240,9 @@ public class SingleInputSimulator extends AutomatonSimulator {
 	public void clear() {
 		myChains.clear();
 		myInitialConfiguration = null;
+		if (myVisited != null)
+			myVisited.clear();
+		myNumPruned = myNumLooping = 0;
 		this.updateSelectedStates();
 	}
 
@@ -195,6 +272,8 @@ public class SingleInputSimulator extends AutomatonSimulator {
 			seen.add(c.getState());
 			addClosure(chain, myChains, seen);
 		}
+		for (ConfigurationChain start : myChains)
+			visit(start);
 		this.updateSelectedStates();
 	}
 
@@ -263,6 +342,30 @@ public class SingleInputSimulator extends AutomatonSimulator {
 		return null;
 	}
 
+	/**
+	 * Wraps a {@link Configuration} so that equivalent configurations are
+	 * equal in a hash set.
+	 */
+	private static class VisitedConfiguration {
+		private Configuration myConfiguration;
+
+		private VisitedConfiguration(Configuration config) {
+			myConfiguration = config;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof VisitedConfiguration
+					&& myConfiguration
+							.isEquivalentTo(((VisitedConfiguration) o).myConfiguration);
+		}
+
+		@Override
+		public int hashCode() {
+			return myConfiguration.getEquivalenceHash();
+		}
+	}
+
 	private void addClosure(ConfigurationChain chain,
 			Collection<ConfigurationChain> chains, Set<State> seen) {
 		int numLambda = 0;
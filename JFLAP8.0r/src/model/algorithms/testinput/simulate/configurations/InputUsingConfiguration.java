@@ -1,11 +1,15 @@
 package model.algorithms.testinput.simulate.configurations;
 
+import java.util.Set;
+
 import debug.JFLAPDebug;
 import model.algorithms.testinput.simulate.Configuration;
 import model.automata.Automaton;
 import model.automata.SingleInputTransition;
 import model.automata.State;
 import model.automata.TransitionSet;
+import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
 public abstract class InputUsingConfiguration<S extends Automaton<T>, T extends SingleInputTransition<T>>
@@ -34,8 +38,17 @@ public abstract class InputUsingConfiguration<S extends Automaton<T>, T extends
 
 	@Override
 	protected boolean canMoveAlongTransition(T trans) {
-		SymbolString remaining = getInput().subList(getPrimaryPosition());
-		return remaining.startsWith(trans.getInput());
+		return getPrimarySequence().regionMatches(getPrimaryPosition(),
+				trans.getInput());
+	}
+
+	@Override
+	protected Set<T> getCandidateTransitions(TransitionSet<T> transitions) {
+		SymbolSequence input = getPrimarySequence();
+		Symbol next = null;
+		if (getPrimaryPosition() < input.size())
+			next = input.get(getPrimaryPosition());
+		return transitions.getTransitionsFromState(getState(), next);
 	}
 
 	@Override
@@ -49,7 +62,7 @@ public abstract class InputUsingConfiguration<S extends Automaton<T>, T extends
 			return false;
 		//You've parsed all input, now look for lambda transitions
 		TransitionSet<T> transitions = getAutomaton().getTransitions();
-		for (T trans : transitions.getTransitionsFromState(getState()))
+		for (T trans : transitions.getTransitionsFromState(getState(), null))
 			//if there is a lambda transition away from the state, take it.
 			if (canMoveAlongTransition(trans) && !isInFinalState())
 				return false;
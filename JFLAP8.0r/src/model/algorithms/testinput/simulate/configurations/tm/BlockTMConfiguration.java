@@ -28,19 +28,21 @@ import model.symbols.SymbolString;
 
 public class BlockTMConfiguration extends TMConfiguration<BlockTuringMachine, BlockTransition> {
 
-	private SymbolString myUpdatedTape;
-	private int myUpdatedIndex;
+	private Tape myUpdatedTape;
 
 	public BlockTMConfiguration(BlockTuringMachine tm, State s, int pos,
 			SymbolString tape) {
 		super(tm, s, new int[]{pos}, tape);
 	}
 
+	public BlockTMConfiguration(BlockTuringMachine tm, State s, Tape tape) {
+		super(tm, s, tape);
+	}
+
 	@Override
-	protected Configuration<BlockTuringMachine, BlockTransition> createConfig(
-			BlockTuringMachine a, State s, int ppos, SymbolString primary,
-			int[] positions, SymbolString[] updatedClones) throws Exception {
-		return new BlockTMConfiguration(a, s, positions[0], updatedClones[0]);
+	protected TMConfiguration<BlockTuringMachine, BlockTransition> createConfig(
+			BlockTuringMachine a, State s, Tape[] tapes) {
+		return new BlockTMConfiguration(a, s, tapes[0]);
 	}
 
 	@Override
@@ -62,8 +64,7 @@ public class BlockTMConfiguration extends TMConfiguration<BlockTuringMachine, Bl
 			return false;
 		}
 		
-		myUpdatedTape = config.getStringForIndex(0);
-		myUpdatedIndex = config.getPositionForIndex(0);
+		myUpdatedTape = config.getTape(0);
 		return true;
 	}
 
@@ -88,29 +89,20 @@ public class BlockTMConfiguration extends TMConfiguration<BlockTuringMachine, Bl
 
 	private TMConfiguration createInitialConfig(Block toState) {
 		TuringMachine tm = toState.getTuringMachine();
-		SymbolString input = getStringForIndex(0);
-		
-		int pos = getPositionForIndex(0);
 		if (tm instanceof MultiTapeTuringMachine){
-			return ((MultiTapeTuringMachine)tm).createInitalConfig(input, pos);
+			return ((MultiTapeTuringMachine)tm).createInitalConfig(
+					getStringForIndex(0), getPositionForIndex(0));
 		}
 		else{
 			return new BlockTMConfiguration((BlockTuringMachine) tm, 
 					tm.getStartState(),
-					pos, 
-					input);
+					getTape(0));
 		}
 	}
 
 	@Override
-	protected int getNextSecondaryPosition(int i, BlockTransition trans) {
-		return myUpdatedIndex;
-	}
-
-	@Override
-	protected SymbolString[] assembleUpdatedStrings(SymbolString[] clones,
-			BlockTransition trans) {
-		return new SymbolString[]{myUpdatedTape};
+	protected Tape getNextTape(int i, BlockTransition trans) {
+		return myUpdatedTape;
 	}
 
 }
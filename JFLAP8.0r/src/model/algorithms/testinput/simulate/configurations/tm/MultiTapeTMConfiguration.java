@@ -1,6 +1,7 @@
 package model.algorithms.testinput.simulate.configurations.tm;
 
 import java.util.LinkedList;
+import java.util.Set;
 
 import universe.preferences.JFLAPPreferences;
 
@@ -8,6 +9,7 @@ import debug.JFLAPDebug;
 
 import model.algorithms.testinput.simulate.Configuration;
 import model.automata.State;
+import model.automata.TransitionSet;
 import model.automata.turing.MultiTapeTuringMachine;
 import model.automata.turing.TuringMachineMove;
 import model.automata.turing.MultiTapeTMTransition;
@@ -22,12 +24,16 @@ public class MultiTapeTMConfiguration extends TMConfiguration<MultiTapeTuringMac
 		super(tm, s, pos, tapes);
 	}
 
+	public MultiTapeTMConfiguration(MultiTapeTuringMachine tm, State s,
+			Tape ... tapes) {
+		super(tm, s, tapes);
+	}
+
 
 	@Override
-	protected Configuration<MultiTapeTuringMachine, MultiTapeTMTransition> createConfig(MultiTapeTuringMachine tm,
-			State s, int ppos, SymbolString primary, int[] positions,
-			SymbolString[] updatedClones) throws Exception {
-		return new MultiTapeTMConfiguration(tm, s, positions, updatedClones);
+	protected TMConfiguration<MultiTapeTuringMachine, MultiTapeTMTransition> createConfig(MultiTapeTuringMachine tm,
+			State s, Tape[] tapes) {
+		return new MultiTapeTMConfiguration(tm, s, tapes);
 	}
 
 	@Override
@@ -40,26 +46,15 @@ public class MultiTapeTMConfiguration extends TMConfiguration<MultiTapeTuringMac
 	}
 
 	@Override
-	protected int getNextSecondaryPosition(int i,
-			MultiTapeTMTransition trans) {
-		TuringMachineMove move = trans.getMove(i);
-		return Math.max(this.getPositionForIndex(i) + move.int_move, 0);
+	protected Set<MultiTapeTMTransition> getCandidateTransitions(
+			TransitionSet<MultiTapeTMTransition> transitions) {
+		return transitions.getTransitionsFromState(getState(),
+				getReadForTape(0));
 	}
 
 	@Override
-	protected SymbolString[] assembleUpdatedStrings(SymbolString[] clones,
-			MultiTapeTMTransition trans) {
-		for (int i = 0; i < this.getNumOfSecondary(); i++){
-			Symbol write = trans.getWrite(i);
-			TuringMachineMove move = trans.getMove(i);
-			int pos = this.getPositionForIndex(i);
-			SymbolString tape = clones[i];
-			
-			int dPos = updateTape(move, pos, tape);
-			
-			clones[i] = clones[i].replace(this.getPositionForIndex(i)+dPos, write);
-		}
-		return clones;
+	protected Tape getNextTape(int i, MultiTapeTMTransition trans) {
+		return getTape(i).step(trans.getWrite(i), trans.getMove(i));
 	}
 
 
@@ -13,11 +13,74 @@ import model.symbols.Symbol;
 import model.symbols.SymbolString;
 import model.symbols.symbolizer.Symbolizers;
 
+/**
+ * A configuration of a Turing machine. The tapes are held as persistent
+ * {@link Tape}s, so stepping to the next configuration only writes the
+ * cells under the heads, and each tape is only turned into a
+ * {@link SymbolString} if {@link #getStringForIndex(int)} asks for it.
+ */
 public abstract class TMConfiguration<S extends TuringMachine<T>, T extends Transition<T>>
 		extends Configuration<S, T> {
 
+	private Tape[] myTapes;
+
 	public TMConfiguration(S tm, State s, int[] pos, SymbolString... tapes) {
-		super(tm, s, 0, null, pos, tapes);
+		this(tm, s, createTapes(pos, tapes));
+	}
+
+	public TMConfiguration(S tm, State s, Tape... tapes) {
+		super(tm, s, 0, null, getPositions(tapes), new SymbolString[tapes.length]);
+		myTapes = tapes;
+	}
+
+	private static Tape[] createTapes(int[] pos, SymbolString... strings) {
+		Tape[] tapes = new Tape[strings.length];
+		for (int i = 0; i < tapes.length; i++)
+			tapes[i] = new Tape(strings[i], pos[i]);
+		return tapes;
+	}
+
+	private static int[] getPositions(Tape... tapes) {
+		int[] pos = new int[tapes.length];
+		for (int i = 0; i < pos.length; i++)
+			pos[i] = tapes[i].getPosition();
+		return pos;
+	}
+
+	public Tape getTape(int i) {
+		return myTapes[i];
+	}
+
+	@Override
+	public SymbolString getStringForIndex(int i) {
+		return myTapes[i].toSymbolString();
+	}
+
+	@Override
+	protected Configuration<S, T> createNextConfiguration(T trans) {
+		Tape[] tapes = new Tape[myTapes.length];
+		for (int i = 0; i < tapes.length; i++)
+			tapes[i] = getNextTape(i, trans);
+		return createConfig(getAutomaton(), trans.getToState(), tapes);
+	}
+
+	@Override
+	protected Configuration<S, T> createConfig(S tm, State s, int ppos,
+			SymbolString primary, int[] positions, SymbolString[] updatedClones) {
+		return createConfig(tm, s, createTapes(positions, updatedClones));
+	}
+
+	@Override
+	protected int getNextSecondaryPosition(int i, T trans) {
+		return getNextTape(i, trans).getPosition();
+	}
+
+	@Override
+	protected SymbolString[] assembleUpdatedStrings(SymbolString[] clones,
+			T trans) {
+		for (int i = 0; i < clones.length; i++)
+			clones[i] = new SymbolString(getNextTape(i, trans).toSymbolString());
+		return clones;
 	}
 
 	@Override
@@ -56,9 +119,17 @@ public abstract class TMConfiguration<S extends TuringMachine<T>, T extends Tran
 	}
 
 	public Symbol getReadForTape(int i) {
-		return getStringForIndex(i).get(getPositionForIndex(i));
+		return myTapes[i].read();
 	}
 
+	/**
+	 * Returns the i-th tape after moving along the transition.
+	 */
+	protected abstract Tape getNextTape(int i, T trans);
+
+	protected abstract TMConfiguration<S, T> createConfig(S tm, State s,
+			Tape[] tapes);
+
 	public static int updateTape(TuringMachineMove move, int pos,
 			SymbolString tape) {
 		Symbol blank = JFLAPPreferences.getTMBlankSymbol();
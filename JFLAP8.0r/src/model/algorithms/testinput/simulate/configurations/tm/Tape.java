@@ -0,0 +1,163 @@
+package model.algorithms.testinput.simulate.configurations.tm;
+
+import universe.preferences.JFLAPPreferences;
+import model.automata.turing.TuringMachineMove;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * A persistent Turing machine tape and head position. A tape is never
+ * changed; {@link #step(Symbol, TuringMachineMove)} returns a new tape.
+ * <p>
+ * The cells are kept in two linked stacks leading away from the head, one
+ * to the left and one starting at the head and going right, and the blanks
+ * added at the right end are kept as a count. A step only pushes or pops a
+ * couple of cells, and the new tape shares everything else with the old
+ * one, so a step is O(1) and the configurations of a long run only store
+ * the cells that were written rather than a copy of the whole tape each.
+ * <p>
+ * The tape grows exactly as {@link TMConfiguration#updateTape} grows a
+ * {@link SymbolString}, so {@link #toSymbolString()} and
+ * {@link #getPosition()} give the same result the copying implementation
+ * did.
+ */
+public class Tape {
+
+	private static class Cell {
+		private final Symbol symbol;
+		private final Cell next;
+		private final int depth;
+
+		private Cell(Symbol symbol, Cell next) {
+			this.symbol = symbol;
+			this.next = next;
+			this.depth = next == null ? 1 : next.depth + 1;
+		}
+	}
+
+	/** The cells left of the head, nearest first */
+	private final Cell myLeft;
+	/** The head cell and the cells right of it */
+	private final Cell myRight;
+	/** The blanks after the last cell of myRight */
+	private final int myRightBlanks;
+
+	private SymbolString myString;
+
+	public Tape(SymbolString tape, int position) {
+		Cell left = null, right = null;
+		Symbol[] cells = tape.toArray(new Symbol[0]);
+		for (int i = 0; i < position; i++)
+			left = new Cell(i < cells.length ? cells[i]
+					: JFLAPPreferences.getTMBlankSymbol(), left);
+		for (int i = cells.length - 1; i >= position; i--)
+			right = new Cell(cells[i], right);
+		myLeft = left;
+		myRight = right;
+		myRightBlanks = 0;
+	}
+
+	private Tape(Cell left, Cell right, int rightBlanks) {
+		myLeft = left;
+		myRight = right;
+		myRightBlanks = rightBlanks;
+	}
+
+	/**
+	 * Returns the index of the head in {@link #toSymbolString()}.
+	 */
+	public int getPosition() {
+		return depth(myLeft);
+	}
+
+	public int size() {
+		return getPosition() + depth(myRight) + myRightBlanks;
+	}
+
+	/**
+	 * Returns the symbol under the head, which is a blank if the head has
+	 * moved past the last cell.
+	 */
+	public Symbol read() {
+		return myRight == null ? JFLAPPreferences.getTMBlankSymbol()
+				: myRight.symbol;
+	}
+
+	/**
+	 * Returns the tape after writing to the cell under the head and then
+	 * moving the head. The tape grows by a blank on the right whenever the
+	 * head starts on the last cell, and by a blank on the left whenever the
+	 * head moves left off the first cell.
+	 */
+	public Tape step(Symbol write, TuringMachineMove move) {
+		int rightBlanks = myRightBlanks;
+		int position = getPosition(), size = size();
+		boolean growLeft = false;
+		for (int i = 0; i < JFLAPPreferences.getDefaultTMBufferSize(); i++) {
+			if (position == size - 1) {
+				rightBlanks++;
+				size++;
+			} else if (position == 0 && move == TuringMachineMove.LEFT) {
+				growLeft = true;
+				break;
+			}
+		}
+
+		Cell left = myLeft, right;
+		if (myRight != null) {
+			right = new Cell(write, myRight.next);
+		} else {
+			right = new Cell(write, null);
+			rightBlanks = Math.max(rightBlanks - 1, 0);
+		}
+
+		switch (move) {
+		case RIGHT:
+			left = new Cell(right.symbol, left);
+			right = right.next;
+			break;
+		case LEFT:
+			if (left != null) {
+				right = new Cell(left.symbol, right);
+				left = left.next;
+			} else if (growLeft) {
+				right = new Cell(JFLAPPreferences.getTMBlankSymbol(), right);
+			}
+			break;
+		default:
+			break;
+		}
+		return new Tape(left, right, rightBlanks);
+	}
+
+	/**
+	 * Returns the contents of this tape. The string is built the first time
+	 * it is asked for and must not be modified.
+	 */
+	public SymbolString toSymbolString() {
+		if (myString == null) {
+			Symbol blank = JFLAPPreferences.getTMBlankSymbol();
+			Symbol[] cells = new Symbol[size()];
+			int i = depth(myLeft);
+			for (Cell c = myLeft; c != null; c = c.next)
+				cells[--i] = c.symbol;
+			i = depth(myLeft);
+			for (Cell c = myRight; c != null; c = c.next)
+				cells[i++] = c.symbol;
+			for (; i < cells.length; i++)
+				cells[i] = blank;
+			myString = new SymbolString(cells);
+		}
+		return myString;
+	}
+
+	private static int depth(Cell c) {
+		return c == null ? 0 : c.depth;
+	}
+
+	@Override
+	public String toString() {
+		return toSymbolString() + " @" + getPosition();
+	}
+
+}
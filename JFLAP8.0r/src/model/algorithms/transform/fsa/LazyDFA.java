@@ -0,0 +1,211 @@
+package model.algorithms.transform.fsa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.symbols.Symbol;
+
+/**
+ * The DFA of an FSA by the subset construction, over int tables, each state
+ * being made the first time a transition to it is asked for, so only the
+ * states a search reaches are ever made. Transitions on more than one
+ * symbol are split into single symbol transitions through states of their
+ * own, so any FSA may be given. Every state has a transition on every
+ * symbol, those the FSA is missing going to the state of the empty set.
+ * <p>
+ * The states are numbered from 0, the start state, in the order they are
+ * made, and the symbols by their place in the array given.
+ */
+public class LazyDFA {
+
+	private static final int[] NONE = new int[0];
+
+	private Symbol[] mySymbols;
+	/** The states each state of the FSA reaches on each symbol */
+	private int[][][] mySuccessors;
+	private int[][] myLambda;
+	private BitSet myFinal;
+
+	private Map<BitSet, Integer> myIDs;
+	private List<BitSet> mySubsets;
+	/** The DFA transitions found so far, -1 if not yet asked for */
+	private List<int[]> myTransitions;
+	private List<Boolean> myFinalSubsets;
+
+	/**
+	 * @param symbols
+	 *            the symbols to read, transitions on any others being left
+	 *            out
+	 */
+	public LazyDFA(FiniteStateAcceptor fsa, Symbol[] symbols) {
+		mySymbols = symbols.clone();
+		Map<Symbol, Integer> symbolIDs = new HashMap<Symbol, Integer>();
+		for (int j = 0; j < symbols.length; j++)
+			symbolIDs.put(symbols[j], j);
+		Map<State, Integer> ids = new HashMap<State, Integer>();
+		for (State s : fsa.getStates())
+			ids.put(s, ids.size());
+		int numNodes = ids.size();
+
+		// edges are (from, symbol or -1 for lambda, to)
+		List<int[]> edges = new ArrayList<int[]>();
+		for (FSATransition trans : fsa.getTransitions()) {
+			Integer from = ids.get(trans.getFromState()), to = ids.get(trans
+					.getToState());
+			if (from == null || to == null)
+				continue;
+			Symbol[] input = trans.getInput();
+			if (input.length == 0) {
+				edges.add(new int[] { from, -1, to });
+				continue;
+			}
+			int[] path = new int[input.length];
+			boolean known = true;
+			for (int i = 0; i < input.length; i++) {
+				Integer j = symbolIDs.get(input[i]);
+				known &= j != null;
+				path[i] = known ? j : -1;
+			}
+			if (!known)
+				continue;
+			int current = from;
+			for (int i = 0; i < input.length; i++) {
+				int next = i < input.length - 1 ? numNodes++ : to;
+				edges.add(new int[] { current, path[i], next });
+				current = next;
+			}
+		}
+
+		mySuccessors = new int[numNodes][symbols.length][];
+		myLambda = new int[numNodes][];
+		int[][] outCount = new int[numNodes][symbols.length];
+		int[] lambdaCount = new int[numNodes];
+		for (int[] e : edges) {
+			if (e[1] == -1)
+				lambdaCount[e[0]]++;
+			else
+				outCount[e[0]][e[1]]++;
+		}
+		for (int n = 0; n < numNodes; n++) {
+			myLambda[n] = lambdaCount[n] == 0 ? NONE : new int[lambdaCount[n]];
+			for (int j = 0; j < symbols.length; j++)
+				mySuccessors[n][j] = outCount[n][j] == 0 ? NONE
+						: new int[outCount[n][j]];
+		}
+		for (int[] e : edges) {
+			if (e[1] == -1)
+				myLambda[e[0]][--lambdaCount[e[0]]] = e[2];
+			else
+				mySuccessors[e[0]][e[1]][--outCount[e[0]][e[1]]] = e[2];
+		}
+
+		myFinal = new BitSet(numNodes);
+		for (State s : fsa.getFinalStateSet()) {
+			Integer id = ids.get(s);
+			if (id != null)
+				myFinal.set(id);
+		}
+
+		myIDs = new HashMap<BitSet, Integer>();
+		mySubsets = new ArrayList<BitSet>();
+		myTransitions = new ArrayList<int[]>();
+		myFinalSubsets = new ArrayList<Boolean>();
+		BitSet start = new BitSet(numNodes);
+		Integer startID = ids.get(fsa.getStartState());
+		if (startID != null)
+			start.set(startID);
+		getState(close(start));
+	}
+
+	/**
+	 * Returns the symbols of the input alphabets and transitions of the
+	 * FSAs, in order.
+	 */
+	public static Symbol[] getSymbols(FiniteStateAcceptor... fsas) {
+		TreeSet<Symbol> symbols = new TreeSet<Symbol>();
+		for (FiniteStateAcceptor fsa : fsas) {
+			symbols.addAll(fsa.getInputAlphabet());
+			for (FSATransition trans : fsa.getTransitions())
+				symbols.addAll(Arrays.asList(trans.getInput()));
+		}
+		return symbols.toArray(new Symbol[0]);
+	}
+
+	public Symbol[] getSymbols() {
+		return mySymbols.clone();
+	}
+
+	public int getStartState() {
+		return 0;
+	}
+
+	/**
+	 * Returns the number of states made so far.
+	 */
+	public int getNumberOfStates() {
+		return mySubsets.size();
+	}
+
+	public boolean isFinal(int state) {
+		return myFinalSubsets.get(state);
+	}
+
+	/**
+	 * Returns the state reached from the state on the symbol with the given
+	 * place in the symbols, making it if it has not been yet.
+	 */
+	public int next(int state, int symbol) {
+		int[] transitions = myTransitions.get(state);
+		if (transitions[symbol] != -1)
+			return transitions[symbol];
+		BitSet from = mySubsets.get(state);
+		BitSet to = new BitSet();
+		for (int n = from.nextSetBit(0); n >= 0; n = from.nextSetBit(n + 1)) {
+			for (int m : mySuccessors[n][symbol])
+				to.set(m);
+		}
+		return transitions[symbol] = getState(close(to));
+	}
+
+	/**
+	 * Adds to the set the states reached from it on lambda transitions.
+	 */
+	private BitSet close(BitSet states) {
+		int[] stack = new int[myLambda.length];
+		int top = 0;
+		for (int n = states.nextSetBit(0); n >= 0; n = states.nextSetBit(n + 1))
+			stack[top++] = n;
+		while (top > 0) {
+			for (int m : myLambda[stack[--top]]) {
+				if (!states.get(m)) {
+					states.set(m);
+					stack[top++] = m;
+				}
+			}
+		}
+		return states;
+	}
+
+	private int getState(BitSet subset) {
+		Integer id = myIDs.get(subset);
+		if (id != null)
+			return id;
+		id = mySubsets.size();
+		myIDs.put(subset, id);
+		mySubsets.add(subset);
+		int[] transitions = new int[mySymbols.length];
+		Arrays.fill(transitions, -1);
+		myTransitions.add(transitions);
+		myFinalSubsets.add(subset.intersects(myFinal));
+		return id;
+	}
+
+}
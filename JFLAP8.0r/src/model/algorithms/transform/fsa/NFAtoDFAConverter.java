@@ -2,11 +2,12 @@ package model.algorithms.transform.fsa;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -16,10 +17,10 @@ import util.UtilFunctions;
 import debug.JFLAPDebug;
 
 import errors.BooleanWrapper;
-import model.ClosureHelper;
 import model.algorithms.AlgorithmException;
 import model.algorithms.FormalDefinitionAlgorithm;
 import model.algorithms.steppable.AlgorithmStep;
+import model.automata.LambdaClosures;
 import model.automata.State;
 import model.automata.acceptors.fsa.FSATransition;
 import model.automata.acceptors.fsa.FiniteStateAcceptor;
@@ -29,9 +30,28 @@ import model.symbols.SymbolString;
 
 public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcceptor>{
 
+	/**
+	 * Follows the progress of {@link NFAtoDFAConverter#convertToDFA(
+	 * FiniteStateAcceptor, int, ConversionMonitor)}.
+	 */
+	public interface ConversionMonitor {
+
+		/**
+		 * Called each time a DFA state has been expanded, with the number
+		 * of states expanded and created so far.
+		 * 
+		 * @return false to stop the conversion
+		 */
+		public boolean stateExpanded(int expanded, int created);
+	}
 
 	private TreeMap<State, State[]> myStateToStatesMap;
 	private TreeMap<State, MappingWrapper> myStatesToSymbolsMap;
+	/** The DFA state for each set of NFA states, keyed by their IDs */
+	private HashMap<BitSet, State> mySubsetToStateMap;
+	private TreeSet<State> myUnexpandedStates;
+	/** The closures of the NFA as it was when this conversion started */
+	private LambdaClosures myClosures;
 	private FiniteStateAcceptor myDFA;
 
 	public NFAtoDFAConverter(FiniteStateAcceptor dfa){
@@ -52,6 +72,10 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 
 	@Override
 	public BooleanWrapper[] checkOfProperForm(FiniteStateAcceptor dfa) {
+		return checkForm(dfa);
+	}
+
+	private static BooleanWrapper[] checkForm(FiniteStateAcceptor dfa) {
 		List<BooleanWrapper> errors = new ArrayList<BooleanWrapper>();
 		FSADeterminismChecker check = new FSADeterminismChecker();
 		if (check.isDeterministic(dfa))
@@ -72,6 +96,9 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 		myDFA = this.getNFA().alphabetAloneCopy();
 		myStateToStatesMap = new TreeMap<State, State[]>();
 		myStatesToSymbolsMap = new TreeMap<State, MappingWrapper>();
+		mySubsetToStateMap = new HashMap<BitSet, State>();
+		myUnexpandedStates = new TreeSet<State>();
+		myClosures = this.getNFA().getLambdaClosures();
 		createAndAddInitialState();
 		return true;
 	}
@@ -118,6 +145,8 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 		this.getDFA().getTransitions().add(trans);
 		
 		myStatesToSymbolsMap.get(from).expansionComplete(sym);
+		if (myStatesToSymbolsMap.get(from).isFullyExpanded())
+			myUnexpandedStates.remove(from);
 		
 		return new BooleanWrapper(true);
 	}
@@ -127,20 +156,36 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 	}
 
 	public State getDFAStateForNFAStates(State[] array) {
-		for (Entry<State, State[]> entry: myStateToStatesMap.entrySet()){
-			List<State> temp1 = new ArrayList<State>(Arrays.asList(entry.getValue()));
-			if (temp1.size() == array.length && 
-					temp1.containsAll(Arrays.asList(array)))
-				return entry.getKey();
+		BitSet key = getSubsetKey(array);
+		return key == null ? null : mySubsetToStateMap.get(key);
+	}
+
+	/**
+	 * Returns the IDs of the states, or null if one of them is not in the
+	 * NFA and so cannot be part of any DFA state.
+	 */
+	private BitSet getSubsetKey(State[] array) {
+		BitSet key = new BitSet(myClosures.size());
+		for (State s: array){
+			int id = myClosures.getID(s);
+			if (id == -1)
+				return null;
+			key.set(id);
 		}
-		return null;
+		return key;
 	}
 
 	private State createAndAddDFAState(State[] array) {
 		State s = createStateForStates(array);
 		myStateToStatesMap.put(s, array);
+		BitSet key = getSubsetKey(array);
+		if (key != null)
+			mySubsetToStateMap.put(key, s);
 		myDFA.getStates().add(s);
-		myStatesToSymbolsMap.put(s, new MappingWrapper(s));
+		MappingWrapper mapping = new MappingWrapper(s);
+		myStatesToSymbolsMap.put(s, mapping);
+		if (!mapping.isFullyExpanded())
+			myUnexpandedStates.add(s);
 		for (State state: array){
 			if (this.getNFA().getFinalStateSet().contains(state)){
 				myDFA.getFinalStateSet().add(s);
@@ -151,22 +196,22 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 	}
 
 	public Collection<State> getStatesToExpandTo(State s, Symbol sym) {
-		State[] linkedStates = getLinkedStates(s);
-		Set<State> toStates = new TreeSet<State>();
-		for (State state: linkedStates){
-			for (FSATransition tran: findTransitionsFromStateOnSym(state, sym)){
-				State to = tran.getToState();
-				Set<State> closure = ClosureHelper.takeClosure(to, getNFA());
-				toStates.addAll(closure);
-			}
+		LambdaClosures closures = myClosures;
+		BitSet toStates = new BitSet(closures.size());
+		for (FSATransition tran: findTransitionsFromStatesOnSym(getLinkedStates(s), sym)){
+			int to = closures.getID(tran.getToState());
+			closures.addClosure(to, toStates);
 		}
-		return toStates;
+		return closures.getStates(toStates);
 	}
 
-	private List<FSATransition> findTransitionsFromStateOnSym(State state, Symbol sym) {
+	private List<FSATransition> findTransitionsFromStatesOnSym(State[] states, Symbol sym) {
+		LambdaClosures closures = myClosures;
+		BitSet from = closures.takeClosure(Arrays.asList(states));
 		List<FSATransition> list = new ArrayList<FSATransition>();
-		for (State s: ClosureHelper.takeClosure(state, getNFA())){
-			for (FSATransition trans : getNFA().getTransitions().getTransitionsFromState(s)){
+		for (int i = from.nextSetBit(0); i >= 0; i = from.nextSetBit(i + 1)){
+			State s = closures.getState(i);
+			for (FSATransition trans : getNFA().getTransitions().getTransitionsFromState(s, sym)){
 				if (!trans.isLambdaTransition() && trans.getInput()[0].equals(sym)){
 					list.add(trans);
 				}
@@ -186,7 +231,7 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 
 	private void createAndAddInitialState() {
 		State NFAstart = getNFA().getStartState();
-		TreeSet<State> closure = ClosureHelper.takeClosure(NFAstart, getNFA());
+		TreeSet<State> closure = myClosures.getClosure(NFAstart);
 		State DFAstart = createAndAddDFAState(closure.toArray(new State[0]));
 		this.myDFA.setStartState(DFAstart);
 	}
@@ -198,43 +243,29 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 	}
 
 
-	private String createName(State...states) {
+	private static String createName(State...states) {
 		String name = UtilFunctions.toDelimitedString(states, ",");
 		name =  "{" + name + "}";
 		return name;
 	}
 	
 	public State getFirstUnexpandedState() {
-		for (Entry<State, MappingWrapper> entry : myStatesToSymbolsMap.entrySet()){
-			if (!entry.getValue().isFullyExpanded()){
-				return entry.getKey();
-			}
-		}
-		return null;
+		if (myUnexpandedStates.isEmpty())
+			return null;
+		return myUnexpandedStates.first();
 	}
 	
 	public Set<State> getUnexpandedStates() {
-		Set<State> unexpanded = new TreeSet<State>();
-		for (Entry<State, MappingWrapper> entry : myStatesToSymbolsMap.entrySet()){
-			if (!entry.getValue().isFullyExpanded()){
-				unexpanded.add(entry.getKey());
-			}
-		}
-		return unexpanded;
+		return new TreeSet<State>(myUnexpandedStates);
 	}
 	
 	public int numTransitionsNeeded() {
 		int n = 0;
-		for (Entry<State, MappingWrapper> entry : myStatesToSymbolsMap.entrySet()){
-			if (!entry.getValue().isFullyExpanded()){
-				State from = entry.getKey();
-				
-				for (Symbol sym: getNFA().getInputAlphabet()){
-					State[] expand = myStatesToSymbolsMap.get(from).getStatesForSymbol(sym);
-					if (expand.length > 0)
-						n++;
-				}
-						
+		for (State from : myUnexpandedStates){
+			for (Symbol sym: getNFA().getInputAlphabet()){
+				State[] expand = myStatesToSymbolsMap.get(from).getStatesForSymbol(sym);
+				if (expand.length > 0)
+					n++;
 			}
 		}
 		return n;
@@ -300,9 +331,122 @@ public class NFAtoDFAConverter extends FormalDefinitionAlgorithm<FiniteStateAcce
 	}
 
 	public static FiniteStateAcceptor convertToDFA(FiniteStateAcceptor nfa) {
-		NFAtoDFAConverter converter = new NFAtoDFAConverter(nfa);
-		converter.stepToCompletion();
-		return converter.getDFA();
+		return convertToDFA(nfa, 0, null);
+	}
+
+	/**
+	 * Converts the NFA in one go, without the bookkeeping the steps need.
+	 * Sets of NFA states are kept as bitsets and looked up by hash, and the
+	 * DFA states are expanded from a worklist in the order they were
+	 * created, so the result is the same DFA that stepping to completion
+	 * builds, with the same state IDs and names.
+	 * 
+	 * @param limit
+	 *            the most DFA states to create, or 0 for no limit
+	 * @param monitor
+	 *            told of the progress, or null
+	 * @throws AlgorithmException
+	 *             if the NFA is not of the proper form, the limit is
+	 *             passed or the monitor stops the conversion
+	 */
+	public static FiniteStateAcceptor convertToDFA(FiniteStateAcceptor nfa,
+			int limit, ConversionMonitor monitor) {
+		BooleanWrapper[] bw = nfa.isComplete();
+		if (bw.length > 0)
+			throw new AlgorithmException(bw);
+		bw = checkForm(nfa);
+		if (bw.length > 0)
+			throw new AlgorithmException(bw);
+
+		LambdaClosures closures = nfa.getLambdaClosures();
+		Symbol[] symbols = nfa.getInputAlphabet().toArray(new Symbol[0]);
+		int n = closures.size();
+		BitSet[][] moves = findClosedMoves(nfa, closures, symbols);
+		BitSet finals = new BitSet(n);
+		for (State s: nfa.getFinalStateSet())
+			if (closures.getID(s) != -1)
+				finals.set(closures.getID(s));
+
+		List<BitSet> subsets = new ArrayList<BitSet>();
+		HashMap<BitSet, Integer> ids = new HashMap<BitSet, Integer>();
+		BitSet start = closures.takeClosure(Arrays.asList(nfa.getStartState()));
+		subsets.add(start);
+		ids.put(start, 0);
+		List<int[]> moveList = new ArrayList<int[]>();
+
+		for (int from = 0; from < subsets.size(); from++){
+			BitSet subset = subsets.get(from);
+			BitSet[] targets = new BitSet[symbols.length];
+			for (int i = subset.nextSetBit(0); i >= 0; i = subset.nextSetBit(i + 1)){
+				for (int j = 0; j < symbols.length; j++){
+					if (moves[i][j] == null)
+						continue;
+					if (targets[j] == null)
+						targets[j] = new BitSet(n);
+					targets[j].or(moves[i][j]);
+				}
+			}
+			for (int j = 0; j < symbols.length; j++){
+				if (targets[j] == null)
+					continue;
+				Integer to = ids.get(targets[j]);
+				if (to == null){
+					if (limit > 0 && subsets.size() >= limit)
+						throw new AlgorithmException("The DFA has more than " + 
+								limit + " states.");
+					to = subsets.size();
+					subsets.add(targets[j]);
+					ids.put(targets[j], to);
+				}
+				moveList.add(new int[]{from, j, to});
+			}
+			if (monitor != null && !monitor.stateExpanded(from + 1, subsets.size()))
+				throw new AlgorithmException("The conversion to a DFA was stopped.");
+		}
+
+		FiniteStateAcceptor dfa = nfa.alphabetAloneCopy();
+		State[] states = new State[subsets.size()];
+		List<State> finalStates = new ArrayList<State>();
+		for (int i = 0; i < states.length; i++){
+			State[] nfaStates = closures.getStates(subsets.get(i)).toArray(new State[0]);
+			states[i] = new State(createName(nfaStates), i);
+			if (subsets.get(i).intersects(finals))
+				finalStates.add(states[i]);
+		}
+		List<FSATransition> transitions = new ArrayList<FSATransition>();
+		for (int[] move: moveList)
+			transitions.add(new FSATransition(states[move[0]], states[move[2]], 
+					new SymbolString(symbols[move[1]])));
+
+		dfa.getStates().addAll(Arrays.asList(states));
+		dfa.setStartState(states[0]);
+		dfa.getFinalStateSet().addAll(finalStates);
+		dfa.getTransitions().addAll(transitions);
+		return dfa;
+	}
+
+	/**
+	 * Returns, for the NFA state with each ID and each symbol, the closure of
+	 * the states it moves to on that symbol, or null if there are none.
+	 */
+	private static BitSet[][] findClosedMoves(FiniteStateAcceptor nfa,
+			LambdaClosures closures, Symbol[] symbols) {
+		Map<Symbol, Integer> symbolIndex = new HashMap<Symbol, Integer>();
+		for (int j = 0; j < symbols.length; j++)
+			symbolIndex.put(symbols[j], j);
+		BitSet[][] moves = new BitSet[closures.size()][symbols.length];
+		for (FSATransition trans: nfa.getTransitions()){
+			if (trans.isLambdaTransition())
+				continue;
+			Integer j = symbolIndex.get(trans.getInput()[0]);
+			if (j == null)
+				continue;
+			int from = closures.getID(trans.getFromState());
+			if (moves[from][j] == null)
+				moves[from][j] = new BitSet(closures.size());
+			closures.addClosure(closures.getID(trans.getToState()), moves[from][j]);
+		}
+		return moves;
 	}
 
 	
@@ -0,0 +1,274 @@
+package model.algorithms.transform.fsa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.AlgorithmException;
+import model.algorithms.transform.fsa.minimizer.HopcroftMinimizer;
+import model.automata.InputAlphabet;
+import model.automata.StartState;
+import model.automata.State;
+import model.automata.StateSet;
+import model.automata.TransitionSet;
+import model.automata.acceptors.FinalStateSet;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Combines FSAs by the product construction, in the model and without an
+ * editor, unlike {@link view.action.automata.CombineAutomataAction}, which
+ * puts two automata side by side.
+ * <p>
+ * Each FSA is read as a {@link LazyDFA} over the symbols of both, so it may
+ * be any FSA, and the product is a DFA whose states are the pairs of their
+ * states reached from the pair of start states, made breadth first. A pair
+ * is final if the {@link Operation} says so of whether each of its states
+ * is. The pairs from which no final pair can be reached are left out, so
+ * the DFA has no trap state, and it may be minimized with
+ * {@link HopcroftMinimizer}. The states are named q0, q1 and so on in the
+ * order they were reached.
+ */
+public class ProductConstruction {
+
+	public enum Operation {
+		INTERSECTION, UNION, DIFFERENCE, SYMMETRIC_DIFFERENCE;
+
+		/**
+		 * Returns whether a pair of states is final, from whether each of
+		 * them is.
+		 */
+		public boolean isFinal(boolean final1, boolean final2) {
+			switch (this) {
+			case INTERSECTION:
+				return final1 && final2;
+			case UNION:
+				return final1 || final2;
+			case DIFFERENCE:
+				return final1 && !final2;
+			default:
+				return final1 != final2;
+			}
+		}
+	}
+
+	public static FiniteStateAcceptor combine(FiniteStateAcceptor fsa1,
+			FiniteStateAcceptor fsa2, Operation op) {
+		return combine(fsa1, fsa2, op, false);
+	}
+
+	/**
+	 * Returns a DFA for the language the operation gives of the languages of
+	 * the two FSAs, over the symbols of both.
+	 *
+	 * @param minimize
+	 *            whether to return the minimal DFA
+	 */
+	public static FiniteStateAcceptor combine(FiniteStateAcceptor fsa1,
+			FiniteStateAcceptor fsa2, Operation op, boolean minimize) {
+		Symbol[] symbols = LazyDFA.getSymbols(fsa1, fsa2);
+		FiniteStateAcceptor product = explore(new LazyDFA(fsa1, symbols),
+				new LazyDFA(fsa2, symbols), op);
+		return minimize ? minimize(product) : product;
+	}
+
+	/**
+	 * Folds the operation over the FSAs in order, so that the difference
+	 * is of the first and all the others, and the symmetric difference the
+	 * strings that an odd number of them accept, and one FSA is only made
+	 * into a DFA. Minimizing each step keeps the products small when many
+	 * FSAs are combined. Intersection stops as soon as the language is
+	 * empty.
+	 *
+	 * @param minimize
+	 *            whether to minimize the DFA after each step
+	 * @throws AlgorithmException
+	 *             if no FSAs are given
+	 */
+	public static FiniteStateAcceptor combineAll(
+			List<? extends FiniteStateAcceptor> fsas, Operation op,
+			boolean minimize) {
+		if (fsas.isEmpty())
+			throw new AlgorithmException("There are no automata to combine.");
+		FiniteStateAcceptor result = fsas.get(0);
+		if (fsas.size() == 1)
+			return combine(result, result, Operation.UNION, minimize);
+		for (int i = 1; i < fsas.size(); i++) {
+			result = combine(result, fsas.get(i), op, minimize);
+			if (op == Operation.INTERSECTION
+					&& result.getFinalStateSet().isEmpty())
+				break;
+		}
+		return result;
+	}
+
+	public static FiniteStateAcceptor complement(FiniteStateAcceptor fsa) {
+		return complement(fsa, false);
+	}
+
+	/**
+	 * Returns a DFA for the strings over the symbols of the FSA, those of
+	 * its input alphabet and its transitions, that it does not accept.
+	 *
+	 * @param minimize
+	 *            whether to return the minimal DFA
+	 */
+	public static FiniteStateAcceptor complement(FiniteStateAcceptor fsa,
+			boolean minimize) {
+		Symbol[] symbols = LazyDFA.getSymbols(fsa);
+		FiniteStateAcceptor all = new FiniteStateAcceptor();
+		State state = createState(0);
+		all.getStates().add(state);
+		all.setStartState(state);
+		all.getFinalStateSet().add(state);
+		for (Symbol s : symbols)
+			all.getTransitions().add(
+					new FSATransition(state, state, new SymbolString(s)));
+		FiniteStateAcceptor product = explore(new LazyDFA(all, symbols),
+				new LazyDFA(fsa, symbols), Operation.DIFFERENCE);
+		return minimize ? minimize(product) : product;
+	}
+
+	/**
+	 * Makes the pairs of states reachable from the start pair, and keeps
+	 * those from which a final pair can be reached, and the start pair,
+	 * which has no transitions if none can be.
+	 */
+	private static FiniteStateAcceptor explore(LazyDFA dfa1, LazyDFA dfa2,
+			Operation op) {
+		Symbol[] symbols = dfa1.getSymbols();
+		int k = symbols.length;
+		Map<Long, Integer> ids = new HashMap<Long, Integer>();
+		List<int[]> pairs = new ArrayList<int[]>();
+		List<int[]> rows = new ArrayList<int[]>();
+		int[] start = { dfa1.getStartState(), dfa2.getStartState() };
+		ids.put(getKey(start[0], start[1]), 0);
+		pairs.add(start);
+		for (int from = 0; from < pairs.size(); from++) {
+			int[] pair = pairs.get(from);
+			int[] row = new int[k];
+			for (int j = 0; j < k; j++) {
+				int to1 = dfa1.next(pair[0], j), to2 = dfa2.next(pair[1], j);
+				Long key = getKey(to1, to2);
+				Integer to = ids.get(key);
+				if (to == null) {
+					to = pairs.size();
+					ids.put(key, to);
+					pairs.add(new int[] { to1, to2 });
+				}
+				row[j] = to;
+			}
+			rows.add(row);
+		}
+
+		int n = pairs.size();
+		boolean[] isFinal = new boolean[n];
+		for (int s = 0; s < n; s++)
+			isFinal[s] = op.isFinal(dfa1.isFinal(pairs.get(s)[0]),
+					dfa2.isFinal(pairs.get(s)[1]));
+		boolean[] useful = findUseful(rows, isFinal);
+
+		int[] newIDs = new int[n];
+		List<State> states = new ArrayList<State>();
+		List<State> finalStates = new ArrayList<State>();
+		for (int s = 0; s < n; s++) {
+			if (!useful[s] && s != 0)
+				continue;
+			newIDs[s] = states.size();
+			states.add(createState(states.size()));
+			if (isFinal[s])
+				finalStates.add(states.get(newIDs[s]));
+		}
+		List<FSATransition> transitions = new ArrayList<FSATransition>();
+		for (int s = 0; s < n; s++) {
+			if (!useful[s])
+				continue;
+			for (int j = 0; j < k; j++) {
+				int to = rows.get(s)[j];
+				if (useful[to])
+					transitions.add(new FSATransition(states.get(newIDs[s]),
+							states.get(newIDs[to]), new SymbolString(
+									symbols[j])));
+			}
+		}
+
+		InputAlphabet alphabet = new InputAlphabet();
+		alphabet.addAll(Arrays.asList(symbols));
+		FiniteStateAcceptor product = new FiniteStateAcceptor(new StateSet(),
+				alphabet, new TransitionSet<FSATransition>(),
+				new StartState(), new FinalStateSet());
+		product.getStates().addAll(states);
+		product.setStartState(states.get(0));
+		product.getFinalStateSet().addAll(finalStates);
+		product.getTransitions().addAll(transitions);
+		return product;
+	}
+
+	private static Long getKey(int state1, int state2) {
+		return ((long) state1 << 32) | state2;
+	}
+
+	/**
+	 * Returns which states a final state can be reached from, by searching
+	 * back from the final states.
+	 */
+	private static boolean[] findUseful(List<int[]> rows, boolean[] isFinal) {
+		int n = rows.size();
+		int[] predStart = new int[n + 1];
+		for (int[] row : rows) {
+			for (int to : row)
+				predStart[to + 1]++;
+		}
+		for (int s = 0; s < n; s++)
+			predStart[s + 1] += predStart[s];
+		int[] preds = new int[predStart[n]];
+		int[] fill = predStart.clone();
+		for (int s = 0; s < n; s++) {
+			for (int to : rows.get(s))
+				preds[fill[to]++] = s;
+		}
+
+		boolean[] useful = new boolean[n];
+		int[] stack = new int[n];
+		int top = 0;
+		for (int s = 0; s < n; s++) {
+			if (isFinal[s]) {
+				useful[s] = true;
+				stack[top++] = s;
+			}
+		}
+		while (top > 0) {
+			int s = stack[--top];
+			for (int p = predStart[s]; p < predStart[s + 1]; p++) {
+				if (!useful[preds[p]]) {
+					useful[preds[p]] = true;
+					stack[top++] = preds[p];
+				}
+			}
+		}
+		return useful;
+	}
+
+	/**
+	 * Minimizes the product, unless it has no transitions or no final
+	 * states, when it is only its start state and already minimal, and
+	 * {@link HopcroftMinimizer} would not take it.
+	 */
+	private static FiniteStateAcceptor minimize(FiniteStateAcceptor product) {
+		if (product.getTransitions().isEmpty()
+				|| product.getFinalStateSet().isEmpty())
+			return product;
+		return HopcroftMinimizer.minimize(product);
+	}
+
+	private static State createState(int id) {
+		return new State(JFLAPPreferences.getDefaultStateNameBase() + id, id);
+	}
+
+}
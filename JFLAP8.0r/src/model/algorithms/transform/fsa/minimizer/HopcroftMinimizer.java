@@ -0,0 +1,354 @@
+package model.algorithms.transform.fsa.minimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import errors.BooleanWrapper;
+import model.algorithms.AlgorithmException;
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+import util.UtilFunctions;
+
+/**
+ * Minimizes a DFA in one go with Hopcroft's partition refinement, for when
+ * only the minimal DFA is wanted and not the steps of
+ * {@link MinimizeDFAAlgorithm}.
+ * <p>
+ * The reachable states are numbered and their transitions put in an int
+ * table, with a trap state added if any are missing, just as the
+ * inaccessible state and trap state steps would. The states are then split
+ * starting from final and non-final, always keeping the smaller half of a
+ * split as the new block so each state is used as a splitter O(log n)
+ * times, for O(n k log n) in all. The groups are the same as the leaves of
+ * a finished {@link MinimizeTreeModel}, and the minimal DFA has the same
+ * state names, final states and transitions as {@link BuildMinimalDFA}
+ * gives. The state IDs may differ, as they follow the order of the groups:
+ * the final ones first, each ordered by its first state.
+ */
+public class HopcroftMinimizer {
+
+	private static final String TRAP = "TRAP";
+
+	private FiniteStateAcceptor myDFA;
+	private Symbol[] mySymbols;
+	/** The reachable states, followed by the trap state if one is needed */
+	private State[] myStates;
+	/** The target of state s on symbol j is myDelta[s * k + j] */
+	private int[] myDelta;
+	private boolean[] myFinal;
+
+	/** The states, ordered so each block is a contiguous range */
+	private int[] myElements;
+	private int[] myLocation;
+	private int[] myBlock;
+	private int[] myBlockStart;
+	private int[] myBlockEnd;
+	/** The number of marked states, which are at the start of the block */
+	private int[] myMarked;
+	private int myNumBlocks;
+
+	private HopcroftMinimizer(FiniteStateAcceptor dfa) {
+		myDFA = dfa;
+		buildTable();
+	}
+
+	/**
+	 * Returns the minimal DFA equivalent to the given one.
+	 *
+	 * @throws AlgorithmException
+	 *             if the automaton is not a DFA with single symbol inputs
+	 */
+	public static FiniteStateAcceptor minimize(FiniteStateAcceptor dfa) {
+		BooleanWrapper[] bw = dfa.isComplete();
+		if (bw.length > 0)
+			throw new AlgorithmException(bw);
+		bw = MinimizeDFAAlgorithm.checkForm(dfa);
+		if (bw.length > 0)
+			throw new AlgorithmException(bw);
+
+		HopcroftMinimizer minimizer = new HopcroftMinimizer(dfa);
+		minimizer.refine();
+		return minimizer.buildMinimalDFA();
+	}
+
+	/**
+	 * Numbers the states reachable from the start state in the order they
+	 * are found, and fills in the transition table, sending every missing
+	 * transition to a trap state.
+	 * <p>
+	 * Copying an automaton, as the steps do, and removing its inaccessible
+	 * states both drop the symbols no transition uses from its alphabet, so
+	 * the table only has columns for the symbols the reachable states use.
+	 */
+	private void buildTable() {
+		Map<State, Integer> ids = new TreeMap<State, Integer>();
+		List<State> states = new ArrayList<State>();
+		Set<Symbol> used = new HashSet<Symbol>();
+		State start = myDFA.getStartState();
+		ids.put(start, 0);
+		states.add(start);
+		for (int i = 0; i < states.size(); i++) {
+			for (FSATransition trans : myDFA.getTransitions()
+					.getTransitionsFromStateView(states.get(i))) {
+				used.add(trans.getInput()[0]);
+				State to = trans.getToState();
+				if (!ids.containsKey(to)) {
+					ids.put(to, states.size());
+					states.add(to);
+				}
+			}
+		}
+
+		List<Symbol> symbols = new ArrayList<Symbol>();
+		for (Symbol s : myDFA.getInputAlphabet()) {
+			if (used.contains(s))
+				symbols.add(s);
+		}
+		mySymbols = symbols.toArray(new Symbol[0]);
+		int k = mySymbols.length;
+		Map<Symbol, Integer> symbolIndex = new HashMap<Symbol, Integer>();
+		for (int j = 0; j < k; j++)
+			symbolIndex.put(mySymbols[j], j);
+
+		int n = states.size();
+		List<int[]> rows = new ArrayList<int[]>();
+		boolean trapNeeded = false;
+		for (State from : states) {
+			int[] row = new int[k];
+			Arrays.fill(row, -1);
+			for (FSATransition trans : myDFA.getTransitions()
+					.getTransitionsFromStateView(from)) {
+				Integer j = symbolIndex.get(trans.getInput()[0]);
+				if (j != null)
+					row[j] = ids.get(trans.getToState());
+			}
+			for (int j = 0; j < k; j++)
+				trapNeeded |= row[j] == -1;
+			rows.add(row);
+		}
+
+		if (trapNeeded) {
+			int id = 0;
+			while (containsID(states, id))
+				id++;
+			states.add(new State(TRAP, id));
+			int[] row = new int[k];
+			Arrays.fill(row, n);
+			rows.add(row);
+			n++;
+		}
+		myStates = states.toArray(new State[0]);
+		myDelta = new int[n * k];
+		for (int s = 0; s < n; s++) {
+			int[] row = rows.get(s);
+			for (int j = 0; j < k; j++)
+				myDelta[s * k + j] = row[j] == -1 ? n - 1 : row[j];
+		}
+	}
+
+	private static boolean containsID(List<State> states, int id) {
+		for (State s : states) {
+			if (s.getID() == id)
+				return true;
+		}
+		return false;
+	}
+
+	private void refine() {
+		int n = myStates.length, k = mySymbols.length;
+
+		// The states that go to each state on each symbol, so the
+		// predecessors of t on j are preds[predStart[t*k+j]] onwards.
+		int[] predStart = new int[n * k + 1];
+		for (int i = 0; i < myDelta.length; i++)
+			predStart[myDelta[i] * k + i % k + 1]++;
+		for (int i = 0; i < n * k; i++)
+			predStart[i + 1] += predStart[i];
+		int[] preds = new int[myDelta.length];
+		int[] fill = predStart.clone();
+		for (int i = 0; i < myDelta.length; i++)
+			preds[fill[myDelta[i] * k + i % k]++] = i / k;
+
+		myElements = new int[n];
+		myLocation = new int[n];
+		myBlock = new int[n];
+		myBlockStart = new int[n];
+		myBlockEnd = new int[n];
+		myMarked = new int[n];
+		myFinal = new boolean[n];
+		int numFinal = 0;
+		for (int s = 0; s < n; s++) {
+			myFinal[s] = myDFA.getFinalStateSet().contains(myStates[s]);
+			if (myFinal[s])
+				numFinal++;
+		}
+		int nextFinal = 0, nextNonFinal = numFinal;
+		for (int s = 0; s < n; s++) {
+			int pos = myFinal[s] ? nextFinal++ : nextNonFinal++;
+			myElements[pos] = s;
+			myLocation[s] = pos;
+		}
+		myNumBlocks = 0;
+		if (numFinal > 0)
+			createBlock(0, numFinal);
+		if (numFinal < n)
+			createBlock(numFinal, n);
+
+		// Splitting on the smaller of the two starting blocks is enough,
+		// as the DFA is complete.
+		int[] work = new int[n];
+		boolean[] inWork = new boolean[n];
+		int numWork = 0;
+		int first = myNumBlocks == 2 && n - numFinal < numFinal ? 1 : 0;
+		work[numWork++] = first;
+		inWork[first] = true;
+
+		int[] splitter = new int[n];
+		int[] touched = new int[n];
+		while (numWork > 0) {
+			int b = work[--numWork];
+			inWork[b] = false;
+			// Copy the splitter, as it may itself be split on one symbol
+			// before the next symbol is handled.
+			int size = myBlockEnd[b] - myBlockStart[b];
+			System.arraycopy(myElements, myBlockStart[b], splitter, 0, size);
+
+			for (int j = 0; j < k; j++) {
+				int numTouched = 0;
+				for (int i = 0; i < size; i++) {
+					int t = splitter[i] * k + j;
+					for (int p = predStart[t]; p < predStart[t + 1]; p++) {
+						int s = preds[p];
+						int block = myBlock[s];
+						if (myMarked[block] == 0)
+							touched[numTouched++] = block;
+						mark(s);
+					}
+				}
+				for (int i = 0; i < numTouched; i++) {
+					int split = split(touched[i]);
+					if (split != -1 && !inWork[split]) {
+						work[numWork++] = split;
+						inWork[split] = true;
+					}
+				}
+			}
+		}
+	}
+
+	private int createBlock(int start, int end) {
+		int b = myNumBlocks++;
+		myBlockStart[b] = start;
+		myBlockEnd[b] = end;
+		myMarked[b] = 0;
+		for (int pos = start; pos < end; pos++)
+			myBlock[myElements[pos]] = b;
+		return b;
+	}
+
+	/**
+	 * Moves the state to the marked part at the start of its block, unless
+	 * it is already there.
+	 */
+	private void mark(int s) {
+		int b = myBlock[s];
+		int pos = myLocation[s];
+		int markPos = myBlockStart[b] + myMarked[b];
+		if (pos < markPos)
+			return;
+		int other = myElements[markPos];
+		myElements[markPos] = s;
+		myLocation[s] = markPos;
+		myElements[pos] = other;
+		myLocation[other] = pos;
+		myMarked[b]++;
+	}
+
+	/**
+	 * Splits the marked states of the block from the rest, unless all of
+	 * them are marked. The smaller part becomes the new block, and it is the
+	 * one that must be used as a splitter: if the old block is still waiting
+	 * to be one then both parts will be, and otherwise the smaller is enough.
+	 *
+	 * @return the new block, or -1 if there was no split
+	 */
+	private int split(int b) {
+		int start = myBlockStart[b], end = myBlockEnd[b];
+		int mid = start + myMarked[b];
+		myMarked[b] = 0;
+		if (mid == end)
+			return -1;
+		if (mid - start <= end - mid) {
+			myBlockStart[b] = mid;
+			return createBlock(start, mid);
+		}
+		myBlockEnd[b] = mid;
+		return createBlock(mid, end);
+	}
+
+	private FiniteStateAcceptor buildMinimalDFA() {
+		int k = mySymbols.length;
+		final State[][] groups = new State[myNumBlocks][];
+		Integer[] order = new Integer[myNumBlocks];
+		for (int b = 0; b < myNumBlocks; b++) {
+			groups[b] = new State[myBlockEnd[b] - myBlockStart[b]];
+			for (int pos = myBlockStart[b]; pos < myBlockEnd[b]; pos++)
+				groups[b][pos - myBlockStart[b]] = myStates[myElements[pos]];
+			Arrays.sort(groups[b]);
+			order[b] = b;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer b1, Integer b2) {
+				boolean f1 = isFinalBlock(b1), f2 = isFinalBlock(b2);
+				if (f1 != f2)
+					return f1 ? -1 : 1;
+				return groups[b1][0].compareTo(groups[b2][0]);
+			}
+		});
+
+		FiniteStateAcceptor minimal = myDFA.alphabetAloneCopy();
+		minimal.getInputAlphabet().retainAll(Arrays.asList(mySymbols));
+		State[] groupStates = new State[myNumBlocks];
+		List<State> finalStates = new ArrayList<State>();
+		for (int id = 0; id < myNumBlocks; id++) {
+			int b = order[id];
+			groupStates[b] = new State(
+					UtilFunctions.toDelimitedString(groups[b], ""), id);
+			if (isFinalBlock(b))
+				finalStates.add(groupStates[b]);
+		}
+
+		List<FSATransition> transitions = new ArrayList<FSATransition>();
+		for (int id = 0; id < myNumBlocks; id++) {
+			int b = order[id];
+			int from = myElements[myBlockStart[b]];
+			for (int j = 0; j < k; j++) {
+				int to = myBlock[myDelta[from * k + j]];
+				transitions.add(new FSATransition(groupStates[b],
+						groupStates[to], new SymbolString(mySymbols[j])));
+			}
+		}
+
+		minimal.getStates().addAll(Arrays.asList(groupStates));
+		minimal.setStartState(groupStates[myBlock[0]]);
+		minimal.getFinalStateSet().addAll(finalStates);
+		minimal.getTransitions().addAll(transitions);
+		return minimal;
+	}
+
+	private boolean isFinalBlock(int b) {
+		return myFinal[myElements[myBlockStart[b]]];
+	}
+
+}
@@ -43,6 +43,10 @@ public class MinimizeDFAAlgorithm extends FormalDefinitionAlgorithm<FiniteStateA
 
 	@Override
 	public BooleanWrapper[] checkOfProperForm(FiniteStateAcceptor fsa) {
+		return checkForm(fsa);
+	}
+
+	static BooleanWrapper[] checkForm(FiniteStateAcceptor fsa) {
 		List<BooleanWrapper> errors = new ArrayList<BooleanWrapper>();
 		FSADeterminismChecker check = new FSADeterminismChecker();
 		if (!check.isDeterministic(fsa))
@@ -147,9 +151,12 @@ public class MinimizeDFAAlgorithm extends FormalDefinitionAlgorithm<FiniteStateA
 
 	}
 
+	/**
+	 * Returns the minimal DFA without stepping through the tree, using
+	 * {@link HopcroftMinimizer}. The states have the same names as the
+	 * stepped result but may be numbered differently.
+	 */
 	public static FiniteStateAcceptor minimize(FiniteStateAcceptor dfa) {
-		MinimizeDFAAlgorithm minimizer = new MinimizeDFAAlgorithm(dfa);
-		minimizer.stepToCompletion();
-		return minimizer.getMinimizedDFA();
+		return HopcroftMinimizer.minimize(dfa);
 	}
 }
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Set;
 
 import javax.sql.rowset.spi.TransactionalWriter;
+import javax.swing.event.ChangeEvent;
 
 import debug.JFLAPDebug;
 
@@ -18,6 +19,7 @@ import model.symbols.Symbol;
 public abstract class Automaton<T extends Transition<T>> extends FormalDefinition{
 
 	private StartState myStartState;
+	private LambdaClosures myLambdaClosures;
 
 	public Automaton(FormalDefinitionComponent ... comps) {
 		super(comps); 
@@ -48,6 +50,26 @@ public abstract class Automaton<T extends Transition<T>> extends FormalDefinitio
 		return getComponentOfClass(StateSet.class);
 	}
 
+	/**
+	 * Returns the lambda closures of this automaton's states. They are found
+	 * the first time they are asked for and kept until this automaton
+	 * changes.
+	 */
+	public synchronized LambdaClosures getLambdaClosures() {
+		if (myLambdaClosures == null)
+			myLambdaClosures = new LambdaClosures(this);
+		return myLambdaClosures;
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent event) {
+		// Any change, including a transition being edited in place.
+		synchronized (this) {
+			myLambdaClosures = null;
+		}
+		super.stateChanged(event);
+	}
+
 	@Override
 	public void componentChanged(AdvancedChangeEvent event) {
 		if (event.comesFrom(this.getStates()) && event.getType() == ITEM_REMOVED){
@@ -0,0 +1,214 @@
+package model.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The lambda closure of every state of an {@link Automaton}, that is the
+ * states each one can reach using only lambda transitions.
+ * <p>
+ * The states are given dense IDs, and the closures are found all at once by
+ * condensing the strongly connected components of the lambda transitions:
+ * every state of a component has the same closure, which is the component
+ * itself plus the closures of the components it has lambda transitions to.
+ * This is a single pass over the transitions, however long the lambda
+ * chains are. Closures are kept as {@link BitSet}s of IDs so that the
+ * closure of a set of states is a handful of word-wide ORs.
+ * <p>
+ * A table is a snapshot and does not follow changes to the automaton; use
+ * {@link Automaton#getLambdaClosures()} to get one that is up to date.
+ */
+public class LambdaClosures {
+
+	private Map<State, Integer> myIDs;
+	private State[] myStates;
+	/** The closure of each state, shared by the states of a component */
+	private BitSet[] myClosures;
+
+	public LambdaClosures(Automaton<?> m) {
+		myIDs = new TreeMap<State, Integer>();
+		List<State> states = new ArrayList<State>();
+		for (State s : m.getStates())
+			addState(s, states);
+		Collection<? extends Transition<?>> transitions = m.getTransitions();
+		for (Transition<?> t : transitions) {
+			addState(t.getFromState(), states);
+			addState(t.getToState(), states);
+		}
+		myStates = states.toArray(new State[0]);
+
+		int n = myStates.length;
+		int[] count = new int[n + 1];
+		for (Transition<?> t : transitions) {
+			if (t.isLambdaTransition())
+				count[getID(t.getFromState()) + 1]++;
+		}
+		for (int i = 0; i < n; i++)
+			count[i + 1] += count[i];
+		int[] edges = new int[count[n]];
+		int[] fill = count.clone();
+		for (Transition<?> t : transitions) {
+			if (t.isLambdaTransition())
+				edges[fill[getID(t.getFromState())]++] = getID(t.getToState());
+		}
+		myClosures = findClosures(count, edges);
+	}
+
+	private void addState(State s, List<State> states) {
+		if (!myIDs.containsKey(s)) {
+			myIDs.put(s, states.size());
+			states.add(s);
+		}
+	}
+
+	/**
+	 * Runs Tarjan's algorithm, without recursion so long lambda chains do not
+	 * overflow the stack. The lambda transitions from state i go to
+	 * edges[start[i]] through edges[start[i + 1] - 1].
+	 */
+	private BitSet[] findClosures(int[] start, int[] edges) {
+		int n = myStates.length;
+		BitSet[] closures = new BitSet[n];
+		int[] index = new int[n], low = new int[n], next = new int[n];
+		int[] stack = new int[n], calls = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+		int counter = 0, sp = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1)
+				continue;
+			int depth = 0;
+			calls[depth++] = root;
+			index[root] = low[root] = counter++;
+			next[root] = start[root];
+			stack[sp++] = root;
+			onStack[root] = true;
+
+			while (depth > 0) {
+				int v = calls[depth - 1];
+				if (next[v] < start[v + 1]) {
+					int w = edges[next[v]++];
+					if (index[w] == -1) {
+						index[w] = low[w] = counter++;
+						next[w] = start[w];
+						stack[sp++] = w;
+						onStack[w] = true;
+						calls[depth++] = w;
+					} else if (onStack[w])
+						low[v] = Math.min(low[v], index[w]);
+					continue;
+				}
+
+				depth--;
+				if (depth > 0) {
+					int parent = calls[depth - 1];
+					low[parent] = Math.min(low[parent], low[v]);
+				}
+				if (low[v] != index[v])
+					continue;
+
+				// v is the root of a component, whose members are on the
+				// stack above it. Every component it reaches is finished.
+				BitSet closure = new BitSet(n);
+				int bottom = sp;
+				do {
+					bottom--;
+					closure.set(stack[bottom]);
+				} while (stack[bottom] != v);
+				for (int i = bottom; i < sp; i++) {
+					int u = stack[i];
+					for (int e = start[u]; e < start[u + 1]; e++) {
+						if (closures[edges[e]] != null)
+							closure.or(closures[edges[e]]);
+					}
+				}
+				for (int i = bottom; i < sp; i++) {
+					closures[stack[i]] = closure;
+					onStack[stack[i]] = false;
+				}
+				sp = bottom;
+			}
+		}
+		return closures;
+	}
+
+	/**
+	 * Returns the number of states, which is one more than the largest ID.
+	 */
+	public int size() {
+		return myStates.length;
+	}
+
+	/**
+	 * Returns the ID of the state, or -1 if it was not in the automaton.
+	 */
+	public int getID(State s) {
+		Integer id = myIDs.get(s);
+		return id == null ? -1 : id;
+	}
+
+	public State getState(int id) {
+		return myStates[id];
+	}
+
+	/**
+	 * Returns the closure of the state. A state that was not in the
+	 * automaton is its own closure.
+	 */
+	public TreeSet<State> getClosure(State s) {
+		int id = getID(s);
+		if (id == -1) {
+			TreeSet<State> closure = new TreeSet<State>();
+			closure.add(s);
+			return closure;
+		}
+		return getStates(myClosures[id]);
+	}
+
+	/**
+	 * Returns the IDs of the states in the closure of the given states.
+	 * States that were not in the automaton are left out.
+	 */
+	public BitSet takeClosure(Collection<State> states) {
+		BitSet closure = new BitSet(myStates.length);
+		for (State s : states) {
+			int id = getID(s);
+			if (id != -1)
+				closure.or(myClosures[id]);
+		}
+		return closure;
+	}
+
+	/**
+	 * Returns the IDs of the states in the closure of the states with the
+	 * given IDs.
+	 */
+	public BitSet takeClosure(BitSet ids) {
+		BitSet closure = new BitSet(myStates.length);
+		for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+			closure.or(myClosures[i]);
+		return closure;
+	}
+
+	/**
+	 * Adds the closure of the state with the given ID to the bitset.
+	 */
+	public void addClosure(int id, BitSet to) {
+		to.or(myClosures[id]);
+	}
+
+	public TreeSet<State> getStates(BitSet ids) {
+		TreeSet<State> states = new TreeSet<State>();
+		for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+			states.add(myStates[i]);
+		return states;
+	}
+
+}
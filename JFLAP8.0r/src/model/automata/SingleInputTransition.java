@@ -95,6 +95,14 @@ public abstract class SingleInputTransition<T extends SingleInputTransition<T>>
 	public boolean isLambdaTransition() {
 		return myInput.isEmpty();
 	}
+
+	/**
+	 * Returns the first input symbol, or null for a lambda transition.
+	 */
+	@Override
+	public Symbol getIndexSymbol() {
+		return myInput.isEmpty() ? null : myInput.getFirst();
+	}
 	
 	protected void applySetTo(T other) {
 		super.applySetTo(other);
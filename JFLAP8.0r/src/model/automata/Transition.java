@@ -1,5 +1,6 @@
 package model.automata;
 
+import model.symbols.Symbol;
 import util.UtilFunctions;
 
 public abstract class Transition<T extends Transition<T>> extends
@@ -76,6 +77,18 @@ public abstract class Transition<T extends Transition<T>> extends
 	 */
 	public abstract boolean isLambdaTransition();
 
+	/**
+	 * Returns the symbol a configuration must see next to move along this
+	 * transition, which {@link TransitionSet} indexes transitions by, or null
+	 * if this transition does not depend on a single next symbol. Subclasses
+	 * that can name one should override this.
+	 * 
+	 * @see TransitionSet#getTransitionsFromState(State, Symbol)
+	 */
+	public Symbol getIndexSymbol() {
+		return null;
+	}
+
 	/**
 	 * Returns a string representation of this object. The string returned is
 	 * the string representation of the first state, and the string
@@ -7,15 +7,19 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.swing.event.ChangeEvent;
+
 import util.UtilFunctions;
 
 import debug.JFLAPDebug;
 
 import model.formaldef.components.FormalDefinitionComponent;
+import model.formaldef.components.alphabets.Alphabet;
 import model.formaldef.components.functionset.FunctionSet;
 import model.symbols.Symbol;
 
@@ -26,10 +30,20 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 
 	private TreeMap<State, Set<T>> transitionsToStateMap;
 
+	/**
+	 * The transitions from each state, by {@link Transition#getIndexSymbol()}.
+	 * Transitions can be changed in place, which may leave them out of order
+	 * in the sorted sets of all three maps, so the maps are marked stale and
+	 * rebuilt on the next lookup whenever one of them changes.
+	 */
+	private volatile TreeMap<State, SymbolIndex<T>> transitionsBySymbolMap;
+	private volatile boolean amMapsStale;
+
 
 	public TransitionSet(){
 		transitionsFromStateMap = new TreeMap<State, Set<T>>();
 		transitionsToStateMap = new TreeMap<State, Set<T>>();
+		transitionsBySymbolMap = new TreeMap<State, SymbolIndex<T>>();
 	}
 
 	@Override
@@ -48,14 +62,58 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 				" define the language.";
 	}
 
+	/**
+	 * Returns a copy of the transitions from the state, which the caller may
+	 * change. Use {@link #getTransitionsFromStateView(State)} to only read
+	 * them.
+	 */
 	public Set<T> getTransitionsFromState(State from) {
+		updateMaps();
 		Set<T> desired = transitionsFromStateMap.get(from);
 		if (desired == null)
 			return new TreeSet<T>();		
 		return new TreeSet<T>(desired);
 	}
 
+	/**
+	 * Returns an unmodifiable view of the transitions from the state. The
+	 * view follows later changes to this set, so it must not be iterated
+	 * while transitions are added or removed.
+	 */
+	public Set<T> getTransitionsFromStateView(State from) {
+		updateMaps();
+		Set<T> desired = transitionsFromStateMap.get(from);
+		if (desired == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(desired);
+	}
+
+	public Set<T> getTransitionsToStateView(State to) {
+		updateMaps();
+		Set<T> desired = transitionsToStateMap.get(to);
+		if (desired == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(desired);
+	}
+
+	/**
+	 * Returns the transitions from the state that can be taken when the next
+	 * symbol is the one given: those whose {@link Transition#getIndexSymbol()}
+	 * equals it, and those with no index symbol. Passing null returns only
+	 * the latter, e.g. the lambda transitions of an automaton that reads
+	 * input. The result is a sorted, unmodifiable view kept by this set, so
+	 * the lookup does not copy anything.
+	 */
+	public Set<T> getTransitionsFromState(State from, Symbol next) {
+		updateMaps();
+		SymbolIndex<T> index = transitionsBySymbolMap.get(from);
+		if (index == null)
+			return Collections.emptySet();
+		return index.get(next);
+	}
+
 	public Set<T> getTransitionsToState(State to) {
+		updateMaps();
 		Set<T> desired = transitionsToStateMap.get(to);
 		if (desired == null)
 			return new TreeSet<T>();		
@@ -77,26 +135,45 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 	}
 
 	private void addToMaps(T trans){
+		// A stale set is rebuilt from scratch on the next lookup anyway.
+		if (amMapsStale)
+			return;
+		addToStateMaps(transitionsFromStateMap, transitionsToStateMap, trans);
+		addToIndex(transitionsBySymbolMap, trans);
+	}
+
+	private static <T extends Transition<T>> void addToStateMaps(
+			Map<State, Set<T>> fromMap, Map<State, Set<T>> toMap, T trans) {
 
-		Set<T> fromList = transitionsFromStateMap.get(trans.getFromState());
+		Set<T> fromList = fromMap.get(trans.getFromState());
 		if (fromList == null){
 			fromList = new TreeSet<T>();
 		}
 		fromList.add(trans);
-		transitionsFromStateMap.put(trans.getFromState(), fromList);
-		if (transitionsFromStateMap.get(trans.getToState()) == null){
-			transitionsFromStateMap.put(trans.getToState(), new TreeSet<T>());
+		fromMap.put(trans.getFromState(), fromList);
+		if (fromMap.get(trans.getToState()) == null){
+			fromMap.put(trans.getToState(), new TreeSet<T>());
 		}
 
-		Set<T> toList = transitionsToStateMap.get(trans.getToState());
+		Set<T> toList = toMap.get(trans.getToState());
 		if (toList == null){
 			toList = new TreeSet<T>();
 		}
 		toList.add(trans);
-		transitionsToStateMap.put(trans.getToState(), toList);
-		if (transitionsToStateMap.get(trans.getFromState()) == null){
-			transitionsToStateMap.put(trans.getFromState(), new TreeSet<T>());
+		toMap.put(trans.getToState(), toList);
+		if (toMap.get(trans.getFromState()) == null){
+			toMap.put(trans.getFromState(), new TreeSet<T>());
+		}
+	}
+
+	private static <T extends Transition<T>> void addToIndex(
+			Map<State, SymbolIndex<T>> map, T trans) {
+		SymbolIndex<T> index = map.get(trans.getFromState());
+		if (index == null){
+			index = new SymbolIndex<T>();
+			map.put(trans.getFromState(), index);
 		}
+		index.add(trans);
 	}
 
 	@Override
@@ -110,6 +187,8 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 
 
 	private void removeFromMaps(T t){
+		if (amMapsStale)
+			return;
 		//update fromStateMap
 		Set<T> fromFromSet = transitionsFromStateMap.get(t.getFromState());
 		Set<T> toToSet = transitionsToStateMap.get(t.getToState());
@@ -132,6 +211,61 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 			transitionsToStateMap.remove(t.getFromState());
 		}
 
+		SymbolIndex<T> index = transitionsBySymbolMap.get(t.getFromState());
+		if (index != null && index.remove(t))
+			transitionsBySymbolMap.remove(t.getFromState());
+	}
+
+	/**
+	 * Rebuilds the maps from scratch if a transition has been changed in
+	 * place since they were last built.
+	 */
+	private void updateMaps() {
+		if (amMapsStale){
+			synchronized (this) {
+				if (amMapsStale){
+					TreeMap<State, Set<T>> fromMap = new TreeMap<State, Set<T>>();
+					TreeMap<State, Set<T>> toMap = new TreeMap<State, Set<T>>();
+					TreeMap<State, SymbolIndex<T>> index = 
+							new TreeMap<State, SymbolIndex<T>>();
+					for (T trans : this){
+						addToStateMaps(fromMap, toMap, trans);
+						addToIndex(index, trans);
+					}
+					transitionsFromStateMap = fromMap;
+					transitionsToStateMap = toMap;
+					transitionsBySymbolMap = index;
+					amMapsStale = false;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		// A transition was changed, maybe moving it to another index symbol
+		// or out of order in the maps.
+		amMapsStale = true;
+		super.stateChanged(e);
+	}
+
+	@Override
+	public boolean applySymbolMod(String from, String to) {
+		boolean changed = super.applySymbolMod(from, to);
+		amMapsStale = true;
+		if (changed)
+			resort();
+		return changed;
+	}
+
+	@Override
+	public boolean purgeOfSymbols(Alphabet a, Collection<Symbol> s) {
+		boolean purged = super.purgeOfSymbols(a, s);
+		if (purged) {
+			amMapsStale = true;
+			resort();
+		}
+		return purged;
 	}
 
 	@Override
@@ -139,6 +273,8 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 		super.clear();
 		transitionsFromStateMap.clear();
 		transitionsToStateMap.clear();
+		transitionsBySymbolMap = new TreeMap<State, SymbolIndex<T>>();
+		amMapsStale = false;
 	}
 
 	@Override
@@ -194,5 +330,72 @@ public class TransitionSet<T extends Transition<T>> extends FunctionSet<T> {
 
 	}
 
+	/**
+	 * The transitions from one state by index symbol. The set kept for each
+	 * symbol also holds every transition with no index symbol, so a lookup
+	 * is a single map access that returns a ready made view.
+	 */
+	private static class SymbolIndex<T extends Transition<T>> {
+		private TreeSet<T> myUnindexed;
+		private Set<T> myUnindexedView;
+		private HashMap<Symbol, TreeSet<T>> myIndexed;
+		private HashMap<Symbol, Set<T>> myIndexedViews;
+
+		private SymbolIndex() {
+			myUnindexed = new TreeSet<T>();
+			myUnindexedView = Collections.unmodifiableSet(myUnindexed);
+			myIndexed = new HashMap<Symbol, TreeSet<T>>();
+			myIndexedViews = new HashMap<Symbol, Set<T>>();
+		}
+
+		private Set<T> get(Symbol next) {
+			if (next != null){
+				Set<T> indexed = myIndexedViews.get(next);
+				if (indexed != null)
+					return indexed;
+			}
+			return myUnindexedView;
+		}
+
+		private void add(T trans) {
+			Symbol key = trans.getIndexSymbol();
+			if (key == null){
+				myUnindexed.add(trans);
+				for (TreeSet<T> indexed : myIndexed.values())
+					indexed.add(trans);
+				return;
+			}
+			TreeSet<T> indexed = myIndexed.get(key);
+			if (indexed == null){
+				indexed = new TreeSet<T>(myUnindexed);
+				myIndexed.put(key, indexed);
+				myIndexedViews.put(key, Collections.unmodifiableSet(indexed));
+			}
+			indexed.add(trans);
+		}
+
+		/**
+		 * Returns true if no transitions are left.
+		 */
+		private boolean remove(T trans) {
+			Symbol key = trans.getIndexSymbol();
+			if (key == null){
+				myUnindexed.remove(trans);
+				for (TreeSet<T> indexed : myIndexed.values())
+					indexed.remove(trans);
+			} else {
+				TreeSet<T> indexed = myIndexed.get(key);
+				if (indexed != null){
+					indexed.remove(trans);
+					if (indexed.size() == myUnindexed.size()){
+						myIndexed.remove(key);
+						myIndexedViews.remove(key);
+					}
+				}
+			}
+			return myUnindexed.isEmpty() && myIndexed.isEmpty();
+		}
+	}
+
 	
 }
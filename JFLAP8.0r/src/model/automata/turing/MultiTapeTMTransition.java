@@ -134,6 +134,14 @@ public class MultiTapeTMTransition extends Transition<MultiTapeTMTransition> {
 		return myReads.length;
 	}
 
+	/**
+	 * Returns the symbol read on the first tape.
+	 */
+	@Override
+	public Symbol getIndexSymbol() {
+		return myReads[0];
+	}
+
 	@Override
 	public int compareTo(MultiTapeTMTransition o) {
 		int compare = super.compareTo(o);
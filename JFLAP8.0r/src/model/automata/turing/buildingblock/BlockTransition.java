@@ -91,6 +91,15 @@ public class BlockTransition extends SingleInputTransition<BlockTransition> impl
 		return super.setTo(other);
 	}
 
+	/**
+	 * Block transitions may read any symbol (~) or any but one (!), so they
+	 * are not indexed.
+	 */
+	@Override
+	public Symbol getIndexSymbol() {
+		return null;
+	}
+
 	@Override
 	public SymbolString[] getPartsForAlphabet(Alphabet a) {
 		SymbolString[] strings = super.getPartsForAlphabet(a);
@@ -1,7 +1,7 @@
 package model.change;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -10,22 +10,41 @@ import javax.swing.event.ChangeListener;
 public class ChangingObject {
 
 	
-	private Set<ChangeListener> myListeners;
+	/**
+	 * The listeners, in the order they were added. Listeners are told apart
+	 * by identity, as many of them are sets whose equals and hashCode look
+	 * at (and take time proportional to) their contents.
+	 */
+	private List<ChangeListener> myListeners;
 	
 	public ChangingObject() {
-		myListeners = new HashSet<ChangeListener>();
+		myListeners = new ArrayList<ChangeListener>(2);
 	}
 	
 	public boolean addListener(ChangeListener listener){
+		if (indexOfListener(listener) != -1)
+			return false;
 		return myListeners.add(listener);
 	}
+
+	private int indexOfListener(ChangeListener listener) {
+		for (int i = 0; i < myListeners.size(); i++){
+			if (myListeners.get(i) == listener)
+				return i;
+		}
+		return -1;
+	}
 	
 	public void clearListeners(){
 		myListeners.clear();
 	}
 	
 	public boolean removeListener(ChangeListener listener){
-		return myListeners.remove(listener);
+		int i = indexOfListener(listener);
+		if (i == -1)
+			return false;
+		myListeners.remove(i);
+		return true;
 	}
 	
 	public void distributeChanged(){
@@ -38,6 +38,7 @@ import model.grammar.Variable;
 import model.symbols.SpecialSymbol;
 import model.symbols.Symbol;
 import model.symbols.SymbolString;
+import model.symbols.SymbolTable;
 import errors.BooleanWrapper;
 
 
@@ -50,6 +51,9 @@ Copyable{
 
 	private LinkedList<FormalDefinitionComponent> myComponents;
 	private JFLAPMode myMode;
+	private SymbolTable mySymbolTable;
+	/** Whether every symbol of the alphabets has been interned */
+	private boolean amSymbolTableCurrent;
 
 	public FormalDefinition(FormalDefinitionComponent ... comps) {
 		myComponents = new LinkedList<FormalDefinitionComponent>();
@@ -209,6 +213,9 @@ Copyable{
 
 	@Override
 	public void stateChanged(ChangeEvent event) {
+		Object source = event.getSource();
+		if (source instanceof Alphabet || source instanceof Symbol)
+			markSymbolTableStale();
 		if (event instanceof AdvancedChangeEvent)
 			this.componentChanged((AdvancedChangeEvent) event);
 	}
@@ -285,6 +292,29 @@ Copyable{
 		this.myMode = myMode;
 	}
 	
+	/**
+	 * Returns the {@link SymbolTable} of this definition, which has an ID for
+	 * every symbol currently in its alphabets. The same table is returned
+	 * for the life of this definition, so IDs can be cached. The alphabets
+	 * are only read again after one of them has changed.
+	 */
+	public synchronized SymbolTable getSymbolTable() {
+		if (mySymbolTable == null)
+			mySymbolTable = new SymbolTable();
+		if (!amSymbolTableCurrent) {
+			for (Alphabet a : this.getAlphabets()) {
+				for (Symbol s : a)
+					mySymbolTable.internID(s);
+			}
+			amSymbolTableCurrent = true;
+		}
+		return mySymbolTable;
+	}
+
+	private synchronized void markSymbolTableStale() {
+		amSymbolTableCurrent = false;
+	}
+
 	public boolean usingGrouping(){
 		return false;
 	}
@@ -1,9 +1,11 @@
 package model.formaldef.components;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -187,11 +189,60 @@ public abstract class SetComponent<T extends SetSubComponent<T>> extends FormalD
 	public void stateChanged(ChangeEvent e) {
 		if (e instanceof SetToEvent){
 			SetToEvent<T> event = (SetToEvent<T>) e;
+			T item = event.getSource();
+			boolean kept = !removeByIdentity(item) || myComponents.add(item);
 			this.distributeChange(new ModifyEvent(this, event));
+			if (!kept){
+				// It now equals another item, and the set cannot hold both.
+				detach(Arrays.asList(item));
+			}
 		}
 		else
 			this.distributeChange(e);
 	}
-	
+
+	/**
+	 * Takes out the item that was changed in place, which may now be out of
+	 * order, so it is found by walking the set and not by comparing.
+	 */
+	private boolean removeByIdentity(T item) {
+		for (Iterator<T> it = myComponents.iterator(); it.hasNext();){
+			if (it.next() == item){
+				it.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts the set again after its items were changed in place without a
+	 * {@link SetToEvent}, as when symbols are renamed or purged. Items that
+	 * now equal an earlier one are dropped.
+	 */
+	protected void resort() {
+		TreeSet<T> sorted = new TreeSet<T>();
+		List<T> dropped = new ArrayList<T>();
+		for (T item : myComponents){
+			if (!sorted.add(item))
+				dropped.add(item);
+		}
+		myComponents = sorted;
+		if (!dropped.isEmpty())
+			detach(dropped);
+	}
+
+	/**
+	 * Stops listening to items already taken out of the set and tells the
+	 * listeners they were removed. {@link SetSubComponent#removeParent}
+	 * is not used, as it would remove the equal items still here.
+	 */
+	private void detach(List<T> items) {
+		for (T item : items){
+			item.getParents().remove(this);
+			item.removeListener(this);
+		}
+		this.distributeChange(new RemoveEvent<T>(this, items));
+	}
 
 }
@@ -1,6 +1,7 @@
 package model.formaldef.components;
 
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -24,7 +25,9 @@ Settable<T>{
 	private Set<SetComponent<T>> myParents;
 
 	public SetSubComponent(){
-		myParents = new HashSet<SetComponent<T>>();
+		// By identity, as the parents' hash codes depend on their contents.
+		myParents = Collections.newSetFromMap(
+				new IdentityHashMap<SetComponent<T>, Boolean>());
 	}
 
 	public void addParent(SetComponent<T> parent){
@@ -1,15 +1,38 @@
 package model.grammar;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.swing.event.ChangeEvent;
+
 import model.formaldef.components.FormalDefinitionComponent;
+import model.formaldef.components.alphabets.Alphabet;
 import model.formaldef.components.functionset.FunctionSet;
 import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
 public class ProductionSet extends FunctionSet<Production> {
 
+	/**
+	 * The productions by left side and by the symbols on each side.
+	 * Productions can be changed in place, so this is marked stale and
+	 * rebuilt on the next lookup whenever one of them changes. Renaming or
+	 * purging symbols also sorts the set again, as it can make two
+	 * productions equal.
+	 */
+	private volatile ProductionIndex myIndex;
+	private volatile boolean amIndexStale;
+
+	public ProductionSet() {
+		myIndex = new ProductionIndex();
+	}
+
 	@Override
 	public Character getCharacterAbbr() {
 		return 'P';
@@ -34,37 +57,50 @@ public class ProductionSet extends FunctionSet<Production> {
 	 * @return
 	 */
 	public Production[] getProductionsWithLHS(SymbolString lhs) {
-		TreeSet<Production> prods = new TreeSet<Production>();
-		for (Production p: this){
-			if (p.equalsLHS(lhs))
-				prods.add(p);
+		LHSNode node = getIndex().myLHSRoot;
+		for (Symbol s : lhs) {
+			node = node.myChildren.get(s);
+			if (node == null)
+				return new Production[0];
 		}
-		return prods.toArray(new Production[0]);
+		return node.getProductions().clone();
 	}
 
-	public Set<Production> getProductionsWithSymbolOnLHS(Symbol s) {
-		Set<Production> prods = new TreeSet<Production>();
-		for (Production p: this){
-			if (p.containsSymbolOnLHS(s))
-				prods.add(p);
+	/**
+	 * Returns every substring of the sentential form that is the left side
+	 * of some production, with those productions, ordered by where the
+	 * substring starts and then by its length. The form is walked down the
+	 * left side trie once from each position, so each match costs one map
+	 * lookup per symbol and none is looked for that no production has.
+	 */
+	public List<LHSMatch> getLHSMatches(SymbolSequence form) {
+		LHSNode root = getIndex().myLHSRoot;
+		List<LHSMatch> matches = new ArrayList<LHSMatch>();
+		for (int i = 0; i < form.size(); i++) {
+			LHSNode node = root;
+			for (int j = i; j < form.size(); j++) {
+				node = node.myChildren.get(form.get(j));
+				if (node == null)
+					break;
+				Production[] prods = node.getProductions();
+				if (prods.length > 0)
+					matches.add(new LHSMatch(i, j + 1, prods));
+			}
 		}
+		return matches;
+	}
 
-		return prods;
+	public Set<Production> getProductionsWithSymbolOnLHS(Symbol s) {
+		return getIndex().getWithSymbol(getIndex().myLHSSymbols, s);
 	}
 
 	@Override
 	public ProductionSet copy() {
 		return (ProductionSet) super.copy();
 	}
-	
-	public Set<Production> getProductionsWithSymbolOnRHS(Symbol s) {
-		Set<Production> prods = new TreeSet<Production>();
-		for (Production p: this){
-			if (p.containsSymbolOnRHS(s))
-				prods.add(p);
-		}
 
-		return prods;
+	public Set<Production> getProductionsWithSymbolOnRHS(Symbol s) {
+		return getIndex().getWithSymbol(getIndex().myRHSSymbols, s);
 	}
 
 	@Override
@@ -76,8 +112,220 @@ public class ProductionSet extends FunctionSet<Production> {
 		int maxLHSsize = 0;
 		for (Production p : this) {
 			maxLHSsize = Math.max(p.getLHS().length, maxLHSsize);
-		}	
+		}
 		return maxLHSsize;
 	}
 
+	/**
+	 * Updates the index first, so listeners to the add see it. A production
+	 * changed in place can leave it out of order in this set, and then this
+	 * set and the index may disagree on what is already there, so the index
+	 * is marked stale unless they added the same number of productions.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Production> c) {
+		int size = size(), indexed = 0;
+		if (!amIndexStale) {
+			for (Production p : c) {
+				if (myIndex.add(p))
+					indexed++;
+			}
+		}
+		boolean added = super.addAll(c);
+		if (size() - size != indexed)
+			amIndexStale = true;
+		return added;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		int size = size(), indexed = 0;
+		if (!amIndexStale) {
+			for (Object o : c) {
+				if (o instanceof Production && myIndex.remove((Production) o))
+					indexed++;
+			}
+		}
+		boolean removed = super.removeAll(c);
+		if (size - size() != indexed)
+			amIndexStale = true;
+		return removed;
+	}
+
+	/**
+	 * Returns the index, first rebuilding it from scratch if a production
+	 * has been changed in place since it was last built.
+	 */
+	private ProductionIndex getIndex() {
+		if (amIndexStale) {
+			synchronized (this) {
+				if (amIndexStale) {
+					ProductionIndex index = new ProductionIndex();
+					for (Production p : this)
+						index.add(p);
+					myIndex = index;
+					amIndexStale = false;
+				}
+			}
+		}
+		return myIndex;
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		// A production was changed, so it may be filed under the wrong sides.
+		amIndexStale = true;
+		super.stateChanged(e);
+	}
+
+	@Override
+	public boolean applySymbolMod(String from, String to) {
+		boolean changed = super.applySymbolMod(from, to);
+		amIndexStale = true;
+		if (changed)
+			resort();
+		return changed;
+	}
+
+	@Override
+	public boolean purgeOfSymbols(Alphabet a, Collection<Symbol> s) {
+		boolean purged = super.purgeOfSymbols(a, s);
+		if (purged) {
+			amIndexStale = true;
+			resort();
+		}
+		return purged;
+	}
+
+	/**
+	 * A substring of a sentential form, from start up to end, that is the
+	 * left side of the given productions. The array is shared with the
+	 * index and must not be modified.
+	 */
+	public static class LHSMatch {
+		private int myStart, myEnd;
+		private Production[] myProductions;
+
+		private LHSMatch(int start, int end, Production[] productions) {
+			myStart = start;
+			myEnd = end;
+			myProductions = productions;
+		}
+
+		public int getStart() {
+			return myStart;
+		}
+
+		public int getEnd() {
+			return myEnd;
+		}
+
+		public Production[] getProductions() {
+			return myProductions;
+		}
+	}
+
+	/**
+	 * A trie of left sides, so the productions with a given left side are
+	 * found one symbol at a time. The productions at a node are kept as an
+	 * array too, made again only after they change.
+	 */
+	private static class LHSNode {
+		private Map<Symbol, LHSNode> myChildren;
+		private TreeSet<Production> myProductions;
+		private volatile Production[] myArray;
+
+		private LHSNode() {
+			myChildren = new HashMap<Symbol, LHSNode>();
+			myProductions = new TreeSet<Production>();
+		}
+
+		private Production[] getProductions() {
+			Production[] prods = myArray;
+			if (prods == null)
+				myArray = prods = myProductions.toArray(new Production[0]);
+			return prods;
+		}
+	}
+
+	private static class ProductionIndex {
+		private LHSNode myLHSRoot;
+		private Map<Symbol, TreeSet<Production>> myLHSSymbols, myRHSSymbols;
+
+		private ProductionIndex() {
+			myLHSRoot = new LHSNode();
+			myLHSSymbols = new HashMap<Symbol, TreeSet<Production>>();
+			myRHSSymbols = new HashMap<Symbol, TreeSet<Production>>();
+		}
+
+		/**
+		 * Adds the production, returning false if it was already here.
+		 */
+		private boolean add(Production p) {
+			LHSNode node = myLHSRoot;
+			for (Symbol s : p.getLHS()) {
+				LHSNode child = node.myChildren.get(s);
+				if (child == null)
+					node.myChildren.put(s, child = new LHSNode());
+				node = child;
+			}
+			if (!node.myProductions.add(p))
+				return false;
+			node.myArray = null;
+			addWithSymbols(myLHSSymbols, p.getLHS(), p);
+			addWithSymbols(myRHSSymbols, p.getRHS(), p);
+			return true;
+		}
+
+		/**
+		 * Removes the production, returning false if it was not here.
+		 */
+		private boolean remove(Production p) {
+			LHSNode node = myLHSRoot;
+			for (Symbol s : p.getLHS()) {
+				node = node.myChildren.get(s);
+				if (node == null)
+					return false;
+			}
+			if (!node.myProductions.remove(p))
+				return false;
+			node.myArray = null;
+			for (Symbol s : p.getLHS())
+				removeWithSymbol(myLHSSymbols, s, p);
+			for (Symbol s : p.getRHS())
+				removeWithSymbol(myRHSSymbols, s, p);
+			return true;
+		}
+
+		private static void addWithSymbols(
+				Map<Symbol, TreeSet<Production>> map, Symbol[] side,
+				Production p) {
+			for (Symbol s : side) {
+				TreeSet<Production> prods = map.get(s);
+				if (prods == null)
+					map.put(s, prods = new TreeSet<Production>());
+				prods.add(p);
+			}
+		}
+
+		private static void removeWithSymbol(
+				Map<Symbol, TreeSet<Production>> map, Symbol s, Production p) {
+			TreeSet<Production> prods = map.get(s);
+			if (prods != null && prods.remove(p) && prods.isEmpty())
+				map.remove(s);
+		}
+
+		/**
+		 * Returns a copy of the productions with the symbol, which callers
+		 * are free to change.
+		 */
+		private Set<Production> getWithSymbol(
+				Map<Symbol, TreeSet<Production>> map, Symbol s) {
+			TreeSet<Production> prods = map.get(s);
+			if (prods == null)
+				return new TreeSet<Production>();
+			return new TreeSet<Production>(prods);
+		}
+	}
+
 }
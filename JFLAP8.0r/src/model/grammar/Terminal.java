@@ -19,4 +19,11 @@ public class Terminal extends Symbol {
 		return "Terminal";
 	}
 
+	@Override
+	public Symbol copy() {
+		if (this.getClass() == Terminal.class)
+			return new Terminal(getString());
+		return super.copy();
+	}
+
 }
@@ -18,6 +18,13 @@ public class Variable extends Symbol {
 	public String getDescriptionName() {
 		return "Variable";
 	}
+
+	@Override
+	public Symbol copy() {
+		if (this.getClass() == Variable.class)
+			return new Variable(getString());
+		return super.copy();
+	}
 	
 	
 	
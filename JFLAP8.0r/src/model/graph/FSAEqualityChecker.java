@@ -20,11 +20,14 @@
 
 package model.graph;
 
-import debug.JFLAPDebug;
-import model.algorithms.transform.fsa.NFAtoDFAConverter;
-import model.algorithms.transform.fsa.minimizer.MinimizeDFAAlgorithm;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.algorithms.transform.fsa.LazyDFA;
 import model.automata.acceptors.fsa.FiniteStateAcceptor;
-import model.automata.determinism.FSADeterminismChecker;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
 
 /**
  * This determines if two FSAs accept the same language.
@@ -45,24 +48,109 @@ public class FSAEqualityChecker {
 	 *         not
 	 */
 	public boolean equals(FiniteStateAcceptor fsa1, FiniteStateAcceptor fsa2) {
-		// Clone for safety.
-		fsa1 = fsa1.copy();
-		fsa2 = fsa2.copy();
-
-		// Make sure they're DFAs.
-		FSADeterminismChecker check = new FSADeterminismChecker();
-		if(!check.isDeterministic(fsa1))
-			fsa1 = NFAtoDFAConverter.convertToDFA(fsa1);
-		if(!check.isDeterministic(fsa2))
-			fsa2 = NFAtoDFAConverter.convertToDFA(fsa2);
-		// Minimize the DFAs.
-		fsa1 = MinimizeDFAAlgorithm.minimize(fsa1);
-		fsa2 = MinimizeDFAAlgorithm.minimize(fsa2);
-		// Check the minimized DFAs to see if they are the same.
-		return checker.equals(fsa1, fsa2);
+		return getDistinguishingString(fsa1, fsa2) == null;
+	}
+
+	/**
+	 * Finds a shortest string that one FSA accepts and the other does not,
+	 * without making either into a DFA or minimizing it first.
+	 * <p>
+	 * The sets of states each FSA may be in after reading a string are made
+	 * only as they are reached, and pairs of them are explored breadth first
+	 * as Hopcroft and Karp do: each pair found is merged into one class of a
+	 * union-find, and a pair already in one class is not explored, as the
+	 * pairs that put it there decide the same strings. The search stops at
+	 * the first pair of which one set is final and the other is not, so it
+	 * takes time close to linear in the number of sets reached, and less if
+	 * the FSAs differ on a short string.
+	 * 
+	 * @param fsa1
+	 *            the first finite state automaton
+	 * @param fsa2
+	 *            the second finite state automaton
+	 * @return a shortest string accepted by exactly one of the FSAs, or
+	 *         <CODE>null</CODE> if they accept the same language
+	 */
+	public SymbolString getDistinguishingString(FiniteStateAcceptor fsa1,
+			FiniteStateAcceptor fsa2) {
+		Symbol[] symbols = LazyDFA.getSymbols(fsa1, fsa2);
+		LazyDFA dfa1 = new LazyDFA(fsa1, symbols);
+		LazyDFA dfa2 = new LazyDFA(fsa2, symbols);
+
+		// Each pair is the states of the two DFAs, the pair it was reached
+		// from and the symbol it was reached on.
+		List<int[]> pairs = new ArrayList<int[]>();
+		UnionFind classes = new UnionFind();
+		int start1 = dfa1.getStartState(), start2 = dfa2.getStartState();
+		if (dfa1.isFinal(start1) != dfa2.isFinal(start2))
+			return new SymbolString();
+		classes.union(2 * start1, 2 * start2 + 1);
+		pairs.add(new int[] { start1, start2, -1, -1 });
+		for (int i = 0; i < pairs.size(); i++) {
+			int[] pair = pairs.get(i);
+			for (int j = 0; j < symbols.length; j++) {
+				int to1 = dfa1.next(pair[0], j), to2 = dfa2.next(pair[1], j);
+				if (!classes.union(2 * to1, 2 * to2 + 1))
+					continue;
+				pairs.add(new int[] { to1, to2, i, j });
+				if (dfa1.isFinal(to1) != dfa2.isFinal(to2))
+					return getString(pairs, pairs.size() - 1, symbols);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the string that reaches the pair, following the pairs back
+	 * to the first.
+	 */
+	private static SymbolString getString(List<int[]> pairs, int i,
+			Symbol[] symbols) {
+		List<Symbol> string = new ArrayList<Symbol>();
+		for (int[] pair = pairs.get(i); pair[2] != -1; pair = pairs.get(pair[2]))
+			string.add(symbols[pair[3]]);
+		SymbolString result = new SymbolString();
+		for (int k = string.size() - 1; k >= 0; k--)
+			result.add(string.get(k));
+		return result;
 	}
 
-	/** The equality checker. */
-	private static DFAEqualityChecker checker = new DFAEqualityChecker();
+	/**
+	 * Classes of the states of both DFAs, state s of the first being 2s and
+	 * of the second 2s+1, made as they are first used.
+	 */
+	private static class UnionFind {
+		private int[] myParent = new int[0];
+
+		private int find(int x) {
+			if (x >= myParent.length) {
+				int old = myParent.length;
+				myParent = Arrays.copyOf(myParent, Math.max(2 * old, x + 1));
+				for (int i = old; i < myParent.length; i++)
+					myParent[i] = i;
+			}
+			int root = x;
+			while (myParent[root] != root)
+				root = myParent[root];
+			while (myParent[x] != root) {
+				int next = myParent[x];
+				myParent[x] = root;
+				x = next;
+			}
+			return root;
+		}
+
+		/**
+		 * Merges the classes of the two, returning false if they were
+		 * already one class.
+		 */
+		private boolean union(int x, int y) {
+			int rx = find(x), ry = find(y);
+			if (rx == ry)
+				return false;
+			myParent[rx] = ry;
+			return true;
+		}
+	}
 
 }
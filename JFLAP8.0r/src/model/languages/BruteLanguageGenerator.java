@@ -11,15 +11,16 @@ import model.algorithms.testinput.parse.Derivation;
 import model.algorithms.testinput.parse.brute.UnrestrictedBruteParser;
 import model.grammar.Grammar;
 import model.grammar.Production;
+import model.grammar.ProductionSet.LHSMatch;
 import model.grammar.Variable;
 import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
 public class BruteLanguageGenerator extends LanguageGenerator {
 
 	private Queue<Derivation> myDerivationQueue;
-	private Set<SymbolString> mySententialsSeen;
-	private int maxLHSsize;
+	private Set<SymbolSequence> mySententialsSeen;
 
 	public BruteLanguageGenerator(Grammar g) {
 		super(g);
@@ -29,8 +30,7 @@ public class BruteLanguageGenerator extends LanguageGenerator {
 	protected void initialize(Grammar g) {
 		super.initialize(g);
 		myDerivationQueue = new LinkedList<Derivation>();
-		mySententialsSeen = new HashSet<SymbolString>();
-		maxLHSsize = g.getProductionSet().getMaxLHSLength();
+		mySententialsSeen = new HashSet<SymbolSequence>();
 	}
 
 	@Override
@@ -49,7 +49,7 @@ public class BruteLanguageGenerator extends LanguageGenerator {
 			SymbolString sentential = d.createResult();
 			if (sentential.getSymbolsOfClass(Variable.class).size() == 0
 					&& getStringsInLanguage().size() < getNumberToGenerate()) {
-				mySententialsSeen.add(sentential);
+				mySententialsSeen.add(new SymbolSequence(sentential));
 				addStringToLanguage(sentential);
 			}
 		}
@@ -69,31 +69,26 @@ public class BruteLanguageGenerator extends LanguageGenerator {
 
 		while (!myDerivationQueue.isEmpty()) {
 			Derivation d = myDerivationQueue.poll();
-			SymbolString result = d.createResult();
+			SymbolSequence result = d.createResultSequence();
 
-			for (int i = 0; i < result.size(); i++) {
-				for (int j = i; j < Math.min(maxLHSsize + i, result.size()); j++) {
-					SymbolString LHS = result.subList(i, j + 1);
+			for (LHSMatch match : getGrammar().getProductionSet()
+					.getLHSMatches(result)) {
+				int i = match.getStart();
+				for (Production p : match.getProductions()) {
 
-					Production[] productionsWithLHS = getGrammar()
-							.getProductionSet().getProductionsWithLHS(LHS);
-					for (Production p : productionsWithLHS) {
+					if (getStringsInLanguage().size() >= getNumberToGenerate())
+						return;
 
-						if (getStringsInLanguage().size() >= getNumberToGenerate())
-							return;
+					Derivation tempDerivation = d.copy();
+					tempDerivation.addStep(p, i);
+					SymbolSequence sentential = tempDerivation
+							.createResultSequence();
 
-						Derivation tempDerivation = d.copy();
-						tempDerivation.addStep(p, result.indexOf(LHS, i));
-						SymbolString sentential = tempDerivation.createResult();
+					if (mySententialsSeen.add(sentential)) {
+						temp.add(tempDerivation);
 
-						if (!mySententialsSeen.contains(sentential)) {
-							temp.add(tempDerivation);
-							mySententialsSeen.add(sentential);
-
-							if (sentential.getSymbolsOfClass(Variable.class)
-									.size() == 0) {
-								addStringToLanguage(sentential);
-							}
+						if (!containsVariable(sentential)) {
+							addStringToLanguage(sentential.toSymbolString());
 						}
 					}
 				}
@@ -102,6 +97,13 @@ public class BruteLanguageGenerator extends LanguageGenerator {
 		myDerivationQueue.addAll(temp);
 	}
 
+	private boolean containsVariable(SymbolSequence sentential) {
+		for (Symbol s : sentential)
+			if (Grammar.isVariable(s))
+				return true;
+		return false;
+	}
+
 	@Override
 	public void generateStringsOfLength(int length) {
 		setNumberToGenerate(LARGE_NUMBER);
@@ -113,7 +115,7 @@ public class BruteLanguageGenerator extends LanguageGenerator {
 			SymbolString sentential = d.createResult();
 			if (sentential.getSymbolsOfClass(Variable.class).size() == 0
 					&& length == sentential.size()) {
-				mySententialsSeen.add(sentential);
+				mySententialsSeen.add(new SymbolSequence(sentential));
 				addStringToLanguage(sentential);
 			}
 		}
@@ -2,24 +2,44 @@ package model.languages;
 
 /**
  * Class used for generating sentences
- * in a language given a grammar 
- * for the language
- * 
+ * in a language given a grammar
+ * for the language.
+ * <p>
+ * The grammar is converted to Chomsky normal form, and for each length the
+ * variables that derive some string of that length are found, so strings of
+ * a length are listed in order by following only the derivations that can
+ * finish at that length, without trying strings outside the language. The
+ * number of derivations of each variable at each length lets strings be
+ * picked at random as well.
+ *
  * @author Ian McMahon
  */
 
+import java.math.BigInteger;
 import java.util.*;
 
-import model.algorithms.testinput.parse.*;
-import model.algorithms.testinput.parse.cyk.CYKParser;
+import model.algorithms.testinput.parse.FirstFollowSets;
 import model.algorithms.transform.grammar.CNFConverter;
 import model.grammar.*;
 import model.symbols.*;
 
 public class ContextFreeLanguageGenerator extends LanguageGenerator {
 	private Grammar CNFGrammar;
-	private Parser myParser;
-	private Set<SymbolString> myPossibleStrings;
+	/** The terminals of the CNF grammar, in order */
+	private Terminal[] myTerminals;
+	/** The IDs of the terminals each variable has a production to */
+	private BitSet[] myTerminalRHS;
+	/** The two variables of each of a variable's other productions, in pairs */
+	private int[][] myVariableRHS;
+	private int myStart;
+	private boolean amNullable;
+	/** The length of the longest string, or -1 if the language is infinite */
+	private int myMaxLength;
+	/** For each length, the variables that derive a string of that length */
+	private List<BitSet> myDerivable;
+	/** For each length, how many derivations each variable has of that length */
+	private List<BigInteger[]> myCounts;
+	private Random myRandom;
 
 	public ContextFreeLanguageGenerator(Grammar g) {
 		super(g);
@@ -29,43 +49,201 @@ public class ContextFreeLanguageGenerator extends LanguageGenerator {
 	protected void initialize(Grammar g) {
 		super.initialize(g);
 
-		myPossibleStrings = new TreeSet<SymbolString>();
-
 		CNFConverter converter = new CNFConverter(getGrammar());
 		converter.stepToCompletion();
 		CNFGrammar = converter.getTransformedGrammar();
-		myParser = new CYKParser(CNFGrammar);
+
+		Variable start = getGrammar().getStartVariable();
+		amNullable = start != null
+				&& new FirstFollowSets(getGrammar()).isNullable(start);
+		myRandom = new Random();
+		encodeGrammar();
 	}
 
-	@Override
-	protected void clear() {
-		super.clear();
-		myPossibleStrings.clear();
-		
-		for (Symbol terminal : getGrammar().getTerminals()) {
-			myPossibleStrings.add(new SymbolString(terminal));
+	/**
+	 * Numbers the variables and terminals of the CNF grammar, and finds how
+	 * long its strings can be.
+	 */
+	private void encodeGrammar() {
+		Map<Symbol, Integer> variableIDs = new HashMap<Symbol, Integer>();
+		for (Symbol v : CNFGrammar.getVariables())
+			variableIDs.put(v, variableIDs.size());
+		myTerminals = CNFGrammar.getTerminals().toArray(new Terminal[0]);
+		Map<Symbol, Integer> terminalIDs = new HashMap<Symbol, Integer>();
+		for (int t = 0; t < myTerminals.length; t++)
+			terminalIDs.put(myTerminals[t], t);
+
+		int numVariables = variableIDs.size();
+		myTerminalRHS = new BitSet[numVariables];
+		List<List<Integer>> pairs = new ArrayList<List<Integer>>();
+		for (int v = 0; v < numVariables; v++) {
+			myTerminalRHS[v] = new BitSet();
+			pairs.add(new ArrayList<Integer>());
+		}
+		for (Production p : CNFGrammar.getProductionSet()) {
+			Integer lhs = variableIDs.get(p.getLHS()[0]);
+			Symbol[] rhs = p.getRHS();
+			if (lhs == null)
+				continue;
+			if (rhs.length == 1 && Grammar.isTerminal(rhs[0]))
+				myTerminalRHS[lhs].set(terminalIDs.get(rhs[0]));
+			else if (rhs.length == 2 && variableIDs.containsKey(rhs[0])
+					&& variableIDs.containsKey(rhs[1])) {
+				pairs.get(lhs).add(variableIDs.get(rhs[0]));
+				pairs.get(lhs).add(variableIDs.get(rhs[1]));
+			}
+		}
+		myVariableRHS = new int[numVariables][];
+		for (int v = 0; v < numVariables; v++) {
+			myVariableRHS[v] = new int[pairs.get(v).size()];
+			for (int i = 0; i < myVariableRHS[v].length; i++)
+				myVariableRHS[v][i] = pairs.get(v).get(i);
 		}
-		
-		SymbolString lambda = new SymbolString();
 
-		for (Production p : getGrammar().getStartProductions()) {
-			if (getStringsInLanguage().contains(lambda))
-				return;
-			if (p.isLambdaProduction())
-				addStringToLanguage(lambda);
+		Integer start = variableIDs.get(CNFGrammar.getStartVariable());
+		myStart = start == null ? -1 : start;
+		myDerivable = new ArrayList<BitSet>();
+		myDerivable.add(new BitSet());
+		myCounts = new ArrayList<BigInteger[]>();
+		myMaxLength = findMaxLength();
+	}
+
+	/**
+	 * Returns the length of the longest string the start variable derives,
+	 * or -1 if there is no longest. As every production of a CNF grammar
+	 * makes the string longer or ends it, that is when a variable that
+	 * derives strings and is reached from the start can reach itself.
+	 */
+	private int findMaxLength() {
+		if (myStart < 0)
+			return 0;
+		int numVariables = myTerminalRHS.length;
+		BitSet productive = new BitSet();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int v = 0; v < numVariables; v++) {
+				if (productive.get(v))
+					continue;
+				boolean derives = !myTerminalRHS[v].isEmpty();
+				for (int i = 0; !derives && i < myVariableRHS[v].length; i += 2)
+					derives = productive.get(myVariableRHS[v][i])
+							&& productive.get(myVariableRHS[v][i + 1]);
+				if (derives) {
+					productive.set(v);
+					changed = true;
+				}
+			}
+		}
+		if (!productive.get(myStart))
+			return 0;
+		int[] longest = new int[numVariables];
+		Arrays.fill(longest, -2);
+		return findMaxLength(myStart, longest, productive);
+	}
+
+	/**
+	 * Returns the longest string the productive variable derives, or -1 if
+	 * unbounded; longest holds -2 for those not yet visited and -3 for those
+	 * being visited.
+	 */
+	private int findMaxLength(int v, int[] longest, BitSet productive) {
+		if (longest[v] == -3)
+			return -1;
+		if (longest[v] != -2)
+			return longest[v];
+		longest[v] = -3;
+		int max = myTerminalRHS[v].isEmpty() ? 0 : 1;
+		int[] rhs = myVariableRHS[v];
+		for (int i = 0; i < rhs.length && max >= 0; i += 2) {
+			if (!productive.get(rhs[i]) || !productive.get(rhs[i + 1]))
+				continue;
+			int left = findMaxLength(rhs[i], longest, productive);
+			int right = left < 0 ? -1 : findMaxLength(rhs[i + 1], longest,
+					productive);
+			max = right < 0 ? -1 : Math.max(max, left + right);
 		}
-		
-		
+		return longest[v] = max;
 	}
-	
+
+	/**
+	 * Returns the variables that derive a string of the length.
+	 */
+	private BitSet getDerivable(int length) {
+		while (myDerivable.size() <= length) {
+			int l = myDerivable.size();
+			BitSet derivable = new BitSet();
+			for (int v = 0; v < myTerminalRHS.length; v++) {
+				if (l == 1) {
+					if (!myTerminalRHS[v].isEmpty())
+						derivable.set(v);
+					continue;
+				}
+				int[] rhs = myVariableRHS[v];
+				for (int i = 0; i < rhs.length && !derivable.get(v); i += 2) {
+					for (int k = 1; k < l; k++) {
+						if (myDerivable.get(k).get(rhs[i])
+								&& myDerivable.get(l - k).get(rhs[i + 1])) {
+							derivable.set(v);
+							break;
+						}
+					}
+				}
+			}
+			myDerivable.add(derivable);
+		}
+		return myDerivable.get(length);
+	}
+
+	/**
+	 * Returns how many derivations each variable has of strings of the
+	 * length.
+	 */
+	private BigInteger[] getCounts(int length) {
+		while (myCounts.size() <= length) {
+			int l = myCounts.size();
+			BigInteger[] counts = new BigInteger[myTerminalRHS.length];
+			for (int v = 0; v < counts.length; v++) {
+				counts[v] = BigInteger.ZERO;
+				if (l == 1)
+					counts[v] = BigInteger.valueOf(myTerminalRHS[v].cardinality());
+				if (l < 2 || !getDerivable(l).get(v))
+					continue;
+				int[] rhs = myVariableRHS[v];
+				for (int i = 0; i < rhs.length; i += 2) {
+					for (int k = 1; k < l; k++) {
+						if (getDerivable(k).get(rhs[i])
+								&& getDerivable(l - k).get(rhs[i + 1]))
+							counts[v] = counts[v].add(myCounts.get(k)[rhs[i]]
+									.multiply(myCounts.get(l - k)[rhs[i + 1]]));
+					}
+				}
+			}
+			myCounts.add(counts);
+		}
+		return myCounts.get(length);
+	}
+
+	private boolean hasStringsOfLength(int length) {
+		if (length == 0)
+			return amNullable;
+		return myStart >= 0
+				&& (myMaxLength < 0 || length <= myMaxLength)
+				&& getDerivable(length).get(myStart);
+	}
+
+	@Override
+	protected void clear() {
+		super.clear();
+		if (amNullable)
+			addStringToLanguage(new SymbolString());
+	}
+
 	@Override
 	public void generateStrings() {
-		//Checks single symbol strings
-		parsePossibleStrings();
-		
-		while (getStringsInLanguage().size() < getNumberToGenerate()) {
-			getNextLengthStrings();
-			parsePossibleStrings();
+		for (int length = 1; getStringsInLanguage().size() < getNumberToGenerate()
+				&& (myMaxLength < 0 || length <= myMaxLength); length++) {
+			addStringsOfLength(length);
 		}
 	}
 
@@ -73,51 +251,253 @@ public class ContextFreeLanguageGenerator extends LanguageGenerator {
 	public void generateStringsOfLength(int length) {
 		//ensures that all string of the length are generated.
 		setNumberToGenerate(LARGE_NUMBER);
-		SymbolString lambda = new SymbolString();
-		
-		if(length == 0 && getStringsInLanguage().contains(lambda))
+		if (length == 0)
 			return;
-		getStringsInLanguage().remove(lambda);
-		
-		for (int i = 1; i < length; i++) {
-			getNextLengthStrings();
-		}
-		parsePossibleStrings();
+		getStringsInLanguage().remove(new SymbolString());
+		addStringsOfLength(length);
 	}
 
 	/**
-	 * Modifies <CODE>myPossibleStrings</CODE> to consist of every possible
-	 * string of the next length by adding each terminal to the end of each
-	 * existing possibility.
+	 * Returns the number of derivations of strings of the length in the CNF
+	 * grammar, which is the number of strings of that length when the
+	 * grammar is unambiguous.
 	 */
-	private void getNextLengthStrings() {
-		List<SymbolString> tempList = new ArrayList<SymbolString>();
-		tempList.addAll(myPossibleStrings);
-		
-		for (SymbolString string : tempList) {
-			for (Symbol terminal : getGrammar().getTerminals()) {
-				SymbolString temp = string.copy();
-				temp.add(terminal);
-				myPossibleStrings.add(temp);
+	public BigInteger getNumberOfDerivations(int length) {
+		if (length == 0)
+			return amNullable ? BigInteger.ONE : BigInteger.ZERO;
+		if (!hasStringsOfLength(length))
+			return BigInteger.ZERO;
+		return getCounts(length)[myStart];
+	}
+
+	public void setRandom(Random random) {
+		myRandom = random;
+	}
+
+	/**
+	 * Returns a string of the length picked at random, or null if there is
+	 * none. Each derivation in the CNF grammar is as likely as any other, so
+	 * when the grammar is unambiguous each string is too, and otherwise
+	 * strings with more derivations are more likely.
+	 */
+	public SymbolString getRandomString(int length) {
+		if (!hasStringsOfLength(length))
+			return null;
+		SymbolString string = new SymbolString();
+		if (length == 0)
+			return string;
+		getCounts(length);
+		// Pairs of a variable and the length it must derive, leftmost last.
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = myStart;
+		stack[size++] = length;
+		while (size > 0) {
+			int l = stack[--size], v = stack[--size];
+			BigInteger pick = randomBelow(myCounts.get(l)[v]);
+			if (l == 1) {
+				int t = myTerminalRHS[v].nextSetBit(0);
+				for (int i = pick.intValue(); i > 0; i--)
+					t = myTerminalRHS[v].nextSetBit(t + 1);
+				string.add(myTerminals[t]);
+				continue;
+			}
+			int[] rhs = myVariableRHS[v];
+			search: for (int i = 0; i < rhs.length; i += 2) {
+				for (int k = 1; k < l; k++) {
+					BigInteger ways = myCounts.get(k)[rhs[i]]
+							.multiply(myCounts.get(l - k)[rhs[i + 1]]);
+					if (pick.compareTo(ways) >= 0) {
+						pick = pick.subtract(ways);
+						continue;
+					}
+					if (size + 4 > stack.length)
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					stack[size++] = rhs[i + 1];
+					stack[size++] = l - k;
+					stack[size++] = rhs[i];
+					stack[size++] = k;
+					break search;
+				}
 			}
-			myPossibleStrings.remove(string);
 		}
+		return string;
 	}
 
 	/**
-	 * Using CYK parsing, checks every possible string and adds any strings that
-	 * the language can produce to <CODE>myStringsInLanguage</CODE>.
+	 * Returns the number of strings of the length asked for, each picked at
+	 * random as by {@link #getRandomString(int)}, or an empty list if there
+	 * are no strings of that length.
 	 */
-	private void parsePossibleStrings() {
-		for (SymbolString string : myPossibleStrings) {
-			if (getStringsInLanguage().size() >= getNumberToGenerate())
-				break;
-			if (myParser.quickParse(string)) {
-				addStringToLanguage(string);
+	public List<SymbolString> getRandomStrings(int numberToGenerate, int length) {
+		List<SymbolString> strings = new ArrayList<SymbolString>();
+		if (!hasStringsOfLength(length))
+			return strings;
+		for (int i = 0; i < numberToGenerate; i++)
+			strings.add(getRandomString(length));
+		return strings;
+	}
+
+	private BigInteger randomBelow(BigInteger bound) {
+		BigInteger r;
+		do {
+			r = new BigInteger(bound.bitLength(), myRandom);
+		} while (r.compareTo(bound) >= 0);
+		return r;
+	}
+
+	/**
+	 * Adds the strings of the length to <CODE>myStringsInLanguage</CODE> in
+	 * order, until there are as many strings as are to be generated. Each
+	 * next terminal tried is one that some derivation of the prefix so far
+	 * can go on with and finish at the length, so every string reached is in
+	 * the language, and each is reached once however many derivations it
+	 * has.
+	 */
+	private void addStringsOfLength(int length) {
+		if (!hasStringsOfLength(length))
+			return;
+		Chart[] charts = new Chart[length + 1];
+		charts[0] = new Chart(0, length);
+		charts[0].predict(myStart, length);
+		charts[0].expand();
+		int[] chosen = new int[length];
+		chosen[0] = -1;
+		int p = 0;
+		while (p >= 0) {
+			int t = charts[p].myNextTerminals.nextSetBit(chosen[p] + 1);
+			if (t < 0) {
+				p--;
+				continue;
 			}
+			chosen[p] = t;
+			if (p < length - 1) {
+				charts[p + 1] = charts[p].read(t);
+				chosen[++p] = -1;
+				continue;
+			}
+			SymbolString string = new SymbolString();
+			for (int id : chosen)
+				string.add(myTerminals[id]);
+			addStringToLanguage(string);
+			if (getStringsInLanguage().size() >= getNumberToGenerate())
+				return;
 		}
 	}
 
-	
+	/**
+	 * A variable that is to derive the part of the string between two
+	 * positions, and what may follow once it has.
+	 */
+	private static class Item {
+		private int myVariable, myEnd;
+		/** The items this is the first or second half of */
+		private List<Item> myParents;
+		/** The variable for the second half after this, or -1 if none */
+		private List<Integer> myNext;
+
+		private Item(int variable, int end) {
+			myVariable = variable;
+			myEnd = end;
+			myParents = new ArrayList<Item>();
+			myNext = new ArrayList<Integer>();
+		}
+
+		private void addParent(Item parent, int next) {
+			myParents.add(parent);
+			myNext.add(next);
+		}
+	}
+
+	/**
+	 * The items starting at one position of a string of a fixed length, for
+	 * one choice of the terminals before it, like the state sets of an
+	 * Earley parser, with the terminals they can go on with.
+	 */
+	private class Chart {
+		private int myPosition, myLength;
+		private Map<Integer, Item> myItems;
+		private List<Item> myLeaves;
+		private BitSet myNextTerminals;
+
+		private Chart(int position, int length) {
+			myPosition = position;
+			myLength = length;
+			myItems = new HashMap<Integer, Item>();
+			myLeaves = new ArrayList<Item>();
+			myNextTerminals = new BitSet();
+		}
+
+		/**
+		 * Returns the item for the variable to derive the string from here
+		 * to the end, adding it if there is none.
+		 */
+		private Item predict(int variable, int end) {
+			Integer key = variable * (myLength + 1) + end;
+			Item item = myItems.get(key);
+			if (item == null)
+				myItems.put(key, item = new Item(variable, end));
+			return item;
+		}
+
+		/**
+		 * Splits each item into the productions and first halves it can
+		 * derive its part by, until each is down to a single terminal.
+		 */
+		private void expand() {
+			LinkedList<Item> toExpand = new LinkedList<Item>(myItems.values());
+			while (!toExpand.isEmpty()) {
+				Item item = toExpand.removeFirst();
+				int l = item.myEnd - myPosition;
+				if (l == 1) {
+					myLeaves.add(item);
+					myNextTerminals.or(myTerminalRHS[item.myVariable]);
+					continue;
+				}
+				int[] rhs = myVariableRHS[item.myVariable];
+				for (int i = 0; i < rhs.length; i += 2) {
+					for (int k = 1; k < l; k++) {
+						if (!getDerivable(k).get(rhs[i])
+								|| !getDerivable(l - k).get(rhs[i + 1]))
+							continue;
+						int size = myItems.size();
+						Item first = predict(rhs[i], myPosition + k);
+						first.addParent(item, rhs[i + 1]);
+						if (myItems.size() > size)
+							toExpand.add(first);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the chart for the next position after reading the
+		 * terminal, which is one this chart can go on with.
+		 */
+		private Chart read(int terminal) {
+			Chart next = new Chart(myPosition + 1, myLength);
+			Set<Item> done = new HashSet<Item>();
+			LinkedList<Item> toFinish = new LinkedList<Item>();
+			for (Item leaf : myLeaves) {
+				if (myTerminalRHS[leaf.myVariable].get(terminal)) {
+					done.add(leaf);
+					toFinish.add(leaf);
+				}
+			}
+			while (!toFinish.isEmpty()) {
+				Item item = toFinish.removeFirst();
+				for (int i = 0; i < item.myParents.size(); i++) {
+					Item parent = item.myParents.get(i);
+					int second = item.myNext.get(i);
+					if (second >= 0)
+						next.predict(second, parent.myEnd).addParent(parent, -1);
+					else if (done.add(parent))
+						toFinish.add(parent);
+				}
+			}
+			next.expand();
+			return next;
+		}
+	}
 
 }
@@ -4,7 +4,7 @@ import model.algorithms.conversion.ConversionAlgorithm;
 import model.algorithms.conversion.autotogram.FSAtoRegGrammarConversion;
 import model.algorithms.conversion.autotogram.PDAtoCFGConverter;
 import model.algorithms.conversion.autotogram.TMtoGrammarConversion;
-import model.algorithms.conversion.regextofa.RegularExpressionToNFAConversion;
+import model.algorithms.conversion.regextofa.RegularExpressionToDFAConverter;
 import model.algorithms.transform.turing.StayOptionRemover;
 import model.automata.acceptors.fsa.FiniteStateAcceptor;
 import model.automata.acceptors.pda.PushdownAutomaton;
@@ -38,11 +38,9 @@ public class GrammarFactory {
 		}
 
 		else if (formalDef instanceof RegularExpression) {
-			RegularExpressionToNFAConversion toFSA = new RegularExpressionToNFAConversion(
-					(RegularExpression) formalDef);
-			toFSA.stepToCompletion();
 			convert = new FSAtoRegGrammarConversion(
-					toFSA.getConvertedDefinition());
+					RegularExpressionToDFAConverter
+							.createPositionAutomaton((RegularExpression) formalDef));
 		}
 
 		else
@@ -7,6 +7,7 @@ import java.util.Random;
 import java.util.Set;
 
 import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
 import model.symbols.SymbolString;
 
 /**
@@ -128,8 +129,7 @@ public class Expander {
 	private SymbolString expandNoContext(SymbolString symbols) {
 		SymbolString newExpansion = new SymbolString();
 		
-		for (int i = 0; i < symbols.size(); i++) {
-			Symbol s = symbols.get(i);
+		for (Symbol s : symbols) {
 			SymbolString[] replacements = lsystem
 					.getReplacements(new SymbolString(s));
 			SymbolString newReplacement;
@@ -164,8 +164,9 @@ public class Expander {
 	 *            the SymbolString to expand
 	 * @return the expansion of the passed in symbols
 	 */
-	private SymbolString expandContext(SymbolString symbols) {
+	private SymbolString expandContext(SymbolString string) {
 		SymbolString newExpansion = new SymbolString();
+		SymbolSequence symbols = new SymbolSequence(string);
 		
 		for (int i = 0; i < symbols.size(); i++) {
 			Symbol s = symbols.get(i);
@@ -205,7 +206,7 @@ public class Expander {
 	 * This is a class that is used to perform limited matchings of a list.
 	 */
 	private class Context {
-		private SymbolString symbols;
+		private SymbolSequence symbols;
 		private int center;
 		private SymbolString[] results;
 
@@ -220,7 +221,7 @@ public class Expander {
 		 *            the results of matching
 		 */
 		public Context(SymbolString tokens, int center, SymbolString[] results) {
-			this.symbols = tokens;
+			this.symbols = new SymbolSequence(tokens);
 			this.center = center;
 			this.results = results;
 		}
@@ -234,15 +235,9 @@ public class Expander {
 		 * @return the resulting replacement lists for the center token if there
 		 *         was a match, or an empty array otherwise
 		 */
-		public SymbolString[] matches(SymbolString list, int centerList) {
-			centerList -= center;
-			try {
-				List sub = list
-						.subList(centerList, centerList + symbols.size());
-				if (sub.equals(symbols))
-					return results;
-			} catch (IndexOutOfBoundsException e) {
-			}
+		public SymbolString[] matches(SymbolSequence list, int centerList) {
+			if (list.regionMatches(centerList - center, symbols))
+				return results;
 			return new SymbolString[0];
 		}
 
@@ -262,4 +257,4 @@ public class Expander {
 		}
 
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
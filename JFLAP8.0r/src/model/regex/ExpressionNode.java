@@ -0,0 +1,169 @@
+package model.regex;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.symbols.Symbol;
+
+/**
+ * A regular expression as a tree, made only by an
+ * {@link ExpressionNodeFactory}. The factory keeps a single node for each
+ * expression it makes, so within one factory two nodes are equal only if
+ * they are the same node, and it simplifies each node as it is made.
+ */
+public class ExpressionNode {
+
+	public enum Kind {
+		/** Matches nothing */
+		EMPTY_SET,
+		/** Matches only the empty string */
+		LAMBDA,
+		SYMBOL,
+		UNION,
+		CONCATENATION,
+		STAR
+	}
+
+	private static final ExpressionNode[] NO_CHILDREN = new ExpressionNode[0];
+
+	private Kind myKind;
+	private Symbol mySymbol;
+	private ExpressionNode[] myChildren;
+	private boolean amNullable;
+	private int mySize;
+	private int myID;
+	private int myHash;
+
+	ExpressionNode(Kind kind, Symbol symbol, ExpressionNode... children) {
+		myKind = kind;
+		mySymbol = symbol;
+		myChildren = children.length == 0 ? NO_CHILDREN : children;
+		myID = -1;
+		myHash = kind.hashCode() * 31 + (symbol == null ? 0 : symbol.hashCode());
+		for (ExpressionNode child : myChildren)
+			myHash = myHash * 31 + child.myID;
+
+		long size = 1;
+		for (ExpressionNode child : myChildren)
+			size += child.mySize;
+		mySize = (int) Math.min(size, Integer.MAX_VALUE);
+		switch (kind) {
+		case LAMBDA:
+		case STAR:
+			amNullable = true;
+			break;
+		case UNION:
+			for (ExpressionNode child : myChildren)
+				amNullable |= child.amNullable;
+			break;
+		case CONCATENATION:
+			amNullable = true;
+			for (ExpressionNode child : myChildren)
+				amNullable &= child.amNullable;
+			break;
+		default:
+			amNullable = false;
+		}
+	}
+
+	void setID(int id) {
+		myID = id;
+	}
+
+	/**
+	 * Returns the number of this node in the order its factory made them.
+	 */
+	public int getID() {
+		return myID;
+	}
+
+	public Kind getKind() {
+		return myKind;
+	}
+
+	/**
+	 * Returns the symbol of a {@link Kind#SYMBOL} node, or null.
+	 */
+	public Symbol getSymbol() {
+		return mySymbol;
+	}
+
+	/**
+	 * Returns the parts of a union or concatenation, in order, or the one
+	 * node starred.
+	 */
+	public ExpressionNode[] getChildren() {
+		return myChildren.clone();
+	}
+
+	public int getNumChildren() {
+		return myChildren.length;
+	}
+
+	public ExpressionNode getChild(int i) {
+		return myChildren[i];
+	}
+
+	/**
+	 * Returns whether this matches the empty string.
+	 */
+	public boolean isNullable() {
+		return amNullable;
+	}
+
+	/**
+	 * Returns the number of nodes in this tree, counting shared ones each
+	 * time they appear, up to {@link Integer#MAX_VALUE}.
+	 */
+	public int getSize() {
+		return mySize;
+	}
+
+	@Override
+	public int hashCode() {
+		return myHash;
+	}
+
+	/**
+	 * Compares the kind, symbol and children, which are themselves compared
+	 * by identity, for the factory to find the node already made.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof ExpressionNode))
+			return false;
+		ExpressionNode other = (ExpressionNode) o;
+		if (myKind != other.myKind || myHash != other.myHash
+				|| myChildren.length != other.myChildren.length)
+			return false;
+		for (int i = 0; i < myChildren.length; i++) {
+			if (myChildren[i] != other.myChildren[i])
+				return false;
+		}
+		return mySymbol == null ? other.mySymbol == null : mySymbol
+				.equals(other.mySymbol);
+	}
+
+	@Override
+	public String toString() {
+		switch (myKind) {
+		case EMPTY_SET:
+			return JFLAPPreferences.getEmptySetSymbol().getString();
+		case LAMBDA:
+			return JFLAPPreferences.getEmptyString();
+		case SYMBOL:
+			return mySymbol.getString();
+		case STAR:
+			return "(" + myChildren[0] + ")*";
+		default:
+			StringBuilder sb = new StringBuilder("(");
+			for (int i = 0; i < myChildren.length; i++) {
+				if (i > 0 && myKind == Kind.UNION)
+					sb.append("+");
+				sb.append(myChildren[i]);
+			}
+			return sb.append(")").toString();
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package model.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.regex.ExpressionNode.Kind;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Makes {@link ExpressionNode}s, keeping one node for each expression so
+ * that building a large expression out of the same parts again and again
+ * takes no more memory, and simplifying each as it is made:
+ * <ul>
+ * <li>the empty set is dropped from unions, and makes a concatenation empty</li>
+ * <li>lambda is dropped from concatenations, and from unions with another
+ * part that matches the empty string</li>
+ * <li>unions are flattened, with each part once, in the order the parts
+ * were made, and r is dropped from a union with r*</li>
+ * <li>concatenations are flattened, and r*r* becomes r*</li>
+ * <li>the star of the empty set or lambda is lambda, of a star is that
+ * star, and of a union drops lambda and the stars of its parts, as does
+ * the star of a concatenation of stars, which becomes the star of their
+ * union</li>
+ * </ul>
+ * Expressions are read from and written as {@link SymbolString}s with the
+ * operators of an {@link OperatorAlphabet}, the empty set being written with
+ * {@link JFLAPPreferences#getEmptySetSymbol()}.
+ */
+public class ExpressionNodeFactory {
+
+	private static final Comparator<ExpressionNode> BY_ID = new Comparator<ExpressionNode>() {
+		@Override
+		public int compare(ExpressionNode n1, ExpressionNode n2) {
+			return n1.getID() - n2.getID();
+		}
+	};
+
+	private OperatorAlphabet myOps;
+	private Map<ExpressionNode, ExpressionNode> myNodes;
+	private ExpressionNode myEmptySet, myLambda;
+
+	public ExpressionNodeFactory(OperatorAlphabet ops) {
+		myOps = ops;
+		myNodes = new HashMap<ExpressionNode, ExpressionNode>();
+		myEmptySet = intern(new ExpressionNode(Kind.EMPTY_SET, null));
+		myLambda = intern(new ExpressionNode(Kind.LAMBDA, null));
+	}
+
+	private ExpressionNode intern(ExpressionNode node) {
+		ExpressionNode existing = myNodes.get(node);
+		if (existing != null)
+			return existing;
+		node.setID(myNodes.size());
+		myNodes.put(node, node);
+		return node;
+	}
+
+	/**
+	 * Returns how many different nodes this factory has made.
+	 */
+	public int getNumberOfNodes() {
+		return myNodes.size();
+	}
+
+	public OperatorAlphabet getOperators() {
+		return myOps;
+	}
+
+	public ExpressionNode getEmptySet() {
+		return myEmptySet;
+	}
+
+	public ExpressionNode getLambda() {
+		return myLambda;
+	}
+
+	public ExpressionNode getSymbol(Symbol s) {
+		return intern(new ExpressionNode(Kind.SYMBOL, s));
+	}
+
+	public ExpressionNode union(ExpressionNode... parts) {
+		return union(Arrays.asList(parts));
+	}
+
+	public ExpressionNode union(List<ExpressionNode> parts) {
+		List<ExpressionNode> flat = new ArrayList<ExpressionNode>();
+		for (ExpressionNode part : parts) {
+			if (part.getKind() == Kind.UNION)
+				flat.addAll(Arrays.asList(part.getChildren()));
+			else if (part.getKind() != Kind.EMPTY_SET)
+				flat.add(part);
+		}
+		Set<ExpressionNode> starred = new HashSet<ExpressionNode>();
+		boolean nullable = false;
+		for (ExpressionNode part : flat) {
+			if (part.getKind() == Kind.STAR)
+				starred.add(part.getChild(0));
+			if (part.getKind() != Kind.LAMBDA)
+				nullable |= part.isNullable();
+		}
+		Set<ExpressionNode> kept = new HashSet<ExpressionNode>();
+		for (ExpressionNode part : flat) {
+			if (part.getKind() == Kind.LAMBDA && nullable
+					|| starred.contains(part))
+				continue;
+			kept.add(part);
+		}
+		if (kept.isEmpty())
+			return myEmptySet;
+		if (kept.size() == 1)
+			return kept.iterator().next();
+		ExpressionNode[] children = kept.toArray(new ExpressionNode[0]);
+		Arrays.sort(children, BY_ID);
+		return intern(new ExpressionNode(Kind.UNION, null, children));
+	}
+
+	public ExpressionNode concatenate(ExpressionNode... parts) {
+		return concatenate(Arrays.asList(parts));
+	}
+
+	public ExpressionNode concatenate(List<ExpressionNode> parts) {
+		List<ExpressionNode> flat = new ArrayList<ExpressionNode>();
+		for (ExpressionNode part : parts) {
+			if (part.getKind() == Kind.EMPTY_SET)
+				return myEmptySet;
+			if (part.getKind() == Kind.LAMBDA)
+				continue;
+			List<ExpressionNode> pieces = part.getKind() == Kind.CONCATENATION ? Arrays
+					.asList(part.getChildren()) : Collections.singletonList(part);
+			for (ExpressionNode piece : pieces) {
+				if (piece.getKind() == Kind.STAR && !flat.isEmpty()
+						&& flat.get(flat.size() - 1) == piece)
+					continue;
+				flat.add(piece);
+			}
+		}
+		if (flat.isEmpty())
+			return myLambda;
+		if (flat.size() == 1)
+			return flat.get(0);
+		return intern(new ExpressionNode(Kind.CONCATENATION, null, flat
+				.toArray(new ExpressionNode[0])));
+	}
+
+	public ExpressionNode star(ExpressionNode node) {
+		switch (node.getKind()) {
+		case EMPTY_SET:
+		case LAMBDA:
+			return myLambda;
+		case STAR:
+			return node;
+		case UNION:
+			return starOfUnion(node.getChildren());
+		case CONCATENATION:
+			for (ExpressionNode child : node.getChildren()) {
+				if (child.getKind() != Kind.STAR)
+					return intern(new ExpressionNode(Kind.STAR, null, node));
+			}
+			return starOfUnion(node.getChildren());
+		default:
+			return intern(new ExpressionNode(Kind.STAR, null, node));
+		}
+	}
+
+	/**
+	 * Returns the star of the union of the parts, which is the same as that
+	 * of the union of the parts without lambda and with their stars taken
+	 * off.
+	 */
+	private ExpressionNode starOfUnion(ExpressionNode[] parts) {
+		List<ExpressionNode> inner = new ArrayList<ExpressionNode>();
+		boolean changed = false;
+		for (ExpressionNode part : parts) {
+			if (part.getKind() == Kind.STAR) {
+				inner.add(part.getChild(0));
+				changed = true;
+			} else if (part.getKind() == Kind.LAMBDA)
+				changed = true;
+			else
+				inner.add(part);
+		}
+		ExpressionNode union = union(inner);
+		if (changed)
+			return star(union);
+		return intern(new ExpressionNode(Kind.STAR, null, union));
+	}
+
+	/**
+	 * Reads an expression written with the operators of this factory. The
+	 * star binds tighter than concatenation, and concatenation tighter than
+	 * union; an empty expression, or part between brackets or unions, is
+	 * lambda.
+	 *
+	 * @throws RegularExpressionException
+	 *             if the brackets or stars are out of place
+	 */
+	public ExpressionNode parse(SymbolString exp) {
+		int[] position = new int[1];
+		ExpressionNode node = parseUnion(exp, position);
+		if (position[0] < exp.size())
+			throw new RegularExpressionException("The expression " + exp
+					+ " is poorly formatted.");
+		return node;
+	}
+
+	private boolean isNext(SymbolString exp, int[] position, Symbol op) {
+		return position[0] < exp.size() && exp.get(position[0]).equals(op);
+	}
+
+	private ExpressionNode parseUnion(SymbolString exp, int[] position) {
+		List<ExpressionNode> parts = new ArrayList<ExpressionNode>();
+		parts.add(parseConcatenation(exp, position));
+		while (isNext(exp, position, myOps.getUnionOperator())) {
+			position[0]++;
+			parts.add(parseConcatenation(exp, position));
+		}
+		return union(parts);
+	}
+
+	private ExpressionNode parseConcatenation(SymbolString exp, int[] position) {
+		List<ExpressionNode> parts = new ArrayList<ExpressionNode>();
+		while (position[0] < exp.size()
+				&& !isNext(exp, position, myOps.getUnionOperator())
+				&& !isNext(exp, position, myOps.getCloseGroup())) {
+			ExpressionNode part = parseAtom(exp, position);
+			while (isNext(exp, position, myOps.getKleeneStar())) {
+				position[0]++;
+				part = star(part);
+			}
+			parts.add(part);
+		}
+		return concatenate(parts);
+	}
+
+	private ExpressionNode parseAtom(SymbolString exp, int[] position) {
+		Symbol s = exp.get(position[0]++);
+		if (s.equals(myOps.getOpenGroup())) {
+			ExpressionNode node = parseUnion(exp, position);
+			if (!isNext(exp, position, myOps.getCloseGroup()))
+				throw new RegularExpressionException(
+						"The parentheses are unbalanced!");
+			position[0]++;
+			return node;
+		}
+		if (s.equals(myOps.getKleeneStar()))
+			throw new RegularExpressionException(
+					"Operators are poorly formatted.");
+		if (s.equals(myOps.getEmptySub()))
+			return myLambda;
+		if (s.equals(JFLAPPreferences.getEmptySetSymbol()))
+			return myEmptySet;
+		return getSymbol(s);
+	}
+
+	/**
+	 * Writes the expression with as few brackets as its operators need.
+	 */
+	public SymbolString toSymbolString(ExpressionNode node) {
+		SymbolString out = new SymbolString();
+		write(node, 0, out);
+		return out;
+	}
+
+	/**
+	 * Writes the node, in brackets if its operator binds less tightly than
+	 * the given precedence: 0 for union, 1 for concatenation, 2 for star.
+	 */
+	private void write(ExpressionNode node, int precedence, SymbolString out) {
+		int own = getPrecedence(node);
+		if (own < precedence)
+			out.add(myOps.getOpenGroup());
+		switch (node.getKind()) {
+		case EMPTY_SET:
+			out.add(JFLAPPreferences.getEmptySetSymbol());
+			break;
+		case LAMBDA:
+			out.add(myOps.getEmptySub());
+			break;
+		case SYMBOL:
+			out.add(node.getSymbol());
+			break;
+		case UNION:
+			for (int i = 0; i < node.getNumChildren(); i++) {
+				if (i > 0)
+					out.add(myOps.getUnionOperator());
+				write(node.getChild(i), 0, out);
+			}
+			break;
+		case CONCATENATION:
+			for (int i = 0; i < node.getNumChildren(); i++)
+				write(node.getChild(i), 1, out);
+			break;
+		case STAR:
+			write(node.getChild(0), 2, out);
+			out.add(myOps.getKleeneStar());
+			break;
+		}
+		if (own < precedence)
+			out.add(myOps.getCloseGroup());
+	}
+
+	private int getPrecedence(ExpressionNode node) {
+		switch (node.getKind()) {
+		case UNION:
+			return 0;
+		case CONCATENATION:
+			return 1;
+		case STAR:
+			return 2;
+		default:
+			return 3;
+		}
+	}
+
+}
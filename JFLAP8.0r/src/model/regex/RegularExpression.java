@@ -34,6 +34,7 @@ public class RegularExpression extends FormalDefinition {
 	private RegularExpressionGrammar myGrammar;
 	private OperatorAlphabet myOperatorAlphabet;
 	private ExpressionComponent myExpression;
+	private RegularExpressionMatcher mySymbolMatcher, myStringMatcher;
 
 	public RegularExpression(InputAlphabet alph){
 		this(alph, new ExpressionComponent());
@@ -108,6 +109,9 @@ public class RegularExpression extends FormalDefinition {
 	@Override
 	public void componentChanged(AdvancedChangeEvent event) {
 		super.componentChanged(event);
+		// Symbols may have been renamed as well as the expression changed.
+		mySymbolMatcher = null;
+		myStringMatcher = null;
 //		if(event.getSource() instanceof InputAlphabet){
 //			if(event.getType() == ITEM_MODIFIED){
 //				Symbol from = (Symbol) event.getArg(0);
@@ -222,9 +226,27 @@ public class RegularExpression extends FormalDefinition {
 		return myExpression.getExpression().toString();
 	}
 
+	/**
+	 * Returns whether this expression matches the whole string, each symbol
+	 * of the expression matching the characters it is written with, in time
+	 * linear in the length of the string.
+	 */
 	public boolean matches(String in){
-		Pattern p = convertToPattern();
-		return p.matcher(in).matches();
+		if (myStringMatcher == null)
+			myStringMatcher = new RegularExpressionMatcher(getExpression(),
+					myOperatorAlphabet, true);
+		return myStringMatcher.matches(in);
+	}
+
+	/**
+	 * Returns whether this expression matches the whole string of symbols,
+	 * in time linear in its length.
+	 */
+	public boolean matches(SymbolString in){
+		if (mySymbolMatcher == null)
+			mySymbolMatcher = new RegularExpressionMatcher(getExpression(),
+					myOperatorAlphabet, false);
+		return mySymbolMatcher.matches(in);
 	}
 
 
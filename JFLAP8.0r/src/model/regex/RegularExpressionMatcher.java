@@ -0,0 +1,381 @@
+package model.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Matches inputs against a regular expression in time linear in their
+ * length. The expression is made into a Thompson NFA once, and the states of
+ * the DFA it stands for are only made as inputs reach them, being kept
+ * for later inputs until there are too many, when they are dropped and made
+ * again as needed.
+ * <p>
+ * A matcher either reads {@link SymbolString}s a symbol at a time, or reads
+ * a {@link String} a character at a time, each symbol of the expression
+ * standing for the characters it is written with, so symbols of more than
+ * one character, or with characters special to {@link java.util.regex},
+ * match as they are written. The DFA states are shared between inputs, so a
+ * matcher must only be used by one thread at a time.
+ */
+public class RegularExpressionMatcher {
+
+	/** The most DFA states kept before they are all dropped */
+	private static final int MAX_DFA_STATES = 10000;
+
+	/** NFA labels other than the IDs of symbols or characters to read */
+	private static final int EMPTY = -1, SPLIT = -2, MATCH = -3;
+
+	/** DFA transitions not yet found */
+	private static final int UNKNOWN = -1;
+
+	private boolean amSpelled;
+	private Map<Object, Integer> myLabels;
+	private int[] myLatinLabels;
+
+	/** What each NFA state reads, or whether it is empty, a split or a match */
+	private int[] myNFALabel;
+	private int[] myNFAOut;
+	/** The second way out of a split */
+	private int[] myNFAOut1;
+	private int myNFASize;
+	/** The first NFA state, or -1 if the expression matches nothing */
+	private int myNFAStart;
+
+	private Map<StateKey, Integer> myDFAIDs;
+	private List<int[]> myDFAStates;
+	private List<int[]> myDFATransitions;
+	private List<Boolean> myDFAMatches;
+	private int[] myMarks;
+	private int myMark;
+
+	/**
+	 * @param expression
+	 *            the expression, or null for one that matches nothing
+	 * @param ops
+	 *            the operators the expression is written with
+	 * @param spelled
+	 *            whether inputs are read a character at a time, rather than
+	 *            a symbol at a time
+	 */
+	public RegularExpressionMatcher(SymbolString expression,
+			OperatorAlphabet ops, boolean spelled) {
+		amSpelled = spelled;
+		myLabels = new HashMap<Object, Integer>();
+		myLatinLabels = new int[256];
+		Arrays.fill(myLatinLabels, -1);
+		myNFALabel = new int[16];
+		myNFAOut = new int[16];
+		myNFAOut1 = new int[16];
+		if (expression == null)
+			myNFAStart = -1;
+		else {
+			Parser parser = new Parser(expression, ops);
+			int[] fragment = parser.parse();
+			myNFAStart = fragment[0];
+			myNFALabel[fragment[1]] = MATCH;
+		}
+		myMarks = new int[myNFASize];
+		clearDFA();
+	}
+
+	public boolean isSpelled() {
+		return amSpelled;
+	}
+
+	/**
+	 * Returns whether the expression matches the whole input, read a symbol
+	 * at a time.
+	 */
+	public boolean matches(SymbolString input) {
+		if (amSpelled)
+			return matches(input.toNondelimitedString());
+		int state = getStartState();
+		for (Symbol s : input) {
+			Integer label = myLabels.get(s);
+			if (label == null)
+				return false;
+			state = next(state, label);
+			if (myDFAStates.get(state).length == 0)
+				return false;
+		}
+		return myDFAMatches.get(state);
+	}
+
+	/**
+	 * Returns whether the expression matches the whole input, read a
+	 * character at a time if this matcher is spelled, or otherwise with each
+	 * character a symbol.
+	 */
+	public boolean matches(String input) {
+		int state = getStartState();
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
+			int label;
+			if (c < myLatinLabels.length)
+				label = myLatinLabels[c];
+			else {
+				Integer id = myLabels.get(getLabelKey(String.valueOf(c)));
+				label = id == null ? -1 : id;
+			}
+			if (label < 0)
+				return false;
+			state = next(state, label);
+			if (myDFAStates.get(state).length == 0)
+				return false;
+		}
+		return myDFAMatches.get(state);
+	}
+
+	private Object getLabelKey(String s) {
+		return amSpelled ? (Object) s : new Symbol(s);
+	}
+
+	/**
+	 * Returns the ID of a symbol, or of a character if spelled, adding it if
+	 * it has none.
+	 */
+	private int getLabel(String s) {
+		Object key = getLabelKey(s);
+		Integer id = myLabels.get(key);
+		if (id == null) {
+			myLabels.put(key, id = myLabels.size());
+			if (s.length() == 1 && s.charAt(0) < myLatinLabels.length)
+				myLatinLabels[s.charAt(0)] = id;
+		}
+		return id;
+	}
+
+	private int addNFAState(int label, int out, int out1) {
+		if (myNFASize == myNFALabel.length) {
+			myNFALabel = Arrays.copyOf(myNFALabel, myNFASize * 2);
+			myNFAOut = Arrays.copyOf(myNFAOut, myNFASize * 2);
+			myNFAOut1 = Arrays.copyOf(myNFAOut1, myNFASize * 2);
+		}
+		myNFALabel[myNFASize] = label;
+		myNFAOut[myNFASize] = out;
+		myNFAOut1[myNFASize] = out1;
+		return myNFASize++;
+	}
+
+	private void clearDFA() {
+		myDFAIDs = new HashMap<StateKey, Integer>();
+		myDFAStates = new ArrayList<int[]>();
+		myDFATransitions = new ArrayList<int[]>();
+		myDFAMatches = new ArrayList<Boolean>();
+	}
+
+	private int getStartState() {
+		if (myNFAStart < 0)
+			return getDFAState(new int[0]);
+		return getDFAState(closure(new int[] { myNFAStart }, 1));
+	}
+
+	/**
+	 * Returns the DFA state reached from the state on the symbol or
+	 * character, making it if it has not been yet.
+	 */
+	private int next(int state, int label) {
+		int[] transitions = myDFATransitions.get(state);
+		if (transitions[label] != UNKNOWN)
+			return transitions[label];
+		int[] from = myDFAStates.get(state);
+		int[] to = new int[from.length];
+		int size = 0;
+		for (int s : from) {
+			if (myNFALabel[s] == label)
+				to[size++] = myNFAOut[s];
+		}
+		int[] closure = closure(to, size);
+		if (myDFAStates.size() >= MAX_DFA_STATES) {
+			clearDFA();
+			return getDFAState(closure);
+		}
+		int target = getDFAState(closure);
+		myDFATransitions.get(state)[label] = target;
+		return target;
+	}
+
+	/**
+	 * Returns the states that read a symbol or match, reached from the first
+	 * size states without reading anything, in order.
+	 */
+	private int[] closure(int[] states, int size) {
+		if (++myMark == 0) {
+			Arrays.fill(myMarks, 0);
+			myMark = 1;
+		}
+		int[] stack = Arrays.copyOf(states, size + 2 * myNFASize);
+		int[] found = new int[myNFASize];
+		int numFound = 0;
+		int top = size;
+		while (top > 0) {
+			int s = stack[--top];
+			if (myMarks[s] == myMark)
+				continue;
+			myMarks[s] = myMark;
+			int label = myNFALabel[s];
+			if (label == EMPTY)
+				stack[top++] = myNFAOut[s];
+			else if (label == SPLIT) {
+				stack[top++] = myNFAOut1[s];
+				stack[top++] = myNFAOut[s];
+			} else
+				found[numFound++] = s;
+		}
+		int[] closure = Arrays.copyOf(found, numFound);
+		Arrays.sort(closure);
+		return closure;
+	}
+
+	private int getDFAState(int[] nfaStates) {
+		StateKey key = new StateKey(nfaStates);
+		Integer id = myDFAIDs.get(key);
+		if (id != null)
+			return id;
+		id = myDFAStates.size();
+		myDFAIDs.put(key, id);
+		myDFAStates.add(nfaStates);
+		int[] transitions = new int[myLabels.size()];
+		Arrays.fill(transitions, UNKNOWN);
+		myDFATransitions.add(transitions);
+		boolean match = false;
+		for (int s : nfaStates)
+			match |= myNFALabel[s] == MATCH;
+		myDFAMatches.add(match);
+		return id;
+	}
+
+	/**
+	 * A sorted set of NFA states, as a key for the DFA state made of them.
+	 */
+	private static class StateKey {
+		private int[] myStates;
+		private int myHash;
+
+		private StateKey(int[] states) {
+			myStates = states;
+			myHash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return myHash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof StateKey
+					&& Arrays.equals(myStates, ((StateKey) o).myStates);
+		}
+	}
+
+	/**
+	 * Makes the NFA by recursive descent, the star binding tighter than
+	 * concatenation, and that tighter than union. Each part of the
+	 * expression becomes a fragment of the NFA: its first state and a last
+	 * state that reads nothing and leads nowhere yet.
+	 */
+	private class Parser {
+		private SymbolString myExpression;
+		private OperatorAlphabet myOps;
+		private int myPosition;
+
+		private Parser(SymbolString expression, OperatorAlphabet ops) {
+			myExpression = expression;
+			myOps = ops;
+		}
+
+		private int[] parse() {
+			int[] fragment = parseUnion();
+			if (myPosition < myExpression.size())
+				throw new RegularExpressionException("The expression "
+						+ myExpression + " is poorly formatted.");
+			return fragment;
+		}
+
+		private boolean isNext(Symbol op) {
+			return myPosition < myExpression.size()
+					&& myExpression.get(myPosition).equals(op);
+		}
+
+		private int[] parseUnion() {
+			int[] fragment = parseConcatenation();
+			while (isNext(myOps.getUnionOperator())) {
+				myPosition++;
+				int[] other = parseConcatenation();
+				int end = addNFAState(EMPTY, -1, -1);
+				myNFAOut[fragment[1]] = end;
+				myNFAOut[other[1]] = end;
+				fragment = new int[] {
+						addNFAState(SPLIT, fragment[0], other[0]), end };
+			}
+			return fragment;
+		}
+
+		private int[] parseConcatenation() {
+			int[] fragment = null;
+			while (myPosition < myExpression.size()
+					&& !isNext(myOps.getUnionOperator())
+					&& !isNext(myOps.getCloseGroup())) {
+				int[] next = parseStar();
+				if (fragment == null)
+					fragment = next;
+				else {
+					myNFAOut[fragment[1]] = next[0];
+					fragment[1] = next[1];
+				}
+			}
+			if (fragment == null) {
+				int empty = addNFAState(EMPTY, -1, -1);
+				fragment = new int[] { empty, empty };
+			}
+			return fragment;
+		}
+
+		private int[] parseStar() {
+			int[] fragment = parseAtom();
+			while (isNext(myOps.getKleeneStar())) {
+				myPosition++;
+				int end = addNFAState(EMPTY, -1, -1);
+				int split = addNFAState(SPLIT, fragment[0], end);
+				myNFAOut[fragment[1]] = split;
+				fragment = new int[] { split, end };
+			}
+			return fragment;
+		}
+
+		private int[] parseAtom() {
+			Symbol s = myExpression.get(myPosition++);
+			if (s.equals(myOps.getOpenGroup())) {
+				int[] fragment = parseUnion();
+				if (!isNext(myOps.getCloseGroup()))
+					throw new RegularExpressionException("The parentheses "
+							+ "are unbalanced!");
+				myPosition++;
+				return fragment;
+			}
+			if (s.equals(myOps.getKleeneStar()))
+				throw new RegularExpressionException("Operators are "
+						+ "poorly formatted.");
+			int end = addNFAState(EMPTY, -1, -1);
+			if (s.equals(myOps.getEmptySub()))
+				return new int[] { end, end };
+			if (!amSpelled)
+				return new int[] {
+						addNFAState(getLabel(s.getString()), end, -1), end };
+			String spelling = s.getString();
+			int first = end;
+			for (int i = spelling.length() - 1; i >= 0; i--)
+				first = addNFAState(getLabel(spelling.substring(i, i + 1)),
+						first, -1);
+			return new int[] { first, end };
+		}
+	}
+
+}
@@ -2,9 +2,12 @@ package model.symbols;
 
 
 import java.lang.Character.Subset;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.event.ChangeEvent;
 
@@ -16,12 +19,17 @@ import model.formaldef.components.SetComponent;
 import model.formaldef.components.SetSubComponent;
 import model.formaldef.components.alphabets.Alphabet;
 import model.formaldef.components.alphabets.AlphabetActionType;
+import model.grammar.Terminal;
+import model.grammar.Variable;
 import model.regex.EmptySub;
 
 import util.Copyable;
 
 public class Symbol extends SetSubComponent<Symbol>{
 
+	private static final Map<Class<?>, Constructor<?>> COPY_CONSTRUCTORS =
+			new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
 	private String myString;
 	
 	public Symbol(String s) { 
@@ -87,12 +95,16 @@ public class Symbol extends SetSubComponent<Symbol>{
 	
 	@Override
 	public boolean equals(Object o){
+		if (o == this)
+			return true;
 		return this.getString().equals(((Symbol) o).getString());
 	}
 	
 	
 	@Override
 	public int compareTo(Symbol o) {
+		if (o == this)
+			return 0;
 		return this.getString().compareTo(o.getString());
 	}
 
@@ -101,12 +113,18 @@ public class Symbol extends SetSubComponent<Symbol>{
 		return this.getString();
 	}
 
+	/**
+	 * Copies this symbol. Plain {@link Symbol}s, {@link Terminal}s and
+	 * {@link Variable}s are constructed directly; other subclasses go through
+	 * their (String) constructor, which is looked up once per class.
+	 */
 	@Override
 	public Symbol copy() {
-		
+		if (this.getClass() == Symbol.class)
+			return new Symbol(myString);
 		try {
-			Symbol s = (Symbol) this.getClass().getConstructor(String.class).newInstance(this.getString());
-			return s;
+			Constructor<? extends Symbol> cons = getCopyConstructor(this.getClass());
+			return cons.newInstance(this.getString());
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException("Problem cloning " + this.toString());
@@ -114,6 +132,18 @@ public class Symbol extends SetSubComponent<Symbol>{
 		
 	}
 
+	// The cache only ever maps a class to its own constructor.
+	@SuppressWarnings("unchecked")
+	private static <T extends Symbol> Constructor<T> getCopyConstructor(Class<T> clz)
+			throws NoSuchMethodException {
+		Constructor<?> cons = COPY_CONSTRUCTORS.get(clz);
+		if (cons == null) {
+			cons = clz.getConstructor(String.class);
+			COPY_CONSTRUCTORS.put(clz, cons);
+		}
+		return (Constructor<T>) cons;
+	}
+
 	@Override
 	public String getDescriptionName() {
 		return "Symbol";
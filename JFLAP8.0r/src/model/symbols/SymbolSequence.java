@@ -0,0 +1,318 @@
+package model.symbols;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import universe.preferences.JFLAPPreferences;
+
+/**
+ * An immutable, array-backed sequence of {@link Symbol}s meant for the hot
+ * paths of the simulators, parsers and L-system expansion, where the
+ * LinkedList based {@link SymbolString} makes indexed access and
+ * slicing O(n).
+ * <p>
+ * Indexed access is O(1), and {@link #subSequence(int, int)} returns a view
+ * sharing the same storage. Appending to a sequence that ends where its
+ * storage was last written also shares that storage, so building a sequence
+ * left to right with {@link #concat(SymbolSequence)} or replacing a suffix
+ * only copies the new symbols. Hash codes are cached.
+ * <p>
+ * Use {@link #SymbolSequence(SymbolString)} and {@link #toSymbolString()} to
+ * move between this and the {@link SymbolString} API used by the GUI.
+ */
+public class SymbolSequence implements Iterable<Symbol>,
+		Comparable<SymbolSequence> {
+
+	public static final SymbolSequence EMPTY = new SymbolSequence(
+			new Storage(new Symbol[0], 0), 0, 0);
+
+	/**
+	 * The backing array of one or more sequences. Only the region below
+	 * <CODE>used</CODE> has ever been written, and no written slot is ever
+	 * changed again, which is what makes sharing it safe.
+	 */
+	private static class Storage {
+		private Symbol[] symbols;
+		private int used;
+
+		private Storage(Symbol[] symbols, int used) {
+			this.symbols = symbols;
+			this.used = used;
+		}
+	}
+
+	private final Storage myStorage;
+	private final int myOffset;
+	private final int myLength;
+	private int myHash;
+
+	private SymbolSequence(Storage storage, int offset, int length) {
+		myStorage = storage;
+		myOffset = offset;
+		myLength = length;
+	}
+
+	public SymbolSequence(Symbol... symbols) {
+		this(new Storage(symbols.clone(), symbols.length), 0, symbols.length);
+	}
+
+	public SymbolSequence(SymbolString string) {
+		this(string.toArray(new Symbol[0]));
+	}
+
+	public int size() {
+		return myLength;
+	}
+
+	public boolean isEmpty() {
+		return myLength == 0;
+	}
+
+	public Symbol get(int i) {
+		if (i < 0 || i >= myLength)
+			throw new IndexOutOfBoundsException("Index " + i
+					+ " out of bounds for length " + myLength);
+		return myStorage.symbols[myOffset + i];
+	}
+
+	public Symbol getFirst() {
+		return get(0);
+	}
+
+	public Symbol getLast() {
+		return get(myLength - 1);
+	}
+
+	/**
+	 * Returns a view of this sequence from start (inclusive) to end
+	 * (exclusive). No symbols are copied.
+	 */
+	public SymbolSequence subSequence(int start, int end) {
+		checkRange(start, end);
+		if (start == 0 && end == myLength)
+			return this;
+		return new SymbolSequence(myStorage, myOffset + start, end - start);
+	}
+
+	public SymbolSequence subSequence(int start) {
+		return subSequence(start, myLength);
+	}
+
+	/**
+	 * Returns true if the symbols in this sequence starting at position
+	 * match all of the given symbols.
+	 */
+	public boolean regionMatches(int position, Symbol... symbols) {
+		if (position < 0 || position + symbols.length > myLength)
+			return false;
+		Symbol[] mine = myStorage.symbols;
+		for (int i = 0; i < symbols.length; i++) {
+			if (!mine[myOffset + position + i].equals(symbols[i]))
+				return false;
+		}
+		return true;
+	}
+
+	public boolean regionMatches(int position, SymbolSequence other) {
+		if (position < 0 || position + other.myLength > myLength)
+			return false;
+		Symbol[] mine = myStorage.symbols, theirs = other.myStorage.symbols;
+		for (int i = 0; i < other.myLength; i++) {
+			if (!mine[myOffset + position + i].equals(theirs[other.myOffset
+					+ i]))
+				return false;
+		}
+		return true;
+	}
+
+	public boolean startsWith(SymbolSequence prefix) {
+		return regionMatches(0, prefix);
+	}
+
+	public boolean endsWith(SymbolSequence suffix) {
+		return regionMatches(myLength - suffix.myLength, suffix);
+	}
+
+	public int indexOf(Symbol s) {
+		for (int i = 0; i < myLength; i++) {
+			if (myStorage.symbols[myOffset + i].equals(s))
+				return i;
+		}
+		return -1;
+	}
+
+	public int indexOf(SymbolSequence other) {
+		return indexOf(other, 0);
+	}
+
+	/**
+	 * Returns the first index at or after start at which other occurs in
+	 * this sequence, or -1 if there is none.
+	 */
+	public int indexOf(SymbolSequence other, int start) {
+		for (int i = Math.max(start, 0); i <= myLength - other.myLength; i++) {
+			if (regionMatches(i, other))
+				return i;
+		}
+		return -1;
+	}
+
+	public SymbolSequence concat(SymbolSequence other) {
+		return append(other.myStorage.symbols, other.myOffset, other.myLength);
+	}
+
+	public SymbolSequence concat(Symbol... symbols) {
+		return append(symbols, 0, symbols.length);
+	}
+
+	/**
+	 * Returns a new sequence where the symbols from start (inclusive) to
+	 * end (exclusive) are replaced by rhs. The symbols before start are
+	 * shared with this sequence.
+	 */
+	public SymbolSequence replace(int start, int end, SymbolSequence rhs) {
+		checkRange(start, end);
+		SymbolSequence front = subSequence(0, start).concat(rhs);
+		if (end == myLength)
+			return front;
+		return front.append(myStorage.symbols, myOffset + end, myLength - end);
+	}
+
+	public SymbolSequence replace(int start, int end, Symbol... rhs) {
+		checkRange(start, end);
+		SymbolSequence front = subSequence(0, start).concat(rhs);
+		if (end == myLength)
+			return front;
+		return front.append(myStorage.symbols, myOffset + end, myLength - end);
+	}
+
+	private SymbolSequence append(Symbol[] from, int offset, int length) {
+		if (length == 0)
+			return this;
+		if (myLength == 0)
+			return new SymbolSequence(new Storage(Arrays.copyOfRange(from,
+					offset, offset + length), length), 0, length);
+
+		Storage storage = myStorage;
+		int end = myOffset + myLength;
+		synchronized (storage) {
+			// The slots after this sequence are free, so write into them.
+			if (storage.used == end
+					&& end + length <= storage.symbols.length) {
+				System.arraycopy(from, offset, storage.symbols, end, length);
+				storage.used = end + length;
+				return new SymbolSequence(storage, myOffset, myLength + length);
+			}
+		}
+		Symbol[] grown = new Symbol[Math.max(8, (myLength + length) * 3 / 2)];
+		System.arraycopy(storage.symbols, myOffset, grown, 0, myLength);
+		System.arraycopy(from, offset, grown, myLength, length);
+		return new SymbolSequence(new Storage(grown, myLength + length), 0,
+				myLength + length);
+	}
+
+	private void checkRange(int start, int end) {
+		if (start < 0 || end > myLength || end < start)
+			throw new IndexOutOfBoundsException("Start index " + start
+					+ " does not work with end index " + end);
+	}
+
+	public Symbol[] toArray() {
+		return Arrays.copyOfRange(myStorage.symbols, myOffset, myOffset
+				+ myLength);
+	}
+
+	public SymbolString toSymbolString() {
+		return new SymbolString(toArray());
+	}
+
+	/**
+	 * Returns true if this sequence holds the same symbols as the
+	 * {@link SymbolString}.
+	 */
+	public boolean contentEquals(SymbolString string) {
+		if (string.size() != myLength)
+			return false;
+		int i = myOffset;
+		for (Symbol s : string) {
+			if (!myStorage.symbols[i++].equals(s))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public Iterator<Symbol> iterator() {
+		return new Iterator<Symbol>() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < myLength;
+			}
+
+			@Override
+			public Symbol next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return myStorage.symbols[myOffset + i++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"SymbolSequences are immutable.");
+			}
+		};
+	}
+
+	@Override
+	public int hashCode() {
+		int h = myHash;
+		if (h == 0 && myLength > 0) {
+			h = 1;
+			for (int i = myOffset; i < myOffset + myLength; i++)
+				h = 31 * h + myStorage.symbols[i].hashCode();
+			myHash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof SymbolSequence))
+			return false;
+		SymbolSequence other = (SymbolSequence) o;
+		return myLength == other.myLength && hashCode() == other.hashCode()
+				&& regionMatches(0, other);
+	}
+
+	@Override
+	public int compareTo(SymbolSequence o) {
+		int n = Math.min(myLength, o.myLength);
+		for (int i = 0; i < n; i++) {
+			int compare = get(i).compareTo(o.get(i));
+			if (compare != 0)
+				return compare;
+		}
+		return myLength - o.myLength;
+	}
+
+	@Override
+	public String toString() {
+		if (isEmpty())
+			return JFLAPPreferences.getEmptyString();
+		StringBuilder sb = new StringBuilder();
+		String delimiter = JFLAPPreferences.getSymbolStringDelimiter();
+		for (int i = 0; i < myLength; i++) {
+			if (i > 0)
+				sb.append(delimiter);
+			sb.append(get(i));
+		}
+		return sb.toString();
+	}
+
+}
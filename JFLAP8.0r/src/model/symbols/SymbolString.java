@@ -88,15 +88,18 @@ Settable<SymbolString>{
 
 	public int indexOfSubSymbolString(SymbolString o) {
 		if (o.isEmpty()) return 0;
-		for (int i = 0; i <= this.size()-o.size(); i++){
-			SymbolString sub = this.subList(i, i+o.size());
-			if (sub.equals(o))
-				return i;
-		}
-		return -1;
+		return new SymbolSequence(this).indexOf(new SymbolSequence(o));
 	}
+
 	public boolean startsWith(SymbolString label) {
-		return this.indexOfSubSymbolString(label) == 0;
+		if (label.size() > this.size())
+			return false;
+		Iterator<Symbol> me = this.iterator();
+		for (Symbol s: label){
+			if (!me.next().equals(s))
+				return false;
+		}
+		return true;
 	}
 
 	/**
@@ -113,8 +116,15 @@ Settable<SymbolString>{
 	}
 
 	public boolean endsWith(SymbolString ss) {
-		int start = this.size()-ss.size();
-		return this.subList(start).equals(ss);
+		if (ss.size() > this.size())
+			return false;
+		Iterator<Symbol> me = this.descendingIterator(),
+				other = ss.descendingIterator();
+		while (other.hasNext()){
+			if (!me.next().equals(other.next()))
+				return false;
+		}
+		return true;
 	}
 
 	public boolean endsWith(Symbol s) {
@@ -356,8 +366,7 @@ Settable<SymbolString>{
 	}
 
 	public int indexOf(SymbolString e, int start) {
-		SymbolString temp = this.subList(start);
-		return start + temp.indexOf(e);
+		return new SymbolSequence(this).indexOf(new SymbolSequence(e), start);
 	}
 
 	public SymbolString replace(int start, int end, SymbolString rhs) {
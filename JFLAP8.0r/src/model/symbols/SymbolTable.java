@@ -0,0 +1,124 @@
+package model.symbols;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.formaldef.FormalDefinition;
+import model.formaldef.components.alphabets.Alphabet;
+
+/**
+ * Interns the {@link Symbol}s of a {@link FormalDefinition}, giving each
+ * one a canonical instance and a dense integer ID, so algorithms can
+ * compare symbols by identity and index arrays by symbol instead of going
+ * through string comparison.
+ * <p>
+ * Symbols are keyed by {@link Symbol#equals(Object)}, so a Terminal and a
+ * Variable with the same string get different IDs. IDs are handed out in
+ * the order symbols are first seen and are never reused or reassigned, even
+ * if the symbol later leaves the definition or is renamed there. The
+ * canonical instances are copies owned by this table and must not be
+ * modified.
+ */
+public class SymbolTable {
+
+	private Map<Symbol, Integer> myIDs;
+	private List<Symbol> mySymbols;
+
+	public SymbolTable() {
+		myIDs = new HashMap<Symbol, Integer>();
+		mySymbols = new ArrayList<Symbol>();
+	}
+
+	public SymbolTable(Alphabet... alphs) {
+		this();
+		for (Alphabet a : alphs) {
+			for (Symbol s : a)
+				intern(s);
+		}
+	}
+
+	/**
+	 * Returns the canonical instance equal to s, adding a copy of s to this
+	 * table if it has not been seen before.
+	 */
+	public synchronized Symbol intern(Symbol s) {
+		return mySymbols.get(internID(s));
+	}
+
+	/**
+	 * Returns the ID of s, adding a copy of s to this table if it has not
+	 * been seen before.
+	 */
+	public synchronized int internID(Symbol s) {
+		Integer id = myIDs.get(s);
+		if (id == null) {
+			Symbol canonical = s.copy();
+			id = mySymbols.size();
+			mySymbols.add(canonical);
+			myIDs.put(canonical, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns a copy of the string made of canonical instances, without
+	 * constructing any new {@link Symbol}s for ones already in this table.
+	 */
+	public synchronized SymbolString intern(SymbolString string) {
+		SymbolString interned = new SymbolString();
+		for (Symbol s : string)
+			interned.add(intern(s));
+		return interned;
+	}
+
+	/**
+	 * Returns the ID of s, or -1 if it is not in this table.
+	 */
+	public synchronized int getID(Symbol s) {
+		Integer id = myIDs.get(s);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Fills ids with the ID of each symbol in the string, and returns false
+	 * without finishing if one of them is not in this table.
+	 */
+	public synchronized boolean getIDs(SymbolString string, int[] ids) {
+		int i = 0;
+		for (Symbol s : string) {
+			Integer id = myIDs.get(s);
+			if (id == null)
+				return false;
+			ids[i++] = id;
+		}
+		return true;
+	}
+
+	public synchronized Symbol getSymbol(int id) {
+		return mySymbols.get(id);
+	}
+
+	public synchronized boolean contains(Symbol s) {
+		return myIDs.containsKey(s);
+	}
+
+	/**
+	 * Returns the number of IDs handed out so far. Every ID is less than
+	 * this, so it can be used to size arrays indexed by symbol.
+	 */
+	public synchronized int size() {
+		return mySymbols.size();
+	}
+
+	public synchronized Symbol[] getSymbols() {
+		return mySymbols.toArray(new Symbol[0]);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return mySymbols.toString();
+	}
+
+}
@@ -0,0 +1,114 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.algorithms.testinput.parse.Derivation;
+import model.algorithms.testinput.parse.brute.BestFirstBruteParser;
+import model.algorithms.testinput.parse.brute.UnrestrictedBruteParser;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.ProductionSet;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+import model.symbols.symbolizer.Symbolizers;
+
+/**
+ * Checks the best first brute force parser against the breadth first one on
+ * the unrestricted grammar for a^n b^n c^n, for every string of a, b and c
+ * up to a length the breadth first parser can still finish, both with and
+ * without the backward search. Each derivation found is checked to give the
+ * input, and the best first parser is then run alone on longer members.
+ */
+public class BestFirstBruteParserTester {
+
+	private static final int MAX_LENGTH = 7;
+
+	public static void main(String[] args) {
+		Variable S = new Variable("S"), B = new Variable("B"), C = new Variable(
+				"C");
+		Terminal a = new Terminal("a"), b = new Terminal("b"), c = new Terminal(
+				"c");
+		Grammar gram = new Grammar();
+		ProductionSet prods = gram.getProductionSet();
+		prods.add(new Production(S, a, S, B, C));
+		prods.add(new Production(S, a, B, C));
+		prods.add(new Production(new Symbol[] { C, B }, B, C));
+		prods.add(new Production(new Symbol[] { a, B }, a, b));
+		prods.add(new Production(new Symbol[] { b, B }, b, b));
+		prods.add(new Production(new Symbol[] { b, C }, b, c));
+		prods.add(new Production(new Symbol[] { c, C }, c, c));
+		gram.setStartVariable(S);
+
+		List<String> strings = new ArrayList<String>();
+		addStrings("", strings);
+		UnrestrictedBruteParser breadthFirst = UnrestrictedBruteParser
+				.createNewBruteParser(gram);
+		int mismatches = 0;
+		for (boolean bidirectional : new boolean[] { false, true }) {
+			BestFirstBruteParser bestFirst = new BestFirstBruteParser(gram);
+			bestFirst.setBidirectional(bidirectional);
+			int accepted = 0, nodes = 0;
+			for (String s : strings) {
+				SymbolString input = Symbolizers.symbolize(s, gram);
+				boolean expected = breadthFirst.quickParse(input);
+				boolean actual = bestFirst.quickParse(input);
+				nodes += bestFirst.getNumberOfNodes();
+				if (actual)
+					accepted++;
+				if (expected != actual || !derives(bestFirst, input)) {
+					System.out.println("bidirectional " + bidirectional + ": \""
+							+ s + "\" expected " + expected + " but got "
+							+ actual + " " + bestFirst.getDerivation());
+					mismatches++;
+				}
+			}
+			System.out.println("bidirectional " + bidirectional + ": "
+					+ strings.size() + " strings, " + accepted + " accepted, "
+					+ nodes + " nodes");
+
+			for (int n = 4; n <= 12; n += 4) {
+				String s = repeat("a", n) + repeat("b", n) + repeat("c", n);
+				SymbolString input = Symbolizers.symbolize(s, gram);
+				boolean actual = bestFirst.quickParse(input);
+				if (!actual || !derives(bestFirst, input)) {
+					System.out.println("bidirectional " + bidirectional
+							+ ": n=" + n + " was not derived");
+					mismatches++;
+				}
+				System.out.println("bidirectional " + bidirectional + ": n="
+						+ n + " took " + bestFirst.getNumberOfNodes()
+						+ " nodes");
+			}
+		}
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Returns whether the parser has no derivation or one that gives the
+	 * input.
+	 */
+	private static boolean derives(BestFirstBruteParser parser,
+			SymbolString input) {
+		Derivation d = parser.getDerivation();
+		return d == null || d.createResult().equals(input);
+	}
+
+	private static void addStrings(String s, List<String> strings) {
+		strings.add(s);
+		if (s.length() == MAX_LENGTH)
+			return;
+		for (char c = 'a'; c <= 'c'; c++)
+			addStrings(s + c, strings);
+	}
+
+	private static String repeat(String s, int n) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < n; i++)
+			sb.append(s);
+		return sb.toString();
+	}
+
+}
@@ -1,48 +1,125 @@
 package test;
 
-import model.algorithms.testinput.parse.brute.RestrictedBruteParser;
+import model.algorithms.testinput.parse.Derivation;
 import model.algorithms.testinput.parse.brute.UnrestrictedBruteParser;
 import model.grammar.Grammar;
 import model.grammar.Production;
 import model.grammar.ProductionSet;
 import model.grammar.Terminal;
 import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
 import model.symbols.symbolizer.Symbolizers;
 
+/**
+ * Runs the brute force parsers on each grammar and string three ways:
+ * serially, with {@link #THREADS} threads, and with as many threads and a
+ * frontier limit of one derivation, so that every level but the first is
+ * almost all written to disk and read back. All three must accept the same
+ * strings, and the derivation each gives must derive the string.
+ */
 public class BruteParserTester {
-	
-	public static void main (String[] args) {
-		
-		Variable S = new Variable("S"), A = new Variable("A");
-		Terminal a = new Terminal("a");
-//		
-//		VariableAlphabet v = new VariableAlphabet();
-//		v.addAll(S, A, B);
-//		
-//		TerminalAlphabet t = new TerminalAlphabet();
-//		t.addAll(a, b, c);
+
+	private static final int THREADS = 4;
+
+	public static void main(String[] args) {
+		Variable S = new Variable("S"), A = new Variable("A"), B = new Variable(
+				"B"), C = new Variable("C");
+		Terminal a = new Terminal("a"), b = new Terminal("b"), c = new Terminal(
+				"c");
+		int mismatches = 0;
+
+		// Ambiguous, with many derivations of each string; a^9 and longer
+		// pass the node capacity the parser starts with.
 		Grammar gram = new Grammar();
 		ProductionSet prods = gram.getProductionSet();
-		
-		prods.add(new Production(S, A,A));
-		prods.add(new Production(A, A,A ));
+		prods.add(new Production(S, A, A));
+		prods.add(new Production(A, A, A));
 		prods.add(new Production(A, a));
-		
 		gram.setStartVariable(S);
-		
-		
-		UnrestrictedBruteParser parser = UnrestrictedBruteParser.createNewBruteParser(gram);
-		
-		
-		//parser.stepParser();
-		//System.out.println(parser.isAccept());
-		
-//		//parser.resetParserStateOnly();
-//		parser.stepParser();
-//		parser.stepParser();
-//		System.out.println(parser.isAccept());
-		System.out.println(parser.quickParse(Symbolizers.symbolize("aaaaaaaaaaaaaaa", gram)));
-		System.out.println(parser.getNumberOfNodes());
+		mismatches += check("S -> AA", gram, "aa", "aaaaaaa", "aaaaaaaa",
+				"a", "");
+
+		// Lambda and unit productions
+		gram = new Grammar();
+		prods = gram.getProductionSet();
+		prods.add(new Production(S, a, S, b));
+		prods.add(new Production(S, S, S));
+		prods.add(new Production(S, A));
+		prods.add(new Production(A));
+		gram.setStartVariable(S);
+		mismatches += check("balanced", gram, "", "ab", "aabb", "abab",
+				"aababb", "abba", "aab");
+
+		// Unrestricted: a^n b^n c^n
+		gram = new Grammar();
+		prods = gram.getProductionSet();
+		prods.add(new Production(S, a, S, B, C));
+		prods.add(new Production(S, a, B, C));
+		prods.add(new Production(new Symbol[] { C, B }, B, C));
+		prods.add(new Production(new Symbol[] { a, B }, a, b));
+		prods.add(new Production(new Symbol[] { b, B }, b, b));
+		prods.add(new Production(new Symbol[] { b, C }, b, c));
+		prods.add(new Production(new Symbol[] { c, C }, c, c));
+		gram.setStartVariable(S);
+		mismatches += check("a^n b^n c^n", gram, "abc", "aabbcc",
+				"aaabbbccc", "aabc", "abcabc");
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Parses each string the three ways and compares the verdicts and the
+	 * strings derived.
+	 */
+	private static int check(String name, Grammar gram, String... inputs) {
+		int mismatches = 0;
+		for (String s : inputs) {
+			String label = name + " \"" + s + "\"";
+			SymbolString input = Symbolizers.symbolize(s, gram);
+			Derivation serial = parse(gram, input, 1, 0);
+			Derivation threaded = parse(gram, input, THREADS, 0);
+			Derivation spilled = parse(gram, input, THREADS, 1);
+			System.out.println(label + ": "
+					+ (serial == null ? "reject" : "accept"));
+			mismatches += compare(label + " with " + THREADS + " threads",
+					threaded != null, serial != null);
+			mismatches += compare(label + " spilled", spilled != null,
+					serial != null);
+			mismatches += checkDerivation(label + " serially", serial, input);
+			mismatches += checkDerivation(label + " with " + THREADS
+					+ " threads", threaded, input);
+			mismatches += checkDerivation(label + " spilled", spilled, input);
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Returns the derivation the parser finds, or null if it rejects the
+	 * string. A frontier limit of 0 leaves the default.
+	 */
+	private static Derivation parse(Grammar gram, SymbolString input,
+			int threads, int frontierLimit) {
+		UnrestrictedBruteParser parser = UnrestrictedBruteParser
+				.createNewBruteParser(gram);
+		parser.setThreadCount(threads);
+		if (frontierLimit > 0)
+			parser.setFrontierLimit(frontierLimit);
+		return parser.quickParse(input) ? parser.getDerivation() : null;
+	}
+
+	private static int checkDerivation(String name, Derivation d,
+			SymbolString input) {
+		return d == null ? 0 : compare(name + " derivation", d.createResult(),
+				input);
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
 	}
 
 }
@@ -19,7 +19,11 @@
 
 package test;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
 
 import model.algorithms.testinput.parse.cyk.CYKParser;
 import model.algorithms.transform.grammar.CNFConverter;
@@ -27,73 +31,246 @@ import model.automata.InputAlphabet;
 import model.grammar.Grammar;
 import model.grammar.Production;
 import model.grammar.ProductionSet;
-import model.grammar.StartVariable;
 import model.grammar.Terminal;
-import model.grammar.TerminalAlphabet;
 import model.grammar.Variable;
-import model.grammar.VariableAlphabet;
 import model.regex.OperatorAlphabet;
-import model.regex.RegularExpression;
 import model.regex.RegularExpressionGrammar;
 import model.symbols.Symbol;
 import model.symbols.SymbolString;
 import model.symbols.symbolizer.Symbolizers;
 
-//import jflap.model.grammar.Grammar;
-//import jflap.model.grammar.Production;
-//import jflap.model.grammar.UnrestrictedGrammar;
-
 /**
- * CYK Parser tester.
+ * Checks the chart {@link CYKParser} fills with bitsets against the one the
+ * parser filled before, with a set of variables for each substring made by
+ * trying every production on every pair of cells. Random CNF grammars are
+ * run on random strings, and for each the acceptance, every cell of
+ * {@link CYKParser#getValueAt(int, int)} and the string derived must match.
+ * Then strings of several hundred symbols are parsed and timed.
  * @author Kyung Min (Jason) Lee
  *
  */
 public class CYKTester {
 
-	public static void main(String[] args)
-	{
-//		VariableAlphabet variables = new VariableAlphabet();
-//		variables.addAll(new Symbol("S"), new Symbol("D"), new Symbol("A"), new Symbol("C"), new Symbol("B"));
-//		TerminalAlphabet terminals = new TerminalAlphabet();
-//		terminals.addAll(new Symbol("a"), new Symbol("b"));
-//		ProductionSet functions = new ProductionSet();
-//		functions.add(new Production(new Variable("S"), new SymbolString(new Variable("B"), new Variable("A"))));
-//		functions.add(new Production(new Variable("S"), new SymbolString(new Terminal("a"))));
-//		functions.add(new Production(new Variable("A"), new SymbolString(new Variable("B"), new Variable("D"))));
-//		functions.add(new Production(new Variable("D"), new SymbolString(new Variable("A"), new Variable("C"))));
-//		functions.add(new Production(new Variable("A"), new SymbolString(new Variable("A"), new Variable("A"))));
-//		functions.add(new Production(new Variable("A"), new SymbolString(new Variable("B"), new Variable("C"))));
-//		functions.add(new Production(new Variable("C"), new Terminal("b")));
-//		functions.add(new Production(new Variable("A"), new Terminal("a")));
-//		functions.add(new Production(new Variable("A"), new SymbolString(new Variable("B"), new Variable("A"))));
-//		functions.add(new Production(new Variable("B"), new Terminal("a")));
-//		StartVariable startVar = new StartVariable("S");
-//		Grammar g = new Grammar(variables, terminals, functions, startVar);
-//		CYKParser parser = new CYKParser(g);
-//		Symbol a = new Terminal("a");
-//		Symbol b = new Terminal("b");
-//		SymbolString target = new SymbolString(a,a,b,a,b);
-//		System.out.println(parser.parse(target));
-//		System.out.println(parser.getTrace());
-	
+	private static final int RANDOM_GRAMMARS = 300;
+
+	private static final int RANDOM_INPUTS = 30;
+
+	private static final int MAX_LENGTH = 10;
+
+	private static final int LONG_LENGTH = 500;
+
+	/** How long a long string may take to parse, in milliseconds */
+	private static final long LONG_LIMIT = 1000;
+
+	private static final Variable[] VARIABLES = { new Variable("S"),
+			new Variable("A"), new Variable("B"), new Variable("C") };
+
+	private static final Terminal[] TERMINALS = { new Terminal("a"),
+			new Terminal("b") };
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+		mismatches += checkConverted();
+		Random random = new Random(11);
+		int accepted = 0, parses = 0;
+		for (int g = 0; g < RANDOM_GRAMMARS; g++) {
+			Grammar gram = createRandomGrammar(random);
+			for (int i = 0; i < RANDOM_INPUTS; i++) {
+				String input = createString(random, 1 + random
+						.nextInt(MAX_LENGTH));
+				int found = check("grammar " + g + " \"" + input + "\"", gram,
+						input);
+				if (found == -1)
+					accepted++;
+				else
+					mismatches += found;
+				parses++;
+			}
+		}
+		System.out.println(RANDOM_GRAMMARS + " random grammars, " + parses
+				+ " strings, " + accepted + " accepted");
+		mismatches += checkLong();
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * The example this tester started with: a regular expression grammar
+	 * converted to CNF.
+	 */
+	private static int checkConverted() {
 		InputAlphabet input = new InputAlphabet();
-//		for (char i = 'a'; i <= 'z'; i++){
-//			input.add(new Symbol(Character.toString(i)));
-//		}
 		input.add(new Symbol(Character.toString('0')));
 		input.add(new Symbol(Character.toString('1')));
-		RegularExpressionGrammar gram = new RegularExpressionGrammar(input, new OperatorAlphabet());
+		RegularExpressionGrammar gram = new RegularExpressionGrammar(input,
+				new OperatorAlphabet());
 		gram.trimAlphabets();
-		System.out.println(gram.toString());
-		
-		CNFConverter conv = new CNFConverter(gram);		
+		CNFConverter conv = new CNFConverter(gram);
 		conv.stepToCompletion();
-		Grammar CNFgram = conv.getTransformedGrammar();
-//		System.out.println(CNFgram.toString());
-		
-		CYKParser parser = new CYKParser(CNFgram);
-		parser.quickParse(Symbolizers.symbolize("(000)", CNFgram));
-		System.out.println(parser.isAccept());
-		System.out.println(Arrays.toString(parser.getDerivation().getResultArray()));
+		Grammar cnf = conv.getTransformedGrammar();
+		int mismatches = 0;
+		for (String s : new String[] { "(000)", "0+1*", "(0+", "01)" }) {
+			int found = check("regular expressions \"" + s + "\"", cnf, s);
+			mismatches += found == -1 ? 0 : found;
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Parses the string and compares the parser with the old chart. Returns
+	 * the number of mismatches, or -1 if there were none and the string was
+	 * accepted.
+	 */
+	private static int check(String name, Grammar gram, String input) {
+		SymbolString string = Symbolizers.symbolize(input, gram);
+		CYKParser parser = new CYKParser(gram);
+		parser.quickParse(string);
+		List<Set<Symbol>[]> chart = fillChart(gram, string);
+		int n = string.size(), mismatches = 0;
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++)
+				mismatches += compare(name + " [" + i + "][" + j + "]", parser
+						.getValueAt(i, j), chart.get(i)[j]);
+		}
+		boolean accept = chart.get(0)[n - 1].contains(gram.getStartVariable());
+		mismatches += compare(name + " accept", parser.isAccept(), accept);
+		if (accept && mismatches == 0) {
+			mismatches += compare(name + " derivation", parser.getDerivation()
+					.createResult(), string);
+			if (mismatches == 0)
+				return -1;
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Fills the chart the way the parser did before: each cell holds the
+	 * left sides of the productions whose right sides are a terminal of the
+	 * string, or a variable from each of two cells that split the
+	 * substring.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Set<Symbol>[]> fillChart(Grammar gram,
+			SymbolString string) {
+		ProductionSet prods = gram.getProductionSet();
+		int n = string.size();
+		List<Set<Symbol>[]> chart = new ArrayList<Set<Symbol>[]>();
+		for (int i = 0; i < n; i++) {
+			chart.add(new Set[n]);
+			Set<Symbol> cell = new TreeSet<Symbol>();
+			for (Production p : prods) {
+				if (p.equalsRHS(string.subList(i, i + 1)))
+					cell.add(p.getLHS()[0]);
+			}
+			chart.get(i)[i] = cell;
+		}
+		for (int length = 1; length < n; length++) {
+			for (int i = 0; i + length < n; i++) {
+				int j = i + length;
+				Set<Symbol> cell = new TreeSet<Symbol>();
+				for (int k = i; k < j; k++) {
+					for (Symbol A : chart.get(i)[k]) {
+						for (Symbol B : chart.get(k + 1)[j]) {
+							SymbolString concat = new SymbolString(A, B);
+							for (Production p : prods) {
+								if (p.equalsRHS(concat))
+									cell.add(p.getLHS()[0]);
+							}
+						}
+					}
+				}
+				chart.get(i)[j] = cell;
+			}
+		}
+		return chart;
+	}
+
+	/**
+	 * Times the parse of strings of {@link #LONG_LENGTH} symbols on a CNF
+	 * grammar for balanced strings of a and b, S -> SS | LR | LX, X -> SR,
+	 * L -> a, R -> b, one nested and one flat, and of a string it rejects.
+	 */
+	private static int checkLong() {
+		Variable S = VARIABLES[0], L = new Variable("L"), R = new Variable(
+				"R"), X = new Variable("X");
+		Grammar gram = new Grammar();
+		ProductionSet prods = gram.getProductionSet();
+		prods.add(new Production(S, S, S));
+		prods.add(new Production(S, L, R));
+		prods.add(new Production(S, L, X));
+		prods.add(new Production(X, S, R));
+		prods.add(new Production(L, TERMINALS[0]));
+		prods.add(new Production(R, TERMINALS[1]));
+		gram.setStartVariable(S);
+
+		StringBuilder nested = new StringBuilder(), flat = new StringBuilder();
+		for (int i = 0; i < LONG_LENGTH / 2; i++) {
+			nested.insert(0, 'a').append('b');
+			flat.append("ab");
+		}
+		String[] inputs = { nested.toString(), flat.toString(),
+				flat.toString().replace("abab", "abba") };
+		boolean[] accepts = { true, true, false };
+		int mismatches = 0;
+		for (int i = 0; i < inputs.length; i++) {
+			SymbolString string = Symbolizers.symbolize(inputs[i], gram);
+			// Once to load the classes, and once timed.
+			new CYKParser(gram).quickParse(string);
+			CYKParser parser = new CYKParser(gram);
+			long start = System.currentTimeMillis();
+			parser.quickParse(string);
+			boolean accept = parser.isAccept();
+			if (accept)
+				mismatches += compare("long " + i + " derivation", parser
+						.getDerivation().createResult(), string);
+			long time = System.currentTimeMillis() - start;
+			System.out.println("long " + i + ": " + string.size()
+					+ " symbols in " + time + " ms");
+			mismatches += compare("long " + i + " accept", accept, accepts[i]);
+			if (time > LONG_LIMIT) {
+				System.out.println("long " + i + ": over " + LONG_LIMIT + " ms");
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Makes a random CNF grammar over S, A, B and C, with a production to
+	 * each terminal so that every string can be parsed.
+	 */
+	private static Grammar createRandomGrammar(Random random) {
+		Grammar gram = new Grammar();
+		ProductionSet prods = gram.getProductionSet();
+		for (Terminal t : TERMINALS)
+			prods.add(new Production(VARIABLES[random
+					.nextInt(VARIABLES.length)], t));
+		int k = random.nextInt(10);
+		for (int i = 0; i < k; i++) {
+			Variable lhs = VARIABLES[random.nextInt(VARIABLES.length)];
+			if (random.nextInt(4) == 0)
+				prods.add(new Production(lhs, TERMINALS[random
+						.nextInt(TERMINALS.length)]));
+			else
+				prods.add(new Production(lhs, VARIABLES[random
+						.nextInt(VARIABLES.length)], VARIABLES[random
+						.nextInt(VARIABLES.length)]));
+		}
+		gram.setStartVariable(VARIABLES[0]);
+		return gram;
+	}
+
+	private static String createString(Random random, int length) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			s.append(random.nextBoolean() ? 'a' : 'b');
+		return s.toString();
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual != null && actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
 	}
 }
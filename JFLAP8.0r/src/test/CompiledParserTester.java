@@ -0,0 +1,350 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import model.algorithms.testinput.parse.CompiledParser;
+import model.algorithms.testinput.parse.Derivation;
+import model.algorithms.testinput.parse.Parser;
+import model.algorithms.testinput.parse.ll.CompiledLL1Parser;
+import model.algorithms.testinput.parse.ll.LL1Parser;
+import model.algorithms.testinput.parse.lr.CompiledLRParser;
+import model.algorithms.testinput.parse.lr.LRTableType;
+import model.algorithms.testinput.parse.lr.SLR1Parser;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.ProductionSet;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.grammar.typetest.GrammarType;
+import model.symbols.SymbolString;
+
+/**
+ * Checks the compiled LL(1) and LR parsers against {@link LL1Parser} and
+ * {@link SLR1Parser} on every string of up to {@link #MAX_LENGTH} terminals
+ * and on random expressions: both must accept the same strings and give the
+ * same derivations. Among the LL(1) tables is one for a left recursive
+ * grammar, whose conflicts make the stepping parser expand variables forever
+ * on some inputs; those must be the inputs the compiled parser rejects, as
+ * its cells that loop are left empty. Given a number of tokens as an
+ * argument, it then parses long generated arithmetic expressions and prints
+ * how many tokens a second each parser gets through.
+ */
+public class CompiledParserTester {
+
+	private static final Terminal PLUS = new Terminal("+"),
+			TIMES = new Terminal("*"), OPEN = new Terminal("("),
+			CLOSE = new Terminal(")"), ID = new Terminal("i");
+
+	private static final int MAX_LENGTH = 5;
+
+	private static final int RANDOM_EXPRESSIONS = 200;
+
+	/** The steps the stepping LL(1) parser may take for each symbol */
+	private static final int STEPS_PER_SYMBOL = 100;
+
+	public static void main(String[] args) {
+		Grammar ll = createLL1Grammar();
+		Grammar lr = createLRGrammar();
+		int mismatches = 0;
+
+		mismatches += compareLL("LL(1)", ll);
+		mismatches += compareLL("left recursive LL(1)", lr);
+		Variable S = new Variable("S"), A = new Variable("A");
+		Terminal b = new Terminal("b"), c = new Terminal("c");
+		// On c, S -> A S b comes back to S once A vanishes.
+		Grammar vanishing = new Grammar();
+		vanishing.getProductionSet().add(new Production(S, A, S, b));
+		vanishing.getProductionSet().add(new Production(S, c));
+		vanishing.getProductionSet().add(new Production(A));
+		vanishing.setStartVariable(S);
+		mismatches += compareLL("vanishing loop", vanishing);
+		// On c, S -> A and A -> S go around a cycle of unit productions.
+		Grammar unit = new Grammar();
+		unit.getProductionSet().add(new Production(S, A));
+		unit.getProductionSet().add(new Production(S, b, S));
+		unit.getProductionSet().add(new Production(A, S));
+		unit.getProductionSet().add(new Production(A, c));
+		unit.setStartVariable(S);
+		mismatches += compareLL("unit cycle", unit);
+
+		mismatches += compareLR("SLR(1)", lr);
+		mismatches += compareLR("SLR(1) with lambda", ll);
+		for (LRTableType type : LRTableType.values())
+			mismatches += compareLRTable(type, lr);
+		System.out.println("Mismatches: " + mismatches);
+
+		if (args.length > 0)
+			benchmark(Integer.parseInt(args[0]), ll, lr);
+	}
+
+	/**
+	 * Parses every short string and random expressions with the compiled
+	 * and the stepping LL(1) parser. Where the stepping parser does not
+	 * finish, the compiled one must reject.
+	 */
+	private static int compareLL(String name, Grammar g) {
+		CompiledLL1Parser compiled = new CompiledLL1Parser(g);
+		compiled.setRecording(true);
+		LL1Parser parser = createLL1Parser(g);
+		int mismatches = 0, accepted = 0, looping = 0;
+		List<SymbolString> inputs = createInputs(g);
+		for (SymbolString input : inputs) {
+			String label = name + " \"" + input + "\"";
+			parser.setInput(input);
+			int limit = STEPS_PER_SYMBOL * (input.size() + 1);
+			for (int steps = 0; steps < limit && parser.step() != null; steps++)
+				;
+			boolean accept = compiled.parse(input);
+			if (parser.canStep()) {
+				looping++;
+				mismatches += compare(label + " looping", accept, false);
+				continue;
+			}
+			mismatches += compare(label, accept, parser.isAccept());
+			if (!accept || !parser.isAccept())
+				continue;
+			accepted++;
+			// The stepping parser's derivation starts from an empty string,
+			// with a first step to the start variable.
+			List<Production> expected = Arrays.asList(parser.getDerivation()
+					.getProductionArray());
+			Derivation d = compiled.getDerivation();
+			mismatches += compare(label + " productions", Arrays.asList(d
+					.getProductionArray()), expected.subList(1, expected
+					.size()));
+			mismatches += compare(label + " derivation", d.createResult(),
+					input);
+		}
+		System.out.println(name + ": " + inputs.size() + " strings, "
+				+ accepted + " accepted, " + looping + " looping");
+		return mismatches;
+	}
+
+	/**
+	 * Returns an LL(1) parser that runs on the table of any context free
+	 * grammar, taking the first right side from each cell with a conflict.
+	 */
+	private static LL1Parser createLL1Parser(Grammar g) {
+		return new LL1Parser(g) {
+			@Override
+			public GrammarType getRequiredGrammarType() {
+				return GrammarType.CONTEXT_FREE;
+			}
+		};
+	}
+
+	/**
+	 * Parses every short string and random expressions with the compiled
+	 * and the stepping SLR(1) parser.
+	 */
+	private static int compareLR(String name, Grammar g) {
+		CompiledLRParser compiled = new CompiledLRParser(g);
+		compiled.setRecording(true);
+		SLR1Parser parser = new SLR1Parser(g);
+		int mismatches = 0, accepted = 0;
+		List<SymbolString> inputs = createInputs(g);
+		for (SymbolString input : inputs) {
+			String label = name + " \"" + input + "\"";
+			boolean accept = parser.quickParse(input);
+			mismatches += compare(label, compiled.parse(input), accept);
+			if (!accept)
+				continue;
+			accepted++;
+			mismatches += compare(label + " derivation", compiled
+					.getDerivation(), parser.getDerivation());
+		}
+		System.out.println(name + ": " + inputs.size() + " strings, "
+				+ accepted + " accepted");
+		return mismatches;
+	}
+
+	/**
+	 * The grammar is LALR(1), so every kind of table must accept what the
+	 * SLR(1) parser does.
+	 */
+	private static int compareLRTable(LRTableType type, Grammar g) {
+		CompiledLRParser compiled = new CompiledLRParser(g, type);
+		SLR1Parser parser = new SLR1Parser(g);
+		int mismatches = 0;
+		for (SymbolString input : createInputs(g))
+			mismatches += compare(type + " \"" + input + "\"", compiled
+					.parse(input), parser.quickParse(input));
+		return mismatches;
+	}
+
+	/**
+	 * Returns every string of up to {@link #MAX_LENGTH} terminals of the
+	 * grammar, and random expressions with a symbol changed in half of
+	 * them, if the grammar has the terminals of the expressions.
+	 */
+	private static List<SymbolString> createInputs(Grammar g) {
+		List<SymbolString> inputs = new ArrayList<SymbolString>();
+		List<SymbolString> level = new ArrayList<SymbolString>();
+		level.add(new SymbolString());
+		Terminal[] terminals = g.getTerminals().toArray(new Terminal[0]);
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			inputs.addAll(level);
+			List<SymbolString> longer = new ArrayList<SymbolString>();
+			for (SymbolString s : level) {
+				for (Terminal t : terminals) {
+					SymbolString next = new SymbolString(s);
+					next.add(t);
+					longer.add(next);
+				}
+			}
+			level = longer;
+		}
+		if (!g.getTerminals().contains(ID))
+			return inputs;
+		Random random = new Random(19);
+		for (int i = 0; i < RANDOM_EXPRESSIONS; i++) {
+			SymbolString expression = createExpression(1 + random.nextInt(60),
+					random);
+			if (random.nextBoolean())
+				expression.set(random.nextInt(expression.size()),
+						terminals[random.nextInt(terminals.length)]);
+			inputs.add(expression);
+		}
+		return inputs;
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
+	}
+
+	/**
+	 * Parses a long generated expression with each compiled parser, and a
+	 * shorter one with the stepping parsers too.
+	 */
+	private static void benchmark(int tokens, Grammar ll, Grammar lr) {
+		Random random = new Random(0);
+		SymbolString expression = createExpression(tokens, random);
+		SymbolString shortExpression = createExpression(2000, random);
+
+		benchmark("LL(1)", new CompiledLL1Parser(ll), expression);
+		for (LRTableType type : LRTableType.values())
+			benchmark(type.toString(), new CompiledLRParser(lr, type), expression);
+
+		benchmark("LL(1) stepping", new LL1Parser(ll), shortExpression);
+		benchmark("SLR(1) stepping", new SLR1Parser(lr), shortExpression);
+		benchmark("LL(1)", new CompiledLL1Parser(ll), shortExpression);
+		benchmark("SLR(1)", new CompiledLRParser(lr), shortExpression);
+	}
+
+	private static void benchmark(String name, CompiledParser parser,
+			SymbolString input) {
+		int[] ids = parser.encode(input);
+		// Warm up, then time with and without keeping the productions.
+		for (int i = 0; i < 3; i++)
+			parser.parse(ids, ids.length);
+		long start = System.nanoTime();
+		boolean accept = parser.parse(ids, ids.length);
+		long plain = System.nanoTime() - start;
+
+		parser.setRecording(true);
+		start = System.nanoTime();
+		parser.parse(ids, ids.length);
+		long recording = System.nanoTime() - start;
+		int steps = parser.getProductions().size();
+
+		System.out.println(name + " compiled: " + ids.length + " tokens, accept "
+				+ accept + ", " + rate(ids.length, plain) + " tokens/s, "
+				+ rate(ids.length, recording) + " tokens/s recording " + steps
+				+ " productions");
+	}
+
+	private static void benchmark(String name, Parser parser, SymbolString input) {
+		long start = System.nanoTime();
+		boolean accept = parser.quickParse(input);
+		long time = System.nanoTime() - start;
+		System.out.println(name + ": " + input.size() + " tokens, accept "
+				+ accept + ", " + rate(input.size(), time) + " tokens/s");
+	}
+
+	private static long rate(int tokens, long nanos) {
+		return tokens * 1000000000L / Math.max(nanos, 1);
+	}
+
+	/**
+	 * Returns a random sum of products of identifiers and bracketed
+	 * expressions with at least the given number of tokens.
+	 */
+	private static SymbolString createExpression(int tokens, Random random) {
+		SymbolString out = new SymbolString();
+		addTerm(out, random, 0);
+		while (out.size() < tokens) {
+			out.add(PLUS);
+			addTerm(out, random, 0);
+		}
+		return out;
+	}
+
+	private static void addTerm(SymbolString out, Random random, int depth) {
+		addFactor(out, random, depth);
+		while (random.nextInt(3) == 0) {
+			out.add(TIMES);
+			addFactor(out, random, depth);
+		}
+	}
+
+	private static void addFactor(SymbolString out, Random random, int depth) {
+		if (depth > 10 || random.nextInt(4) != 0) {
+			out.add(ID);
+			return;
+		}
+		out.add(OPEN);
+		addTerm(out, random, depth + 1);
+		while (random.nextInt(2) == 0) {
+			out.add(PLUS);
+			addTerm(out, random, depth + 1);
+		}
+		out.add(CLOSE);
+	}
+
+	/**
+	 * E -> T E', E' -> + T E' | lambda, T -> F T', T' -> * F T' | lambda,
+	 * F -> ( E ) | i
+	 */
+	private static Grammar createLL1Grammar() {
+		Variable E = new Variable("E"), E2 = new Variable("D"), T = new Variable(
+				"T"), T2 = new Variable("U"), F = new Variable("F");
+		Grammar g = new Grammar();
+		ProductionSet prods = g.getProductionSet();
+		prods.add(new Production(E, T, E2));
+		prods.add(new Production(E2, PLUS, T, E2));
+		prods.add(new Production(E2));
+		prods.add(new Production(T, F, T2));
+		prods.add(new Production(T2, TIMES, F, T2));
+		prods.add(new Production(T2));
+		prods.add(new Production(F, OPEN, E, CLOSE));
+		prods.add(new Production(F, ID));
+		g.setStartVariable(E);
+		return g;
+	}
+
+	/**
+	 * E -> E + T | T, T -> T * F | F, F -> ( E ) | i
+	 */
+	private static Grammar createLRGrammar() {
+		Variable E = new Variable("E"), T = new Variable("T"), F = new Variable(
+				"F");
+		Grammar g = new Grammar();
+		ProductionSet prods = g.getProductionSet();
+		prods.add(new Production(E, E, PLUS, T));
+		prods.add(new Production(E, T));
+		prods.add(new Production(T, T, TIMES, F));
+		prods.add(new Production(T, F));
+		prods.add(new Production(F, OPEN, E, CLOSE));
+		prods.add(new Production(F, ID));
+		g.setStartVariable(E);
+		return g;
+	}
+
+}
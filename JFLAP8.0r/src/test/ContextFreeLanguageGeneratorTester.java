@@ -0,0 +1,169 @@
+package test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import model.algorithms.testinput.parse.brute.UnrestrictedBruteParser;
+import model.algorithms.transform.grammar.CNFConverter;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.languages.ContextFreeLanguageGenerator;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link ContextFreeLanguageGenerator} against brute force on small
+ * grammars, for every length up to {@link #MAX_LENGTH}. The strings of each
+ * length are compared with those the brute force parser accepts out of all
+ * strings of terminals of that length, and the number of derivations with
+ * the leftmost derivations of the CNF grammar, enumerated one by one.
+ */
+public class ContextFreeLanguageGeneratorTester {
+
+	private static final int MAX_LENGTH = 7;
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+		// No start variable derives lambda and is on a right side, as the
+		// lambda production remover does not substitute for it.
+		// Unambiguous
+		mismatches += check("a^n b^n", createGrammar("S -> a S b", "S -> a b"));
+		// Ambiguous, so there are more derivations than strings
+		mismatches += check("sums", createGrammar("E -> E + E", "E -> a"));
+		// Unit and lambda productions and a useless variable
+		mismatches += check("units", createGrammar("S -> A B", "S -> b",
+				"A -> a A", "A -> ", "B -> b", "B -> S", "C -> C a"));
+		// Palindromes, with strings of every length
+		mismatches += check("palindromes", createGrammar("S -> P",
+				"P -> a P a", "P -> b P b", "P -> a", "P -> b", "P -> "));
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	private static int check(String name, Grammar g) {
+		ContextFreeLanguageGenerator gen = new ContextFreeLanguageGenerator(
+				g.copy());
+		CNFConverter converter = new CNFConverter(g.copy());
+		converter.stepToCompletion();
+		Grammar cnf = converter.getTransformedGrammar();
+		UnrestrictedBruteParser parser = UnrestrictedBruteParser
+				.createNewBruteParser(g);
+		Terminal[] terminals = g.getTerminals().toArray(new Terminal[0]);
+
+		int mismatches = 0;
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			Set<SymbolString> expected = new HashSet<SymbolString>();
+			for (SymbolString s : allStrings(terminals, length)) {
+				if (parser.quickParse(s))
+					expected.add(s);
+			}
+			Set<SymbolString> actual = new HashSet<SymbolString>(
+					gen.getStringsOfLength(length));
+			if (!expected.equals(actual)) {
+				System.out.println(name + ": length " + length + " expected "
+						+ expected + " but got " + actual);
+				mismatches++;
+			}
+
+			// The lambda production of the start variable is not in the
+			// CNF grammar, and gives the one derivation of length 0.
+			BigInteger derivations = length == 0 ? BigInteger
+					.valueOf(expected.size()) : countDerivations(cnf, length);
+			BigInteger counted = gen.getNumberOfDerivations(length);
+			if (!derivations.equals(counted)) {
+				System.out.println(name + ": length " + length + " expected "
+						+ derivations + " derivations but got " + counted);
+				mismatches++;
+			}
+			System.out.println(name + ": length " + length + ", "
+					+ actual.size() + " strings, " + counted + " derivations");
+		}
+		return mismatches;
+	}
+
+	private static List<SymbolString> allStrings(Terminal[] terminals,
+			int length) {
+		List<SymbolString> strings = new ArrayList<SymbolString>();
+		strings.add(new SymbolString());
+		for (int i = 0; i < length; i++) {
+			List<SymbolString> longer = new ArrayList<SymbolString>();
+			for (SymbolString s : strings) {
+				for (Terminal t : terminals) {
+					SymbolString next = new SymbolString(s);
+					next.add(t);
+					longer.add(next);
+				}
+			}
+			strings = longer;
+		}
+		return strings;
+	}
+
+	/**
+	 * Counts the leftmost derivations of strings of the length in the CNF
+	 * grammar, none of whose productions makes a form shorter.
+	 */
+	private static BigInteger countDerivations(Grammar cnf, int length) {
+		List<Symbol> form = new ArrayList<Symbol>();
+		form.add(cnf.getStartVariable());
+		return countDerivations(cnf, form, length);
+	}
+
+	private static BigInteger countDerivations(Grammar cnf, List<Symbol> form,
+			int length) {
+		if (form.size() > length)
+			return BigInteger.ZERO;
+		int i = 0;
+		while (i < form.size() && Grammar.isTerminal(form.get(i)))
+			i++;
+		if (i == form.size())
+			return form.size() == length ? BigInteger.ONE : BigInteger.ZERO;
+		BigInteger count = BigInteger.ZERO;
+		for (Production p : cnf.getProductionSet()
+				.getProductionsWithSymbolOnLHS(form.get(i))) {
+			if (p.getLHS().length != 1)
+				continue;
+			List<Symbol> next = new ArrayList<Symbol>(form.subList(0, i));
+			for (Symbol s : p.getRHS())
+				next.add(s);
+			next.addAll(form.subList(i + 1, form.size()));
+			count = count.add(countDerivations(cnf, next, length));
+		}
+		return count;
+	}
+
+	/**
+	 * Makes a grammar from productions written as "A -> x y z", the symbols
+	 * apart, a symbol being a variable if it is a capital letter. The left
+	 * side of the first is the start variable.
+	 */
+	private static Grammar createGrammar(String... productions) {
+		Grammar g = new Grammar();
+		Variable start = null;
+		for (String p : productions) {
+			String[] sides = p.split("->");
+			Symbol lhs = createSymbol(sides[0].trim());
+			String rhs = sides.length > 1 ? sides[1].trim() : "";
+			SymbolString right = new SymbolString();
+			if (rhs.length() > 0) {
+				for (String s : rhs.split(" "))
+					right.add(createSymbol(s));
+			}
+			g.getProductionSet().add(new Production(lhs, right));
+			if (start == null)
+				start = (Variable) lhs;
+		}
+		// Set last, as adding productions may pick another start variable.
+		g.setStartVariable(start);
+		return g;
+	}
+
+	private static Symbol createSymbol(String s) {
+		return s.matches("[A-Z]") ? new Variable(s) : new Terminal(s);
+	}
+
+}
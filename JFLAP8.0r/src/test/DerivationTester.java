@@ -0,0 +1,216 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import model.algorithms.testinput.parse.Derivation;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link Derivation}, which shares its steps between copies and
+ * caches the sentential form of each step, against lists of productions and
+ * substitutions replayed in full from the start, as it did before. Random
+ * derivations are grown by adding steps to them and to copies of them, and
+ * after each step every derivation made so far must still give the forms
+ * its own lists do, so that no step added to a copy has changed the
+ * derivation it was copied from or another copy.
+ */
+public class DerivationTester {
+
+	private static final int STEPS = 5000;
+
+	private static final int MAX_LENGTH = 30;
+
+	private static final Variable S = new Variable("S"),
+			A = new Variable("A"), B = new Variable("B");
+
+	private static final Terminal a = new Terminal("a"), b = new Terminal("b");
+
+	/** Productions with a lambda, a unit and a two-symbol left side */
+	private static final Production[] PRODUCTIONS = {
+			new Production(S, a, S, b), new Production(S, S, S),
+			new Production(S, A, B), new Production(S),
+			new Production(A, a), new Production(A, S),
+			new Production(B, b, B), new Production(B, b),
+			new Production(new Symbol[] { A, B }, B, A) };
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+		mismatches += checkCopies();
+		mismatches += checkRandom(new Random(14));
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * A step added to each of two copies must leave the other, and the
+	 * derivation they were copied from, as they were.
+	 */
+	private static int checkCopies() {
+		Derivation d = new Derivation(S);
+		d.addStep(PRODUCTIONS[2], 0);
+		SymbolString before = d.createResult();
+		Derivation first = d.copy(), second = d.copy();
+		first.addStep(PRODUCTIONS[4], 0);
+		second.addStep(PRODUCTIONS[8], 0);
+		int mismatches = 0;
+		mismatches += compare("original", d.createResult(), before);
+		mismatches += compare("original length", d.length(), 1);
+		mismatches += compare("first", first.createResult(), new SymbolString(
+				a, B));
+		mismatches += compare("second", second.createResult(),
+				new SymbolString(B, A));
+		mismatches += compare("first equals second", first.equals(second),
+				false);
+		first.addStep(PRODUCTIONS[7], 1);
+		mismatches += compare("second after first", second.createResult(),
+				new SymbolString(B, A));
+		mismatches += compare("first steps", Arrays.asList(first
+				.getResultArray()), Arrays.asList(new SymbolString(A, B),
+				new SymbolString(a, B), new SymbolString(a, b)));
+		System.out.println("copies: " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static int checkRandom(Random random) {
+		List<Derivation> derivations = new ArrayList<Derivation>();
+		List<List<Production>> productions = new ArrayList<List<Production>>();
+		List<List<Integer>> subs = new ArrayList<List<Integer>>();
+		derivations.add(new Derivation(S));
+		productions.add(new ArrayList<Production>());
+		subs.add(new ArrayList<Integer>());
+		int mismatches = 0, added = 0;
+		for (int step = 0; step < STEPS && mismatches == 0; step++) {
+			int i = random.nextInt(derivations.size());
+			Derivation d = derivations.get(i);
+			List<Production> prods = productions.get(i);
+			List<Integer> indices = subs.get(i);
+			if (random.nextBoolean()) {
+				d = d.copy();
+				prods = new ArrayList<Production>(prods);
+				indices = new ArrayList<Integer>(indices);
+				derivations.add(d);
+				productions.add(prods);
+				subs.add(indices);
+			}
+			SymbolString current = replay(prods, indices, prods.size());
+			int[] choice = choose(current, random);
+			if (choice != null && prods.size() < MAX_LENGTH) {
+				Production p = PRODUCTIONS[choice[0]];
+				if (choice[1] == leftmost(current) && p.getLHS().length == 1
+						&& random.nextBoolean())
+					d.addLeftmostStep(p);
+				else
+					d.addStep(p, choice[1]);
+				prods.add(p);
+				indices.add(choice[1]);
+				added++;
+			}
+			// Read a form now and then, so that later steps start from
+			// forms already cached.
+			if (random.nextInt(3) == 0)
+				d.createResult(random.nextInt(d.length() + 1));
+			if (derivations.size() > 100) {
+				int k = 1 + random.nextInt(derivations.size() - 1);
+				derivations.remove(k);
+				productions.remove(k);
+				subs.remove(k);
+			}
+			for (int k = 0; k < derivations.size(); k++)
+				mismatches += check("step " + step + " derivation " + k,
+						derivations.get(k), productions.get(k), subs.get(k),
+						random);
+		}
+		System.out.println(STEPS + " random steps, " + added
+				+ " added: " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	/**
+	 * Compares the derivation with its lists: the result, the result after
+	 * a random number of steps, a sub-derivation and, now and then, every
+	 * form along the way.
+	 */
+	private static int check(String name, Derivation d,
+			List<Production> prods, List<Integer> indices, Random random) {
+		int mismatches = 0;
+		mismatches += compare(name + " length", d.length(), prods.size());
+		mismatches += compare(name + " productions", Arrays.asList(d
+				.getProductionArray()), prods);
+		mismatches += compare(name + " substitutions", Arrays.asList(d
+				.getSubstitutionArray()), indices);
+		mismatches += compare(name + " result", d.createResult(), replay(
+				prods, indices, prods.size()));
+		int n = random.nextInt(prods.size() + 1);
+		mismatches += compare(name + " result after " + n, d.createResult(n),
+				replay(prods, indices, n));
+		n = random.nextInt(prods.size() + 1);
+		mismatches += compare(name + " sub-derivation " + n, d
+				.getSubDerivation(n).createResult(), replay(prods, indices, n));
+		if (random.nextInt(10) == 0) {
+			for (int i = 0; i < prods.size(); i++)
+				mismatches += compare(name + " form " + i,
+						d.getResultArray()[i], replay(prods, indices, i + 1));
+			Derivation fresh = new Derivation(S);
+			fresh.addAll(prods.toArray(new Production[0]), indices
+					.toArray(new Integer[0]));
+			mismatches += compare(name + " equals", d.equals(fresh), true);
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Returns the form after the first n steps, replaying them from the
+	 * start the way the derivation used to.
+	 */
+	private static SymbolString replay(List<Production> prods,
+			List<Integer> indices, int n) {
+		SymbolString result = new SymbolString(S);
+		for (int i = 0; i < n; i++) {
+			Production p = prods.get(i);
+			int start = indices.get(i);
+			result = result.replace(start, start + p.getLHS().length, p
+					.getRHS());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a random production and an index where its left side is in
+	 * the form, or null if there is none.
+	 */
+	private static int[] choose(SymbolString current, Random random) {
+		List<int[]> choices = new ArrayList<int[]>();
+		for (int p = 0; p < PRODUCTIONS.length; p++) {
+			SymbolString lhs = new SymbolString(PRODUCTIONS[p].getLHS());
+			for (int i = 0; i + lhs.size() <= current.size(); i++) {
+				if (current.subList(i, i + lhs.size()).equals(lhs))
+					choices.add(new int[] { p, i });
+			}
+		}
+		return choices.isEmpty() ? null : choices.get(random.nextInt(choices
+				.size()));
+	}
+
+	private static int leftmost(SymbolString current) {
+		for (int i = 0; i < current.size(); i++) {
+			if (current.get(i) instanceof Variable)
+				return i;
+		}
+		return -1;
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
+	}
+
+}
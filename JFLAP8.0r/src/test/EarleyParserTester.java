@@ -0,0 +1,153 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.algorithms.testinput.parse.cyk.CYKParser;
+import model.algorithms.testinput.parse.earley.EarleyParser;
+import model.algorithms.transform.grammar.CNFConverter;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.ProductionSet;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.SymbolString;
+import model.symbols.symbolizer.Symbolizers;
+
+/**
+ * Checks {@link EarleyParser} against {@link CYKParser} on the CNF form of
+ * the same grammar, for every string of up to {@link #MAX_LENGTH} symbols:
+ * both must accept the same strings, and the derivation Earley gives for
+ * each must derive the string. The grammars have the lambda productions,
+ * unit cycles and ambiguity that CYK needs converted away. CNF cannot
+ * derive the empty string, so Earley's verdict on it is checked against
+ * whether the start variable is nullable, and the CNF form is made with a
+ * new start variable, as the conversion keeps the old one nullable.
+ */
+public class EarleyParserTester {
+
+	private static final int MAX_LENGTH = 7;
+
+	public static void main(String[] args) {
+		Variable S = new Variable("S"), A = new Variable("A"), B = new Variable(
+				"B");
+		Terminal a = new Terminal("a"), b = new Terminal("b"), plus = new Terminal(
+				"+"), times = new Terminal("*");
+		int mismatches = 0;
+
+		// Lambda and unit productions, which CYK would need converted away
+		Grammar gram = new Grammar();
+		ProductionSet prods = gram.getProductionSet();
+		prods.add(new Production(S, A, S, B));
+		prods.add(new Production(S, A));
+		prods.add(new Production(A, a));
+		prods.add(new Production(A));
+		prods.add(new Production(B, b));
+		gram.setStartVariable(S);
+		mismatches += check("a^m b^n, m <= n + 1", gram, true);
+
+		// Balanced strings, with a nullable start that is used on the right
+		gram = new Grammar();
+		prods = gram.getProductionSet();
+		prods.add(new Production(S, a, S, b));
+		prods.add(new Production(S, S, S));
+		prods.add(new Production(S));
+		gram.setStartVariable(S);
+		mismatches += check("balanced", gram, true);
+
+		// A cycle of unit productions, S -> A -> B -> S
+		gram = new Grammar();
+		prods = gram.getProductionSet();
+		prods.add(new Production(S, A));
+		prods.add(new Production(S, a, S));
+		prods.add(new Production(A, B));
+		prods.add(new Production(A, b));
+		prods.add(new Production(B, S));
+		prods.add(new Production(B, B, b));
+		gram.setStartVariable(S);
+		mismatches += check("unit cycle", gram, false);
+
+		// Ambiguous: a+a*a has two parse trees
+		gram = new Grammar();
+		prods = gram.getProductionSet();
+		prods.add(new Production(S, S, plus, S));
+		prods.add(new Production(S, S, times, S));
+		prods.add(new Production(S, a));
+		gram.setStartVariable(S);
+		mismatches += check("ambiguous", gram, false);
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Parses every string over the terminals of the grammar with both
+	 * parsers and compares them.
+	 */
+	private static int check(String name, Grammar gram, boolean nullable) {
+		// The lambda remover leaves the start variable nullable, so the CNF
+		// form is made from a copy with a new start variable that is never
+		// on a right side.
+		Grammar copy = gram.copy();
+		Variable start = new Variable("Z");
+		copy.getProductionSet().add(
+				new Production(start, copy.getStartVariable()));
+		copy.setStartVariable(start);
+		CNFConverter converter = new CNFConverter(copy);
+		converter.stepToCompletion();
+		Grammar cnf = converter.getTransformedGrammar();
+		EarleyParser earley = new EarleyParser(gram);
+		CYKParser cyk = new CYKParser(cnf);
+
+		earley.quickParse(new SymbolString());
+		int mismatches = compare(name + " \"\"", earley.isAccept(), nullable);
+		int accepted = 0;
+		List<String> strings = createStrings(gram);
+		for (String s : strings) {
+			if (s.length() == 0)
+				continue;
+			String label = name + " \"" + s + "\"";
+			SymbolString input = Symbolizers.symbolize(s, gram);
+			earley.quickParse(input);
+			boolean accept = earley.isAccept();
+			cyk.quickParse(Symbolizers.symbolize(s, cnf));
+			mismatches += compare(label, accept, cyk.isAccept());
+			if (accept) {
+				mismatches += compare(label + " derivation", earley
+						.getDerivation().createResult(), input);
+				accepted++;
+			}
+		}
+		System.out.println(name + ": " + strings.size() + " strings, "
+				+ accepted + " accepted");
+		return mismatches;
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
+	}
+
+	/**
+	 * Returns every string of up to {@link #MAX_LENGTH} terminals of the
+	 * grammar.
+	 */
+	private static List<String> createStrings(Grammar gram) {
+		List<String> strings = new ArrayList<String>();
+		List<String> level = new ArrayList<String>();
+		level.add("");
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			strings.addAll(level);
+			List<String> longer = new ArrayList<String>();
+			for (String t : level) {
+				for (Object terminal : gram.getTerminals())
+					longer.add(t + terminal);
+			}
+			level = longer;
+		}
+		return strings;
+	}
+
+}
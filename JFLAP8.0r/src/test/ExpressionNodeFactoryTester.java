@@ -0,0 +1,309 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.conversion.fatoregex.DFAtoRegularExpressionConverter;
+import model.algorithms.conversion.regextofa.RegularExpressionToDFAConverter;
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.graph.FSAEqualityChecker;
+import model.regex.ExpressionNode;
+import model.regex.ExpressionNodeFactory;
+import model.regex.OperatorAlphabet;
+import model.regex.RegularExpression;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks the simplifications of {@link ExpressionNodeFactory}: that sample
+ * expressions simplify to the expressions the rules give, and that random
+ * expressions over a, b, lambda and the empty set, written out again after
+ * simplifying, match the same strings of up to {@link #MAX_LENGTH} symbols
+ * as java.util.regex finds the expressions as written match. Then sample and
+ * random DFAs are converted to expressions with
+ * {@link DFAtoRegularExpressionConverter}, and the expressions back to DFAs,
+ * which must accept the languages of the DFAs they came from.
+ */
+public class ExpressionNodeFactoryTester {
+
+	private static final int MAX_LENGTH = 6;
+
+	private static final int RANDOM_EXPRESSIONS = 500;
+
+	private static final int RANDOM_DFAS = 200;
+
+	private static final OperatorAlphabet OPS = new OperatorAlphabet();
+
+	private static final String EMPTY_SET = JFLAPPreferences
+			.getEmptySetString();
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+		ExpressionNodeFactory factory = new ExpressionNodeFactory(OPS);
+
+		// r + r* is r*
+		mismatches += checkSame(factory, "a + a *", "a *");
+		mismatches += checkSame(factory, "a * + a", "a *");
+		mismatches += checkSame(factory, "a b + ( a b ) * + b",
+				"( a b ) * + b");
+		// (a*b*)* is (a+b)*
+		mismatches += checkSame(factory, "( a * b * ) *", "( a + b ) *");
+		mismatches += checkSame(factory, "( a * + b * ) *", "( a + b ) *");
+		mismatches += checkSame(factory, "( a * ( b c ) * ) *",
+				"( a + b c ) *");
+		mismatches += checkSame(factory, "( \u03BB + a ) *", "a *");
+		mismatches += checkDifferent(factory, "( a * b ) *", "( a + b ) *");
+		// The empty set makes a concatenation empty
+		mismatches += checkSame(factory, "a " + EMPTY_SET + " b", EMPTY_SET);
+		mismatches += checkSame(factory, "( a + b ) * " + EMPTY_SET,
+				EMPTY_SET);
+		mismatches += checkSame(factory, "a " + EMPTY_SET + " + b", "b");
+		mismatches += checkSame(factory, EMPTY_SET + " *", "\u03BB");
+		mismatches += checkSame(factory, "( a " + EMPTY_SET + " ) * b",
+				"b");
+
+		Random random = new Random(22);
+		List<String> strings = new ArrayList<String>();
+		addStrings("", strings);
+		for (int i = 0; i < RANDOM_EXPRESSIONS; i++)
+			mismatches += checkLanguage(factory, createRandomExpression(
+					random, 5), strings);
+		System.out.println(RANDOM_EXPRESSIONS + " random expressions over "
+				+ strings.size() + " strings, " + factory.getNumberOfNodes()
+				+ " nodes");
+
+		mismatches += checkConversion("even a's", createDFA(2,
+				new int[] { 0 }, "0 a 1", "1 a 0", "0 b 0", "1 b 1"));
+		mismatches += checkConversion("ends in a b", createDFA(3,
+				new int[] { 2 }, "0 a 1", "0 b 0", "1 a 1", "1 b 2",
+				"2 a 1", "2 b 0"));
+		mismatches += checkConversion("multiples of 3", createDFA(3,
+				new int[] { 0 }, "0 0 0", "0 1 1", "1 0 2", "1 1 0",
+				"2 0 1", "2 1 2"));
+		mismatches += checkConversion("partial", createDFA(4, new int[] { 1,
+				3 }, "0 ab 1", "1 c 2", "2 ab 3", "3 c 1"));
+		for (int i = 0; i < RANDOM_DFAS; i++)
+			mismatches += checkConversion("random " + i,
+					createRandomDFA(random));
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	private static int checkSame(ExpressionNodeFactory factory, String e,
+			String simplified) {
+		ExpressionNode node = factory.parse(createExpression(e));
+		ExpressionNode expected = factory.parse(createExpression(simplified));
+		System.out.println("\"" + e + "\" is " + factory.toSymbolString(node));
+		if (node == expected)
+			return 0;
+		System.out.println("\"" + e + "\" expected "
+				+ factory.toSymbolString(expected));
+		return 1;
+	}
+
+	private static int checkDifferent(ExpressionNodeFactory factory,
+			String e, String other) {
+		ExpressionNode node = factory.parse(createExpression(e));
+		System.out.println("\"" + e + "\" is " + factory.toSymbolString(node));
+		if (node != factory.parse(createExpression(other)))
+			return 0;
+		System.out.println("\"" + e + "\" should not be \"" + other + "\"");
+		return 1;
+	}
+
+	/**
+	 * Compares the strings the expression matches, as written, with those
+	 * its simplified form matches, and checks that reading the simplified
+	 * form gives the same node.
+	 */
+	private static int checkLanguage(ExpressionNodeFactory factory, String e,
+			List<String> strings) {
+		SymbolString written = createExpression(e);
+		ExpressionNode node = factory.parse(written);
+		SymbolString simplified = factory.toSymbolString(node);
+		Pattern expected = toPattern(written), actual = toPattern(simplified);
+		int mismatches = 0;
+		for (String s : strings) {
+			if (expected.matcher(s).matches() != actual.matcher(s).matches()) {
+				System.out.println("\"" + e + "\" simplified to " + simplified
+						+ " differs on \"" + s + "\"");
+				mismatches++;
+				break;
+			}
+		}
+		if (factory.parse(simplified) != node) {
+			System.out.println("\"" + e + "\" simplified to " + simplified
+					+ " is read as " + factory.toSymbolString(factory
+							.parse(simplified)));
+			mismatches++;
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Converts the DFA to an expression and that back to a DFA, which must
+	 * accept the same language.
+	 */
+	private static int checkConversion(String name, FiniteStateAcceptor dfa) {
+		DFAtoRegularExpressionConverter converter = new DFAtoRegularExpressionConverter(
+				dfa.copy());
+		converter.stepToCompletion();
+		RegularExpression re = converter.getResultingRegEx();
+		FiniteStateAcceptor back = RegularExpressionToDFAConverter
+				.convertToDFA(re);
+		SymbolString witness = new FSAEqualityChecker()
+				.getDistinguishingString(dfa, back);
+		if (!name.startsWith("random"))
+			System.out.println(name + ": " + re.getExpression());
+		if (witness == null)
+			return 0;
+		System.out.println(name + ": " + re.getExpression() + " differs on \""
+				+ witness + "\"");
+		return 1;
+	}
+
+	/**
+	 * Writes a random expression over a, b, lambda and the empty set, with
+	 * every operator in brackets.
+	 */
+	private static String createRandomExpression(Random random, int depth) {
+		int choice = depth == 0 || random.nextInt(4) == 0 ? random.nextInt(4)
+				: 4 + random.nextInt(3);
+		switch (choice) {
+		case 0:
+			return "a";
+		case 1:
+			return "b";
+		case 2:
+			return random.nextInt(3) == 0 ? "\u03BB" : "a";
+		case 3:
+			return random.nextInt(3) == 0 ? EMPTY_SET : "b";
+		case 4:
+			return "( " + createRandomExpression(random, depth - 1) + " + "
+					+ createRandomExpression(random, depth - 1) + " )";
+		case 5:
+			return "( " + createRandomExpression(random, depth - 1) + " "
+					+ createRandomExpression(random, depth - 1) + " )";
+		default:
+			return "( " + createRandomExpression(random, depth - 1) + " ) *";
+		}
+	}
+
+	/**
+	 * Makes a random DFA over a and b with up to four states, some of whose
+	 * transitions may be missing.
+	 */
+	private static FiniteStateAcceptor createRandomDFA(Random random) {
+		int n = 1 + random.nextInt(4);
+		List<Integer> finals = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			if (random.nextInt(3) == 0)
+				finals.add(i);
+		}
+		// The converter needs a final state, and a symbol in the alphabet,
+		// so q0 always reads a.
+		if (finals.isEmpty())
+			finals.add(random.nextInt(n));
+		List<String> transitions = new ArrayList<String>();
+		for (int i = 0; i < n; i++) {
+			for (String s : new String[] { "a", "b" }) {
+				if (i == 0 && s.equals("a") || random.nextInt(5) > 0)
+					transitions.add(i + " " + s + " " + random.nextInt(n));
+			}
+		}
+		int[] f = new int[finals.size()];
+		for (int i = 0; i < f.length; i++)
+			f[i] = finals.get(i);
+		return createDFA(n, f, transitions.toArray(new String[0]));
+	}
+
+	/**
+	 * Makes a DFA with states q0 to qn-1, q0 the start, from transitions
+	 * written as "from symbol to".
+	 */
+	private static FiniteStateAcceptor createDFA(int n, int[] finals,
+			String... transitions) {
+		FiniteStateAcceptor dfa = new FiniteStateAcceptor();
+		State[] states = new State[n];
+		for (int i = 0; i < n; i++) {
+			states[i] = new State("q" + i, i);
+			dfa.getStates().add(states[i]);
+		}
+		dfa.setStartState(states[0]);
+		for (int i : finals)
+			dfa.getFinalStateSet().add(states[i]);
+		for (String t : transitions) {
+			String[] parts = t.split(" ");
+			dfa.getTransitions().add(
+					new FSATransition(states[Integer.parseInt(parts[0])],
+							states[Integer.parseInt(parts[2])],
+							new SymbolString(new Symbol(parts[1]))));
+		}
+		return dfa;
+	}
+
+	/**
+	 * Makes an expression from its symbols written apart, with (, ), *, +,
+	 * lambda and the empty set the operators.
+	 */
+	private static SymbolString createExpression(String e) {
+		SymbolString expression = new SymbolString();
+		for (String s : e.split(" ")) {
+			if (s.equals("("))
+				expression.add(OPS.getOpenGroup());
+			else if (s.equals(")"))
+				expression.add(OPS.getCloseGroup());
+			else if (s.equals("*"))
+				expression.add(OPS.getKleeneStar());
+			else if (s.equals("+"))
+				expression.add(OPS.getUnionOperator());
+			else if (s.equals("\u03BB"))
+				expression.add(OPS.getEmptySub());
+			else if (s.equals(EMPTY_SET))
+				expression.add(JFLAPPreferences.getEmptySetSymbol());
+			else
+				expression.add(new Symbol(s));
+		}
+		return expression;
+	}
+
+	/**
+	 * Writes the expression, over one-character symbols, as a
+	 * java.util.regex pattern.
+	 */
+	private static Pattern toPattern(SymbolString expression) {
+		StringBuilder pattern = new StringBuilder();
+		for (Symbol s : expression) {
+			if (s.equals(OPS.getOpenGroup()))
+				pattern.append("(?:");
+			else if (s.equals(OPS.getCloseGroup()))
+				pattern.append(")");
+			else if (s.equals(OPS.getKleeneStar()))
+				pattern.append("*");
+			else if (s.equals(OPS.getUnionOperator()))
+				pattern.append("|");
+			else if (s.equals(OPS.getEmptySub()))
+				pattern.append("(?:)");
+			else if (s.equals(JFLAPPreferences.getEmptySetSymbol()))
+				pattern.append("(?:(?!))");
+			else
+				pattern.append(Pattern.quote(s.getString()));
+		}
+		return Pattern.compile(pattern.toString());
+	}
+
+	private static void addStrings(String s, List<String> strings) {
+		strings.add(s);
+		if (s.length() == MAX_LENGTH)
+			return;
+		addStrings(s + "a", strings);
+		addStrings(s + "b", strings);
+	}
+
+}
@@ -0,0 +1,261 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.graph.FSAEqualityChecker;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link FSAEqualityChecker} against brute force on random pairs of
+ * small FSAs over a and b, with lambda transitions and transitions on two
+ * symbols: whether the FSAs are equivalent must agree with a search over
+ * every string of up to {@link #MAX_LENGTH} symbols, and the string
+ * returned when they are not must be accepted by exactly one of them and be
+ * as short as any such string. Each pair is also checked against itself
+ * and with the FSAs swapped.
+ */
+public class FSAEqualityTester {
+
+	private static final int MAX_LENGTH = 9;
+
+	private static final int RANDOM_PAIRS = 1000;
+
+	public static void main(String[] args) {
+		List<String> strings = createStrings();
+		FSAEqualityChecker checker = new FSAEqualityChecker();
+		Random random = new Random(24);
+		int mismatches = 0, equivalent = 0;
+		for (int i = 0; i < RANDOM_PAIRS; i++) {
+			String[] nfa1 = createRandomNFA(random);
+			String[] nfa2 = createRandomNFA(random);
+			// In a quarter of the pairs the second is the first with a copy
+			// of one of them reached on lambda, so that many are equivalent.
+			if (i % 4 == 0)
+				nfa2 = mergeWithLambda(nfa1, nfa2, random);
+			mismatches += check("pair " + i, nfa1, nfa2, strings, checker);
+			mismatches += check("pair " + i + " swapped", nfa2, nfa1, strings,
+					checker);
+			mismatches += check("pair " + i + " itself", nfa1, nfa1, strings,
+					checker);
+			if (checker.equals(createFSA(nfa1), createFSA(nfa2)))
+				equivalent++;
+		}
+		System.out.println(RANDOM_PAIRS + " pairs, " + equivalent
+				+ " equivalent, over " + strings.size() + " strings");
+
+		// (a+b)*a(a+b)^14 and (a+b)*a(a+b)^15 first differ on strings of
+		// length 15 starting with a, past what brute force reaches.
+		String[] last15 = createLast(15), last16 = createLast(16);
+		SymbolString witness = checker.getDistinguishingString(
+				createFSA(last15), createFSA(last16));
+		String w = witness == null ? null : toString(witness);
+		if (w == null || w.length() != 15
+				|| accepts(last15, w) == accepts(last16, w)) {
+			System.out.println("last a: expected a string of length 15 but "
+					+ "got " + witness);
+			mismatches++;
+		}
+		System.out.println("last a: " + witness);
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Compares the checker with brute force on the FSAs, each written as
+	 * its number of states, its final states and its transitions as
+	 * "from symbols to", lambda being no symbols.
+	 */
+	private static int check(String name, String[] nfa1, String[] nfa2,
+			List<String> strings, FSAEqualityChecker checker) {
+		String shortest = null;
+		for (String s : strings) {
+			if (accepts(nfa1, s) != accepts(nfa2, s)) {
+				shortest = s;
+				break;
+			}
+		}
+		SymbolString witness = checker.getDistinguishingString(
+				createFSA(nfa1), createFSA(nfa2));
+		if (witness == null) {
+			if (shortest == null)
+				return 0;
+			System.out.println(name + ": found equivalent, but they differ "
+					+ "on \"" + shortest + "\"");
+			return 1;
+		}
+		String w = toString(witness);
+		if (accepts(nfa1, w) == accepts(nfa2, w)) {
+			System.out.println(name + ": \"" + w
+					+ "\" does not tell them apart");
+			return 1;
+		}
+		if (shortest == null ? w.length() <= MAX_LENGTH
+				: w.length() != shortest.length()) {
+			System.out.println(name + ": \"" + w + "\" is not shortest, \""
+					+ shortest + "\" is");
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns whether the FSA accepts the string, trying every path.
+	 */
+	private static boolean accepts(String[] nfa, String input) {
+		Set<String> seen = new HashSet<String>();
+		List<int[]> work = new ArrayList<int[]>();
+		work.add(new int[] { 0, 0 });
+		seen.add("0 0");
+		Set<String> finals = new HashSet<String>();
+		for (String f : nfa[1].split(" "))
+			finals.add(f);
+		while (!work.isEmpty()) {
+			int[] config = work.remove(work.size() - 1);
+			if (config[1] == input.length()
+					&& finals.contains(String.valueOf(config[0])))
+				return true;
+			for (int i = 2; i < nfa.length; i++) {
+				String[] t = nfa[i].split(" ", -1);
+				if (Integer.parseInt(t[0]) != config[0]
+						|| !input.startsWith(t[1], config[1]))
+					continue;
+				int[] next = { Integer.parseInt(t[2]),
+						config[1] + t[1].length() };
+				if (seen.add(next[0] + " " + next[1]))
+					work.add(next);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Makes a random FSA of up to four states, with transitions on lambda,
+	 * one symbol and two symbols.
+	 */
+	private static String[] createRandomNFA(Random random) {
+		String[] labels = { "", "a", "b", "a", "b", "ab", "ba", "aa" };
+		int n = 1 + random.nextInt(4);
+		StringBuilder finals = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			if (random.nextInt(3) == 0)
+				finals.append(i).append(' ');
+		}
+		int k = random.nextInt(3 * n + 1);
+		String[] nfa = new String[2 + k];
+		nfa[0] = String.valueOf(n);
+		nfa[1] = finals.toString().trim();
+		for (int i = 0; i < k; i++)
+			nfa[2 + i] = random.nextInt(n) + " "
+					+ labels[random.nextInt(labels.length)] + " "
+					+ random.nextInt(n);
+		return nfa;
+	}
+
+	/**
+	 * Returns the first FSA with the second added, its states numbered
+	 * after those of the first, and a lambda transition from the start of
+	 * the first to its start, so that the result accepts the union of
+	 * their languages. Half the time the second is a copy of the first,
+	 * which gives an FSA equivalent to the first.
+	 */
+	private static String[] mergeWithLambda(String[] nfa1, String[] nfa2,
+			Random random) {
+		String[] added = random.nextBoolean() ? nfa1 : nfa2;
+		int n = Integer.parseInt(nfa1[0]);
+		List<String> merged = new ArrayList<String>();
+		merged.add(String.valueOf(n + Integer.parseInt(added[0])));
+		StringBuilder finals = new StringBuilder(nfa1[1]);
+		if (added[1].length() > 0) {
+			for (String f : added[1].split(" "))
+				finals.append(' ').append(Integer.parseInt(f) + n);
+		}
+		merged.add(finals.toString().trim());
+		for (int i = 2; i < nfa1.length; i++)
+			merged.add(nfa1[i]);
+		for (int i = 2; i < added.length; i++) {
+			String[] t = added[i].split(" ", -1);
+			merged.add((Integer.parseInt(t[0]) + n) + " " + t[1] + " "
+					+ (Integer.parseInt(t[2]) + n));
+		}
+		merged.add("0  " + n);
+		return merged.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns an NFA for the strings whose k-th symbol from the end is a.
+	 */
+	private static String[] createLast(int k) {
+		String[] nfa = new String[2 + 3 + 2 * (k - 1)];
+		nfa[0] = String.valueOf(k + 1);
+		nfa[1] = String.valueOf(k);
+		nfa[2] = "0 a 0";
+		nfa[3] = "0 b 0";
+		nfa[4] = "0 a 1";
+		for (int i = 1; i < k; i++) {
+			nfa[3 + 2 * i] = i + " a " + (i + 1);
+			nfa[4 + 2 * i] = i + " b " + (i + 1);
+		}
+		return nfa;
+	}
+
+	private static FiniteStateAcceptor createFSA(String[] nfa) {
+		FiniteStateAcceptor fsa = new FiniteStateAcceptor();
+		int n = Integer.parseInt(nfa[0]);
+		State[] states = new State[n];
+		for (int i = 0; i < n; i++) {
+			states[i] = new State("q" + i, i);
+			fsa.getStates().add(states[i]);
+		}
+		fsa.setStartState(states[0]);
+		if (nfa[1].length() > 0) {
+			for (String f : nfa[1].split(" "))
+				fsa.getFinalStateSet().add(states[Integer.parseInt(f)]);
+		}
+		for (int i = 2; i < nfa.length; i++) {
+			String[] t = nfa[i].split(" ", -1);
+			SymbolString label = new SymbolString();
+			for (char c : t[1].toCharArray())
+				label.add(new Symbol(String.valueOf(c)));
+			fsa.getTransitions().add(
+					new FSATransition(states[Integer.parseInt(t[0])],
+							states[Integer.parseInt(t[2])], label));
+		}
+		return fsa;
+	}
+
+	private static String toString(SymbolString s) {
+		StringBuilder sb = new StringBuilder();
+		for (Symbol symbol : s)
+			sb.append(symbol.getString());
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the strings over a and b of up to {@link #MAX_LENGTH}
+	 * symbols, shortest first, so that the first difference found is a
+	 * shortest one.
+	 */
+	private static List<String> createStrings() {
+		List<String> strings = new ArrayList<String>();
+		List<String> level = new ArrayList<String>();
+		level.add("");
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			strings.addAll(level);
+			List<String> longer = new ArrayList<String>();
+			for (String t : level) {
+				longer.add(t + "a");
+				longer.add(t + "b");
+			}
+			level = longer;
+		}
+		return strings;
+	}
+
+}
@@ -2,6 +2,10 @@ package test;
 
 import java.awt.Color;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -17,6 +21,10 @@ import model.algorithms.conversion.fatoregex.DFAtoRegularExpressionConverter;
 import model.algorithms.conversion.gramtoauto.GrammarToAutomatonConverter;
 import model.algorithms.conversion.gramtoauto.RGtoFSAConverter;
 import model.algorithms.steppable.SteppableAlgorithm;
+import model.algorithms.testinput.simulate.AutoSimulator;
+import model.algorithms.testinput.simulate.CompiledFSASimulator;
+import model.algorithms.testinput.simulate.MultiSimulator;
+import model.algorithms.testinput.simulate.SingleInputSimulator;
 import model.algorithms.transform.fsa.AddTrapStateAlgorithm;
 import model.algorithms.transform.fsa.InacessibleStateRemover;
 import model.algorithms.transform.fsa.NFAtoDFAConverter;
@@ -123,6 +131,68 @@ public class FSATest extends TestHarness{
 		converter.stepToCompletion();
 		FiniteStateAcceptor dfa = ((NFAtoDFAConverter) converter).getDFA();
 		outPrintln("DFA from NFA: \n" + dfa.toString());
+		if (!NFAtoDFAConverter.convertToDFA(nfa).toString().equals(dfa.toString()))
+			errPrintln("Converting in one go gave a different DFA than stepping.");
+		
+		//compiled simulation should agree with stepping configurations
+		CompiledFSASimulator compiled = new CompiledFSASimulator(nfa);
+		SymbolString[] inputs = new SymbolString[]{new SymbolString(ZERO, ZERO),
+				new SymbolString(ONE), new SymbolString(ZERO, ONE, ZERO),
+				new SymbolString(ONE, ZERO, ONE, ONE), new SymbolString()};
+		for (SymbolString in : inputs){
+			AutoSimulator auto = new AutoSimulator(nfa, SingleInputSimulator.DEFAULT);
+			auto.beginSimulation(in);
+			boolean stepped = !auto.getNextAccept().isEmpty();
+			String result = "Compiled " + in + ": " + compiled.accepts(in) + 
+					", stepped: " + stepped;
+			if (stepped == compiled.accepts(in))
+				outPrintln(result);
+			else
+				errPrintln(result);
+		}
+		
+		//a batch on several threads should agree as well
+		MultiSimulator batch = new MultiSimulator(nfa, SingleInputSimulator.DEFAULT);
+		batch.setThreadCount(3);
+		batch.beginSimulation(inputs);
+		boolean[] accepted = batch.doAllSimulations();
+		for (int i = 0; i < inputs.length; i++){
+			String result = "Batch " + inputs[i] + ": " + accepted[i];
+			if (accepted[i] == compiled.accepts(inputs[i]))
+				outPrintln(result);
+			else
+				errPrintln(result);
+		}
+		
+		//an input that fails should stop the batch and be thrown from it
+		batch.beginSimulation(new SymbolString(ONE), null, new SymbolString(ZERO));
+		try {
+			batch.doAllSimulations();
+			errPrintln("Batch with a null input did not fail.");
+		} catch (NullPointerException e) {
+			outPrintln("Batch with a null input failed: " + e);
+		}
+		
+		//the next batch can be started once the last one is done
+		final MultiSimulator chained = batch;
+		final int[] done = new int[1];
+		final List<SymbolString[]> again = Collections.singletonList(new SymbolString[]{new SymbolString(ONE)});
+		chained.simulate(again, new MultiSimulator.ResultListener() {
+			
+			public void resultReady(MultiSimulator.Result result) {
+			}
+			
+			public void simulationsDone(boolean cancelled) {
+				if (++done[0] == 1)
+					chained.simulate(again, this);
+			}
+		});
+		chained.awaitCompletion();
+		chained.awaitCompletion();
+		if (done[0] == 2)
+			outPrintln("Batch started from the end of the last one.");
+		else
+			errPrintln("Batch started from the end of the last one ran " + done[0] + " times.");
 		
 		//minimize dfa Testing - test each step and then the whole alg.
 		// FIRST: add some inacessible states
@@ -146,11 +216,33 @@ public class FSATest extends TestHarness{
 		
 		converter = new MinimizeDFAAlgorithm(dfa);
 		converter.stepToCompletion();
+		FiniteStateAcceptor fast = MinimizeDFAAlgorithm.minimize(dfa);
 		dfa = ((MinimizeDFAAlgorithm) converter).getMinimizedDFA();
 		outPrintln("MinimizedDFA: \n" + dfa.toString());
+		if (!describe(fast).equals(describe(dfa)))
+			errPrintln("Minimizing in one go gave a different DFA: " + 
+					describe(fast) + " instead of " + describe(dfa));
 
 	}
 
+	/**
+	 * Describes the DFA by the names of its states, which both minimizers
+	 * take from the groups of states they merge, so two DFAs that differ
+	 * only in state IDs are described the same.
+	 */
+	private static Set<String> describe(FiniteStateAcceptor fsa) {
+		Set<String> description = new TreeSet<String>();
+		description.add("start " + fsa.getStartState().getName());
+		for (State s : fsa.getStates())
+			description.add((fsa.getFinalStateSet().contains(s) ? "final "
+					: "state ") + s.getName());
+		for (FSATransition t : fsa.getTransitions())
+			description.add(t.getFromState().getName() + " "
+					+ new SymbolString(t.getInput()) + " "
+					+ t.getToState().getName());
+		return description;
+	}
+
 	@Override
 	public String getTestName() {
 		return "FSA TEST";
@@ -0,0 +1,219 @@
+package test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import universe.preferences.JFLAPPreferences;
+
+import model.algorithms.testinput.parse.FirstFollowSets;
+import model.grammar.Grammar;
+import model.grammar.GrammarUtil;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link FirstFollowSets} against the recursive FIRST and FOLLOW
+ * search that {@link model.algorithms.testinput.parse.FirstFollowTable}
+ * used before, kept here as the reference, on sample grammars with nullable
+ * chains and left recursion and on random grammars. FIRST_1 is checked
+ * against FIRST too, its empty string standing for the substitute for the
+ * empty string.
+ */
+public class FirstFollowSetsTester {
+
+	private static final int RANDOM_GRAMMARS = 300;
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+
+		// A nullable chain, each variable going to the next
+		mismatches += check("nullable chain", createGrammar(
+				"S -> A B c", "S -> D", "A -> B", "A -> a", "A -> ",
+				"B -> C", "B -> b", "C -> A", "C -> ", "D -> A B C D",
+				"D -> d"));
+		// The expression grammar, left recursive
+		mismatches += check("expressions", createGrammar(
+				"E -> E + T", "E -> T", "T -> T * F", "T -> F",
+				"F -> ( E )", "F -> i"));
+		// Left recursion through a nullable variable
+		mismatches += check("nullable left recursion", createGrammar(
+				"S -> A S a", "S -> b", "A -> ", "A -> S c"));
+		// Mutual recursion with no terminal strings at all
+		mismatches += check("useless", createGrammar(
+				"S -> A", "A -> B a", "B -> A b", "S -> c"));
+
+		Random random = new Random(17);
+		for (int i = 0; i < RANDOM_GRAMMARS; i++)
+			mismatches += check("random " + i, createRandomGrammar(random));
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	private static int check(String name, Grammar g) {
+		FirstFollowSets sets = new FirstFollowSets(g);
+		Map<Variable, Set<SymbolString>> firstK = sets.getFirstK(1);
+		int mismatches = 0;
+		for (Symbol s : g.getVariables()) {
+			Variable v = (Variable) s;
+			Set<Terminal> first = recursiveFirst(v, g, new TreeSet<Variable>());
+			mismatches += compare(name, "FIRST", v, first, sets.getFirst(v));
+			mismatches += compare(name, "FIRST_1", v, first,
+					toTerminals(firstK.get(v)));
+			mismatches += compare(name, "FOLLOW", v,
+					recursiveFollow(v, g, new TreeSet<Variable>()),
+					sets.getFollow(v));
+		}
+		if (!name.startsWith("random"))
+			System.out.println(name + ": " + g.getVariables().size()
+					+ " variables, " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static int compare(String name, String set, Variable v,
+			Set<Terminal> expected, Set<Terminal> actual) {
+		if (expected.equals(actual))
+			return 0;
+		System.out.println(name + ": " + set + "(" + v + ") expected "
+				+ expected + " but got " + actual);
+		return 1;
+	}
+
+	private static Set<Terminal> toTerminals(Set<SymbolString> strings) {
+		Set<Terminal> terminals = new TreeSet<Terminal>();
+		for (SymbolString s : strings) {
+			if (s.isEmpty())
+				terminals.add(JFLAPPreferences.getSubForEmptyString());
+			else
+				terminals.add((Terminal) s.getFirst());
+		}
+		return terminals;
+	}
+
+	/**
+	 * Makes a grammar from productions written as "A -> x y z", the symbols
+	 * apart, a symbol being a variable if it starts with a capital letter.
+	 * The left side of the first is the start variable.
+	 */
+	private static Grammar createGrammar(String... productions) {
+		Grammar g = new Grammar();
+		Variable start = null;
+		for (String p : productions) {
+			String[] sides = p.split("->");
+			Symbol lhs = createSymbol(sides[0].trim());
+			String rhs = sides.length > 1 ? sides[1].trim() : "";
+			SymbolString right = new SymbolString();
+			if (rhs.length() > 0) {
+				for (String s : rhs.split(" "))
+					right.add(createSymbol(s));
+			}
+			g.getProductionSet().add(new Production(lhs, right));
+			if (start == null)
+				start = (Variable) lhs;
+		}
+		// Set last, as adding productions may pick another start variable.
+		g.setStartVariable(start);
+		return g;
+	}
+
+	private static Grammar createRandomGrammar(Random random) {
+		String variables = "SABC", terminals = "ab";
+		String symbols = variables + terminals;
+		int n = 2 + random.nextInt(6);
+		String[] productions = new String[n];
+		for (int i = 0; i < n; i++) {
+			char lhs = i == 0 ? 'S' : variables.charAt(random
+					.nextInt(variables.length()));
+			StringBuilder p = new StringBuilder(lhs + " ->");
+			int length = random.nextInt(4);
+			for (int j = 0; j < length; j++)
+				p.append(' ').append(
+						symbols.charAt(random.nextInt(symbols.length())));
+			productions[i] = p.toString();
+		}
+		return createGrammar(productions);
+	}
+
+	private static Symbol createSymbol(String s) {
+		return Character.isUpperCase(s.charAt(0)) ? new Variable(s)
+				: new Terminal(s);
+	}
+
+	private static Set<Terminal> recursiveFirst(Symbol[] symbols, Grammar g,
+			Set<Variable> history) {
+		Set<Terminal> first = new TreeSet<Terminal>();
+		Terminal empty = JFLAPPreferences.getSubForEmptyString();
+		first.add(empty);
+		for (int i = 0; i < symbols.length; i++) {
+			first.remove(empty);
+			Symbol sym = symbols[i];
+			first.addAll(recursiveFirst(sym, g, history));
+			if (!GrammarUtil.derivesLambda(sym, g))
+				break;
+			history = new TreeSet<Variable>(history);
+			history.add((Variable) sym);
+			first.addAll(recursiveFirst(
+					Arrays.copyOfRange(symbols, i + 1, symbols.length), g,
+					history));
+		}
+		return first;
+	}
+
+	private static Set<Terminal> recursiveFirst(Symbol s, Grammar g,
+			Set<Variable> history) {
+		if (Grammar.isTerminal(s)) {
+			TreeSet<Terminal> first = new TreeSet<Terminal>();
+			first.add((Terminal) s);
+			return first;
+		}
+		Variable v = (Variable) s;
+		if (history.contains(v))
+			return new TreeSet<Terminal>();
+		history = new TreeSet<Variable>(history);
+		history.add(v);
+		Set<Terminal> first = new TreeSet<Terminal>();
+		for (Production p : g.getProductionSet()
+				.getProductionsWithSymbolOnLHS(v))
+			first.addAll(recursiveFirst(p.getRHS(), g, history));
+		return first;
+	}
+
+	private static Set<Terminal> recursiveFollow(Variable v, Grammar g,
+			Set<Variable> history) {
+		if (history.contains(v))
+			return new TreeSet<Terminal>();
+		history = new TreeSet<Variable>(history);
+		history.add(v);
+		Set<Terminal> follow = new TreeSet<Terminal>();
+		if (g.getStartVariable().equals(v))
+			follow.add(JFLAPPreferences.getEndOfStringMarker());
+		Terminal empty = JFLAPPreferences.getSubForEmptyString();
+		for (Production p : g.getProductionSet()
+				.getProductionsWithSymbolOnRHS(v)) {
+			Set<Terminal> toAdd = new TreeSet<Terminal>();
+			Symbol[] rhs = p.getRHS();
+			for (int i = 0; i < rhs.length; i++) {
+				if (!rhs[i].equals(v))
+					continue;
+				Symbol[] w = Arrays.copyOfRange(rhs, i + 1, rhs.length);
+				Set<Terminal> firstW = recursiveFirst(w, g,
+						new TreeSet<Variable>());
+				toAdd.addAll(firstW);
+				if (firstW.contains(empty)) {
+					toAdd.remove(empty);
+					toAdd.addAll(recursiveFollow((Variable) p.getLHS()[0], g,
+							history));
+					break;
+				}
+			}
+			follow.addAll(toAdd);
+		}
+		return follow;
+	}
+
+}
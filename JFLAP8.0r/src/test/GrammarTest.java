@@ -29,6 +29,7 @@ import model.regex.RegularExpression;
 import model.regex.RegularExpressionGrammar;
 import model.symbols.Symbol;
 import model.symbols.SymbolString;
+import model.symbols.SymbolTable;
 
 public class GrammarTest extends TestHarness {
 
@@ -77,6 +78,15 @@ public class GrammarTest extends TestHarness {
 			g2 = r4.getTransformedGrammar();
 			outPrintln("CNF Converted RegEx Grammar:\n" + g2);
 		}
+
+		SymbolTable table = g.getSymbolTable();
+		outPrintln("Symbol table: " + table);
+		for (Symbol s: g.getTerminals()){
+			Symbol canonical = table.intern(s.copy());
+			if (canonical != table.getSymbol(table.getID(s)) || 
+					table.getID(new Variable(s.getString())) == table.getID(s))
+				errPrintln("Symbol table mismatch for terminal " + s);
+		}
 	}
 
 	public static void addSymbols(Alphabet alph, Symbol ... sym) {
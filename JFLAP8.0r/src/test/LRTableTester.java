@@ -0,0 +1,128 @@
+package test;
+
+import model.algorithms.testinput.parse.lr.CompiledLRParser;
+import model.algorithms.testinput.parse.lr.LRTableType;
+import model.algorithms.testinput.parse.lr.SLR1ParseTable;
+import model.grammar.Grammar;
+import model.grammar.Production;
+import model.grammar.Terminal;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks which of the SLR(1), LALR(1) and LR(1) tables have conflicts for
+ * grammars that tell them apart, and that the conflict free tables parse
+ * members and non-members of the language correctly.
+ */
+public class LRTableTester {
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+
+		// Assignments, LALR(1) but not SLR(1): '=' is in FOLLOW(R), so
+		// the state with L -> L. and R -> L. both shifts and reduces on it.
+		Grammar assignments = createGrammar("S -> L = R", "S -> R",
+				"L -> * R", "L -> id", "R -> L");
+		mismatches += check("assignments", assignments, true, false, false);
+		mismatches += parse("assignments", assignments, LRTableType.LALR1,
+				new String[] { "id", "id = id", "* id = * * id" },
+				new String[] { "", "=", "id =", "id = id = id", "* =" });
+
+		// LR(1) but not LALR(1): the states after a c and b c have the same
+		// core, and merging them mixes up which of A and B to reduce to.
+		Grammar merged = createGrammar("S -> a A d", "S -> b B d",
+				"S -> a B e", "S -> b A e", "A -> c", "B -> c");
+		mismatches += check("merged lookaheads", merged, true, true, false);
+		mismatches += parse("merged lookaheads", merged, LRTableType.LR1,
+				new String[] { "a c d", "b c d", "a c e", "b c e" },
+				new String[] { "a c", "c d", "a d", "a c d e" });
+
+		// LR(0) already, so no table has conflicts
+		Grammar nested = createGrammar("S -> ( S )", "S -> x");
+		mismatches += check("nested", nested, false, false, false);
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Compares whether each kind of table has conflicts with what is
+	 * expected.
+	 */
+	private static int check(String name, Grammar g, boolean slr,
+			boolean lalr, boolean lr) {
+		boolean[] expected = { slr, lalr, lr };
+		LRTableType[] types = { LRTableType.SLR1, LRTableType.LALR1,
+				LRTableType.LR1 };
+		int mismatches = 0;
+		for (int i = 0; i < types.length; i++) {
+			SLR1ParseTable table = new SLR1ParseTable(g, types[i]);
+			int conflicts = table.getNumberOfConflicts();
+			System.out.println(name + ": " + types[i] + " has "
+					+ table.getRowCount() + " states and " + conflicts
+					+ " conflicts");
+			if ((conflicts > 0) != expected[i]) {
+				System.out.println(name + ": " + types[i] + " expected "
+						+ (expected[i] ? "" : "no ") + "conflicts");
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	private static int parse(String name, Grammar g, LRTableType type,
+			String[] members, String[] others) {
+		CompiledLRParser parser = new CompiledLRParser(g, type);
+		parser.setRecording(true);
+		int mismatches = 0;
+		for (String s : members)
+			mismatches += parse(name, parser, s, true);
+		for (String s : others)
+			mismatches += parse(name, parser, s, false);
+		return mismatches;
+	}
+
+	private static int parse(String name, CompiledLRParser parser, String s,
+			boolean expected) {
+		SymbolString input = new SymbolString();
+		if (s.length() > 0) {
+			for (String t : s.split(" "))
+				input.add(new Terminal(t));
+		}
+		boolean actual = parser.parse(input);
+		if (actual == expected && (!actual || parser.getDerivation()
+				.createResult().equals(input)))
+			return 0;
+		System.out.println(name + ": \"" + s + "\" expected " + expected
+				+ " but got " + actual + " " + parser.getDerivation());
+		return 1;
+	}
+
+	/**
+	 * Makes a grammar from productions written as "A -> x y z", the symbols
+	 * apart, a symbol being a variable if it is a capital letter. The left
+	 * side of the first is the start variable.
+	 */
+	private static Grammar createGrammar(String... productions) {
+		Grammar g = new Grammar();
+		Variable start = null;
+		for (String p : productions) {
+			String[] sides = p.split("->");
+			Symbol lhs = createSymbol(sides[0].trim());
+			SymbolString rhs = new SymbolString();
+			for (String s : sides[1].trim().split(" "))
+				rhs.add(createSymbol(s));
+			g.getProductionSet().add(new Production(lhs, rhs));
+			if (start == null)
+				start = (Variable) lhs;
+		}
+		// Set last, as adding productions may pick another start variable.
+		g.setStartVariable(start);
+		return g;
+	}
+
+	private static Symbol createSymbol(String s) {
+		return s.matches("[A-Z]") ? new Variable(s) : new Terminal(s);
+	}
+
+}
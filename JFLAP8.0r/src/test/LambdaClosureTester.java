@@ -0,0 +1,202 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import model.ClosureHelper;
+import model.automata.LambdaClosures;
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.formaldef.FormalDefinitionException;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks the lambda closures that {@link ClosureHelper#takeClosure} takes
+ * from the table the automaton caches against a search over the lambda
+ * transitions, on random NFAs with many lambda transitions and cycles. Each
+ * NFA is then changed at random between lookups, by adding and removing
+ * transitions and states and by editing transitions in place, and after
+ * each change the cached table must be dropped and the closures must match
+ * the search again.
+ */
+public class LambdaClosureTester {
+
+	private static final int RANDOM_NFAS = 500;
+
+	private static final int EDITS = 20;
+
+	public static void main(String[] args) {
+		Random random = new Random(8);
+		int mismatches = 0, changes = 0;
+		for (int i = 0; i < RANDOM_NFAS && mismatches == 0; i++) {
+			FiniteStateAcceptor fsa = createRandomNFA(random);
+			mismatches += check("nfa " + i, fsa, random);
+			for (int edit = 0; edit < EDITS && mismatches == 0; edit++) {
+				LambdaClosures before = fsa.getLambdaClosures();
+				String change = edit(fsa, random);
+				if (change == null)
+					continue;
+				changes++;
+				if (fsa.getLambdaClosures() == before) {
+					System.out.println("nfa " + i + ": closures kept after "
+							+ change);
+					mismatches++;
+				}
+				mismatches += check("nfa " + i + " after " + change, fsa,
+						random);
+			}
+		}
+		System.out.println(RANDOM_NFAS + " random NFAs, " + changes
+				+ " changes");
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Compares the closure of each state, and of a random set of states,
+	 * with the search, and checks that looking them up again without a
+	 * change gives the same table.
+	 */
+	private static int check(String name, FiniteStateAcceptor fsa,
+			Random random) {
+		int mismatches = 0;
+		LambdaClosures closures = fsa.getLambdaClosures();
+		List<State> some = new ArrayList<State>();
+		TreeSet<State> expectedUnion = new TreeSet<State>();
+		for (State s : fsa.getStates()) {
+			TreeSet<State> expected = search(fsa, s);
+			TreeSet<State> actual = ClosureHelper.takeClosure(s, fsa);
+			if (!expected.equals(actual)) {
+				System.out.println(name + ": closure of " + s + " expected "
+						+ expected + " but got " + actual);
+				mismatches++;
+			}
+			if (random.nextBoolean()) {
+				some.add(s);
+				expectedUnion.addAll(expected);
+			}
+		}
+		BitSet ids = ClosureHelper.takeClosure(some, fsa);
+		TreeSet<State> union = closures.getStates(ids);
+		if (!expectedUnion.equals(union)) {
+			System.out.println(name + ": closure of " + some + " expected "
+					+ expectedUnion + " but got " + union);
+			mismatches++;
+		}
+		if (fsa.getLambdaClosures() != closures) {
+			System.out.println(name + ": closures rebuilt without a change");
+			mismatches++;
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Returns the states reachable from s on lambda transitions, found by
+	 * walking the transitions themselves.
+	 */
+	private static TreeSet<State> search(FiniteStateAcceptor fsa, State s) {
+		TreeSet<State> closure = new TreeSet<State>();
+		List<State> work = new ArrayList<State>();
+		closure.add(s);
+		work.add(s);
+		while (!work.isEmpty()) {
+			State from = work.remove(work.size() - 1);
+			for (FSATransition t : fsa.getTransitions()) {
+				if (t.getFromState().equals(from) && t.isLambdaTransition()
+						&& closure.add(t.getToState()))
+					work.add(t.getToState());
+			}
+		}
+		return closure;
+	}
+
+	/**
+	 * Makes a random change to the NFA and returns what it was, or null if
+	 * nothing changed.
+	 */
+	private static String edit(FiniteStateAcceptor fsa, Random random) {
+		State[] states = fsa.getStates().toArray(new State[0]);
+		FSATransition[] transitions = fsa.getTransitions().toArray(
+				new FSATransition[0]);
+		try {
+			switch (random.nextInt(5)) {
+			case 0:
+				FSATransition added = createTransition(states, random);
+				return fsa.getTransitions().add(added) ? "adding " + added
+						: null;
+			case 1:
+				if (transitions.length == 0)
+					return null;
+				FSATransition removed = transitions[random
+						.nextInt(transitions.length)];
+				fsa.getTransitions().remove(removed);
+				return "removing " + removed;
+			case 2:
+				if (transitions.length == 0)
+					return null;
+				// Turns a lambda transition into one on a symbol, and back.
+				FSATransition edited = transitions[random
+						.nextInt(transitions.length)];
+				String before = edited.toString();
+				edited.setInput(createLabel(edited.isLambdaTransition() ? "a"
+						: ""));
+				return "editing " + before + " to " + edited;
+			case 3:
+				State s = fsa.getStates().createAndAddState();
+				fsa.getTransitions().add(
+						new FSATransition(states[random.nextInt(states.length)],
+								s, new SymbolString()));
+				return "adding " + s;
+			default:
+				if (states.length == 1)
+					return null;
+				State gone = states[1 + random.nextInt(states.length - 1)];
+				fsa.getStates().remove(gone);
+				return "removing " + gone;
+			}
+		} catch (FormalDefinitionException e) {
+			// The edit would have made a transition equal to another, and
+			// was refused.
+			return null;
+		}
+	}
+
+	/**
+	 * Makes a random NFA of up to eight states over a and b, half of whose
+	 * transitions are on lambda.
+	 */
+	private static FiniteStateAcceptor createRandomNFA(Random random) {
+		FiniteStateAcceptor fsa = new FiniteStateAcceptor();
+		int n = 1 + random.nextInt(8);
+		State[] states = new State[n];
+		for (int i = 0; i < n; i++) {
+			states[i] = new State("q" + i, i);
+			fsa.getStates().add(states[i]);
+		}
+		fsa.setStartState(states[0]);
+		int k = random.nextInt(2 * n + 1);
+		for (int i = 0; i < k; i++)
+			fsa.getTransitions().add(createTransition(states, random));
+		return fsa;
+	}
+
+	private static FSATransition createTransition(State[] states,
+			Random random) {
+		String[] labels = { "", "", "a", "b" };
+		return new FSATransition(states[random.nextInt(states.length)],
+				states[random.nextInt(states.length)],
+				createLabel(labels[random.nextInt(labels.length)]));
+	}
+
+	private static SymbolString createLabel(String s) {
+		SymbolString label = new SymbolString();
+		for (char c : s.toCharArray())
+			label.add(new Symbol(String.valueOf(c)));
+		return label;
+	}
+
+}
@@ -0,0 +1,346 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import model.algorithms.testinput.simulate.CompiledFSASimulator;
+import model.algorithms.transform.fsa.ProductConstruction;
+import model.algorithms.transform.fsa.ProductConstruction.Operation;
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link ProductConstruction} against brute force: the products of
+ * random pairs of small FSAs, with lambda and two-symbol transitions, for
+ * each {@link Operation}, minimized and not, must be DFAs that accept the
+ * strings of up to {@link #MAX_LENGTH} symbols that the operation says of
+ * whether each FSA accepts them. Then the cases at the edges: the
+ * complement of an FSA with symbols in its alphabet on no transition,
+ * combining a single FSA, an intersection of many FSAs that becomes empty
+ * before the last, and minimizing a product with no final states.
+ */
+public class ProductConstructionTester {
+
+	private static final int MAX_LENGTH = 7;
+
+	private static final int RANDOM_PAIRS = 300;
+
+	public static void main(String[] args) {
+		List<String> strings = createStrings("ab", MAX_LENGTH);
+		Random random = new Random(25);
+		int mismatches = 0;
+		for (int i = 0; i < RANDOM_PAIRS; i++) {
+			String[] nfa1 = createRandomNFA(random);
+			String[] nfa2 = createRandomNFA(random);
+			for (Operation op : Operation.values()) {
+				for (boolean minimize : new boolean[] { false, true }) {
+					FiniteStateAcceptor product = ProductConstruction.combine(
+							createFSA(nfa1), createFSA(nfa2), op, minimize);
+					mismatches += check("pair " + i + " " + op
+							+ (minimize ? " minimized" : ""), product,
+							strings, op, nfa1, nfa2);
+				}
+			}
+			if (i % 3 == 0) {
+				String[] nfa3 = createRandomNFA(random);
+				FiniteStateAcceptor all = ProductConstruction.combineAll(
+						Arrays.asList(createFSA(nfa1), createFSA(nfa2),
+								createFSA(nfa3)),
+						Operation.SYMMETRIC_DIFFERENCE, true);
+				mismatches += check("triple " + i, all, strings,
+						Operation.SYMMETRIC_DIFFERENCE, nfa1, nfa2, nfa3);
+			}
+		}
+		System.out.println(RANDOM_PAIRS + " pairs over " + strings.size()
+				+ " strings");
+
+		mismatches += checkUnusedSymbols();
+		mismatches += checkSingle(random, strings);
+		mismatches += checkEmptyIntersection();
+		mismatches += checkNoFinalStates();
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Checks that the DFA accepts exactly those of the strings that the
+	 * operation, folded over the FSAs, says of whether each accepts them.
+	 */
+	private static int check(String name, FiniteStateAcceptor dfa,
+			List<String> strings, Operation op, String[]... nfas) {
+		if (!isDFA(dfa)) {
+			System.out.println(name + ": not a DFA\n" + dfa);
+			return 1;
+		}
+		CompiledFSASimulator sim = new CompiledFSASimulator(dfa);
+		for (String s : strings) {
+			boolean expected = accepts(nfas[0], s);
+			for (int i = 1; i < nfas.length; i++)
+				expected = op.isFinal(expected, accepts(nfas[i], s));
+			if (sim.accepts(toSymbolString(s)) != expected) {
+				System.out.println(name + ": \"" + s + "\" expected "
+						+ expected + "\n" + dfa);
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The complement of an FSA for a* whose alphabet also has b and c, on
+	 * no transition, must accept every string with b or c.
+	 */
+	private static int checkUnusedSymbols() {
+		String[] nfa = { "1", "0", "0 a 0" };
+		List<String> strings = createStrings("abc", 5);
+		int mismatches = 0;
+		for (boolean minimize : new boolean[] { false, true }) {
+			FiniteStateAcceptor fsa = createFSA(nfa);
+			fsa.getInputAlphabet().add(new Symbol("b"));
+			fsa.getInputAlphabet().add(new Symbol("c"));
+			FiniteStateAcceptor complement = ProductConstruction.complement(
+					fsa, minimize);
+			String name = "unused symbols" + (minimize ? " minimized" : "");
+			if (!isDFA(complement)) {
+				System.out.println(name + ": not a DFA\n" + complement);
+				mismatches++;
+				continue;
+			}
+			CompiledFSASimulator sim = new CompiledFSASimulator(complement);
+			for (String s : strings) {
+				if (sim.accepts(toSymbolString(s)) == accepts(nfa, s)) {
+					System.out.println(name + ": \"" + s + "\" expected "
+							+ !accepts(nfa, s) + "\n" + complement);
+					mismatches++;
+					break;
+				}
+			}
+			System.out.println(name + ": "
+					+ complement.getStates().size() + " states");
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Combining a single FSA must give a new DFA for its language, whatever
+	 * the operation.
+	 */
+	private static int checkSingle(Random random, List<String> strings) {
+		int mismatches = 0;
+		for (int i = 0; i < 20; i++) {
+			String[] nfa = createRandomNFA(random);
+			for (Operation op : Operation.values()) {
+				for (boolean minimize : new boolean[] { false, true }) {
+					FiniteStateAcceptor fsa = createFSA(nfa);
+					FiniteStateAcceptor result = ProductConstruction
+							.combineAll(Arrays.asList(fsa), op, minimize);
+					String name = "single " + i + " " + op
+							+ (minimize ? " minimized" : "");
+					if (result == fsa) {
+						System.out.println(name + ": returned the FSA given");
+						mismatches++;
+					}
+					mismatches += check(name, result, strings, Operation.UNION,
+							nfa);
+				}
+			}
+		}
+		System.out.println("single: 20 FSAs");
+		return mismatches;
+	}
+
+	/**
+	 * The intersection of FSAs for a, b and a* is empty after the second,
+	 * so the third must not be read.
+	 */
+	private static int checkEmptyIntersection() {
+		String[] a = { "2", "1", "0 a 1" }, b = { "2", "1", "0 b 1" };
+		int mismatches = 0;
+		for (boolean minimize : new boolean[] { false, true }) {
+			WatchedFSA third = new WatchedFSA();
+			State q0 = new State("q0", 0);
+			third.getStates().add(q0);
+			third.setStartState(q0);
+			third.getFinalStateSet().add(q0);
+			third.getTransitions().add(
+					new FSATransition(q0, q0, toSymbolString("a")));
+			third.amRead = false;
+			FiniteStateAcceptor result = ProductConstruction.combineAll(
+					Arrays.<FiniteStateAcceptor> asList(createFSA(a),
+							createFSA(b), third), Operation.INTERSECTION,
+					minimize);
+			String name = "empty intersection"
+					+ (minimize ? " minimized" : "");
+			if (!result.getFinalStateSet().isEmpty() || third.amRead) {
+				System.out.println(name + ": did not stop after the second\n"
+						+ result);
+				mismatches++;
+			}
+			System.out.println(name + ": " + result.getStates().size()
+					+ " states");
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Minimizing a product with no final states, which the minimizer does
+	 * not take, must give the start state alone.
+	 */
+	private static int checkNoFinalStates() {
+		String[] ab = { "2", "1", "0 a 0", "0 b 1", "1 a 1", "1 b 1" };
+		String[] all = { "1", "0", "0 a 0", "0 b 0" };
+		List<FiniteStateAcceptor> results = new ArrayList<FiniteStateAcceptor>();
+		results.add(ProductConstruction.combine(createFSA(ab), createFSA(ab),
+				Operation.DIFFERENCE, true));
+		results.add(ProductConstruction.combine(createFSA(ab), createFSA(all),
+				Operation.DIFFERENCE, true));
+		results.add(ProductConstruction.complement(createFSA(all), true));
+		int mismatches = 0;
+		for (FiniteStateAcceptor result : results) {
+			if (result.getStates().size() != 1
+					|| !result.getFinalStateSet().isEmpty()
+					|| !result.getTransitions().isEmpty()) {
+				System.out.println("no final states: expected the start "
+						+ "state alone\n" + result);
+				mismatches++;
+			}
+		}
+		System.out.println("no final states: " + results.size() + " products");
+		return mismatches;
+	}
+
+	/**
+	 * An FSA that notes when its start state is asked for, as it is when
+	 * the FSA is combined.
+	 */
+	private static class WatchedFSA extends FiniteStateAcceptor {
+		private boolean amRead;
+
+		@Override
+		public State getStartState() {
+			amRead = true;
+			return super.getStartState();
+		}
+	}
+
+	private static boolean isDFA(FiniteStateAcceptor fsa) {
+		Set<String> seen = new HashSet<String>();
+		for (FSATransition t : fsa.getTransitions()) {
+			if (t.getInput().length != 1
+					|| !seen.add(t.getFromState().getID() + " "
+							+ t.getInput()[0]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the FSA, written as its number of states, its final
+	 * states and its transitions as "from symbols to", lambda being no
+	 * symbols, accepts the string, trying every path.
+	 */
+	private static boolean accepts(String[] nfa, String input) {
+		Set<String> seen = new HashSet<String>();
+		List<int[]> work = new ArrayList<int[]>();
+		work.add(new int[] { 0, 0 });
+		seen.add("0 0");
+		Set<String> finals = new HashSet<String>(Arrays.asList(nfa[1]
+				.split(" ")));
+		while (!work.isEmpty()) {
+			int[] config = work.remove(work.size() - 1);
+			if (config[1] == input.length()
+					&& finals.contains(String.valueOf(config[0])))
+				return true;
+			for (int i = 2; i < nfa.length; i++) {
+				String[] t = nfa[i].split(" ", -1);
+				if (Integer.parseInt(t[0]) != config[0]
+						|| !input.startsWith(t[1], config[1]))
+					continue;
+				int[] next = { Integer.parseInt(t[2]),
+						config[1] + t[1].length() };
+				if (seen.add(next[0] + " " + next[1]))
+					work.add(next);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Makes a random FSA of up to four states over a and b, with
+	 * transitions on lambda, one symbol and two symbols.
+	 */
+	private static String[] createRandomNFA(Random random) {
+		String[] labels = { "", "a", "b", "a", "b", "ab", "ba", "aa" };
+		int n = 1 + random.nextInt(4);
+		StringBuilder finals = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			if (random.nextInt(3) == 0)
+				finals.append(i).append(' ');
+		}
+		int k = random.nextInt(3 * n + 1);
+		String[] nfa = new String[2 + k];
+		nfa[0] = String.valueOf(n);
+		nfa[1] = finals.toString().trim();
+		for (int i = 0; i < k; i++)
+			nfa[2 + i] = random.nextInt(n) + " "
+					+ labels[random.nextInt(labels.length)] + " "
+					+ random.nextInt(n);
+		return nfa;
+	}
+
+	private static FiniteStateAcceptor createFSA(String[] nfa) {
+		FiniteStateAcceptor fsa = new FiniteStateAcceptor();
+		int n = Integer.parseInt(nfa[0]);
+		State[] states = new State[n];
+		for (int i = 0; i < n; i++) {
+			states[i] = new State("q" + i, i);
+			fsa.getStates().add(states[i]);
+		}
+		fsa.setStartState(states[0]);
+		if (nfa[1].length() > 0) {
+			for (String f : nfa[1].split(" "))
+				fsa.getFinalStateSet().add(states[Integer.parseInt(f)]);
+		}
+		for (int i = 2; i < nfa.length; i++) {
+			String[] t = nfa[i].split(" ", -1);
+			fsa.getTransitions().add(
+					new FSATransition(states[Integer.parseInt(t[0])],
+							states[Integer.parseInt(t[2])],
+							toSymbolString(t[1])));
+		}
+		return fsa;
+	}
+
+	private static SymbolString toSymbolString(String s) {
+		SymbolString symbols = new SymbolString();
+		for (char c : s.toCharArray())
+			symbols.add(new Symbol(String.valueOf(c)));
+		return symbols;
+	}
+
+	/**
+	 * Returns the strings over the characters of up to the length.
+	 */
+	private static List<String> createStrings(String chars, int maxLength) {
+		List<String> strings = new ArrayList<String>();
+		List<String> level = new ArrayList<String>();
+		level.add("");
+		for (int length = 0; length <= maxLength; length++) {
+			strings.addAll(level);
+			List<String> longer = new ArrayList<String>();
+			for (String t : level) {
+				for (char c : chars.toCharArray())
+					longer.add(t + c);
+			}
+			level = longer;
+		}
+		return strings;
+	}
+
+}
@@ -0,0 +1,153 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.grammar.Production;
+import model.grammar.ProductionSet;
+import model.grammar.ProductionSet.LHSMatch;
+import model.grammar.Terminal;
+import model.grammar.TerminalAlphabet;
+import model.grammar.Variable;
+import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
+import model.symbols.SymbolString;
+
+/**
+ * Checks the left side index of a {@link ProductionSet} against a linear
+ * scan of its productions, for every sentential form of up to four symbols,
+ * after each kind of change to the set and to the productions in it.
+ */
+public class ProductionIndexTester {
+
+	private static final String SYMBOLS = "SABCab";
+	private static final int MAX_LENGTH = 4;
+
+	public static void main(String[] args) {
+		ProductionSet prods = new ProductionSet();
+		int mismatches = 0;
+
+		prods.add(create("S", "AB"));
+		prods.add(create("A", "aA"));
+		prods.add(create("A", "a"));
+		prods.add(create("aB", "b"));
+		prods.add(create("B", ""));
+		prods.add(create("AB", "BA"));
+		mismatches += check("add", prods);
+
+		prods.addAll(Arrays.asList(create("B", "b"), create("S", "S"),
+				create("A", "a")));
+		mismatches += check("addAll", prods);
+
+		prods.removeAll(Arrays.asList(create("A", "a"), create("S", "S"),
+				create("A", "bb")));
+		mismatches += check("removeAll", prods);
+
+		for (Production p : prods.toArray()) {
+			if (p.equals(create("A", "aA")))
+				p.setLHS(createString("B"));
+		}
+		mismatches += check("setLHS", prods);
+
+		prods.applySymbolMod("B", "C");
+		mismatches += check("applySymbolMod", prods);
+
+		prods.purgeOfSymbols(new TerminalAlphabet(),
+				Arrays.<Symbol> asList(new Terminal("a")));
+		mismatches += check("purgeOfSymbols", prods);
+
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Compares the index with the linear scan for every form, and whether
+	 * each production is still found in the set, printing what differs.
+	 */
+	private static int check(String step, ProductionSet prods) {
+		int mismatches = 0;
+		for (Production p : prods.toArray()) {
+			if (!prods.contains(p)) {
+				System.out.println(step + ": " + p + " is not found in "
+						+ prods);
+				mismatches++;
+			}
+		}
+		List<Symbol[]> forms = new ArrayList<Symbol[]>();
+		addForms(new Symbol[0], forms);
+		for (Symbol[] form : forms) {
+			List<String> expected = scan(form, prods);
+			List<String> actual = new ArrayList<String>();
+			for (LHSMatch match : prods.getLHSMatches(new SymbolSequence(form)))
+				actual.add(describe(match.getStart(), match.getEnd(),
+						Arrays.asList(match.getProductions())));
+			if (!expected.equals(actual)) {
+				System.out.println(step + ": " + Arrays.toString(form)
+						+ " expected " + expected + " but got " + actual);
+				mismatches++;
+			}
+		}
+		System.out.println(step + ": " + prods.size() + " productions, "
+				+ forms.size() + " forms, " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static List<String> scan(Symbol[] form, ProductionSet prods) {
+		List<String> matches = new ArrayList<String>();
+		for (int i = 0; i < form.length; i++) {
+			for (int j = i + 1; j <= form.length; j++) {
+				Symbol[] sub = Arrays.copyOfRange(form, i, j);
+				List<Production> found = new ArrayList<Production>();
+				for (Production p : prods) {
+					if (Arrays.equals(p.getLHS(), sub))
+						found.add(p);
+				}
+				if (!found.isEmpty())
+					matches.add(describe(i, j, found));
+			}
+		}
+		return matches;
+	}
+
+	private static String describe(int start, int end, List<Production> prods) {
+		List<String> names = new ArrayList<String>();
+		for (Production p : prods)
+			names.add(p.toString());
+		Collections.sort(names);
+		return start + "-" + end + " " + names;
+	}
+
+	private static void addForms(Symbol[] form, List<Symbol[]> forms) {
+		forms.add(form);
+		if (form.length == MAX_LENGTH)
+			return;
+		for (char c : SYMBOLS.toCharArray()) {
+			Symbol[] longer = Arrays.copyOf(form, form.length + 1);
+			longer[form.length] = createSymbol(c);
+			addForms(longer, forms);
+		}
+	}
+
+	private static Production create(String lhs, String rhs) {
+		return new Production(createString(lhs), createString(rhs));
+	}
+
+	/**
+	 * Makes new symbols for each production, so renaming a symbol of one
+	 * leaves the others as they are.
+	 */
+	private static SymbolString createString(String s) {
+		SymbolString string = new SymbolString();
+		for (char c : s.toCharArray())
+			string.add(createSymbol(c));
+		return string;
+	}
+
+	private static Symbol createSymbol(char c) {
+		String name = Character.toString(c);
+		return Character.isUpperCase(c) ? new Variable(name) : new Terminal(
+				name);
+	}
+
+}
@@ -7,6 +7,7 @@ import debug.JFLAPDebug;
 import file.xml.XMLCodec;
 import model.algorithms.conversion.autotogram.FSAtoRegGrammarConversion;
 import model.algorithms.conversion.fatoregex.DFAtoRegularExpressionConverter;
+import model.algorithms.conversion.regextofa.RegularExpressionToDFAConverter;
 import model.algorithms.conversion.regextofa.RegularExpressionToNFAConversion;
 import model.algorithms.testinput.simulate.AutoSimulator;
 import model.algorithms.testinput.simulate.AutomatonSimulator;
@@ -51,6 +52,10 @@ public class RegExTest extends TestHarness{
 		FiniteStateAcceptor fsa = converter.getCompletedNFA();
 		outPrintln(fsa.toString());
 
+		//convert straight to a minimal DFA
+		outPrintln("Minimal DFA from regex:\n" + 
+				RegularExpressionToDFAConverter.convertToDFA(regex, true));
+
 		//convertToGrammar
 		FSAtoRegGrammarConversion c1 = new FSAtoRegGrammarConversion(fsa);
 		c1.stepToCompletion();
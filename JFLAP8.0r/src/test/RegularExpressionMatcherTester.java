@@ -0,0 +1,297 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.regex.OperatorAlphabet;
+import model.regex.RegularExpressionMatcher;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link RegularExpressionMatcher}, read a symbol at a time and
+ * spelled, against a backtracking reference on every input of up to
+ * {@link #MAX_LENGTH} symbols or characters, for expressions with symbols
+ * of more than one character, characters special to java.util.regex, lambda,
+ * the empty expression and nested stars. Then an expression whose DFA has
+ * more states than the matcher keeps is run on long random inputs, so that
+ * its states are dropped and made again many times.
+ */
+public class RegularExpressionMatcherTester {
+
+	private static final int MAX_LENGTH = 5;
+
+	private static final OperatorAlphabet OPS = new OperatorAlphabet();
+
+	public static void main(String[] args) {
+		String[] expressions = { "a b * + c", "ab + a b", "ab * b",
+				". [ + \\ $ * + ^ ?", "x.y + a|b", "\u03BB", "", "( )",
+				"a + \u03BB", "( \u03BB ) * a", "( ( a * ) * b * ) *",
+				"( a * + b ) * *", "( a + b ) * a b ( a + b )",
+				"( ab + a ) ( b + ba ) *" };
+		int mismatches = 0;
+		for (String e : expressions) {
+			for (boolean spelled : new boolean[] { false, true })
+				mismatches += check(e, createExpression(e), spelled);
+		}
+		for (boolean spelled : new boolean[] { false, true })
+			mismatches += check("nothing", null, spelled);
+		mismatches += checkFlush();
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	private static int check(String name, SymbolString expression,
+			boolean spelled) {
+		RegularExpressionMatcher matcher = new RegularExpressionMatcher(
+				expression, OPS, spelled);
+		Node tree = expression == null ? null : new Reference(expression)
+				.parse();
+		// The units of the inputs: the symbols or their characters, and one
+		// that is in no symbol.
+		Set<String> units = new TreeSet<String>();
+		units.add("z");
+		if (expression != null) {
+			for (Symbol s : expression) {
+				if (OPS.contains(s))
+					continue;
+				if (spelled) {
+					for (char c : s.getString().toCharArray())
+						units.add(String.valueOf(c));
+				} else
+					units.add(s.getString());
+			}
+		}
+		List<List<String>> inputs = new ArrayList<List<String>>();
+		addInputs(new ArrayList<String>(), new ArrayList<String>(units),
+				inputs);
+
+		int mismatches = 0, matched = 0;
+		for (List<String> input : inputs) {
+			boolean expected = tree != null
+					&& tree.ends(input, spelled, 0).contains(input.size());
+			boolean actual;
+			if (spelled) {
+				StringBuilder sb = new StringBuilder();
+				for (String u : input)
+					sb.append(u);
+				actual = matcher.matches(sb.toString());
+			} else {
+				SymbolString s = new SymbolString();
+				for (String u : input)
+					s.add(new Symbol(u));
+				actual = matcher.matches(s);
+			}
+			if (actual)
+				matched++;
+			if (expected != actual) {
+				System.out.println(name + (spelled ? " spelled" : "") + ": "
+						+ input + " expected " + expected + " but got "
+						+ actual);
+				mismatches++;
+			}
+		}
+		System.out.println("\"" + name + "\"" + (spelled ? " spelled" : "")
+				+ ": " + inputs.size() + " inputs, " + matched + " matched, "
+				+ mismatches + " mismatches");
+		return mismatches;
+	}
+
+	/**
+	 * Matches long inputs against an expression for the strings with an a
+	 * fifteen symbols from the end, whose DFA has 2^15 states, far more than
+	 * the matcher keeps at once.
+	 */
+	private static int checkFlush() {
+		int k = 15;
+		StringBuilder e = new StringBuilder("( a + b ) * a");
+		for (int i = 1; i < k; i++)
+			e.append(" ( a + b )");
+		RegularExpressionMatcher matcher = new RegularExpressionMatcher(
+				createExpression(e.toString()), OPS, true);
+		Random random = new Random(21);
+		int mismatches = 0;
+		for (int i = 0; i < 50; i++) {
+			int length = k + random.nextInt(5000);
+			StringBuilder input = new StringBuilder();
+			for (int j = 0; j < length; j++)
+				input.append(random.nextBoolean() ? 'a' : 'b');
+			boolean expected = input.charAt(length - k) == 'a';
+			if (matcher.matches(input.toString()) != expected) {
+				System.out.println("flush: input " + i + " of length "
+						+ length + " expected " + expected);
+				mismatches++;
+			}
+		}
+		System.out.println("flush: 50 inputs, " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static void addInputs(List<String> input, List<String> units,
+			List<List<String>> inputs) {
+		inputs.add(input);
+		if (input.size() == MAX_LENGTH)
+			return;
+		for (String u : units) {
+			List<String> longer = new ArrayList<String>(input);
+			longer.add(u);
+			addInputs(longer, units, inputs);
+		}
+	}
+
+	/**
+	 * Makes an expression from its symbols written apart, with (, ), *, +
+	 * and lambda the operators.
+	 */
+	private static SymbolString createExpression(String e) {
+		SymbolString expression = new SymbolString();
+		if (e.length() == 0)
+			return expression;
+		for (String s : e.split(" ")) {
+			if (s.equals("("))
+				expression.add(OPS.getOpenGroup());
+			else if (s.equals(")"))
+				expression.add(OPS.getCloseGroup());
+			else if (s.equals("*"))
+				expression.add(OPS.getKleeneStar());
+			else if (s.equals("+"))
+				expression.add(OPS.getUnionOperator());
+			else if (s.equals("\u03BB"))
+				expression.add(OPS.getEmptySub());
+			else
+				expression.add(new Symbol(s));
+		}
+		return expression;
+	}
+
+	/**
+	 * A part of the expression: a symbol, with no children, or an empty
+	 * string, a concatenation, a union or a star.
+	 */
+	private static class Node {
+		private char myKind;
+		private String mySymbol;
+		private List<Node> myChildren = new ArrayList<Node>();
+
+		private Node(char kind) {
+			myKind = kind;
+		}
+
+		/**
+		 * Returns where the matches of this part of the input that start at
+		 * the position can end, trying every way.
+		 */
+		private Set<Integer> ends(List<String> input, boolean spelled,
+				int start) {
+			Set<Integer> ends = new TreeSet<Integer>();
+			switch (myKind) {
+			case 's':
+				List<String> units = spelled ? Arrays.asList(mySymbol
+						.split("(?!^)")) : Arrays.asList(mySymbol);
+				if (start + units.size() <= input.size()
+						&& input.subList(start, start + units.size()).equals(
+								units))
+					ends.add(start + units.size());
+				break;
+			case 'e':
+				ends.add(start);
+				break;
+			case 'c':
+				ends.add(start);
+				for (Node child : myChildren) {
+					Set<Integer> next = new TreeSet<Integer>();
+					for (int i : ends)
+						next.addAll(child.ends(input, spelled, i));
+					ends = next;
+				}
+				break;
+			case 'u':
+				for (Node child : myChildren)
+					ends.addAll(child.ends(input, spelled, start));
+				break;
+			default:
+				List<Integer> work = new ArrayList<Integer>();
+				ends.add(start);
+				work.add(start);
+				while (!work.isEmpty()) {
+					int i = work.remove(work.size() - 1);
+					for (int j : myChildren.get(0).ends(input, spelled, i)) {
+						if (ends.add(j))
+							work.add(j);
+					}
+				}
+			}
+			return ends;
+		}
+	}
+
+	/**
+	 * Reads an expression into {@link Node}s, the star binding tighter
+	 * than concatenation, and that tighter than union.
+	 */
+	private static class Reference {
+		private SymbolString myExpression;
+		private int myPosition;
+
+		private Reference(SymbolString expression) {
+			myExpression = expression;
+		}
+
+		private Node parse() {
+			return parseUnion();
+		}
+
+		private boolean isNext(Symbol s) {
+			return myPosition < myExpression.size()
+					&& myExpression.get(myPosition).equals(s);
+		}
+
+		private Node parseUnion() {
+			Node union = new Node('u');
+			union.myChildren.add(parseConcatenation());
+			while (isNext(OPS.getUnionOperator())) {
+				myPosition++;
+				union.myChildren.add(parseConcatenation());
+			}
+			return union;
+		}
+
+		private Node parseConcatenation() {
+			Node concatenation = new Node('c');
+			while (myPosition < myExpression.size()
+					&& !isNext(OPS.getUnionOperator())
+					&& !isNext(OPS.getCloseGroup()))
+				concatenation.myChildren.add(parseStar());
+			return concatenation;
+		}
+
+		private Node parseStar() {
+			Node node = parseAtom();
+			while (isNext(OPS.getKleeneStar())) {
+				myPosition++;
+				Node star = new Node('*');
+				star.myChildren.add(node);
+				node = star;
+			}
+			return node;
+		}
+
+		private Node parseAtom() {
+			Symbol s = myExpression.get(myPosition++);
+			if (s.equals(OPS.getOpenGroup())) {
+				Node node = parseUnion();
+				myPosition++;
+				return node;
+			}
+			if (s.equals(OPS.getEmptySub()))
+				return new Node('e');
+			Node node = new Node('s');
+			node.mySymbol = s.getString();
+			return node;
+		}
+	}
+
+}
@@ -0,0 +1,292 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import model.algorithms.testinput.simulate.AutoSimulator;
+import model.algorithms.testinput.simulate.ConfigurationChain;
+import model.algorithms.testinput.simulate.SingleInputSimulator;
+import model.automata.Automaton;
+import model.automata.State;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.automata.acceptors.pda.PDATransition;
+import model.automata.acceptors.pda.PushdownAutomaton;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks that {@link SingleInputSimulator}, which drops the branches that
+ * reach a configuration it has already seen, still gives the right verdicts
+ * on automata with lambda cycles, which it could not finish before: an NFA
+ * with a lambda cycle and the a^n b^n PDA with lambda loops, on every
+ * string of up to {@link #MAX_LENGTH} symbols, and random NFAs with lambda
+ * transitions against a search over their paths. The number of branches
+ * pruned and of chains found looping are checked on the smallest inputs,
+ * and stepping back and forward again must give the same chains.
+ */
+public class SingleInputSimulatorTester {
+
+	private static final int MAX_LENGTH = 6;
+
+	private static final int RANDOM_NFAS = 1000;
+
+	public static void main(String[] args) {
+		List<String> strings = createStrings();
+		int mismatches = 0;
+
+		// (ab)*, going around q0 -> q1 -> q0 on lambda before each a.
+		String[] cycle = { "3", "0", "0  1", "1  0", "1 a 2", "2 b 0" };
+		for (String s : strings)
+			mismatches += compare("cycle \"" + s + "\"", simulate(
+					createFSA(cycle), s), accepts(cycle, s));
+		// From q0 the lambda step to q1 forks back to q0 and on to q2 on
+		// a; back at q0 it is pruned, which leaves the chain at q2 and
+		// nothing looping. On b the chain only gets to q1, and its one step,
+		// back to q0, is pruned, so it loops.
+		mismatches += checkCounts("cycle \"a\"", createFSA(cycle), "a", false,
+				1, 0);
+		mismatches += checkCounts("cycle \"b\"", createFSA(cycle), "b", false,
+				1, 1);
+
+		PushdownAutomaton pda = createAnBnPDA();
+		for (String s : strings)
+			mismatches += compare("a^n b^n \"" + s + "\"",
+					simulate(pda, s), isAnBn(s));
+		// On aab the chains at q4 go back to the configurations at q1 they
+		// came from, and the chain at q2 that is left with a on the stack
+		// can only take its own loop, so all three are pruned and loop.
+		mismatches += checkCounts("a^n b^n \"aab\"", pda, "aab", false, 3, 3);
+
+		mismatches += checkReverse(pda, "aabb");
+
+		Random random = new Random(5);
+		for (int i = 0; i < RANDOM_NFAS; i++) {
+			String[] nfa = createRandomNFA(random);
+			FiniteStateAcceptor fsa = createFSA(nfa);
+			for (String s : strings) {
+				if (s.length() <= 4)
+					mismatches += compare("random " + i + " \"" + s + "\"",
+							simulate(fsa, s), accepts(nfa, s));
+			}
+		}
+		System.out.println(RANDOM_NFAS + " random NFAs");
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	private static boolean simulate(FiniteStateAcceptor fsa, String input) {
+		AutoSimulator sim = new AutoSimulator(fsa, SingleInputSimulator.DEFAULT);
+		sim.beginSimulation(toSymbolString(input));
+		return !sim.getNextAccept().isEmpty();
+	}
+
+	private static boolean simulate(PushdownAutomaton pda, String input) {
+		AutoSimulator sim = new AutoSimulator(pda, SingleInputSimulator.DEFAULT);
+		sim.beginSimulation(toSymbolString(input));
+		return !sim.getNextAccept().isEmpty();
+	}
+
+	/**
+	 * Runs the input until every chain halts and checks the verdict and the
+	 * number of branches pruned and chains found looping.
+	 */
+	private static int checkCounts(String name,
+			Automaton<?> a, String input, boolean accept,
+			int pruned, int looping) {
+		SingleInputSimulator sim = new SingleInputSimulator(a, false);
+		sim.beginSimulation(toSymbolString(input));
+		boolean accepted = false;
+		int steps = 0;
+		while (sim.canStep()) {
+			for (ConfigurationChain chain : sim.step())
+				accepted |= chain.isAccept();
+			steps++;
+		}
+		System.out.println(name + ": " + (accepted ? "accept" : "reject")
+				+ " in " + steps + " steps, " + sim.getNumPruned()
+				+ " pruned, " + sim.getNumLooping() + " looping");
+		return compare(name, accepted, accept)
+				+ compare(name + " pruned", sim.getNumPruned(), pruned)
+				+ compare(name + " looping", sim.getNumLooping(), looping);
+	}
+
+	/**
+	 * Steps back after each step and then forward again, which must give
+	 * the chains that the step gave the first time.
+	 */
+	private static int checkReverse(PushdownAutomaton pda, String input) {
+		SingleInputSimulator sim = new SingleInputSimulator(pda, false);
+		sim.beginSimulation(toSymbolString(input));
+		int mismatches = 0;
+		while (sim.canStep()) {
+			String stepped = describe(sim.step());
+			if (!sim.canReverse())
+				break;
+			sim.reverse();
+			mismatches += compare("step back on \"" + input + "\"",
+					describe(sim.step()), stepped);
+		}
+		return mismatches;
+	}
+
+	private static String describe(ConfigurationChain[] chains) {
+		List<String> configs = new ArrayList<String>();
+		for (ConfigurationChain chain : chains)
+			configs.add(chain.getCurrentConfiguration().toString());
+		return configs.toString();
+	}
+
+	/**
+	 * The PDA for a^n b^n, n > 0, that can go around q1 -> q4 -> q1 and
+	 * stay on q2 on lambda without changing the stack.
+	 */
+	private static PushdownAutomaton createAnBnPDA() {
+		PushdownAutomaton pda = new PushdownAutomaton();
+		State[] q = new State[5];
+		for (int i = 0; i < q.length; i++) {
+			q[i] = new State("q" + i, i);
+			pda.getStates().add(q[i]);
+		}
+		pda.setStartState(q[0]);
+		pda.getFinalStateSet().add(q[3]);
+		Symbol a = new Symbol("a"), z = pda.getBottomOfStackSymbol();
+		SymbolString empty = new SymbolString();
+		pda.getTransitions().add(new PDATransition(q[0], q[1],
+				toSymbolString("a"), new SymbolString(z), new SymbolString(a,
+						z)));
+		pda.getTransitions().add(new PDATransition(q[1], q[1],
+				toSymbolString("a"), new SymbolString(a), new SymbolString(a,
+						a)));
+		pda.getTransitions().add(new PDATransition(q[1], q[2],
+				toSymbolString("b"), new SymbolString(a), empty));
+		pda.getTransitions().add(new PDATransition(q[2], q[2],
+				toSymbolString("b"), new SymbolString(a), empty));
+		pda.getTransitions().add(new PDATransition(q[2], q[3], empty,
+				new SymbolString(z), empty));
+		pda.getTransitions().add(new PDATransition(q[1], q[4], empty,
+				new SymbolString(a), new SymbolString(a)));
+		pda.getTransitions().add(new PDATransition(q[4], q[1], empty,
+				new SymbolString(a), new SymbolString(a)));
+		pda.getTransitions().add(new PDATransition(q[2], q[2], empty,
+				new SymbolString(a), new SymbolString(a)));
+		return pda;
+	}
+
+	private static boolean isAnBn(String s) {
+		int n = s.length() / 2;
+		return n > 0 && s.matches("a{" + n + "}b{" + n + "}");
+	}
+
+	/**
+	 * Returns whether the NFA, written as its number of states, its final
+	 * states and its transitions as "from symbols to", accepts the string,
+	 * trying every path.
+	 */
+	private static boolean accepts(String[] nfa, String input) {
+		Set<String> seen = new HashSet<String>();
+		List<int[]> work = new ArrayList<int[]>();
+		work.add(new int[] { 0, 0 });
+		seen.add("0 0");
+		Set<String> finals = new HashSet<String>();
+		for (String f : nfa[1].split(" "))
+			finals.add(f);
+		while (!work.isEmpty()) {
+			int[] config = work.remove(work.size() - 1);
+			if (config[1] == input.length()
+					&& finals.contains(String.valueOf(config[0])))
+				return true;
+			for (int i = 2; i < nfa.length; i++) {
+				String[] t = nfa[i].split(" ", -1);
+				if (Integer.parseInt(t[0]) != config[0]
+						|| !input.startsWith(t[1], config[1]))
+					continue;
+				int[] next = { Integer.parseInt(t[2]),
+						config[1] + t[1].length() };
+				if (seen.add(next[0] + " " + next[1]))
+					work.add(next);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Makes a random NFA of up to four states, with many lambda
+	 * transitions so that most have lambda cycles.
+	 */
+	private static String[] createRandomNFA(Random random) {
+		String[] labels = { "", "", "a", "b", "ab" };
+		int n = 1 + random.nextInt(4);
+		StringBuilder finals = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			if (random.nextInt(3) == 0)
+				finals.append(i).append(' ');
+		}
+		int k = random.nextInt(3 * n + 1);
+		String[] nfa = new String[2 + k];
+		nfa[0] = String.valueOf(n);
+		nfa[1] = finals.toString().trim();
+		for (int i = 0; i < k; i++)
+			nfa[2 + i] = random.nextInt(n) + " "
+					+ labels[random.nextInt(labels.length)] + " "
+					+ random.nextInt(n);
+		return nfa;
+	}
+
+	private static FiniteStateAcceptor createFSA(String[] nfa) {
+		FiniteStateAcceptor fsa = new FiniteStateAcceptor();
+		int n = Integer.parseInt(nfa[0]);
+		State[] states = new State[n];
+		for (int i = 0; i < n; i++) {
+			states[i] = new State("q" + i, i);
+			fsa.getStates().add(states[i]);
+		}
+		fsa.setStartState(states[0]);
+		if (nfa[1].length() > 0) {
+			for (String f : nfa[1].split(" "))
+				fsa.getFinalStateSet().add(states[Integer.parseInt(f)]);
+		}
+		for (int i = 2; i < nfa.length; i++) {
+			String[] t = nfa[i].split(" ", -1);
+			fsa.getTransitions().add(
+					new FSATransition(states[Integer.parseInt(t[0])],
+							states[Integer.parseInt(t[2])],
+							toSymbolString(t[1])));
+		}
+		return fsa;
+	}
+
+	private static SymbolString toSymbolString(String s) {
+		SymbolString symbols = new SymbolString();
+		for (char c : s.toCharArray())
+			symbols.add(new Symbol(String.valueOf(c)));
+		return symbols;
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
+	}
+
+	private static List<String> createStrings() {
+		List<String> strings = new ArrayList<String>();
+		List<String> level = new ArrayList<String>();
+		level.add("");
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			strings.addAll(level);
+			List<String> longer = new ArrayList<String>();
+			for (String t : level) {
+				longer.add(t + "a");
+				longer.add(t + "b");
+			}
+			level = longer;
+		}
+		return strings;
+	}
+
+}
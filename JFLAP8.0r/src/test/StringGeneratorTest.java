@@ -72,6 +72,7 @@ public class StringGeneratorTest {
 
 		LanguageGenerator gen = LanguageGenerator.createGenerator(g);
 		JFLAPDebug.print(gen.getStringsOfLength(10));
+		JFLAPDebug.print(((ContextFreeLanguageGenerator) gen).getRandomStrings(5, 10));
 		
 //		StateSet states = new StateSet();
 //		InputAlphabet input = new InputAlphabet();
@@ -0,0 +1,230 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import model.symbols.Symbol;
+import model.symbols.SymbolSequence;
+import model.symbols.SymbolString;
+
+/**
+ * Checks {@link SymbolSequence} against lists of symbols: sequences are
+ * made at random by appending, replacing and taking views of sequences made
+ * before, many of them sharing storage, and after each step every sequence
+ * made so far must still hold the symbols its list does, so that no append
+ * writing into shared storage has overwritten another. The searches and
+ * comparisons of each new sequence are checked too, and then the
+ * {@link SymbolString} searches that use it.
+ */
+public class SymbolSequenceTester {
+
+	private static final int STEPS = 20000;
+
+	private static final Symbol[] SYMBOLS = { new Symbol("a"),
+			new Symbol("b"), new Symbol("c") };
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+		mismatches += checkSiblings();
+		mismatches += checkRandom(new Random(2));
+		mismatches += checkSymbolString(new Random(20));
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Two appends to the same sequence, and appends to views of it, must
+	 * not overwrite each other.
+	 */
+	private static int checkSiblings() {
+		Symbol a = SYMBOLS[0], b = SYMBOLS[1], c = SYMBOLS[2];
+		SymbolSequence parent = new SymbolSequence(a).concat(b);
+		SymbolSequence first = parent.concat(a, a);
+		SymbolSequence second = parent.concat(c);
+		SymbolSequence third = parent.subSequence(0, 1).concat(c, c);
+		SymbolSequence fourth = first.replace(1, 2, c);
+		int mismatches = 0;
+		mismatches += compare("parent", parent, Arrays.asList(a, b));
+		mismatches += compare("first", first, Arrays.asList(a, b, a, a));
+		mismatches += compare("second", second, Arrays.asList(a, b, c));
+		mismatches += compare("third", third, Arrays.asList(a, c, c));
+		mismatches += compare("fourth", fourth, Arrays.asList(a, c, a, a));
+		System.out.println("siblings: " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static int checkRandom(Random random) {
+		List<SymbolSequence> sequences = new ArrayList<SymbolSequence>();
+		List<List<Symbol>> lists = new ArrayList<List<Symbol>>();
+		sequences.add(SymbolSequence.EMPTY);
+		lists.add(new ArrayList<Symbol>());
+		int mismatches = 0;
+		for (int step = 0; step < STEPS && mismatches == 0; step++) {
+			int i = random.nextInt(sequences.size());
+			SymbolSequence s = sequences.get(i);
+			List<Symbol> list = lists.get(i);
+			SymbolSequence next;
+			List<Symbol> expected = new ArrayList<Symbol>(list);
+			int start = random.nextInt(list.size() + 1);
+			int end = start + random.nextInt(list.size() - start + 1);
+			switch (random.nextInt(5)) {
+			case 0:
+				Symbol[] symbols = createSymbols(random);
+				next = s.concat(symbols);
+				expected.addAll(Arrays.asList(symbols));
+				break;
+			case 1:
+				int j = random.nextInt(sequences.size());
+				next = s.concat(sequences.get(j));
+				expected.addAll(lists.get(j));
+				break;
+			case 2:
+				next = s.subSequence(start, end);
+				expected = new ArrayList<Symbol>(list.subList(start, end));
+				break;
+			case 3:
+				symbols = createSymbols(random);
+				next = s.replace(start, end, symbols);
+				expected.subList(start, end).clear();
+				expected.addAll(start, Arrays.asList(symbols));
+				break;
+			default:
+				j = random.nextInt(sequences.size());
+				next = s.replace(start, end, sequences.get(j));
+				expected.subList(start, end).clear();
+				expected.addAll(start, lists.get(j));
+			}
+			sequences.add(next);
+			lists.add(expected);
+			mismatches += checkSearches(next, expected, sequences.get(random
+					.nextInt(sequences.size())));
+			// Keep the sequences short and few.
+			if (expected.size() > 40) {
+				sequences.remove(sequences.size() - 1);
+				lists.remove(lists.size() - 1);
+			} else if (sequences.size() > 200) {
+				int k = 1 + random.nextInt(sequences.size() - 1);
+				sequences.remove(k);
+				lists.remove(k);
+			}
+			for (int k = 0; k < sequences.size(); k++)
+				mismatches += compare("step " + step, sequences.get(k),
+						lists.get(k));
+		}
+		System.out.println(STEPS + " random steps: " + mismatches
+				+ " mismatches");
+		return mismatches;
+	}
+
+	/**
+	 * Checks the searches and comparisons of the sequence against those of
+	 * its list, with another sequence from the pool.
+	 */
+	private static int checkSearches(SymbolSequence s, List<Symbol> list,
+			SymbolSequence other) {
+		List<Symbol> otherList = Arrays.asList(other.toArray());
+		int mismatches = 0;
+		for (Symbol symbol : SYMBOLS)
+			mismatches += compare("indexOf " + symbol, s.indexOf(symbol),
+					list.indexOf(symbol));
+		for (int start = 0; start <= list.size(); start++) {
+			int found = Collections.indexOfSubList(list.subList(start,
+					list.size()), otherList);
+			mismatches += compare("indexOf " + other + " from " + start,
+					s.indexOf(other, start), found < 0 ? -1 : found + start);
+		}
+		mismatches += compare("startsWith " + other, s.startsWith(other),
+				list.size() >= otherList.size()
+						&& list.subList(0, otherList.size()).equals(otherList));
+		mismatches += compare("endsWith " + other, s.endsWith(other),
+				list.size() >= otherList.size()
+						&& list.subList(list.size() - otherList.size(),
+								list.size()).equals(otherList));
+		SymbolSequence fresh = new SymbolSequence(list.toArray(new Symbol[0]));
+		mismatches += compare("equals", s.equals(fresh), true);
+		mismatches += compare("hashCode", s.hashCode(), fresh.hashCode());
+		mismatches += compare("equals " + other, s.equals(other),
+				list.equals(otherList));
+		mismatches += compare("compareTo " + other, Integer.signum(s
+				.compareTo(other)), Integer.signum(compare(list, otherList)));
+		mismatches += compare("contentEquals", s.contentEquals(s
+				.toSymbolString()), true);
+		if (mismatches > 0)
+			System.out.println("in " + s);
+		return mismatches;
+	}
+
+	/**
+	 * Checks the SymbolString searches that now go through
+	 * {@link SymbolSequence}, and its starts and ends, on random strings.
+	 */
+	private static int checkSymbolString(Random random) {
+		int mismatches = 0;
+		for (int n = 0; n < 5000; n++) {
+			SymbolString s = new SymbolString(createSymbols(random, 8));
+			SymbolString t = new SymbolString(createSymbols(random, 3));
+			List<Symbol> list = new ArrayList<Symbol>(s);
+			int start = random.nextInt(s.size() + 2) - 1;
+			int found = t.isEmpty() ? 0 : Collections.indexOfSubList(list, t);
+			mismatches += compare(s + " indexOfSubSymbolString " + t, s
+					.indexOfSubSymbolString(t), found);
+			mismatches += compare(s + " indexOf " + t, s.indexOf((Object) t),
+					found);
+			found = Collections.indexOfSubList(list.subList(
+					Math.max(start, 0), list.size()), t);
+			mismatches += compare(s + " indexOf " + t + " from " + start, s
+					.indexOf(t, start), found < 0 ? -1 : found
+					+ Math.max(start, 0));
+			mismatches += compare(s + " startsWith " + t, s.startsWith(t),
+					list.size() >= t.size()
+							&& list.subList(0, t.size()).equals(t));
+			mismatches += compare(s + " endsWith " + t, s.endsWith(t),
+					list.size() >= t.size()
+							&& list.subList(list.size() - t.size(),
+									list.size()).equals(t));
+		}
+		System.out.println("SymbolString: " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static int compare(List<Symbol> l1, List<Symbol> l2) {
+		int n = Math.min(l1.size(), l2.size());
+		for (int i = 0; i < n; i++) {
+			int compare = l1.get(i).compareTo(l2.get(i));
+			if (compare != 0)
+				return compare;
+		}
+		return l1.size() - l2.size();
+	}
+
+	private static int compare(String name, SymbolSequence s,
+			List<Symbol> expected) {
+		if (s.size() == expected.size()
+				&& Arrays.asList(s.toArray()).equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got " + s);
+		return 1;
+	}
+
+	private static int compare(String name, Object actual, Object expected) {
+		if (actual.equals(expected))
+			return 0;
+		System.out.println(name + ": expected " + expected + " but got "
+				+ actual);
+		return 1;
+	}
+
+	private static Symbol[] createSymbols(Random random) {
+		return createSymbols(random, 4);
+	}
+
+	private static Symbol[] createSymbols(Random random, int maxLength) {
+		Symbol[] symbols = new Symbol[random.nextInt(maxLength + 1)];
+		for (int i = 0; i < symbols.length; i++)
+			symbols[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+		return symbols;
+	}
+
+}
@@ -0,0 +1,187 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.automata.State;
+import model.automata.TransitionSet;
+import model.automata.acceptors.fsa.FSATransition;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
+import model.formaldef.FormalDefinitionException;
+import model.symbols.Symbol;
+import model.symbols.SymbolString;
+
+/**
+ * Checks the symbol index of a {@link TransitionSet} against a linear scan
+ * of {@link TransitionSet#getTransitionsFromState(State)}, for every state
+ * and next symbol, after each kind of change to the set and to the
+ * transitions in it, and then after random changes.
+ */
+public class TransitionIndexTester {
+
+	private static final String SYMBOLS = "abcd";
+
+	private static final int RANDOM_STEPS = 500;
+
+	public static void main(String[] args) {
+		FiniteStateAcceptor fsa = new FiniteStateAcceptor();
+		State[] states = new State[3];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = new State("q" + i, i);
+			fsa.getStates().add(states[i]);
+		}
+		fsa.setStartState(states[0]);
+		TransitionSet<FSATransition> transitions = fsa.getTransitions();
+		int mismatches = 0;
+
+		transitions.add(create(states, "0 a 1"));
+		transitions.add(create(states, "0 ab 2"));
+		transitions.add(create(states, "0  1"));
+		transitions.add(create(states, "1 b 1"));
+		transitions.add(create(states, "1 ba 0"));
+		transitions.add(create(states, "2  0"));
+		mismatches += check("add", fsa);
+
+		transitions.addAll(Arrays.asList(create(states, "2 a 2"), create(
+				states, "0 b 0"), create(states, "1  2")));
+		mismatches += check("addAll", fsa);
+
+		transitions.removeAll(Arrays.asList(create(states, "0 ab 2"), create(
+				states, "1  2"), create(states, "2 b 1")));
+		mismatches += check("removeAll", fsa);
+
+		// Moves transitions between index symbols, and in and out of the
+		// lambda transitions every symbol sees.
+		for (FSATransition t : transitions.toArray(new FSATransition[0])) {
+			if (describe(t).equals("q0 a q1"))
+				t.setInput(createString("b"));
+			else if (describe(t).equals("q1 b q1"))
+				t.setInput(createString(""));
+			else if (describe(t).equals("q2  q0"))
+				t.setInput(createString("c"));
+		}
+		mismatches += check("setInput", fsa);
+
+		transitions.applySymbolMod("a", "d");
+		mismatches += check("applySymbolMod", fsa);
+
+		transitions.purgeOfSymbols(fsa.getInputAlphabet(),
+				Arrays.asList(new Symbol("b")));
+		mismatches += check("purgeOfSymbols", fsa);
+
+		transitions.add(create(states, "2 c 1"));
+		transitions.removeAll(Arrays.asList(create(states, "0 c 2")));
+		mismatches += check("add after purge", fsa);
+
+		mismatches += checkRandom(fsa, states, new Random(7));
+		System.out.println("Mismatches: " + mismatches);
+	}
+
+	/**
+	 * Adds, removes and edits random transitions, checking the index after
+	 * each change.
+	 */
+	private static int checkRandom(FiniteStateAcceptor fsa, State[] states,
+			Random random) {
+		TransitionSet<FSATransition> transitions = fsa.getTransitions();
+		String[] labels = { "", "a", "b", "c", "ab", "ca" };
+		int mismatches = 0;
+		for (int step = 0; step < RANDOM_STEPS && mismatches == 0; step++) {
+			FSATransition[] all = transitions.toArray(new FSATransition[0]);
+			String label = labels[random.nextInt(labels.length)];
+			int choice = all.length == 0 ? 0 : random.nextInt(4);
+			try {
+				if (choice == 0)
+					transitions.add(create(states, random
+							.nextInt(states.length)
+							+ " " + label + " " + random.nextInt(states.length)));
+				else if (choice == 1)
+					transitions.remove(all[random.nextInt(all.length)]);
+				else if (choice == 2)
+					all[random.nextInt(all.length)]
+							.setInput(createString(label));
+				else
+					// The new name must not be in the alphabet yet.
+					transitions.applySymbolMod(labels[1 + random.nextInt(3)],
+							"e" + step);
+			} catch (FormalDefinitionException e) {
+				// The edit would have made a transition equal to another,
+				// and was refused.
+			}
+			mismatches += check("random step " + step, fsa);
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Compares the index with the linear scan for each state and next
+	 * symbol, those of the alphabet and a few others, and for no next
+	 * symbol, printing what differs.
+	 */
+	private static int check(String step, FiniteStateAcceptor fsa) {
+		TransitionSet<FSATransition> transitions = fsa.getTransitions();
+		Set<Symbol> next = new TreeSet<Symbol>(fsa.getInputAlphabet());
+		for (char c : SYMBOLS.toCharArray())
+			next.add(new Symbol(Character.toString(c)));
+		List<Symbol> lookups = new ArrayList<Symbol>(next);
+		lookups.add(null);
+		int mismatches = 0;
+		// An edit can make two transitions equal, like purging b from q0 b
+		// q1 next to q0 lambda q1, and the index keeps only one of them, so
+		// the transitions are compared as sets.
+		for (State s : fsa.getStates()) {
+			for (Symbol symbol : lookups) {
+				Set<String> expected = new TreeSet<String>();
+				for (FSATransition t : transitions.getTransitionsFromState(s)) {
+					Symbol[] input = t.getInput();
+					if (input.length == 0 || symbol != null
+							&& input[0].equals(symbol))
+						expected.add(describe(t));
+				}
+				Set<String> actual = new TreeSet<String>();
+				for (FSATransition t : transitions.getTransitionsFromState(s,
+						symbol))
+					actual.add(describe(t));
+				if (!expected.equals(actual)) {
+					System.out.println(step + ": " + s + " on " + symbol
+							+ " expected " + expected + " but got " + actual);
+					mismatches++;
+				}
+			}
+		}
+		if (!step.startsWith("random"))
+			System.out.println(step + ": " + transitions.size()
+					+ " transitions, " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	private static String describe(FSATransition t) {
+		StringBuilder input = new StringBuilder();
+		for (Symbol s : t.getInput())
+			input.append(s.getString());
+		return t.getFromState().getName() + " " + input + " "
+				+ t.getToState().getName();
+	}
+
+	/**
+	 * Makes a transition written as "from symbols to", with new symbols, so
+	 * renaming a symbol of one leaves the others as they are.
+	 */
+	private static FSATransition create(State[] states, String t) {
+		String[] parts = t.split(" ", -1);
+		return new FSATransition(states[Integer.parseInt(parts[0])],
+				states[Integer.parseInt(parts[2])], createString(parts[1]));
+	}
+
+	private static SymbolString createString(String s) {
+		SymbolString string = new SymbolString();
+		for (char c : s.toCharArray())
+			string.add(new Symbol(Character.toString(c)));
+		return string;
+	}
+
+}
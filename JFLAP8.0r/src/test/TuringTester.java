@@ -1,10 +1,19 @@
 package test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import model.algorithms.testinput.simulate.AutoSimulator;
+import model.algorithms.testinput.simulate.Configuration;
 import model.algorithms.testinput.simulate.MultiSimulator;
+import model.algorithms.testinput.simulate.configurations.tm.BlockTMConfiguration;
+import model.algorithms.testinput.simulate.configurations.tm.MultiTapeTMConfiguration;
+import model.algorithms.testinput.simulate.configurations.tm.TMConfiguration;
+import model.algorithms.testinput.simulate.configurations.tm.Tape;
 import model.automata.State;
+import model.automata.Transition;
 import model.automata.TransitionSet;
 import model.automata.turing.MultiTapeTMTransition;
 import model.automata.turing.MultiTapeTuringMachine;
@@ -23,6 +32,7 @@ import model.automata.turing.universal.WriteRightBlock;
 import model.symbols.Symbol;
 import model.symbols.SymbolString;
 import model.symbols.symbolizer.Symbolizers;
+import universe.preferences.JFLAPPreferences;
 import util.JFLAPConstants;
 import debug.JFLAPDebug;
 import file.xml.XMLCodec;
@@ -30,6 +40,9 @@ import file.xml.XMLCodec;
 public class TuringTester {
 	
 	public static void main(String[]args){
+		int mismatches = checkTapes();
+		System.out.println("Mismatches: " + mismatches);
+
 		String toSave = System.getProperties().getProperty("user.dir")
 				+ "/filetest";
 //		
@@ -78,6 +91,266 @@ public class TuringTester {
 //		JFLAPDebug.print("After import:\n" + tm.toString());
 	}
 
+	/**
+	 * Checks the persistent tapes against the copying implementation they
+	 * replaced, kept here as the reference: random walks that grow the tape
+	 * both ways and write blanks over its ends, the steps taken by one- and
+	 * two-tape machines, a building block machine, and a binary counter run
+	 * for 200000 steps. Returns the number of mismatches.
+	 */
+	private static int checkTapes() {
+		int mismatches = 0;
+		mismatches += checkRandomWalks(new Random(4));
+		List<Configuration> chain = new ArrayList<Configuration>();
+		mismatches += checkMachine("adder", createBinaryAdder(), 1000, chain,
+				"1 0 1 + 1 1");
+		mismatches += checkMachine("what lang", createwhatlang_a(), 1000,
+				chain, "a a b b b b", "");
+		mismatches += checkMachine("what tran", createwhattran_a(), 1000,
+				chain, "1 1 1 1 1 1", "");
+		mismatches += checkMachine("substring", createTape_substring(),
+				1000, chain, "a b a b b", "b b");
+		mismatches += checkCounter();
+		mismatches += checkBlockMachine();
+		System.out.println("Tape mismatches: " + mismatches);
+		return mismatches;
+	}
+
+	private static int checkRandomWalks(Random random) {
+		Symbol blank = JFLAPPreferences.getTMBlankSymbol();
+		Symbol[] symbols = { new Symbol("a"), new Symbol("b"), blank };
+		TuringMachineMove[] moves = TuringMachineMove.values();
+		int mismatches = 0;
+		for (int walk = 0; walk < 2000 && mismatches == 0; walk++) {
+			SymbolString[] reference = { new SymbolString() };
+			int length = 1 + random.nextInt(5);
+			for (int i = 0; i < length; i++)
+				reference[0].add(symbols[random.nextInt(symbols.length)]);
+			int[] pos = { random.nextInt(length) };
+			Tape tape = new Tape(reference[0], pos[0]);
+			List<Tape> kept = new ArrayList<Tape>();
+			List<String> keptStrings = new ArrayList<String>();
+			for (int step = 0; step < 100; step++) {
+				Symbol write = symbols[random.nextInt(symbols.length)];
+				TuringMachineMove move = moves[random.nextInt(moves.length)];
+				tape = tape.step(write, move);
+				stepReference(reference, pos, new Symbol[] { write },
+						new TuringMachineMove[] { move });
+				mismatches += compareTape("walk " + walk + " step " + step,
+						tape, reference[0], pos[0]);
+				if (step % 10 == 0) {
+					kept.add(tape);
+					keptStrings.add(tape.toString());
+				}
+			}
+			// Later steps must not have changed the tapes they came from.
+			for (int i = 0; i < kept.size(); i++) {
+				if (!kept.get(i).toString().equals(keptStrings.get(i))) {
+					System.out.println("walk " + walk + ": tape "
+							+ keptStrings.get(i) + " became " + kept.get(i));
+					mismatches++;
+				}
+			}
+		}
+		System.out.println("random walks: " + mismatches + " mismatches");
+		return mismatches;
+	}
+
+	/**
+	 * Steps the machine from the input on each tape, padded with blanks,
+	 * following the first transition each time, and compares every tape
+	 * with the reference after each step. The configurations are added to
+	 * the chain.
+	 */
+	private static int checkMachine(String name, MultiTapeTuringMachine tm,
+			int maxSteps, List<Configuration> chain, String... input) {
+		int n = tm.getNumTapes();
+		SymbolString[] reference = new SymbolString[n];
+		int[] pos = new int[n];
+		for (int i = 0; i < n; i++) {
+			reference[i] = TMConfiguration.createBlankBufferedString(
+					Symbolizers.symbolize(input[i], tm), 2);
+			pos[i] = 2;
+		}
+		Configuration config = new MultiTapeTMConfiguration(tm,
+				tm.getStartState(), pos.clone(), copy(reference));
+		chain.add(config);
+		int mismatches = 0, steps = 0;
+		long time = System.currentTimeMillis();
+		for (; steps < maxSteps && mismatches == 0; steps++) {
+			// A machine that halts in a final state has no next
+			// configurations, and one that halts elsewhere has a copy of the
+			// last one, rejected.
+			List<Configuration> next = config.getNextConfigurations();
+			if (next.isEmpty() || next.get(0).isReject())
+				break;
+			config = next.get(0);
+			chain.add(config);
+			MultiTapeTMTransition trans = (MultiTapeTMTransition) config
+					.getTransitionTo();
+			Symbol[] write = new Symbol[n];
+			TuringMachineMove[] move = new TuringMachineMove[n];
+			for (int i = 0; i < n; i++) {
+				write[i] = trans.getWrite(i);
+				move[i] = trans.getMove(i);
+			}
+			stepReference(reference, pos, write, move);
+			for (int i = 0; i < n; i++)
+				mismatches += compareTape(name + " step " + steps + " tape "
+						+ i, ((TMConfiguration) config).getTape(i),
+						reference[i], pos[i]);
+		}
+		System.out.println(name + ": " + steps + " steps in "
+				+ (System.currentTimeMillis() - time) + " ms, tape "
+				+ trim(config.getStringForIndex(0)) + ", " + mismatches
+				+ " mismatches");
+		return mismatches;
+	}
+
+	/**
+	 * Runs the binary counter for 200000 steps, and then checks that every
+	 * configuration it went through back to the first still holds the
+	 * count it had reached, with the blanks trimmed.
+	 */
+	private static int checkCounter() {
+		List<Configuration> chain = new ArrayList<Configuration>();
+		int mismatches = checkMachine("counter", createBinaryCounter(),
+				200000, chain, "0");
+		int count = 0;
+		for (Configuration config : chain) {
+			Transition trans = config.getTransitionTo();
+			if (trans == null || trans.getFromState().getID() != 1
+					|| trans.getToState().getID() != 0)
+				continue;
+			count++;
+			SymbolString tape = trim(config.getStringForIndex(0));
+			String expected = Integer.toBinaryString(count).replace("", " ")
+					.trim();
+			if (!tape.toString().equals(expected)) {
+				System.out.println("counter: expected " + expected
+						+ " but got " + tape);
+				return mismatches + 1;
+			}
+		}
+		System.out.println("counter: counted to " + count);
+		return mismatches;
+	}
+
+	/**
+	 * A binary counter that never halts: it adds one to the number left of
+	 * the head, growing the tape to the left on a carry out of the first
+	 * digit, and goes back to the right end.
+	 */
+	private static MultiTapeTuringMachine createBinaryCounter() {
+		MultiTapeTuringMachine tm = new MultiTapeTuringMachine();
+		TransitionSet<MultiTapeTMTransition> transitions = tm.getTransitions();
+		Symbol zero = new Symbol("0"), one = new Symbol("1"),
+				blank = tm.getBlankSymbol();
+		TuringMachineMove R = TuringMachineMove.RIGHT, L = TuringMachineMove.LEFT;
+		State add = new State("q0", 0), back = new State("q1", 1);
+		tm.setStartState(add);
+		addTransition(transitions, add, add, one, zero, L);
+		addTransition(transitions, add, back, zero, one, R);
+		addTransition(transitions, add, back, blank, one, R);
+		addTransition(transitions, back, back, zero, zero, R);
+		addTransition(transitions, back, back, one, one, R);
+		addTransition(transitions, back, add, blank, blank, L);
+		return tm;
+	}
+
+	/**
+	 * Runs a building block machine that appends X to its input and goes
+	 * back to the blank before it, whose blocks pass the tape along.
+	 */
+	private static int checkBlockMachine() {
+		BlockTuringMachine tm = new BlockTuringMachine();
+		TransitionSet<BlockTransition> transitions = tm.getTransitions();
+		TapeAlphabet alph = tm.getTapeAlphabet();
+		Symbol blank = tm.getBlankSymbol(), tilde = new Symbol(
+				JFLAPConstants.TILDE), X = new Symbol("X");
+		alph.addAll(new Symbol("a"), new Symbol("b"), X);
+		Block start = new StartBlock(0);
+		Block right = new MoveUntilBlock(TuringMachineMove.RIGHT, blank,
+				alph, 1);
+		Block write = new WriteBlock(X, alph, 2);
+		Block left = new MoveUntilBlock(TuringMachineMove.LEFT, blank, alph,
+				3);
+		Block halt = new HaltBlock(4);
+		tm.setStartState(start);
+		tm.getFinalStateSet().add(halt);
+		addBlockTransition(transitions, start, right, tilde);
+		addBlockTransition(transitions, right, write, tilde);
+		addBlockTransition(transitions, write, left, tilde);
+		addBlockTransition(transitions, left, halt, tilde);
+
+		SymbolString input = Symbolizers.symbolize("a b b a", tm);
+		Configuration config = new BlockTMConfiguration(tm, start, 2,
+				TMConfiguration.createBlankBufferedString(input, 2));
+		for (int steps = 0; steps < 10; steps++) {
+			List<Configuration> next = config.getNextConfigurations();
+			if (next.isEmpty())
+				break;
+			config = next.get(0);
+		}
+		SymbolString tape = config.getStringForIndex(0);
+		int pos = config.getPositionForIndex(0);
+		SymbolString expected = new SymbolString(input);
+		expected.add(X);
+		System.out.println("block: " + tape + " at " + pos);
+		if (config.getState() == halt && trim(tape).equals(expected)
+				&& tape.get(pos).equals(blank)
+				&& tape.subList(pos + 1).startsWith(input))
+			return 0;
+		System.out.println("block: expected " + expected
+				+ " with the head before it");
+		return 1;
+	}
+
+	/**
+	 * Steps the tapes as TMConfiguration did before it kept them in
+	 * {@link Tape}s, by copying them.
+	 */
+	private static void stepReference(SymbolString[] tapes, int[] pos,
+			Symbol[] write, TuringMachineMove[] move) {
+		for (int i = 0; i < tapes.length; i++) {
+			SymbolString tape = new SymbolString(tapes[i]);
+			int dPos = TMConfiguration.updateTape(move[i], pos[i], tape);
+			tapes[i] = tape.replace(pos[i] + dPos, write[i]);
+			pos[i] = Math.max(pos[i] + move[i].int_move, 0);
+		}
+	}
+
+	private static int compareTape(String name, Tape tape,
+			SymbolString expected, int pos) {
+		if (tape.toSymbolString().equals(expected)
+				&& tape.getPosition() == pos
+				&& tape.read().equals(expected.get(pos)))
+			return 0;
+		System.out.println(name + ": expected " + expected + " @" + pos
+				+ " but got " + tape);
+		return 1;
+	}
+
+	private static SymbolString[] copy(SymbolString[] strings) {
+		SymbolString[] copies = new SymbolString[strings.length];
+		for (int i = 0; i < strings.length; i++)
+			copies[i] = new SymbolString(strings[i]);
+		return copies;
+	}
+
+	/**
+	 * Returns the tape without the blanks at either end.
+	 */
+	private static SymbolString trim(SymbolString tape) {
+		SymbolString trimmed = new SymbolString(tape);
+		Symbol blank = JFLAPPreferences.getTMBlankSymbol();
+		while (!trimmed.isEmpty() && trimmed.getFirst().equals(blank))
+			trimmed.removeFirst();
+		while (!trimmed.isEmpty() && trimmed.getLast().equals(blank))
+			trimmed.removeLast();
+		return trimmed;
+	}
+
 	private static MultiTapeTuringMachine createLangacc_a() {
 		MultiTapeTuringMachine tm = new MultiTapeTuringMachine();
 		TransitionSet<MultiTapeTMTransition> transitions = tm.getTransitions();
@@ -78,7 +78,7 @@ public class JFLAPPreferences {
 			LSincrement_change, CYK_direction_change, CYK_color_change, TM_buffer_change,
 			regex_union_change, regex_group_change, state_color_change, 
 			selected_color_change, background_color_change, transition_color_change,
-			selected_trans_color_change, grouping_change};
+			selected_trans_color_change, grouping_change, compiled_simulation_change};
 			
 	public static JFLAPMode DEFAULT_MODE = JFLAPMode.DEFAULT;
 
@@ -93,6 +93,7 @@ public class JFLAPPreferences {
 	private static double DEFAULT_LS_LINCREMENT = JFLAPConstants.DEFAULT_LS_INCREM;
 	private static boolean CYK_DIAGONAL = false;
 	private static int DEFAULT_TM_BUFFER = JFLAPConstants.DEFAULT_TM_BUFFER;
+	private static boolean COMPILED_FSA_SIMULATION = true;
 	private static String UNION_OPERATOR = JFLAPConstants.PLUS;
 	private static String DEFAULT_OPEN_GROUP = "(";
 	private static String DEFAULT_CLOSE_GROUP = ")";
@@ -240,6 +241,22 @@ public class JFLAPPreferences {
 		}
 	}
 
+	/**
+	 * Returns true if non-interactive simulation of finite state acceptors
+	 * (Fast Run and Multiple Run) should use the compiled transition table
+	 * instead of stepping through configurations.
+	 */
+	public static boolean useCompiledFSASimulation() {
+		return COMPILED_FSA_SIMULATION;
+	}
+
+	public static void setCompiledFSASimulation(boolean compiled) {
+		if (COMPILED_FSA_SIMULATION != compiled) {
+			COMPILED_FSA_SIMULATION = compiled;
+			distributeChange(PREF_CHANGE.compiled_simulation_change, compiled);
+		}
+	}
+
 	public static UnionOperator getUnionOperator() {
 		return new UnionOperator(UNION_OPERATOR);
 	}
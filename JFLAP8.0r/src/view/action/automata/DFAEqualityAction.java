@@ -6,11 +6,14 @@ import java.awt.event.ActionEvent;
 import javax.swing.JComboBox;
 import javax.swing.JOptionPane;
 
+import model.algorithms.testinput.simulate.CompiledFSASimulator;
 import model.automata.AutomatonException;
 import model.automata.acceptors.fsa.FSATransition;
 import model.automata.acceptors.fsa.FiniteStateAcceptor;
 import model.graph.FSAEqualityChecker;
+import model.symbols.SymbolString;
 import universe.JFLAPUniverse;
+import universe.preferences.JFLAPPreferences;
 import view.automata.editing.AutomatonEditorPanel;
 import view.automata.views.FSAView;
 import view.environment.JFLAPEnvironment;
@@ -52,7 +55,8 @@ public class DFAEqualityAction extends AutomatonAction {
 				null, null, null);
 		if (result != JOptionPane.OK_OPTION) return;
 		
-		FSAView otherView = (FSAView)((JFLAPEnvironment) combo.getSelectedItem()).getPrimaryView();
+		JFLAPEnvironment otherEnviro = (JFLAPEnvironment) combo.getSelectedItem();
+		FSAView otherView = (FSAView) otherEnviro.getPrimaryView();
 		FiniteStateAcceptor other = otherView.getDefinition();
 		
 		if(other.getStartState() == null)
@@ -63,8 +67,19 @@ public class DFAEqualityAction extends AutomatonAction {
 //		automaton = (FiniteStateAutomaton) UselessStatesDetector
 //				.cleanAutomaton(automaton);
 	
-		String check = myChecker.equals(auto, other) ? "They ARE equivalent!"
-				: "They AREN'T equivalent!";
+		SymbolString witness = myChecker.getDistinguishingString(auto, other);
+		String check = "They ARE equivalent!";
+		if (witness != null) {
+			String activeFA = "active FA (" + active + ")";
+			String otherFA = "other FA (" + otherEnviro + ")";
+			String string = witness.isEmpty() ? JFLAPPreferences
+					.getEmptyString() : witness.toString();
+			boolean accepted = new CompiledFSASimulator(auto).accepts(witness);
+			check = "They AREN'T equivalent!\nThe "
+					+ (accepted ? activeFA : otherFA) + " accepts " + string
+					+ " and the " + (accepted ? otherFA : activeFA)
+					+ " does not.";
+		}
 		JOptionPane.showMessageDialog(active, check);
 	}
 	
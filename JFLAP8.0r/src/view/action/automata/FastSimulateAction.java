@@ -23,10 +23,14 @@ import java.util.Set;
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 
+import model.algorithms.testinput.simulate.CompiledFSASimulator;
 import model.algorithms.testinput.simulate.ConfigurationChain;
 import model.algorithms.testinput.simulate.SingleInputSimulator;
+import model.automata.Automaton;
+import model.automata.acceptors.fsa.FiniteStateAcceptor;
 import model.symbols.SymbolString;
 import universe.JFLAPUniverse;
+import universe.preferences.JFLAPPreferences;
 import view.automata.simulate.TraceWindow;
 import view.automata.views.AutomatonView;
 import view.environment.JFLAPEnvironment;
@@ -99,6 +103,19 @@ public class FastSimulateAction extends SimulateAction {
 		return result == JOptionPane.YES_OPTION;
 	}
 
+	/**
+	 * Returns true if simulation on this automaton should be done with a
+	 * {@link CompiledFSASimulator} rather than by stepping configurations.
+	 * 
+	 * @param auto
+	 *            the automaton being simulated
+	 * @return
+	 */
+	protected boolean useCompiledSimulation(Automaton auto) {
+		return auto instanceof FiniteStateAcceptor
+				&& JFLAPPreferences.useCompiledFSASimulation();
+	}
+
 	@Override
 	public void handleInteraction(SingleInputSimulator simulator,
 			SymbolString... symbols) {
@@ -107,6 +124,16 @@ public class FastSimulateAction extends SimulateAction {
 		int warningGenerated = WARNING_STEP;
 		int numberAccepted = 0;
 
+		// Rejection is decided up front, accepting configurations are still
+		// enumerated one at a time below.
+		Automaton auto = simulator.getAutomaton();
+		if (useCompiledSimulation(auto)
+				&& !new CompiledFSASimulator((FiniteStateAcceptor) auto)
+						.accepts(symbols[0])) {
+			JOptionPane.showMessageDialog(env, "The input was rejected.");
+			return;
+		}
+
 		simulator.beginSimulation(symbols);
 		ConfigurationChain[] configs = simulator.getChains().toArray(new ConfigurationChain[0]);
 
@@ -27,7 +27,6 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
-import java.util.Set;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
@@ -37,10 +36,13 @@ import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.table.TableColumnModel;
 
-import model.algorithms.testinput.simulate.Configuration;
 import model.algorithms.testinput.simulate.ConfigurationChain;
+import model.algorithms.testinput.simulate.MultiSimulator;
+import model.algorithms.testinput.simulate.MultiSimulator.Result;
+import model.algorithms.testinput.simulate.MultiSimulator.Status;
 import model.algorithms.testinput.simulate.SingleInputSimulator;
 import model.algorithms.testinput.simulate.configurations.InputOutputConfiguration;
 import model.automata.Automaton;
@@ -59,7 +61,6 @@ import view.automata.AutomatonDisplayPanel;
 import view.automata.editing.AutomatonEditorPanel;
 import view.automata.simulate.TraceWindow;
 import view.automata.views.AutomatonView;
-import view.environment.JFLAPEnvironment;
 import view.grammar.productions.LambdaRemovingEditor;
 import file.XMLFileChooser;
 
@@ -77,6 +78,15 @@ public class MultipleSimulateAction extends FastSimulateAction {
 	private static String[] RESULT = { "Accept", "Reject", "Cancelled" };
 	private static Color[] RESULT_COLOR = { Color.green, Color.red, Color.black };
 
+	/**
+	 * The budget each input gets before it is given up on and shown as
+	 * cancelled, since a batch cannot stop to ask whether to go on.
+	 */
+	private static final int CONFIGURATION_LIMIT = 200 * WARNING_STEP;
+	private static final long TIME_LIMIT = 10000;
+
+	private MultiSimulator myBatch;
+
 	/**
 	 * Instantiates a new <CODE>MultipleSimulateAction</CODE>.
 	 * 
@@ -164,6 +174,12 @@ public class MultipleSimulateAction extends FastSimulateAction {
 			}
 		});
 
+		bar.add(new AbstractAction("Cancel") {
+			public void actionPerformed(ActionEvent e) {
+				cancel();
+			}
+		});
+
 		// Add the clear button.
 		bar.add(new AbstractAction("Clear") {
 			public void actionPerformed(ActionEvent e) {
@@ -231,8 +247,9 @@ public class MultipleSimulateAction extends FastSimulateAction {
 		} catch (NullPointerException exception) {
 			// We weren't editing anything, so we're OK.
 		}
-		InputTableModel model = (InputTableModel) table.getModel();
-		Automaton auto = getAutomaton();
+		final InputTableModel model = (InputTableModel) table.getModel();
+		final Automaton auto = getAutomaton();
+		cancel();
 
 		String[][] inputs = model.getInputs();
 		int tapes = 1;
@@ -240,8 +257,7 @@ public class MultipleSimulateAction extends FastSimulateAction {
 		if (auto instanceof MultiTapeTuringMachine)
 			tapes = ((MultiTapeTuringMachine) auto).getNumTapes();
 
-		SingleInputSimulator sim = new SingleInputSimulator(auto, false);
-
+		List<SymbolString[]> batch = new ArrayList<SymbolString[]>();
 		for (int i = 0; i < inputs.length; i++) {
 			SymbolString[] symbols = new SymbolString[tapes];
 
@@ -251,55 +267,72 @@ public class MultipleSimulateAction extends FastSimulateAction {
 					in = "";
 				symbols[j] = Symbolizers.symbolize(in, auto);
 			}
-			sim.beginSimulation(symbols);
-
-			JFLAPEnvironment env = JFLAPUniverse.getActiveEnvironment();
-			int numberGenerated = 0;
-			int warningGenerated = WARNING_STEP;
-			int result = 1;
-			ConfigurationChain returnChain = null;
-
-			Set<ConfigurationChain> configs;
-
-			loop: while (!(configs = sim.getChains()).isEmpty()) {
-				numberGenerated += configs.size();
-				// Make sure we should continue.
-				if (numberGenerated >= warningGenerated) {
-					if (!confirmContinue(numberGenerated, env)) {
-						result = 2;
-						break loop;
-					}
-					while (numberGenerated >= warningGenerated)
-						warningGenerated *= 2;
-				}
+			batch.add(symbols);
+		}
 
-				for (ConfigurationChain chain : configs) {
-					if (chain.isAccept()) {
-						result = 0;
-						returnChain = chain;
-						break loop;
+		// The rows are filled in on the event thread as the results come in,
+		// in order, while the inputs run in the background. They run on a
+		// copy, so the automaton can still be edited, and the rows and their
+		// traces show it as it was when the batch was started.
+		final MultiSimulator sim = new MultiSimulator((Automaton) auto.copy(),
+				SingleInputSimulator.DEFAULT);
+		sim.setConfigurationLimit(CONFIGURATION_LIMIT);
+		sim.setTimeLimit(TIME_LIMIT);
+		myBatch = sim;
+		sim.simulate(batch, new MultiSimulator.ResultListener() {
+
+			public void resultReady(final Result result) {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if (myBatch == sim)
+							setResult(model, auto, result);
 					}
-					if (chain.isReject() && returnChain == null)
-						returnChain = chain;
-				}
-				sim.step();
+				});
 			}
-			if (result == 0) {
-				Configuration config = returnChain.getCurrentConfiguration();
 
-				if (auto instanceof Transducer) {
-					InputOutputConfiguration output = (InputOutputConfiguration) config;
-					model.setResult(i, output.getOutput().toString(),
-							returnChain);
-				} else
-					model.setResult(i, RESULT[result], returnChain);
-			} else if (result == 2)
-				model.setResult(i, RESULT[result], null);
+			public void simulationsDone(boolean cancelled) {
+				final RuntimeException failure = sim.getFailure();
+				if (failure == null)
+					return;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						JOptionPane.showMessageDialog(table,
+								"The batch was stopped by an error:\n"
+										+ failure, "Error",
+								JOptionPane.ERROR_MESSAGE);
+					}
+				});
+			}
+		});
+	}
 
-			else
-				model.setResult(i, RESULT[result], returnChain);
+	private void setResult(InputTableModel model, Automaton auto,
+			Result result) {
+		int i = result.getIndex();
+		ConfigurationChain chain = result.getChain();
+		Status status = result.getStatus();
+
+		if (status == Status.ACCEPT) {
+			if (auto instanceof Transducer) {
+				InputOutputConfiguration output = (InputOutputConfiguration) chain
+						.getCurrentConfiguration();
+				model.setResult(i, output.getOutput().toString(), chain);
+			} else
+				model.setResult(i, RESULT[0], chain);
+		} else if (status == Status.REJECT)
+			model.setResult(i, RESULT[1], chain);
+		else
+			model.setResult(i, RESULT[2], null);
+	}
 
-		}
+	/**
+	 * Stops the running batch, if any. The inputs it was running are shown
+	 * as cancelled, and rows it had not reached keep whatever result they
+	 * had.
+	 */
+	private void cancel() {
+		if (myBatch != null)
+			myBatch.cancel();
 	}
 
 	private void clear() {
@@ -309,6 +342,9 @@ public class MultipleSimulateAction extends FastSimulateAction {
 		} catch (NullPointerException exception) {
 			// We weren't editing anything, so we're OK.
 		}
+		// Results still on their way belong to the old rows.
+		cancel();
+		myBatch = null;
 		InputTableModel model = (InputTableModel) table.getModel();
 		model.clear();
 	}
@@ -0,0 +1,24 @@
+package view.action.grammar.parse;
+
+import model.algorithms.testinput.parse.earley.EarleyParser;
+import model.grammar.Grammar;
+import view.grammar.GrammarView;
+import view.grammar.parsing.ParserView;
+import view.grammar.parsing.earley.EarleyParserView;
+
+/**
+ * Initializes an Earley Parser for the given context free grammar and
+ * creates the corresponding view.
+ */
+public class EarleyParseAction extends ParseAction<EarleyParser> {
+
+	public EarleyParseAction(GrammarView view) {
+		super("Earley Parse", view);
+	}
+
+	@Override
+	public ParserView<EarleyParser> createParseView(Grammar g) {
+		return new EarleyParserView(new EarleyParser(g));
+	}
+
+}
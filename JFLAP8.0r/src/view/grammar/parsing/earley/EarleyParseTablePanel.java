@@ -0,0 +1,100 @@
+package view.grammar.parsing.earley;
+
+import java.awt.Dimension;
+
+import javax.swing.JTable;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+
+import model.algorithms.testinput.InputUsingAlgorithm;
+import model.algorithms.testinput.parse.Parser;
+import model.algorithms.testinput.parse.earley.EarleyParser;
+import model.change.events.AdvancedChangeEvent;
+import util.UtilFunctions;
+import view.grammar.parsing.RunningView;
+
+/**
+ * Running View for the Earley Parser, with a row for each finished Earley
+ * set giving the input symbol read to reach it, its number of items and its
+ * completed items.
+ */
+public class EarleyParseTablePanel extends RunningView {
+
+	public EarleyParseTablePanel(EarleyParser parser) {
+		super("Earley Parse Table", parser);
+		JTable table = getTable();
+
+		table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+		TableColumnModel colModel = table.getColumnModel();
+		for (int i = 0; i < 3; i++) {
+			TableColumn column = colModel.getColumn(i);
+			column.setMinWidth(60);
+			column.setMaxWidth(60);
+		}
+
+		setPreferredSize(new Dimension(300, 180));
+	}
+
+	@Override
+	public AbstractTableModel createModel(Parser parser) {
+		return new EarleyTableModel((EarleyParser) parser);
+	}
+
+	private class EarleyTableModel extends AbstractTableModel implements
+			ChangeListener {
+
+		private EarleyParser parser;
+
+		public EarleyTableModel(EarleyParser parser) {
+			this.parser = parser;
+			parser.addListener(this);
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			String[] names = new String[] { "Set", "Read", "Items",
+					"Completed Items" };
+			return names[column];
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 4;
+		}
+
+		@Override
+		public int getRowCount() {
+			if (parser.getInput() == null)
+				return 0;
+			return parser.getNumberOfSetsCompleted();
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			switch (column) {
+			case 0:
+				return row;
+			case 1:
+				return row == 0 ? "" : parser.getInput().get(row - 1);
+			case 2:
+				return parser.getSetSize(row);
+			default:
+				return UtilFunctions.createDelimitedString(
+						parser.getCompletedItems(row), ", ");
+			}
+		}
+
+		@Override
+		public void stateChanged(ChangeEvent e) {
+			if (e instanceof AdvancedChangeEvent) {
+				AdvancedChangeEvent event = (AdvancedChangeEvent) e;
+				if (event.getType() == InputUsingAlgorithm.INPUT_SET
+						|| event.getType() == EarleyParser.SET_COMPLETED)
+					fireTableDataChanged();
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package view.grammar.parsing.earley;
+
+import java.awt.Dimension;
+
+import model.algorithms.testinput.parse.Parser;
+import model.algorithms.testinput.parse.earley.EarleyParser;
+import view.algorithms.toolbar.SteppableToolbar;
+import view.grammar.parsing.FindFirstParserView;
+
+/**
+ * Earley parse pane.
+ */
+public class EarleyParserView extends
+		FindFirstParserView<EarleyParseTablePanel> {
+
+	public EarleyParserView(EarleyParser alg) {
+		super(alg);
+
+		setPreferredSize(new Dimension(800, 700));
+	}
+
+	@Override
+	public EarleyParseTablePanel createRunningView(Parser alg) {
+		return new EarleyParseTablePanel((EarleyParser) alg);
+	}
+
+	@Override
+	public SteppableToolbar createToolbar(Parser alg) {
+		return new SteppableToolbar(alg, false);
+	}
+}
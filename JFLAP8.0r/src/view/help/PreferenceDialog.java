@@ -93,6 +93,7 @@ public class PreferenceDialog extends JDialog {
 		JPanel grouping = createGroupingPanel();
 		JPanel buffer = createBufferPanel();
 		JPanel cyk = createCKYPanel();
+		JPanel simulation = createSimulationPanel();
 		JPanel symbol = createSymbolPanel();
 		JPanel buttonPanel = createButtonPanel();
 
@@ -100,6 +101,7 @@ public class PreferenceDialog extends JDialog {
 		west.add(grouping);
 		west.add(buffer);
 		west.add(cyk);
+		west.add(simulation);
 		west.add(symbol);
 		west.add(buttonPanel);
 
@@ -214,6 +216,28 @@ public class PreferenceDialog extends JDialog {
 		return cykPanel;
 	}
 
+	private JPanel createSimulationPanel() {
+		JPanel simPanel = new JPanel();
+		simPanel.add(new JLabel("FSA Fast/Multiple Run: "));
+		ButtonGroup simGroup = new ButtonGroup();
+
+		JRadioButton compiled = new JRadioButton(new SimulationModeAction(true));
+		JRadioButton stepwise = new JRadioButton(new SimulationModeAction(false));
+
+		simPanel.add(compiled);
+		simGroup.add(compiled);
+		buttonList.add(compiled);
+		simPanel.add(stepwise);
+		simGroup.add(stepwise);
+
+		if (JFLAPPreferences.useCompiledFSASimulation())
+			compiled.doClick();
+		else
+			stepwise.doClick();
+
+		return simPanel;
+	}
+
 	private JPanel createSymbolPanel() {
 		JPanel symbols = new JPanel(new GridLayout(2, 2));
 
@@ -559,6 +583,22 @@ public class PreferenceDialog extends JDialog {
 
 	}
 
+	private class SimulationModeAction extends AbstractAction {
+
+		private boolean compiled;
+
+		public SimulationModeAction(boolean compiled) {
+			super(compiled ? "Compiled" : "Configurations");
+			this.compiled = compiled;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent arg0) {
+			JFLAPPreferences.setCompiledFSASimulation(compiled);
+		}
+
+	}
+
 	private class LambdaPrefAction extends AbstractAction {
 
 		public LambdaPrefAction() {
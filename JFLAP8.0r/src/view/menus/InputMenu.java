@@ -11,6 +11,7 @@ import view.action.automata.SimulateAction;
 import view.action.grammar.LanguageGeneratorAction;
 import view.action.grammar.parse.BruteParseAction;
 import view.action.grammar.parse.CYKParseAction;
+import view.action.grammar.parse.EarleyParseAction;
 import view.action.grammar.parse.LLParseAction;
 import view.action.grammar.parse.LRParseAction;
 import view.action.grammar.parse.MultipleParseAction;
@@ -62,6 +63,7 @@ public class InputMenu extends JMenu implements TabChangeListener {
 				this.add(new MultipleParseAction(v));
 				this.add(new UserParseAction(v));
 				this.add(new CYKParseAction(v));
+				this.add(new EarleyParseAction(v));
 				this.add(new LanguageGeneratorAction(v.getDefinition()));
 			}
 			if (view instanceof LSystemInputView) {